@@ -0,0 +1,170 @@
+package nl.bitbrains.nebu.deployer.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheManager;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.ApplicationBuilder;
+import nl.bitbrains.nebu.containers.DeploymentRequest;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.containers.VMTemplateBuilder;
+import nl.bitbrains.nebu.deployer.DeployerException;
+import nl.bitbrains.nebu.deployer.DeployerPolicy;
+import nl.bitbrains.nebu.deployer.DeployerPolicyFactories;
+import nl.bitbrains.nebu.deployer.policies.AggregatedLocalityPolicy;
+import nl.bitbrains.nebu.deployer.policies.BasicReplicationPolicy;
+import nl.bitbrains.nebu.deployer.policies.BinPackingPolicy;
+import nl.bitbrains.nebu.deployer.policies.HDFS2ReplicationPolicy;
+import nl.bitbrains.nebu.deployer.policies.HDFSReplicationPolicy;
+import nl.bitbrains.nebu.deployer.policies.LocalityPolicy;
+import nl.bitbrains.nebu.deployer.policies.RandomPolicy;
+import nl.bitbrains.nebu.simulation.PlacementSimulator;
+import nl.bitbrains.nebu.simulation.TopologyGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Measures the planning cost of the {@link DeployerPolicy}
+ *         implementations: the time and memory one call of
+ *         {@link DeployerPolicy#generateDeployment(DeploymentRequest)} takes.
+ *         Throughput and sampled latencies, from which JMH reports the
+ *         percentiles, are measured in one run. Run with <code>-prof gc</code>
+ *         for the allocation rate; the benchmark profile of the pom does so by
+ *         default.
+ * 
+ *         The VMM is not contacted. The topology is generated by a
+ *         {@link TopologyGenerator}, and put in the cache by the
+ *         {@link PlacementSimulator}, so the policies get it from the cache as
+ *         they would in between two loads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class PolicyBenchmark {
+
+    public static final String TEMPLATE_UUID = "benchmark-template";
+    public static final int HOSTS_PER_RACK = 40;
+    public static final int MIN_RACKS = 2;
+    public static final long RANDOM_SEED = 42;
+
+    @Param({ RandomPolicy.POLICY_NAME, BasicReplicationPolicy.POLICY_NAME,
+            LocalityPolicy.POLICY_NAME, AggregatedLocalityPolicy.POLICY_NAME,
+            HDFSReplicationPolicy.POLICY_NAME, HDFS2ReplicationPolicy.POLICY_NAME,
+            BinPackingPolicy.POLICY_NAME })
+    private String policyName;
+
+    @Param({ "10", "1000", "50000" })
+    private int hosts;
+
+    @Param({ "1", "16", "128" })
+    private int requestSize;
+
+    @Param({ "0", "1" })
+    private int existingVMsPerHost;
+
+    private DeployerPolicy policy;
+    private DeploymentRequest request;
+
+    /**
+     * Builds the topology, the application with its existing VMs and the
+     * request, and puts the topology in the cache. The existing VMs are
+     * spread over the hosts at random.
+     * 
+     * @throws DeployerException
+     *             if the policy can not place the request on the topology.
+     * @throws CacheException
+     *             if the topology can not be read back from the cache.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws DeployerException, CacheException {
+        final int racks = Math.max(PolicyBenchmark.MIN_RACKS,
+                                   (this.hosts + PolicyBenchmark.HOSTS_PER_RACK - 1)
+                                           / PolicyBenchmark.HOSTS_PER_RACK);
+        final TopologyGenerator generator = new TopologyGenerator().withRacksPerDataCenter(racks)
+                .withHostsPerRack((this.hosts + racks - 1) / racks)
+                .withSeed(PolicyBenchmark.RANDOM_SEED);
+        final PhysicalTopology topology = generator.generate();
+        final VMTemplate template = new VMTemplateBuilder().withUuid(PolicyBenchmark.TEMPLATE_UUID)
+                .withCPU(1).withMem(2).withIO(1).withNet(1).build();
+        CacheManager.resetCache();
+        PlacementSimulator.registerTopology(template, topology);
+
+        final Application app = new ApplicationBuilder().withUuid("benchmark-app")
+                .withName("benchmark").withDeploymentPolicy(this.policyName)
+                .withTemplate(template).build();
+        PolicyBenchmark.addExistingVMs(app, template, generator
+                .generateVirtualMachines(topology, this.existingVMsPerHost * this.hosts, "vm"));
+        this.request = new DeploymentRequest.Builder().withApplication(app)
+                .withRequest(template, this.requestSize).createDeploymentRequest();
+
+        this.policy = DeployerPolicyFactories.createDefault().getFactory(this.policyName)
+                .newInstance();
+        if (this.policy instanceof RandomPolicy) {
+            ((RandomPolicy) this.policy).setSeed(PolicyBenchmark.RANDOM_SEED);
+        }
+        // Fails the trial up front, instead of measuring the failure path.
+        this.policy.generateDeployment(this.request);
+    }
+
+    /**
+     * Drops the topology from the cache.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        CacheManager.resetCache();
+    }
+
+    /**
+     * @return the generated placement, consumed by JMH.
+     * @throws DeployerException
+     *             if the policy fails.
+     */
+    @Benchmark
+    public List<VMDeploymentSpecification> generateDeployment() throws DeployerException {
+        return this.policy.generateDeployment(this.request);
+    }
+
+    /**
+     * Registers VMs of the template with the occupancy index of the
+     * application, as if they had been launched before.
+     * 
+     * @param app
+     *            to add the VMs to.
+     * @param template
+     *            the VMs were launched with.
+     * @param vms
+     *            to add.
+     */
+    private static void addExistingVMs(final Application app, final VMTemplate template,
+            final List<VirtualMachine> vms) {
+        for (final VirtualMachine vm : vms) {
+            final VMDeploymentSpecification spec = new VMDeploymentSpecificationBuilder()
+                    .withTemplate(template).withHost(vm.getHost())
+                    .withStore(vm.getStores().iterator().next()).build();
+            app.getOccupancy().add(vm, spec);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package nl.bitbrains.nebu;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.text.ParseException;
 
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerResponseContext;
@@ -13,25 +14,31 @@ import nl.bitbrains.nebu.common.config.Configuration;
 import nl.bitbrains.nebu.common.config.InvalidConfigurationException;
 import nl.bitbrains.nebu.deployer.Deployer;
 import nl.bitbrains.nebu.deployer.DeployerPolicyFactories;
-import nl.bitbrains.nebu.deployer.policies.AggregatedLocalityPolicy;
-import nl.bitbrains.nebu.deployer.policies.AggregatedLocalityPolicyFactory;
-import nl.bitbrains.nebu.deployer.policies.BasicReplicationPolicy;
-import nl.bitbrains.nebu.deployer.policies.BasicReplicationPolicyFactory;
-import nl.bitbrains.nebu.deployer.policies.HDFS2ReplicationPolicy;
-import nl.bitbrains.nebu.deployer.policies.HDFS2ReplicationPolicyFactory;
-import nl.bitbrains.nebu.deployer.policies.HDFSReplicationPolicy;
-import nl.bitbrains.nebu.deployer.policies.HDFSReplicationPolicyFactory;
-import nl.bitbrains.nebu.deployer.policies.LocalityPolicy;
-import nl.bitbrains.nebu.deployer.policies.LocalityPolicyFactory;
-import nl.bitbrains.nebu.deployer.policies.RandomPolicy;
-import nl.bitbrains.nebu.deployer.policies.RandomPolicyFactory;
 import nl.bitbrains.nebu.rest.RESTRequestException;
+import nl.bitbrains.nebu.rest.client.ClientPool;
+import nl.bitbrains.nebu.rest.client.ClientSettings;
+import nl.bitbrains.nebu.rest.client.HedgingSettings;
+import nl.bitbrains.nebu.rest.client.RequestSender;
+import nl.bitbrains.nebu.rest.client.ResilienceSettings;
+import nl.bitbrains.nebu.rest.client.TopologyCacheSettings;
+import nl.bitbrains.nebu.rest.client.VMCacheSettings;
+import nl.bitbrains.nebu.rest.server.AppsProvider;
+import nl.bitbrains.nebu.rest.server.AsyncRequestExecutor;
+import nl.bitbrains.nebu.rest.server.AsyncSettings;
+import nl.bitbrains.nebu.rest.server.DeploymentLauncher;
+import nl.bitbrains.nebu.rest.server.VMRefreshSettings;
+import nl.bitbrains.nebu.rest.server.VMStateRefresher;
+import nl.bitbrains.nebu.store.StateStore;
+import nl.bitbrains.nebu.store.StateStoreSettings;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
 
 import com.sun.research.ws.wadl.Application;
 
@@ -90,17 +97,7 @@ public final class App extends Application {
      * @return a new {@link Deployer} with a list of default policies set.
      */
     private static Deployer initializeDeployer() {
-        final DeployerPolicyFactories factories = new DeployerPolicyFactories()
-                .withFactory(RandomPolicy.POLICY_NAME, new RandomPolicyFactory())
-                .withFactory(BasicReplicationPolicy.POLICY_NAME,
-                             new BasicReplicationPolicyFactory())
-                .withFactory(LocalityPolicy.POLICY_NAME, new LocalityPolicyFactory())
-                .withFactory(HDFSReplicationPolicy.POLICY_NAME, new HDFSReplicationPolicyFactory())
-                .withFactory(HDFS2ReplicationPolicy.POLICY_NAME,
-                             new HDFS2ReplicationPolicyFactory())
-                .withFactory(AggregatedLocalityPolicy.POLICY_NAME,
-                             new AggregatedLocalityPolicyFactory());
-        return new Deployer().withPolicyFactories(factories);
+        return new Deployer().withPolicyFactories(DeployerPolicyFactories.createDefault());
     }
 
     /**
@@ -117,14 +114,86 @@ public final class App extends Application {
      */
     public static void main(final String[] args) throws RESTRequestException, IOException,
             InvalidConfigurationException {
-        final Configuration config = Configuration.parseConfigurationFile(new File(args[0]));
-        App.logger.info("Starting Server");
-        final HttpServer server = App.startServer(config.getServerConfig().getPort());
-
-        CacheManager.put(Deployer.CACHE_KEY, App.initializeDeployer());
+        final HttpServer server = App.start(new File(args[0]));
 
         System.in.read();
+        App.stop(server);
+    }
+
+    /**
+     * Configures nebu-core from the configuration file, restores its state and
+     * starts the server, as the main does. Used to run nebu-core in-process,
+     * for example by the load test.
+     * 
+     * @param configFile
+     *            to read the configuration from.
+     * @return the started server.
+     * @throws IOException
+     *             if config parsing fails.
+     * @throws InvalidConfigurationException
+     *             if the config is invalidly specified.
+     */
+    public static HttpServer start(final File configFile) throws IOException,
+            InvalidConfigurationException {
+        final Configuration config = Configuration.parseConfigurationFile(configFile);
+        App.applyCoreSettings(configFile);
+        final Deployer deployer = App.initializeDeployer();
+        CacheManager.put(Deployer.CACHE_KEY, deployer);
+        CacheManager.put(AppsProvider.CACHE_KEY_APPS, StateStore.get().restore(deployer));
+        App.logger.info("Starting Server");
+        return App.startServer(config.getServerConfig().getPort());
+    }
+
+    /**
+     * Stops the server, and the background work of nebu-core.
+     * 
+     * @param server
+     *            returned by {@link #start(File)}.
+     */
+    public static void stop(final HttpServer server) {
         server.stop();
+        StateStore.get().close();
+        VMStateRefresher.get().shutdown();
+        DeploymentLauncher.get().shutdown();
+        AsyncRequestExecutor.get().shutdown();
+        RequestSender.get().shutdown();
+        ClientPool.get().shutdown();
         App.logger.info("Server Terminated");
     }
+
+    /**
+     * Reads the settings of nebu-core itself from the configuration file, and
+     * applies them.
+     * 
+     * @param configFile
+     *            to read the settings from.
+     * @throws IOException
+     *             if the file can not be read or the settings are invalidly
+     *             specified.
+     */
+    private static void applyCoreSettings(final File configFile) throws IOException {
+        try {
+            final Element root = new SAXBuilder().build(configFile).getRootElement();
+            final ClientSettings clientSettings = ClientSettings.fromXML(root
+                    .getChild(ClientSettings.TAG_CONNECTION));
+            ClientPool.get().configure(clientSettings);
+            DeploymentLauncher.get().setParallelism(clientSettings.getLaunchParallelism());
+            AsyncRequestExecutor.get().configure(AsyncSettings.fromXML(root
+                    .getChild(AsyncSettings.TAG_ASYNC)));
+            RequestSender.get().configureTopologyCache(TopologyCacheSettings.fromXML(root
+                    .getChild(TopologyCacheSettings.TAG_TOPOLOGY_CACHE)));
+            RequestSender.get().configureResilience(ResilienceSettings.fromXML(root
+                    .getChild(ResilienceSettings.TAG_RESILIENCE)));
+            RequestSender.get().configureHedging(HedgingSettings.fromXML(root
+                    .getChild(HedgingSettings.TAG_HEDGING)));
+            RequestSender.get().configureVMCache(VMCacheSettings.fromXML(root
+                    .getChild(VMCacheSettings.TAG_VM_CACHE)));
+            VMStateRefresher.get().configure(VMRefreshSettings.fromXML(root
+                    .getChild(VMRefreshSettings.TAG_VM_REFRESH)));
+            StateStore.get().configure(StateStoreSettings.fromXML(root
+                    .getChild(StateStoreSettings.TAG_STATE_STORE)));
+        } catch (final JDOMException | ParseException e) {
+            throw new IOException("Invalid settings: " + e.getMessage(), e);
+        }
+    }
 }
@@ -2,14 +2,18 @@ package nl.bitbrains.nebu.containers;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import nl.bitbrains.nebu.common.VirtualMachine;
 import nl.bitbrains.nebu.common.interfaces.Identifiable;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
- * Holds information related to an Application users can deploy vms for.
+ * Holds information related to an Application users can deploy vms for. The
+ * templates and deployments are kept in concurrent maps, so they can be
+ * iterated over while requests add to them.
  * 
  * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
  * 
@@ -24,6 +28,8 @@ public class Application implements Identifiable, VMTemplateCollection {
     private String deploymentPolicy;
     private final Map<String, VMTemplate> templates;
     private final Map<String, Deployment> deployments;
+    private final OccupancyIndex occupancy;
+    private final VirtualMachineIndex vmIndex;
 
     /**
      * Simple constructor that sets the name.
@@ -45,8 +51,14 @@ public class Application implements Identifiable, VMTemplateCollection {
         this.uuid = uuid;
         this.name = name;
         this.deploymentPolicy = deploymentPolicy;
-        this.templates = templates;
-        this.deployments = deployments;
+        this.templates = new ConcurrentHashMap<String, VMTemplate>(templates);
+        this.deployments = new ConcurrentHashMap<String, Deployment>(deployments);
+        this.occupancy = new OccupancyIndex();
+        this.vmIndex = new VirtualMachineIndex();
+        for (final Deployment deployment : this.deployments.values()) {
+            deployment.setOccupancyIndex(this.occupancy);
+            deployment.setVirtualMachineIndex(this.vmIndex);
+        }
         Application.logger.exit();
     }
 
@@ -124,6 +136,9 @@ public class Application implements Identifiable, VMTemplateCollection {
      * @return the template if found, null otherwise.
      */
     public final VMTemplate getVMTemplate(final String templateUUID) {
+        if (templateUUID == null) {
+            return null;
+        }
         return this.templates.get(templateUUID);
     }
 
@@ -132,7 +147,14 @@ public class Application implements Identifiable, VMTemplateCollection {
      *            to add.
      */
     public final void putDeployment(final Deployment deployment) {
-        this.deployments.put(deployment.getUniqueIdentifier(), deployment);
+        final Deployment previous = this.deployments.put(deployment.getUniqueIdentifier(),
+                                                         deployment);
+        if (previous != null && previous != deployment) {
+            previous.setOccupancyIndex(null);
+            previous.setVirtualMachineIndex(null);
+        }
+        deployment.setOccupancyIndex(this.occupancy);
+        deployment.setVirtualMachineIndex(this.vmIndex);
     }
 
     /**
@@ -141,6 +163,9 @@ public class Application implements Identifiable, VMTemplateCollection {
      * @return the deployment if found, null otherwise.
      */
     public final Deployment getDeployment(final String depuuid) {
+        if (depuuid == null) {
+            return null;
+        }
         return this.deployments.get(depuuid);
     }
 
@@ -151,4 +176,31 @@ public class Application implements Identifiable, VMTemplateCollection {
         return this.deployments.values();
     }
 
+    /**
+     * @return the {@link OccupancyIndex} holding the number of VMs of this
+     *         application per host and store.
+     */
+    public final OccupancyIndex getOccupancy() {
+        return this.occupancy;
+    }
+
+    /**
+     * @param vmUUID
+     *            id to look for.
+     * @return the VM of one of the deployments of this application if found,
+     *         null otherwise.
+     */
+    public final VirtualMachine getVirtualMachine(final String vmUUID) {
+        return this.vmIndex.getVirtualMachine(vmUUID);
+    }
+
+    /**
+     * @param vmUUID
+     *            id of the VM to look for.
+     * @return the deployment the VM belongs to if found, null otherwise.
+     */
+    public final Deployment getDeploymentForVirtualMachine(final String vmUUID) {
+        return this.vmIndex.getDeployment(vmUUID);
+    }
+
 }
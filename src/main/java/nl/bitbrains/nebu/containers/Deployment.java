@@ -1,9 +1,12 @@
 package nl.bitbrains.nebu.containers;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.ws.rs.core.Response.Status;
 
@@ -34,6 +37,10 @@ public class Deployment implements Identifiable {
     private boolean launched;
     private final List<VMDeploymentSpecification> specs;
     private Map<VirtualMachine, VMDeploymentSpecification> virtualMachines;
+    private OccupancyIndex occupancy;
+    private VirtualMachineIndex vmIndex;
+    private final Object refreshLock;
+    private volatile long lastRefreshed;
 
     /**
      * Default constructor.
@@ -55,6 +62,10 @@ public class Deployment implements Identifiable {
         this.launched = launched;
         this.specs = specs;
         this.virtualMachines = virtualMachines;
+        this.occupancy = null;
+        this.vmIndex = null;
+        this.refreshLock = new Object();
+        this.lastRefreshed = 0;
         Deployment.logger.exit();
     }
 
@@ -112,14 +123,15 @@ public class Deployment implements Identifiable {
     /**
      * @return the vmMapping
      */
-    public final List<VirtualMachine> getVirtualMachines() {
+    public final synchronized List<VirtualMachine> getVirtualMachines() {
         return new ArrayList<VirtualMachine>(this.virtualMachines.keySet());
     }
 
     /**
      * @return the vmMapping
      */
-    public final Map<VirtualMachine, VMDeploymentSpecification> getVirtualMachinesWithSpecs() {
+    public final synchronized Map<VirtualMachine, VMDeploymentSpecification>
+            getVirtualMachinesWithSpecs() {
         return new HashMap<VirtualMachine, VMDeploymentSpecification>(this.virtualMachines);
     }
 
@@ -130,7 +142,7 @@ public class Deployment implements Identifiable {
      *            to get the specs for.
      * @return the specs or null if not found.
      */
-    public final VMDeploymentSpecification getSpecForVM(final VirtualMachine vm) {
+    public final synchronized VMDeploymentSpecification getSpecForVM(final VirtualMachine vm) {
         return this.virtualMachines.get(vm);
     }
 
@@ -167,9 +179,90 @@ public class Deployment implements Identifiable {
      * @param virtualMachines
      *            to set.
      */
-    public final void setVirtualMachines(
+    public final synchronized void setVirtualMachines(
             final Map<VirtualMachine, VMDeploymentSpecification> virtualMachines) {
+        this.unregisterVirtualMachines();
         this.virtualMachines = virtualMachines;
+        this.registerVirtualMachines();
+    }
+
+    /**
+     * Attaches this deployment to the {@link OccupancyIndex} of the
+     * {@link Application} it belongs to. All VMs of this deployment are moved
+     * from the previous index (if any) to the new one, and later changes are
+     * propagated to it.
+     * 
+     * @param index
+     *            to keep up to date, or null to detach.
+     */
+    public final synchronized void setOccupancyIndex(final OccupancyIndex index) {
+        this.unregisterVirtualMachines();
+        this.occupancy = index;
+        this.registerVirtualMachines();
+    }
+
+    /**
+     * Attaches this deployment to the {@link VirtualMachineIndex} of the
+     * {@link Application} it belongs to, like
+     * {@link #setOccupancyIndex(OccupancyIndex)}.
+     * 
+     * @param index
+     *            to keep up to date, or null to detach.
+     */
+    public final synchronized void setVirtualMachineIndex(final VirtualMachineIndex index) {
+        this.unregisterVirtualMachines();
+        this.vmIndex = index;
+        this.registerVirtualMachines();
+    }
+
+    /**
+     * Registers all VMs of this deployment with the indexes.
+     */
+    private void registerVirtualMachines() {
+        for (final VirtualMachine vm : this.virtualMachines.keySet()) {
+            this.register(vm, this.virtualMachines.get(vm));
+        }
+    }
+
+    /**
+     * Removes all VMs of this deployment from the indexes.
+     */
+    private void unregisterVirtualMachines() {
+        for (final VirtualMachine vm : this.virtualMachines.keySet()) {
+            this.unregister(vm);
+        }
+    }
+
+    /**
+     * Registers a VM with the indexes, under its current identifier.
+     * 
+     * @param vm
+     *            to register.
+     * @param spec
+     *            of the vm.
+     */
+    private void register(final VirtualMachine vm, final VMDeploymentSpecification spec) {
+        if (this.occupancy != null) {
+            this.occupancy.add(vm, spec);
+        }
+        if (this.vmIndex != null) {
+            this.vmIndex.add(this, vm);
+        }
+    }
+
+    /**
+     * Removes a VM from the indexes.
+     * 
+     * @param vm
+     *            to remove.
+     */
+    private void unregister(final VirtualMachine vm) {
+        if (this.occupancy != null) {
+            this.occupancy.remove(vm);
+        }
+        if (this.vmIndex != null) {
+            this.vmIndex.remove(vm);
+        }
     }
 
     /**
@@ -178,49 +271,78 @@ public class Deployment implements Identifiable {
      * @param spec
      *            of the vm to add.
      */
-    public final void addVirtualMachines(final VirtualMachine vm,
+    public final synchronized void addVirtualMachines(final VirtualMachine vm,
             final VMDeploymentSpecification spec) {
         this.virtualMachines.put(vm, spec);
+        this.register(vm, spec);
+    }
+
+    /**
+     * @return true iff at least one of the VMs is still launching.
+     */
+    public final boolean hasLaunchingVirtualMachines() {
+        for (final VirtualMachine vm : this.getVirtualMachines()) {
+            if (vm.isLaunching()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the time in milliseconds at which the VMs were last refreshed
+     *         by {@link #refreshVMInformation()}, or 0 if they never were.
+     */
+    public final long getLastRefreshed() {
+        return this.lastRefreshed;
     }
 
     /**
-     * Refreshes the vms by getting the latest information.
+     * Refreshes the vms by getting the latest information. VMs that no longer
+     * exist are removed, and the information of all other VMs is fetched in
+     * bulk through {@link RequestSender#getVirtualMachineDetails(Collection)}.
+     * 
+     * Concurrent refreshes of the same deployment are run one after the
+     * other. The VMs can be read while a refresh is running.
      */
     public final void refreshVMInformation() {
         Deployment.logger.entry();
-        List<String> allVms;
+        synchronized (this.refreshLock) {
+            this.refreshVMInformationLocked();
+        }
+        Deployment.logger.exit();
+    }
+
+    /**
+     * Refreshes the vms, see {@link #refreshVMInformation()}.
+     */
+    private void refreshVMInformationLocked() {
+        final long started = System.currentTimeMillis();
+        Set<String> allVms;
         try {
-            allVms = RequestSender.get().getVirtualMachines();
+            allVms = new HashSet<String>(RequestSender.get().getVirtualMachines());
         } catch (final CacheException e1) {
             Deployment.logger.catching(Level.ERROR, e1);
             return;
         }
+        final Map<String, VirtualMachine> toUpdate = new HashMap<String, VirtualMachine>();
         for (final VirtualMachine vm : this.getVirtualMachines()) {
             if (!vm.isLaunching()) {
                 // VMs that no longer exist should be removed.
                 if (!allVms.contains(vm.getUniqueIdentifier())) {
-                    this.virtualMachines.remove(vm);
+                    this.removeVirtualMachine(vm);
+                    RequestSender.get().invalidateVirtualMachine(vm.getUniqueIdentifier());
                 } else {
-                    try {
-                        final VirtualMachine updatedVM = RequestSender.get()
-                                .getVirtualMachine(vm.getUniqueIdentifier());
-
-                        vm.adoptFromOther(updatedVM);
-                    } catch (final CacheException e) {
-                        Deployment.logger.catching(Level.ERROR, e);
-                    }
+                    toUpdate.put(vm.getUniqueIdentifier(), vm);
                 }
             } else {
-                VirtualMachine updatedVMStatus;
                 try {
-                    updatedVMStatus = RequestSender.get()
+                    final VirtualMachine updatedVMStatus = RequestSender.get()
                             .getVirtualMachineStatus(vm.getUniqueIdentifier());
                     final VMDeploymentSpecification spec = this.removeVirtualMachine(vm);
                     vm.setUuid(updatedVMStatus.getUniqueIdentifier());
-                    VirtualMachine updatedVM;
-                    updatedVM = RequestSender.get().getVirtualMachine(vm.getUniqueIdentifier());
-                    vm.adoptFromOther(updatedVM);
                     this.addVirtualMachines(vm, spec);
+                    toUpdate.put(vm.getUniqueIdentifier(), vm);
                 } catch (final RESTRequestException e) {
                     if (e.getHttpCode() == Status.ACCEPTED.getStatusCode()) {
                         Deployment.logger.debug("VM is not yet fully launched");
@@ -232,7 +354,24 @@ public class Deployment implements Identifiable {
                 }
             }
         }
-        Deployment.logger.exit();
+
+        final Map<String, VirtualMachine> updatedVMs = RequestSender.get()
+                .getVirtualMachineDetails(toUpdate.keySet());
+        for (final Map.Entry<String, VirtualMachine> entry : toUpdate.entrySet()) {
+            final VirtualMachine updatedVM = updatedVMs.get(entry.getKey());
+            if (updatedVM == null) {
+                Deployment.logger.warn("Could not refresh VM " + entry.getKey());
+                continue;
+            }
+            final VirtualMachine vm = entry.getValue();
+            synchronized (this) {
+                vm.adoptFromOther(updatedVM);
+                if (this.occupancy != null && this.virtualMachines.containsKey(vm)) {
+                    this.occupancy.add(vm, this.virtualMachines.get(vm));
+                }
+            }
+        }
+        this.lastRefreshed = started;
     }
 
     /**
@@ -240,8 +379,9 @@ public class Deployment implements Identifiable {
      *            to remove.
      * @return the removed specification.
      */
-    public VMDeploymentSpecification removeVirtualMachine(final VirtualMachine vm) {
+    public synchronized VMDeploymentSpecification removeVirtualMachine(final VirtualMachine vm) {
         Deployment.logger.entry();
+        this.unregister(vm);
         return Deployment.logger.exit(this.virtualMachines.remove(vm));
     }
 }
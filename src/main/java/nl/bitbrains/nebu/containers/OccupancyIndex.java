@@ -0,0 +1,240 @@
+package nl.bitbrains.nebu.containers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * Keeps track of the number of {@link VirtualMachine}s of an
+ * {@link Application} per host and per store. The index is updated
+ * incrementally whenever a {@link Deployment} gains, loses or reconciles a
+ * VM, so that placement policies can look up the occupancy of a host or store
+ * without walking all deployments of the application.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class OccupancyIndex {
+
+    private final Map<String, Placement> placements;
+    private final Map<String, Integer> vmsPerHost;
+    private final Map<String, Integer> vmsPerStore;
+    private final Map<String, Map<String, Integer>> vmsPerHostPerTemplate;
+    private final Map<String, Map<String, Integer>> vmsPerStorePerTemplate;
+
+    /**
+     * Creates a new, empty, OccupancyIndex.
+     */
+    public OccupancyIndex() {
+        this.placements = new HashMap<String, Placement>();
+        this.vmsPerHost = new HashMap<String, Integer>();
+        this.vmsPerStore = new HashMap<String, Integer>();
+        this.vmsPerHostPerTemplate = new HashMap<String, Map<String, Integer>>();
+        this.vmsPerStorePerTemplate = new HashMap<String, Map<String, Integer>>();
+    }
+
+    /**
+     * Registers a {@link VirtualMachine} with the index. If a VM with the same
+     * identifier was registered before, its old placement is replaced.
+     * 
+     * @param vm
+     *            to register.
+     * @param spec
+     *            the {@link VMDeploymentSpecification} the VM was launched
+     *            with, may be null.
+     */
+    public final synchronized void add(final VirtualMachine vm,
+            final VMDeploymentSpecification spec) {
+        ErrorChecker.throwIfNullArgument(vm, "vm");
+        this.remove(vm.getUniqueIdentifier());
+        String template = null;
+        if (spec != null && spec.getTemplate() != null) {
+            template = spec.getTemplate().getUniqueIdentifier();
+        }
+        final Placement placement = new Placement(template, vm.getHost(), new ArrayList<String>(
+                vm.getStores()));
+        this.placements.put(vm.getUniqueIdentifier(), placement);
+        this.count(placement, 1);
+    }
+
+    /**
+     * Removes a {@link VirtualMachine} from the index.
+     * 
+     * @param vm
+     *            to remove.
+     */
+    public final synchronized void remove(final VirtualMachine vm) {
+        ErrorChecker.throwIfNullArgument(vm, "vm");
+        this.remove(vm.getUniqueIdentifier());
+    }
+
+    /**
+     * Removes the {@link VirtualMachine} with the given identifier from the
+     * index, if it is known.
+     * 
+     * @param uuid
+     *            of the VM to remove.
+     */
+    private void remove(final String uuid) {
+        final Placement placement = this.placements.remove(uuid);
+        if (placement != null) {
+            this.count(placement, -1);
+        }
+    }
+
+    /**
+     * @param uuid
+     *            of the VM to look for.
+     * @return true iff a VM with the given identifier is registered.
+     */
+    public final synchronized boolean contains(final String uuid) {
+        return this.placements.containsKey(uuid);
+    }
+
+    /**
+     * @return the number of VMs registered with this index.
+     */
+    public final synchronized int size() {
+        return this.placements.size();
+    }
+
+    /**
+     * @param host
+     *            identifier of the host.
+     * @param template
+     *            to filter by, or null to count VMs of all templates.
+     * @return the number of registered VMs on the given host.
+     */
+    public final synchronized int getVMsOnHost(final String host, final VMTemplate template) {
+        if (template == null) {
+            return OccupancyIndex.get(this.vmsPerHost, host);
+        }
+        return OccupancyIndex.get(this.vmsPerHostPerTemplate.get(template.getUniqueIdentifier()),
+                                  host);
+    }
+
+    /**
+     * @param store
+     *            identifier of the store.
+     * @param template
+     *            to filter by, or null to count VMs of all templates.
+     * @return the number of registered VMs using the given store.
+     */
+    public final synchronized int getVMsOnStore(final String store, final VMTemplate template) {
+        if (template == null) {
+            return OccupancyIndex.get(this.vmsPerStore, store);
+        }
+        return OccupancyIndex.get(this.vmsPerStorePerTemplate.get(template.getUniqueIdentifier()),
+                                  store);
+    }
+
+    /**
+     * Adds delta to all counters affected by the placement.
+     * 
+     * @param placement
+     *            to count.
+     * @param delta
+     *            to add to the counters.
+     */
+    private void count(final Placement placement, final int delta) {
+        if (placement.host != null) {
+            OccupancyIndex.add(this.vmsPerHost, placement.host, delta);
+            if (placement.template != null) {
+                OccupancyIndex.add(OccupancyIndex.getOrCreate(this.vmsPerHostPerTemplate,
+                                                              placement.template),
+                                   placement.host,
+                                   delta);
+            }
+        }
+        for (final String store : placement.stores) {
+            OccupancyIndex.add(this.vmsPerStore, store, delta);
+            if (placement.template != null) {
+                OccupancyIndex.add(OccupancyIndex.getOrCreate(this.vmsPerStorePerTemplate,
+                                                              placement.template),
+                                   store,
+                                   delta);
+            }
+        }
+    }
+
+    /**
+     * @param map
+     *            to look in, may be null.
+     * @param key
+     *            to look up.
+     * @return the counter for the key, or 0 if it is not present.
+     */
+    private static int get(final Map<String, Integer> map, final String key) {
+        if (map == null) {
+            return 0;
+        }
+        final Integer value = map.get(key);
+        if (value == null) {
+            return 0;
+        }
+        return value;
+    }
+
+    /**
+     * Adds delta to the counter for the key, removing it once it drops to 0.
+     * 
+     * @param map
+     *            to update.
+     * @param key
+     *            of the counter.
+     * @param delta
+     *            to add.
+     */
+    private static void add(final Map<String, Integer> map, final String key, final int delta) {
+        final int value = OccupancyIndex.get(map, key) + delta;
+        if (value <= 0) {
+            map.remove(key);
+        } else {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * @param map
+     *            to look in.
+     * @param template
+     *            key to look up.
+     * @return the counter map for the template, created if needed.
+     */
+    private static Map<String, Integer> getOrCreate(final Map<String, Map<String, Integer>> map,
+            final String template) {
+        Map<String, Integer> result = map.get(template);
+        if (result == null) {
+            result = new HashMap<String, Integer>();
+            map.put(template, result);
+        }
+        return result;
+    }
+
+    /**
+     * Placement of a single VM as it was registered with the index.
+     */
+    private static final class Placement {
+        private final String template;
+        private final String host;
+        private final List<String> stores;
+
+        /**
+         * @param template
+         *            identifier of the template, may be null.
+         * @param host
+         *            identifier of the host, may be null.
+         * @param stores
+         *            identifiers of the stores.
+         */
+        private Placement(final String template, final String host, final List<String> stores) {
+            this.template = template;
+            this.host = host;
+            this.stores = stores;
+        }
+    }
+}
@@ -39,17 +39,31 @@ public class VMDeploymentSpecificationFactory implements XMLFactory<VMDeployment
 
         final VMDeploymentSpecificationBuilder builder = new VMDeploymentSpecificationBuilder();
         final VMTemplate template = new VMTemplateFactory(false).fromXML(templateElem).build();
-        final String host = hostElem.getTextTrim();
+        final String host = VMDeploymentSpecificationFactory.readIdentifier(hostElem);
         builder.withTemplate(template).withHost(host);
 
         if (storeElem != null) {
-            final String store = storeElem.getTextTrim();
+            final String store = VMDeploymentSpecificationFactory.readIdentifier(storeElem);
             builder.withStore(store);
         }
 
         return VMDeploymentSpecificationFactory.logger.exit(builder);
     }
 
+    /**
+     * @param elem
+     *            host or store element.
+     * @return the id attribute as written by {@link #toXML(VMDeploymentSpecification)}, or
+     *         the text of the element if it has no id attribute.
+     */
+    private static String readIdentifier(final Element elem) {
+        final String id = elem.getAttributeValue(IdentifiableFactory.TAG_ID);
+        if (id != null) {
+            return id;
+        }
+        return elem.getTextTrim();
+    }
+
     @Override
     public final Element toXML(final VMDeploymentSpecification object) {
         VMDeploymentSpecificationFactory.logger.entry();
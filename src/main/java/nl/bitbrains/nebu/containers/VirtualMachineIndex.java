@@ -0,0 +1,106 @@
+package nl.bitbrains.nebu.containers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * Maps the identifiers of the {@link VirtualMachine}s of an {@link Application}
+ * to the VM and the {@link Deployment} it belongs to. Like the
+ * {@link OccupancyIndex}, it is updated whenever a deployment gains or loses a
+ * VM, so a VM can be looked up without walking all deployments of the
+ * application. Lookups do not block updates.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class VirtualMachineIndex {
+
+    private final ConcurrentMap<String, Entry> entries;
+
+    /**
+     * A VM with the deployment it belongs to.
+     */
+    private static final class Entry {
+        private final Deployment deployment;
+        private final VirtualMachine vm;
+
+        /**
+         * @param deployment
+         *            the VM belongs to.
+         * @param vm
+         *            the VM.
+         */
+        private Entry(final Deployment deployment, final VirtualMachine vm) {
+            this.deployment = deployment;
+            this.vm = vm;
+        }
+    }
+
+    /**
+     * Creates a new, empty, VirtualMachineIndex.
+     */
+    public VirtualMachineIndex() {
+        this.entries = new ConcurrentHashMap<String, Entry>();
+    }
+
+    /**
+     * Registers a {@link VirtualMachine} with the index under its current
+     * identifier. A VM registered before under the same identifier is
+     * replaced.
+     * 
+     * @param deployment
+     *            the VM belongs to.
+     * @param vm
+     *            to register.
+     */
+    public final void add(final Deployment deployment, final VirtualMachine vm) {
+        ErrorChecker.throwIfNullArgument(deployment, "deployment");
+        ErrorChecker.throwIfNullArgument(vm, "vm");
+        this.entries.put(vm.getUniqueIdentifier(), new Entry(deployment, vm));
+    }
+
+    /**
+     * Removes a {@link VirtualMachine} from the index. Nothing is removed if
+     * its identifier is registered for another VM.
+     * 
+     * @param vm
+     *            to remove.
+     */
+    public final void remove(final VirtualMachine vm) {
+        ErrorChecker.throwIfNullArgument(vm, "vm");
+        final Entry entry = this.entries.get(vm.getUniqueIdentifier());
+        if (entry != null && entry.vm == vm) {
+            this.entries.remove(vm.getUniqueIdentifier(), entry);
+        }
+    }
+
+    /**
+     * @param uuid
+     *            of the VM.
+     * @return the VM, or null if it is not known.
+     */
+    public final VirtualMachine getVirtualMachine(final String uuid) {
+        final Entry entry = this.entries.get(uuid);
+        return entry == null ? null : entry.vm;
+    }
+
+    /**
+     * @param uuid
+     *            of the VM.
+     * @return the deployment the VM belongs to, or null if it is not known.
+     */
+    public final Deployment getDeployment(final String uuid) {
+        final Entry entry = this.entries.get(uuid);
+        return entry == null ? null : entry.deployment;
+    }
+
+    /**
+     * @return the number of registered VMs.
+     */
+    public final int size() {
+        return this.entries.size();
+    }
+}
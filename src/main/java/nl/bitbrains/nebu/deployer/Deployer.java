@@ -1,9 +1,9 @@
 package nl.bitbrains.nebu.deployer;
 
 import java.text.ParseException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import nl.bitbrains.nebu.common.util.ErrorChecker;
 import nl.bitbrains.nebu.common.util.UUIDGenerator;
@@ -12,6 +12,8 @@ import nl.bitbrains.nebu.containers.Deployment;
 import nl.bitbrains.nebu.containers.DeploymentBuilder;
 import nl.bitbrains.nebu.containers.DeploymentRequest;
 import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
+import nl.bitbrains.nebu.metrics.Timer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,15 +25,21 @@ import org.jdom2.Element;
  * {@link DeployerPolicy} for each {@link Application}. These policies are used
  * in the decision making process when generating a deployment suggestion.
  * 
+ * The Deployer can be used by multiple threads at once. Policies are looked up
+ * in a concurrent map and keep their per-request state in a
+ * {@link PlacementContext}, so deployments can be generated in parallel.
+ * 
  * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
  * 
  */
 public class Deployer {
 
     public static final String CACHE_KEY = "deployer";
+    public static final String METRIC = "nebu_deployer_generate";
+    public static final String LABEL_POLICY = "policy";
     private static Logger logger = LogManager.getLogger();
 
-    private DeployerPolicyFactories factories;
+    private volatile DeployerPolicyFactories factories;
     private final Map<Application, DeployerPolicy> policies;
 
     /**
@@ -39,7 +47,7 @@ public class Deployer {
      */
     public Deployer() {
         Deployer.logger.entry();
-        this.policies = new HashMap<Application, DeployerPolicy>();
+        this.policies = new ConcurrentHashMap<Application, DeployerPolicy>();
         this.factories = null;
         Deployer.logger.exit();
     }
@@ -63,6 +71,9 @@ public class Deployer {
      * @return the associated {@link DeployerPolicy}.
      */
     public final DeployerPolicy getPolicy(final Application application) {
+        if (application == null) {
+            return null;
+        }
         return this.policies.get(application);
     }
 
@@ -92,8 +103,9 @@ public class Deployer {
      */
     public final void setPolicy(final Application application, final String policyName)
             throws MissingPolicyException {
-        if (this.factories != null && this.factories.hasFactory(policyName)) {
-            final DeployerPolicyFactory factory = this.factories.getFactory(policyName);
+        final DeployerPolicyFactories currentFactories = this.factories;
+        if (currentFactories != null && currentFactories.hasFactory(policyName)) {
+            final DeployerPolicyFactory factory = currentFactories.getFactory(policyName);
             this.setPolicy(application, factory.newInstance());
         } else {
             throw new MissingPolicyException("Could not retrieve a factory for policy type '"
@@ -118,8 +130,9 @@ public class Deployer {
      */
     public final void setPolicy(final Application application, final String policyName,
             final Element configuration) throws MissingPolicyException, ParseException {
-        if (this.factories != null && this.factories.hasFactory(policyName)) {
-            final DeployerPolicyFactory factory = this.factories.getFactory(policyName);
+        final DeployerPolicyFactories currentFactories = this.factories;
+        if (currentFactories != null && currentFactories.hasFactory(policyName)) {
+            final DeployerPolicyFactory factory = currentFactories.getFactory(policyName);
             this.setPolicy(application, factory.fromXML(configuration));
         } else {
             throw new MissingPolicyException("Could not retrieve a factory for policy type '"
@@ -131,7 +144,8 @@ public class Deployer {
      * Generates a new {@link Deployment} for the given
      * {@link DeploymentRequest}. The Deployer uses the {@link DeployerPolicy}
      * that is specified for the {@link Application} to which the request
-     * belongs.
+     * belongs. The time the policy takes is recorded in the
+     * {@link MetricsRegistry}, by policy.
      * 
      * @param request
      *            the {@link DeploymentRequest} to generate from.
@@ -144,14 +158,22 @@ public class Deployer {
             throws DeployerException {
         Deployer.logger.entry();
         final Application application = request.getApplication();
-        if (this.policies.containsKey(application)) {
+        final DeployerPolicy policy = this.getPolicy(application);
+        if (policy != null) {
             final String uuid = UUIDGenerator.generate(Deployment.UUID_PREFIX);
             final DeploymentBuilder builder = new DeploymentBuilder().withUuid(uuid);
 
-            final List<VMDeploymentSpecification> specs = this.policies.get(application)
-                    .generateDeployment(request);
-
-            builder.withSpecs(specs);
+            final Timer timer = MetricsRegistry.get().timer(Deployer.METRIC, MetricsRegistry
+                    .labels(Deployer.LABEL_POLICY, policy.getClass().getSimpleName()));
+            final long start = System.nanoTime();
+            boolean success = false;
+            try {
+                final List<VMDeploymentSpecification> specs = policy.generateDeployment(request);
+                builder.withSpecs(specs);
+                success = true;
+            } finally {
+                timer.stop(start, success);
+            }
 
             return Deployer.logger.exit(builder.build());
         } else {
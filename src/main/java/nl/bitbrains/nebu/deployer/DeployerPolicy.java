@@ -7,7 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
-import nl.bitbrains.nebu.common.VirtualMachine;
 import nl.bitbrains.nebu.common.cache.CacheException;
 import nl.bitbrains.nebu.common.interfaces.Identifiable;
 import nl.bitbrains.nebu.common.topology.PhysicalHost;
@@ -15,8 +14,8 @@ import nl.bitbrains.nebu.common.topology.PhysicalRack;
 import nl.bitbrains.nebu.common.topology.PhysicalStore;
 import nl.bitbrains.nebu.common.topology.PhysicalTopology;
 import nl.bitbrains.nebu.containers.Application;
-import nl.bitbrains.nebu.containers.Deployment;
 import nl.bitbrains.nebu.containers.DeploymentRequest;
+import nl.bitbrains.nebu.containers.OccupancyIndex;
 import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
 import nl.bitbrains.nebu.containers.VMTemplate;
 
@@ -28,6 +27,10 @@ import org.apache.logging.log4j.Logger;
  * DeployerPolicy is responsible for allocating {@link VMTemplate}s to
  * {@link PhysicalCPU}s, based on a {@link DeploymentRequest}.
  * 
+ * Policies are shared by all requests for an {@link Application} and may be
+ * invoked concurrently. State that belongs to a single request is therefore
+ * kept in a {@link PlacementContext} instead of in the policy.
+ * 
  * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
  * 
  */
@@ -35,9 +38,8 @@ public abstract class DeployerPolicy {
 
     private static final double MAX_SUITABLE_STORAGE_PERCENTAGE = 0.6;
     private static Logger logger = LogManager.getLogger();
-    private Map<PhysicalRack, Integer> vmsPerRack;
-    private Map<String, Integer> vmsPerHost;
-    private Map<String, Integer> vmsPerStore;
+    private final Random random = new Random();
+    private boolean indexedSelection;
 
     /**
      * @param request
@@ -52,24 +54,25 @@ public abstract class DeployerPolicy {
             final DeploymentRequest request) throws DeployerException;
 
     /**
-     * @return the vmsPerRack
-     */
-    public final Map<PhysicalRack, Integer> getVmsPerRack() {
-        return this.vmsPerRack;
-    }
-
-    /**
-     * @return the vmsPerHost
+     * @return true iff least used racks, hosts and stores are selected using
+     *         {@link LeastUsedSelector}s.
      */
-    public final Map<String, Integer> getVmsPerHost() {
-        return this.vmsPerHost;
+    public final boolean isIndexedSelection() {
+        return this.indexedSelection;
     }
 
     /**
-     * @return the vmsPerStore
+     * Lets the rack-scoped selection methods of the {@link PlacementContext}
+     * keep a {@link LeastUsedSelector} per rack, so picking the least used
+     * rack, host or store no longer scans all counters for every VM that is
+     * placed. Ties are still broken at random. Should only be called from the
+     * constructor of a policy.
+     * 
+     * @param indexedSelection
+     *            true to use {@link LeastUsedSelector}s.
      */
-    public final Map<String, Integer> getVmsPerStore() {
-        return this.vmsPerStore;
+    protected final void setIndexedSelection(final boolean indexedSelection) {
+        this.indexedSelection = indexedSelection;
     }
 
     /**
@@ -99,90 +102,17 @@ public abstract class DeployerPolicy {
     }
 
     /**
-     * Initializes the VMPerX counters based on the topology.
+     * Creates the {@link PlacementContext} to keep the VMPerX counters of a
+     * single placement in. Every invocation of
+     * {@link #generateDeployment(DeploymentRequest)} should use its own
+     * contexts.
      * 
      * @param topology
      *            to get the hosts, racks and stores from.
+     * @return a new context with all counters set to 0.
      */
-    protected void initializeVmCounters(final PhysicalTopology topology) {
-        this.vmsPerRack = this.newVmsPerRack(topology.getRacks());
-        this.vmsPerHost = this.newVmsPerHost(topology.getCPUs());
-        this.vmsPerStore = this.newVmsPerStore(topology.getStores());
-    }
-
-    /**
-     * Updates the vmCounters based on the application, for only the specific
-     * template and the given topology.
-     * 
-     * @param app
-     *            to get the vms out of.
-     * @param template
-     *            to match the vms against.
-     * @param topology
-     *            to get the cpus out of (for updating the rack counter)
-     */
-    protected void updateVMCountersForApplicationAndTemplate(final Application app,
-            final VMTemplate template, final PhysicalTopology topology) {
-        this.updateVmsPerHostForExistingVMs(this.vmsPerHost, app, template);
-        this.updateVmsPerStoreForExistingVMs(this.vmsPerStore, app, template);
-        this.updateVmsPerRackUsingHosts(this.vmsPerRack, this.vmsPerHost, topology.getCPUs());
-        DeployerPolicy.logger.debug(this.vmsPerRack);
-        DeployerPolicy.logger.debug(this.vmsPerHost);
-        DeployerPolicy.logger.debug(this.vmsPerStore);
-    }
-
-    /**
-     * @return the least used PhysicalRack.
-     */
-    protected PhysicalRack getLeastUsedRack() {
-        return this.getLeastUsed(this.vmsPerRack.keySet(), this.vmsPerRack);
-    }
-
-    /**
-     * @param list
-     *            to get the host out of.
-     * @return the least used host.
-     */
-    protected PhysicalHost getLeastUsedHost(final List<PhysicalHost> list) {
-        return this.getLeastUsedString(list, this.vmsPerHost);
-    }
-
-    /**
-     * @param list
-     *            to get the store out of.
-     * @return the least used store.
-     * 
-     */
-    protected PhysicalStore getLeastUsedStore(final List<PhysicalStore> list) {
-        return this.getLeastUsedString(list, this.vmsPerStore);
-    }
-
-    /**
-     * Updates te VMperHost and perRack counters based on the newly chosen host.
-     * 
-     * @param host
-     *            that was chosen.
-     */
-    protected void updateVMCountersWithNewlyChosenHost(final PhysicalHost host) {
-        this.vmsPerHost.put(host.getUniqueIdentifier(),
-                            this.vmsPerHost.get(host.getUniqueIdentifier()) + 1);
-        this.vmsPerRack.put(host.getParent(), this.vmsPerRack.get(host.getParent()) + 1);
-    }
-
-    /**
-     * Updates te VMperHost, perStore and perRack counters based on the newly
-     * chosen host and store. *
-     * 
-     * @param host
-     *            that was chosen.
-     * @param store
-     *            that was chosen.
-     */
-    protected void updateVMCountersWithNewlyChosenHostAndStore(final PhysicalHost host,
-            final PhysicalStore store) {
-        this.updateVMCountersWithNewlyChosenHost(host);
-        this.vmsPerStore.put(store.getUniqueIdentifier(),
-                             this.vmsPerStore.get(store.getUniqueIdentifier()) + 1);
+    protected final PlacementContext newPlacementContext(final PhysicalTopology topology) {
+        return new PlacementContext(this, topology);
     }
 
     /**
@@ -225,6 +155,10 @@ public abstract class DeployerPolicy {
     }
 
     /**
+     * Adds the VMs of the application that are already in place to the store
+     * counters. The numbers are read from the {@link OccupancyIndex} of the
+     * application, so no VM information needs to be refreshed.
+     * 
      * @param vmsPerStore
      *            Map to update.
      * @param application
@@ -234,19 +168,17 @@ public abstract class DeployerPolicy {
      */
     protected final void updateVmsPerStoreForExistingVMs(final Map<String, Integer> vmsPerStore,
             final Application application, final VMTemplate template) {
-        for (final Deployment dep : application.getDeployments()) {
-            dep.refreshVMInformation();
-            for (final VirtualMachine vm : dep.getVirtualMachines()) {
-                if (template == null || dep.getSpecForVM(vm).getTemplate().equals(template)) {
-                    for (final String store : vm.getStores()) {
-                        vmsPerStore.put(store, vmsPerStore.get(store) + 1);
-                    }
-                }
-            }
+        final OccupancyIndex occupancy = application.getOccupancy();
+        for (final Map.Entry<String, Integer> entry : vmsPerStore.entrySet()) {
+            entry.setValue(entry.getValue() + occupancy.getVMsOnStore(entry.getKey(), template));
         }
     }
 
     /**
+     * Adds the VMs of the application that are already in place to the host
+     * counters. The numbers are read from the {@link OccupancyIndex} of the
+     * application, so no VM information needs to be refreshed.
+     * 
      * @param vmsPerHost
      *            Map to update.
      * @param application
@@ -256,15 +188,9 @@ public abstract class DeployerPolicy {
      */
     protected final void updateVmsPerHostForExistingVMs(final Map<String, Integer> vmsPerHost,
             final Application application, final VMTemplate template) {
-        for (final Deployment dep : application.getDeployments()) {
-            DeployerPolicy.logger.debug("Got a deployment");
-            dep.refreshVMInformation();
-            for (final VirtualMachine vm : dep.getVirtualMachines()) {
-                DeployerPolicy.logger.debug("Got a vm");
-                if (template == null || dep.getSpecForVM(vm).getTemplate().equals(template)) {
-                    vmsPerHost.put(vm.getHost(), vmsPerHost.get(vm.getHost()) + 1);
-                }
-            }
+        final OccupancyIndex occupancy = application.getOccupancy();
+        for (final Map.Entry<String, Integer> entry : vmsPerHost.entrySet()) {
+            entry.setValue(entry.getValue() + occupancy.getVMsOnHost(entry.getKey(), template));
         }
     }
 
@@ -301,11 +227,12 @@ public abstract class DeployerPolicy {
         final List<T> result = new ArrayList<T>();
         int max = Integer.MAX_VALUE;
         for (final T item : list) {
-            if (map.get(item) < max) {
+            final int used = map.get(item);
+            if (used < max) {
                 result.clear();
                 result.add(item);
-                max = map.get(item);
-            } else if (map.get(item) == max) {
+                max = used;
+            } else if (used == max) {
                 result.add(item);
             }
         }
@@ -328,11 +255,12 @@ public abstract class DeployerPolicy {
         final List<T> result = new ArrayList<T>();
         int max = Integer.MAX_VALUE;
         for (final T item : list) {
-            if (map.get(item.getUniqueIdentifier()) < max) {
+            final int used = map.get(item.getUniqueIdentifier());
+            if (used < max) {
                 result.clear();
                 result.add(item);
-                max = map.get(item.getUniqueIdentifier());
-            } else if (map.get(item.getUniqueIdentifier()) == max) {
+                max = used;
+            } else if (used == max) {
                 result.add(item);
             }
         }
@@ -352,7 +280,7 @@ public abstract class DeployerPolicy {
      */
     protected final <T> T getLeastUsed(final Collection<T> list, final Map<T, Integer> map) {
         final List<T> result = this.getLeastUsedList(list, map);
-        final int index = new Random().nextInt(result.size());
+        final int index = this.random.nextInt(result.size());
         return result.get(index);
     }
 
@@ -370,7 +298,7 @@ public abstract class DeployerPolicy {
     protected final <T extends Identifiable> T getLeastUsedString(final Collection<T> list,
             final Map<String, Integer> map) {
         final List<T> result = this.getLeastUsedListString(list, map);
-        final int index = new Random().nextInt(result.size());
+        final int index = this.random.nextInt(result.size());
         return result.get(index);
     }
 
@@ -394,59 +322,6 @@ public abstract class DeployerPolicy {
         return this.getLeastStressedFromList(leastUsed, template);
     }
 
-    /**
-     * Selects hosts based on "least used" criteria first, after which it picks
-     * the least stressed one.
-     * 
-     * @param list
-     *            to pick from.
-     * @param template
-     *            to get required resource information from.
-     * @return the least stressed host.
-     */
-    protected final PhysicalHost getLeastStressedHostFromLeastUsed(
-            final Collection<PhysicalHost> list, final VMTemplate template) {
-        final List<PhysicalHost> leastUsed = this.getLeastUsedListString(list, this.vmsPerHost);
-        return this.getLeastStressedFromList(leastUsed, template);
-    }
-
-    /**
-     * Picks a suitable store from the least used stores.
-     * 
-     * @param list
-     *            to pick out of.
-     * @return a suitable disk
-     * @throws DeployerException
-     *             if none of the disks are suitable.
-     */
-    protected final PhysicalStore getSuitableStoreFromLeastUsed(final Collection<PhysicalStore> list)
-            throws DeployerException {
-        final List<PhysicalStore> leastUsed = this.getLeastUsedListString(list, this.vmsPerStore);
-        return this.getSuitableStoreFromList(leastUsed);
-    }
-
-    /**
-     * Picks a suitable store from the least used stores if possible otherwise
-     * from all.
-     * 
-     * @param list
-     *            to pick out of.
-     * @return a suitable disk
-     * @throws DeployerException
-     *             if none of the disks are suitable.
-     */
-    protected final PhysicalStore getSuitableStoreFromLeastUsedOrFull(
-            final Collection<PhysicalStore> list) throws DeployerException {
-        final List<PhysicalStore> leastUsed = this.getLeastUsedListString(list, this.vmsPerStore);
-        try {
-            return this.getSuitableStoreFromList(leastUsed);
-        } catch (final DeployerException e) {
-            DeployerPolicy.logger
-                    .warn("None of the leastUsed disks are suitable. Will try full list now.");
-            return this.getSuitableStoreFromList(new ArrayList<PhysicalStore>(list));
-        }
-    }
-
     /**
      * @param list
      *            to pick a store out of.
@@ -1,9 +1,23 @@
 package nl.bitbrains.nebu.deployer;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.deployer.policies.AggregatedLocalityPolicy;
+import nl.bitbrains.nebu.deployer.policies.AggregatedLocalityPolicyFactory;
+import nl.bitbrains.nebu.deployer.policies.BasicReplicationPolicy;
+import nl.bitbrains.nebu.deployer.policies.BasicReplicationPolicyFactory;
+import nl.bitbrains.nebu.deployer.policies.BinPackingPolicy;
+import nl.bitbrains.nebu.deployer.policies.BinPackingPolicyFactory;
+import nl.bitbrains.nebu.deployer.policies.HDFS2ReplicationPolicy;
+import nl.bitbrains.nebu.deployer.policies.HDFS2ReplicationPolicyFactory;
+import nl.bitbrains.nebu.deployer.policies.HDFSReplicationPolicy;
+import nl.bitbrains.nebu.deployer.policies.HDFSReplicationPolicyFactory;
+import nl.bitbrains.nebu.deployer.policies.LocalityPolicy;
+import nl.bitbrains.nebu.deployer.policies.LocalityPolicyFactory;
+import nl.bitbrains.nebu.deployer.policies.RandomPolicy;
+import nl.bitbrains.nebu.deployer.policies.RandomPolicyFactory;
 
 /**
  * Manages the set of {@link DeployerPolicyFactory} classes available in the
@@ -20,7 +34,26 @@ public class DeployerPolicyFactories {
      * Creates a new manager of {@link DeployerPolicyFactory} objects.
      */
     public DeployerPolicyFactories() {
-        this.factories = new HashMap<String, DeployerPolicyFactory>();
+        this.factories = new ConcurrentHashMap<String, DeployerPolicyFactory>();
+    }
+
+    /**
+     * @return a new DeployerPolicyFactories with the factories of all
+     *         policies in the {@link nl.bitbrains.nebu.deployer.policies}
+     *         package.
+     */
+    public static DeployerPolicyFactories createDefault() {
+        return new DeployerPolicyFactories()
+                .withFactory(RandomPolicy.POLICY_NAME, new RandomPolicyFactory())
+                .withFactory(BasicReplicationPolicy.POLICY_NAME,
+                             new BasicReplicationPolicyFactory())
+                .withFactory(LocalityPolicy.POLICY_NAME, new LocalityPolicyFactory())
+                .withFactory(HDFSReplicationPolicy.POLICY_NAME, new HDFSReplicationPolicyFactory())
+                .withFactory(HDFS2ReplicationPolicy.POLICY_NAME,
+                             new HDFS2ReplicationPolicyFactory())
+                .withFactory(AggregatedLocalityPolicy.POLICY_NAME,
+                             new AggregatedLocalityPolicyFactory())
+                .withFactory(BinPackingPolicy.POLICY_NAME, new BinPackingPolicyFactory());
     }
 
     /**
@@ -30,6 +63,9 @@ public class DeployerPolicyFactories {
      *         does not exist.
      */
     public DeployerPolicyFactory getFactory(final String policyName) {
+        if (policyName == null) {
+            return null;
+        }
         return this.factories.get(policyName);
     }
 
@@ -41,7 +77,7 @@ public class DeployerPolicyFactories {
      *         {@link DeployerPolicyFactory}.
      */
     public boolean hasFactory(final String policyName) {
-        return this.factories.containsKey(policyName);
+        return policyName != null && this.factories.containsKey(policyName);
     }
 
     /**
@@ -0,0 +1,220 @@
+package nl.bitbrains.nebu.deployer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * Keeps a usage counter for a fixed set of candidates and selects the least
+ * used candidate in constant time. Candidates are kept in buckets indexed by
+ * their counter, so increasing or decreasing a counter only moves a single
+ * candidate between two buckets. Ties are broken uniformly at random, just
+ * like {@link DeployerPolicy#getLeastUsed(Collection, Map)} does.
+ * 
+ * @param <T>
+ *            type of the candidates.
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class LeastUsedSelector<T> {
+
+    private final List<T> items;
+    private final Map<T, Integer> ids;
+    private final int[] counts;
+    private final int[] positions;
+    private final List<Bucket> buckets;
+    private int min;
+
+    /**
+     * Creates a new selector in which all candidates have a counter of 0.
+     * 
+     * @param candidates
+     *            to select from.
+     */
+    public LeastUsedSelector(final Collection<T> candidates) {
+        ErrorChecker.throwIfNullArgument(candidates, "candidates");
+        this.items = new ArrayList<T>(candidates.size());
+        this.ids = new HashMap<T, Integer>();
+        for (final T candidate : candidates) {
+            if (!this.ids.containsKey(candidate)) {
+                this.ids.put(candidate, this.items.size());
+                this.items.add(candidate);
+            }
+        }
+        this.counts = new int[this.items.size()];
+        this.positions = new int[this.items.size()];
+        this.buckets = new ArrayList<Bucket>();
+        this.min = 0;
+        final Bucket empty = this.getBucket(0);
+        for (int id = 0; id < this.items.size(); id++) {
+            this.positions[id] = empty.add(id);
+        }
+    }
+
+    /**
+     * @param item
+     *            to look for.
+     * @return true iff the item is one of the candidates.
+     */
+    public final boolean contains(final T item) {
+        return this.ids.containsKey(item);
+    }
+
+    /**
+     * @return the number of candidates.
+     */
+    public final int size() {
+        return this.items.size();
+    }
+
+    /**
+     * @param item
+     *            candidate to get the counter of.
+     * @return the counter of the candidate.
+     */
+    public final int getCount(final T item) {
+        return this.counts[this.getId(item)];
+    }
+
+    /**
+     * Adds delta to the counter of the given candidate.
+     * 
+     * @param item
+     *            candidate to update.
+     * @param delta
+     *            to add, may be negative.
+     */
+    public final void add(final T item, final int delta) {
+        final int id = this.getId(item);
+        final int oldCount = this.counts[id];
+        final int newCount = oldCount + delta;
+        if (newCount < 0) {
+            throw new IllegalArgumentException("Counter of '" + item + "' can not become negative");
+        }
+        if (delta == 0) {
+            return;
+        }
+        final Bucket oldBucket = this.buckets.get(oldCount);
+        final int moved = oldBucket.removeAt(this.positions[id]);
+        if (moved >= 0) {
+            this.positions[moved] = this.positions[id];
+        }
+        this.counts[id] = newCount;
+        this.positions[id] = this.getBucket(newCount).add(id);
+
+        if (newCount < this.min) {
+            this.min = newCount;
+        } else if (oldCount == this.min && oldBucket.size == 0) {
+            while (this.buckets.get(this.min).size == 0) {
+                this.min++;
+            }
+        }
+    }
+
+    /**
+     * @return the lowest counter of all candidates.
+     */
+    public final int getMinimum() {
+        return this.min;
+    }
+
+    /**
+     * @return all candidates that share the lowest counter.
+     */
+    public final List<T> getLeastUsed() {
+        final List<T> result = new ArrayList<T>();
+        if (!this.items.isEmpty()) {
+            final Bucket bucket = this.buckets.get(this.min);
+            for (int i = 0; i < bucket.size; i++) {
+                result.add(this.items.get(bucket.ids[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param random
+     *            used to break ties.
+     * @return a uniformly chosen candidate out of the least used ones, or
+     *         null if there are no candidates.
+     */
+    public final T selectLeastUsed(final Random random) {
+        if (this.items.isEmpty()) {
+            return null;
+        }
+        final Bucket bucket = this.buckets.get(this.min);
+        return this.items.get(bucket.ids[random.nextInt(bucket.size)]);
+    }
+
+    /**
+     * @param item
+     *            candidate to get the internal identifier of.
+     * @return the identifier.
+     */
+    private int getId(final T item) {
+        final Integer id = this.ids.get(item);
+        if (id == null) {
+            throw new IllegalArgumentException("'" + item + "' is not a candidate");
+        }
+        return id;
+    }
+
+    /**
+     * @param count
+     *            of the bucket.
+     * @return the bucket for the given count, created if needed.
+     */
+    private Bucket getBucket(final int count) {
+        while (this.buckets.size() <= count) {
+            this.buckets.add(new Bucket());
+        }
+        return this.buckets.get(count);
+    }
+
+    /**
+     * Unordered set of candidate identifiers with constant time insertion and
+     * removal.
+     */
+    private static final class Bucket {
+        private static final int INITIAL_CAPACITY = 4;
+        private int[] ids = new int[Bucket.INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * @param id
+         *            to add.
+         * @return the position the identifier was stored at.
+         */
+        private int add(final int id) {
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.ids.length * 2);
+            }
+            this.ids[this.size] = id;
+            return this.size++;
+        }
+
+        /**
+         * Removes the identifier at the given position by moving the last
+         * identifier into its place.
+         * 
+         * @param position
+         *            to remove.
+         * @return the identifier that was moved into the position, or -1 if
+         *         no identifier was moved.
+         */
+        private int removeAt(final int position) {
+            this.size--;
+            if (position == this.size) {
+                return -1;
+            }
+            this.ids[position] = this.ids[this.size];
+            return this.ids[position];
+        }
+    }
+}
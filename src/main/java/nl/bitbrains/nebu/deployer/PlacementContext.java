@@ -0,0 +1,394 @@
+package nl.bitbrains.nebu.deployer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalRack;
+import nl.bitbrains.nebu.common.topology.PhysicalStore;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.OccupancyIndex;
+import nl.bitbrains.nebu.containers.VMTemplate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Holds the mutable state of a single placement decision: the number of VMs
+ * per host, rack and store and the {@link LeastUsedSelector}s built on top of
+ * them. A {@link DeployerPolicy} creates a new context for every topology it
+ * places VMs on, which keeps the policy itself free of per-request state so it
+ * can generate deployments for concurrent requests. A context is meant to be
+ * used by a single thread.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class PlacementContext {
+
+    private static Logger logger = LogManager.getLogger();
+
+    private final DeployerPolicy policy;
+    private final TopologySnapshot snapshot;
+    private final Map<PhysicalRack, Integer> vmsPerRack;
+    private final Map<String, Integer> vmsPerHost;
+    private final Map<String, Integer> vmsPerStore;
+    private final boolean indexedSelection;
+    private final Random random;
+    private LeastUsedSelector<PhysicalRack> rackSelector;
+    private final Map<PhysicalRack, LeastUsedSelector<PhysicalHost>> hostSelectors;
+    private final Map<PhysicalRack, LeastUsedSelector<PhysicalStore>> storeSelectors;
+    private final Map<String, List<LeastUsedSelector<PhysicalStore>>> storeSelectorsPerStore;
+
+    /**
+     * Creates a new context with all counters set to 0.
+     * 
+     * @param policy
+     *            the policy this context is used by.
+     * @param topology
+     *            to get the hosts, racks and stores from.
+     */
+    PlacementContext(final DeployerPolicy policy, final PhysicalTopology topology) {
+        this.policy = policy;
+        this.snapshot = new TopologySnapshot(topology);
+        this.vmsPerRack = this.snapshot.getVmsPerRack();
+        this.vmsPerHost = this.snapshot.getVmsPerHost();
+        this.vmsPerStore = this.snapshot.getVmsPerStore();
+        this.indexedSelection = policy.isIndexedSelection();
+        this.random = new Random();
+        this.hostSelectors = new HashMap<PhysicalRack, LeastUsedSelector<PhysicalHost>>();
+        this.storeSelectors = new HashMap<PhysicalRack, LeastUsedSelector<PhysicalStore>>();
+        this.storeSelectorsPerStore = new HashMap<String, List<LeastUsedSelector<PhysicalStore>>>();
+    }
+
+    /**
+     * @return the {@link TopologySnapshot} holding the counters.
+     */
+    public final TopologySnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * @return the vmsPerRack
+     */
+    public final Map<PhysicalRack, Integer> getVmsPerRack() {
+        return this.vmsPerRack;
+    }
+
+    /**
+     * @return the vmsPerHost
+     */
+    public final Map<String, Integer> getVmsPerHost() {
+        return this.vmsPerHost;
+    }
+
+    /**
+     * @return the vmsPerStore
+     */
+    public final Map<String, Integer> getVmsPerStore() {
+        return this.vmsPerStore;
+    }
+
+    /**
+     * Updates the vmCounters based on the application, for only the specific
+     * template.
+     * 
+     * @param app
+     *            to get the vms out of.
+     * @param template
+     *            to match the vms against.
+     */
+    public final void updateVMCountersForApplicationAndTemplate(final Application app,
+            final VMTemplate template) {
+        final OccupancyIndex occupancy = app.getOccupancy();
+        final List<PhysicalHost> hosts = this.snapshot.getHosts();
+        for (int i = 0; i < hosts.size(); i++) {
+            this.snapshot.addVMsOnHost(i, occupancy.getVMsOnHost(hosts.get(i)
+                    .getUniqueIdentifier(), template));
+        }
+        final List<PhysicalStore> stores = this.snapshot.getStores();
+        for (int i = 0; i < stores.size(); i++) {
+            this.snapshot.addVMsOnStore(i, occupancy.getVMsOnStore(stores.get(i)
+                    .getUniqueIdentifier(), template));
+        }
+        this.resetSelectors();
+        PlacementContext.logger.debug(this.vmsPerRack);
+        PlacementContext.logger.debug(this.vmsPerHost);
+        PlacementContext.logger.debug(this.vmsPerStore);
+    }
+
+    /**
+     * Drops all {@link LeastUsedSelector}s, they are rebuilt from the counters
+     * when they are needed again.
+     */
+    private void resetSelectors() {
+        this.rackSelector = null;
+        this.hostSelectors.clear();
+        this.storeSelectors.clear();
+        this.storeSelectorsPerStore.clear();
+    }
+
+    /**
+     * @return the least used PhysicalRack.
+     */
+    public final PhysicalRack getLeastUsedRack() {
+        if (this.indexedSelection) {
+            return this.getRackSelector().selectLeastUsed(this.random);
+        }
+        return this.policy.getLeastUsed(this.vmsPerRack.keySet(), this.vmsPerRack);
+    }
+
+    /**
+     * @return the selector for all racks, created from the counters if needed.
+     */
+    private LeastUsedSelector<PhysicalRack> getRackSelector() {
+        if (this.rackSelector == null) {
+            this.rackSelector = new LeastUsedSelector<PhysicalRack>(this.vmsPerRack.keySet());
+            for (final Map.Entry<PhysicalRack, Integer> entry : this.vmsPerRack.entrySet()) {
+                this.rackSelector.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return this.rackSelector;
+    }
+
+    /**
+     * @param rack
+     *            to get the selector for.
+     * @return the selector for the hosts in the rack, created from the
+     *         counters if needed.
+     */
+    private LeastUsedSelector<PhysicalHost> getHostSelector(final PhysicalRack rack) {
+        LeastUsedSelector<PhysicalHost> selector = this.hostSelectors.get(rack);
+        if (selector == null) {
+            selector = new LeastUsedSelector<PhysicalHost>(rack.getCPUs());
+            for (final PhysicalHost host : rack.getCPUs()) {
+                selector.add(host, this.vmsPerHost.get(host.getUniqueIdentifier()));
+            }
+            this.hostSelectors.put(rack, selector);
+        }
+        return selector;
+    }
+
+    /**
+     * @param rack
+     *            to get the selector for.
+     * @return the selector for the stores in the rack, created from the
+     *         counters if needed.
+     */
+    private LeastUsedSelector<PhysicalStore> getStoreSelector(final PhysicalRack rack) {
+        LeastUsedSelector<PhysicalStore> selector = this.storeSelectors.get(rack);
+        if (selector == null) {
+            selector = new LeastUsedSelector<PhysicalStore>(rack.getDisks());
+            for (final PhysicalStore store : rack.getDisks()) {
+                final String id = store.getUniqueIdentifier();
+                selector.add(store, this.vmsPerStore.get(id));
+                List<LeastUsedSelector<PhysicalStore>> selectors = this.storeSelectorsPerStore
+                        .get(id);
+                if (selectors == null) {
+                    selectors = new ArrayList<LeastUsedSelector<PhysicalStore>>();
+                    this.storeSelectorsPerStore.put(id, selectors);
+                }
+                selectors.add(selector);
+            }
+            this.storeSelectors.put(rack, selector);
+        }
+        return selector;
+    }
+
+    /**
+     * @param list
+     *            to get the host out of.
+     * @return the least used host.
+     */
+    public final PhysicalHost getLeastUsedHost(final List<PhysicalHost> list) {
+        return this.policy.getLeastUsedString(list, this.vmsPerHost);
+    }
+
+    /**
+     * @param list
+     *            to get the store out of.
+     * @return the least used store.
+     * 
+     */
+    public final PhysicalStore getLeastUsedStore(final List<PhysicalStore> list) {
+        return this.policy.getLeastUsedString(list, this.vmsPerStore);
+    }
+
+    /**
+     * Updates te VMperHost and perRack counters based on the newly chosen host.
+     * 
+     * @param host
+     *            that was chosen.
+     */
+    public final void updateVMCountersWithNewlyChosenHost(final PhysicalHost host) {
+        final int index = this.snapshot.indexOfHost(host);
+        if (index == TopologySnapshot.UNKNOWN) {
+            throw new IllegalArgumentException("Host '" + host.getUniqueIdentifier()
+                    + "' is not part of the topology");
+        }
+        this.snapshot.addVMsOnHost(index, 1);
+        if (this.rackSelector != null) {
+            this.rackSelector.add(host.getParent(), 1);
+        }
+        final LeastUsedSelector<PhysicalHost> hostSelector = this.hostSelectors.get(host
+                .getParent());
+        if (hostSelector != null && hostSelector.contains(host)) {
+            hostSelector.add(host, 1);
+        }
+    }
+
+    /**
+     * Updates te VMperHost, perStore and perRack counters based on the newly
+     * chosen host and store.
+     * 
+     * @param host
+     *            that was chosen.
+     * @param store
+     *            that was chosen.
+     */
+    public final void updateVMCountersWithNewlyChosenHostAndStore(final PhysicalHost host,
+            final PhysicalStore store) {
+        this.updateVMCountersWithNewlyChosenHost(host);
+        final int index = this.snapshot.indexOfStore(store);
+        if (index == TopologySnapshot.UNKNOWN) {
+            throw new IllegalArgumentException("Store '" + store.getUniqueIdentifier()
+                    + "' is not part of the topology");
+        }
+        this.snapshot.addVMsOnStore(index, 1);
+        final List<LeastUsedSelector<PhysicalStore>> selectors = this.storeSelectorsPerStore
+                .get(store.getUniqueIdentifier());
+        if (selectors != null) {
+            for (final LeastUsedSelector<PhysicalStore> selector : selectors) {
+                selector.add(store, 1);
+            }
+        }
+    }
+
+    /**
+     * Selects hosts based on "least used" criteria first, after which it picks
+     * the least stressed one.
+     * 
+     * @param list
+     *            to pick from.
+     * @param template
+     *            to get required resource information from.
+     * @return the least stressed host.
+     */
+    public final PhysicalHost getLeastStressedHostFromLeastUsed(
+            final Collection<PhysicalHost> list, final VMTemplate template) {
+        return this.policy.getLeastStressedHostFromLeastUsed(list, this.vmsPerHost, template);
+    }
+
+    /**
+     * Selects the least used hosts of the rack, after which it picks the least
+     * stressed one.
+     * 
+     * @param rack
+     *            to pick a host from.
+     * @param template
+     *            to get required resource information from.
+     * @return the least stressed host.
+     */
+    public final PhysicalHost getLeastStressedHostFromLeastUsed(final PhysicalRack rack,
+            final VMTemplate template) {
+        if (!this.indexedSelection) {
+            return this.getLeastStressedHostFromLeastUsed(rack.getCPUs(), template);
+        }
+        return this.policy.getLeastStressedFromList(this.getHostSelector(rack).getLeastUsed(),
+                                                    template);
+    }
+
+    /**
+     * Picks a suitable store from the least used stores.
+     * 
+     * @param list
+     *            to pick out of.
+     * @return a suitable disk
+     * @throws DeployerException
+     *             if none of the disks are suitable.
+     */
+    public final PhysicalStore getSuitableStoreFromLeastUsed(final Collection<PhysicalStore> list)
+            throws DeployerException {
+        final List<PhysicalStore> leastUsed = this.policy.getLeastUsedListString(list,
+                                                                                 this.vmsPerStore);
+        return this.policy.getSuitableStoreFromList(leastUsed);
+    }
+
+    /**
+     * Picks a suitable store from the least used stores of the rack.
+     * 
+     * @param rack
+     *            to pick a store from.
+     * @return a suitable disk
+     * @throws DeployerException
+     *             if none of the disks are suitable.
+     */
+    public final PhysicalStore getSuitableStoreFromLeastUsed(final PhysicalRack rack)
+            throws DeployerException {
+        if (!this.indexedSelection) {
+            return this.getSuitableStoreFromLeastUsed(rack.getDisks());
+        }
+        return this.policy.getSuitableStoreFromList(this.getStoreSelector(rack).getLeastUsed());
+    }
+
+    /**
+     * Picks a suitable store from the least used stores if possible otherwise
+     * from all.
+     * 
+     * @param list
+     *            to pick out of.
+     * @return a suitable disk
+     * @throws DeployerException
+     *             if none of the disks are suitable.
+     */
+    public final PhysicalStore getSuitableStoreFromLeastUsedOrFull(
+            final Collection<PhysicalStore> list) throws DeployerException {
+        final List<PhysicalStore> leastUsed = this.policy.getLeastUsedListString(list,
+                                                                                 this.vmsPerStore);
+        return this.getSuitableStoreFromListOrFull(leastUsed, list);
+    }
+
+    /**
+     * Picks a suitable store from the least used stores of the rack if
+     * possible, otherwise from all stores of the rack.
+     * 
+     * @param rack
+     *            to pick a store from.
+     * @return a suitable disk
+     * @throws DeployerException
+     *             if none of the disks are suitable.
+     */
+    public final PhysicalStore getSuitableStoreFromLeastUsedOrFull(final PhysicalRack rack)
+            throws DeployerException {
+        if (!this.indexedSelection) {
+            return this.getSuitableStoreFromLeastUsedOrFull(rack.getDisks());
+        }
+        return this.getSuitableStoreFromListOrFull(this.getStoreSelector(rack).getLeastUsed(),
+                                                   rack.getDisks());
+    }
+
+    /**
+     * @param leastUsed
+     *            to pick out of first.
+     * @param full
+     *            to pick out of if none of the least used stores is suitable.
+     * @return a suitable disk
+     * @throws DeployerException
+     *             if none of the disks are suitable.
+     */
+    private PhysicalStore getSuitableStoreFromListOrFull(final List<PhysicalStore> leastUsed,
+            final Collection<PhysicalStore> full) throws DeployerException {
+        try {
+            return this.policy.getSuitableStoreFromList(leastUsed);
+        } catch (final DeployerException e) {
+            PlacementContext.logger
+                    .warn("None of the leastUsed disks are suitable. Will try full list now.");
+            return this.policy.getSuitableStoreFromList(new ArrayList<PhysicalStore>(full));
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package nl.bitbrains.nebu.deployer;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import nl.bitbrains.nebu.common.topology.PhysicalDataCenter;
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalRack;
+import nl.bitbrains.nebu.common.topology.PhysicalStore;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * Snapshot of a {@link PhysicalTopology} in which every host, rack, store and
+ * data center is assigned a dense index, and the number of VMs per entity is
+ * kept in primitive arrays. Updating a counter therefore neither hashes an
+ * identifier string nor allocates a boxed value. Counting a VM on a host also
+ * counts it on the rack and data center of that host.
+ * 
+ * The string-keyed maps used by older policies are available as live views on
+ * the counters, see {@link #getVmsPerHost()}, {@link #getVmsPerRack()} and
+ * {@link #getVmsPerStore()}.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TopologySnapshot {
+
+    public static final int UNKNOWN = -1;
+
+    private final List<PhysicalHost> hosts;
+    private final List<PhysicalRack> racks;
+    private final List<PhysicalStore> stores;
+    private final List<PhysicalDataCenter> dataCenters;
+
+    private final Map<String, Integer> hostIndex;
+    private final Map<String, Integer> storeIndex;
+    private final Map<PhysicalRack, Integer> rackIndex;
+    private final Map<PhysicalHost, Integer> hostIdentityIndex;
+    private final Map<PhysicalStore, Integer> storeIdentityIndex;
+
+    private final int[] rackOfHost;
+    private final int[] dataCenterOfRack;
+
+    private final int[] vmsPerHost;
+    private final int[] vmsPerRack;
+    private final int[] vmsPerStore;
+    private final int[] vmsPerDataCenter;
+
+    /**
+     * Creates a snapshot of the given topology with all counters set to 0.
+     * 
+     * @param topology
+     *            to index.
+     */
+    public TopologySnapshot(final PhysicalTopology topology) {
+        ErrorChecker.throwIfNullArgument(topology, "topology");
+        this.hosts = new ArrayList<PhysicalHost>();
+        this.racks = new ArrayList<PhysicalRack>();
+        this.stores = new ArrayList<PhysicalStore>();
+        this.dataCenters = new ArrayList<PhysicalDataCenter>(topology.getDataCenters());
+        this.hostIndex = new HashMap<String, Integer>();
+        this.storeIndex = new HashMap<String, Integer>();
+        this.rackIndex = new HashMap<PhysicalRack, Integer>();
+        this.hostIdentityIndex = new IdentityHashMap<PhysicalHost, Integer>();
+        this.storeIdentityIndex = new IdentityHashMap<PhysicalStore, Integer>();
+
+        for (final PhysicalRack rack : topology.getRacks()) {
+            if (!this.rackIndex.containsKey(rack)) {
+                this.rackIndex.put(rack, this.racks.size());
+                this.racks.add(rack);
+            }
+        }
+        for (final PhysicalHost host : topology.getCPUs()) {
+            if (!this.hostIndex.containsKey(host.getUniqueIdentifier())) {
+                this.hostIndex.put(host.getUniqueIdentifier(), this.hosts.size());
+                this.hostIdentityIndex.put(host, this.hosts.size());
+                this.hosts.add(host);
+            }
+        }
+        for (final PhysicalStore store : topology.getStores()) {
+            if (!this.storeIndex.containsKey(store.getUniqueIdentifier())) {
+                this.storeIndex.put(store.getUniqueIdentifier(), this.stores.size());
+                this.storeIdentityIndex.put(store, this.stores.size());
+                this.stores.add(store);
+            }
+        }
+
+        this.rackOfHost = new int[this.hosts.size()];
+        for (int i = 0; i < this.rackOfHost.length; i++) {
+            this.rackOfHost[i] = this.indexOfRack(this.hosts.get(i).getParent());
+        }
+        this.dataCenterOfRack = new int[this.racks.size()];
+        for (int i = 0; i < this.dataCenterOfRack.length; i++) {
+            this.dataCenterOfRack[i] = this.dataCenters.indexOf(this.racks.get(i).getParent());
+        }
+
+        this.vmsPerHost = new int[this.hosts.size()];
+        this.vmsPerRack = new int[this.racks.size()];
+        this.vmsPerStore = new int[this.stores.size()];
+        this.vmsPerDataCenter = new int[this.dataCenters.size()];
+    }
+
+    /**
+     * @param host
+     *            to look up, may be null.
+     * @return the index of the host, or {@link #UNKNOWN}.
+     */
+    public final int indexOfHost(final PhysicalHost host) {
+        if (host == null) {
+            return TopologySnapshot.UNKNOWN;
+        }
+        final Integer index = this.hostIdentityIndex.get(host);
+        if (index != null) {
+            return index;
+        }
+        return this.indexOfHost(host.getUniqueIdentifier());
+    }
+
+    /**
+     * @param uuid
+     *            of the host to look up.
+     * @return the index of the host, or {@link #UNKNOWN}.
+     */
+    public final int indexOfHost(final String uuid) {
+        return TopologySnapshot.toIndex(this.hostIndex.get(uuid));
+    }
+
+    /**
+     * @param store
+     *            to look up, may be null.
+     * @return the index of the store, or {@link #UNKNOWN}.
+     */
+    public final int indexOfStore(final PhysicalStore store) {
+        if (store == null) {
+            return TopologySnapshot.UNKNOWN;
+        }
+        final Integer index = this.storeIdentityIndex.get(store);
+        if (index != null) {
+            return index;
+        }
+        return this.indexOfStore(store.getUniqueIdentifier());
+    }
+
+    /**
+     * @param uuid
+     *            of the store to look up.
+     * @return the index of the store, or {@link #UNKNOWN}.
+     */
+    public final int indexOfStore(final String uuid) {
+        return TopologySnapshot.toIndex(this.storeIndex.get(uuid));
+    }
+
+    /**
+     * @param rack
+     *            to look up, may be null.
+     * @return the index of the rack, or {@link #UNKNOWN}.
+     */
+    public final int indexOfRack(final PhysicalRack rack) {
+        if (rack == null) {
+            return TopologySnapshot.UNKNOWN;
+        }
+        return TopologySnapshot.toIndex(this.rackIndex.get(rack));
+    }
+
+    /**
+     * @return the hosts, in index order.
+     */
+    public final List<PhysicalHost> getHosts() {
+        return Collections.unmodifiableList(this.hosts);
+    }
+
+    /**
+     * @return the racks, in index order.
+     */
+    public final List<PhysicalRack> getRacks() {
+        return Collections.unmodifiableList(this.racks);
+    }
+
+    /**
+     * @return the stores, in index order.
+     */
+    public final List<PhysicalStore> getStores() {
+        return Collections.unmodifiableList(this.stores);
+    }
+
+    /**
+     * @return the data centers, in index order.
+     */
+    public final List<PhysicalDataCenter> getDataCenters() {
+        return Collections.unmodifiableList(this.dataCenters);
+    }
+
+    /**
+     * @param host
+     *            index of the host.
+     * @return the index of the rack of the host, or {@link #UNKNOWN}.
+     */
+    public final int getRackOfHost(final int host) {
+        return this.rackOfHost[host];
+    }
+
+    /**
+     * @param host
+     *            index of the host.
+     * @return the number of VMs on the host.
+     */
+    public final int getVMsOnHost(final int host) {
+        return this.vmsPerHost[host];
+    }
+
+    /**
+     * @param rack
+     *            index of the rack.
+     * @return the number of VMs on the rack.
+     */
+    public final int getVMsOnRack(final int rack) {
+        return this.vmsPerRack[rack];
+    }
+
+    /**
+     * @param store
+     *            index of the store.
+     * @return the number of VMs on the store.
+     */
+    public final int getVMsOnStore(final int store) {
+        return this.vmsPerStore[store];
+    }
+
+    /**
+     * @param dataCenter
+     *            index of the data center.
+     * @return the number of VMs in the data center.
+     */
+    public final int getVMsInDataCenter(final int dataCenter) {
+        return this.vmsPerDataCenter[dataCenter];
+    }
+
+    /**
+     * @return the total number of VMs on all hosts.
+     */
+    public final int getTotalVMsOnHosts() {
+        int total = 0;
+        for (final int count : this.vmsPerHost) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Adds delta to the counters of the host, its rack and its data center.
+     * 
+     * @param host
+     *            index of the host.
+     * @param delta
+     *            to add.
+     */
+    public final void addVMsOnHost(final int host, final int delta) {
+        this.vmsPerHost[host] += delta;
+        final int rack = this.rackOfHost[host];
+        if (rack != TopologySnapshot.UNKNOWN) {
+            this.addVMsOnRack(rack, delta);
+        }
+    }
+
+    /**
+     * Adds delta to the counter of the store.
+     * 
+     * @param store
+     *            index of the store.
+     * @param delta
+     *            to add.
+     */
+    public final void addVMsOnStore(final int store, final int delta) {
+        this.vmsPerStore[store] += delta;
+    }
+
+    /**
+     * Adds delta to the counters of the rack and its data center.
+     * 
+     * @param rack
+     *            index of the rack.
+     * @param delta
+     *            to add.
+     */
+    private void addVMsOnRack(final int rack, final int delta) {
+        this.vmsPerRack[rack] += delta;
+        final int dataCenter = this.dataCenterOfRack[rack];
+        if (dataCenter != TopologySnapshot.UNKNOWN) {
+            this.vmsPerDataCenter[dataCenter] += delta;
+        }
+    }
+
+    /**
+     * @return a live view of the VMs per host, keyed by host identifier.
+     *         Changing a count through the view also changes the counts of
+     *         the rack and data center of the host.
+     */
+    public final Map<String, Integer> getVmsPerHost() {
+        return new CounterView<String>(this.hostIndex, this.vmsPerHost) {
+            @Override
+            protected void add(final int position, final int delta) {
+                TopologySnapshot.this.addVMsOnHost(position, delta);
+            }
+        };
+    }
+
+    /**
+     * @return a live view of the VMs per rack. Changing a count through the
+     *         view also changes the count of the data center of the rack.
+     */
+    public final Map<PhysicalRack, Integer> getVmsPerRack() {
+        return new CounterView<PhysicalRack>(this.rackIndex, this.vmsPerRack) {
+            @Override
+            protected void add(final int position, final int delta) {
+                TopologySnapshot.this.addVMsOnRack(position, delta);
+            }
+        };
+    }
+
+    /**
+     * @return a live view of the VMs per store, keyed by store identifier.
+     */
+    public final Map<String, Integer> getVmsPerStore() {
+        return new CounterView<String>(this.storeIndex, this.vmsPerStore) {
+            @Override
+            protected void add(final int position, final int delta) {
+                TopologySnapshot.this.addVMsOnStore(position, delta);
+            }
+        };
+    }
+
+    /**
+     * @param index
+     *            boxed index, may be null.
+     * @return the index or {@link #UNKNOWN}.
+     */
+    private static int toIndex(final Integer index) {
+        if (index == null) {
+            return TopologySnapshot.UNKNOWN;
+        }
+        return index;
+    }
+
+    /**
+     * Map view on a counter array. Values can be changed through
+     * {@link #put(Object, Integer)} and {@link Map.Entry#setValue(Object)},
+     * keys can not be added or removed. A change of a value is applied through
+     * {@link #add(int, int)}, so the counters it rolls up to change as well.
+     * 
+     * @param <K>
+     *            type of the keys.
+     */
+    private abstract static class CounterView<K> extends AbstractMap<K, Integer> {
+
+        private final Map<K, Integer> index;
+        private final int[] counts;
+
+        /**
+         * @param index
+         *            from key to position in the counts.
+         * @param counts
+         *            backing counters.
+         */
+        private CounterView(final Map<K, Integer> index, final int[] counts) {
+            this.index = index;
+            this.counts = counts;
+        }
+
+        @Override
+        public int size() {
+            return this.index.size();
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return this.index.containsKey(key);
+        }
+
+        @Override
+        public Integer get(final Object key) {
+            final Integer position = this.index.get(key);
+            if (position == null) {
+                return null;
+            }
+            return this.counts[position];
+        }
+
+        @Override
+        public Integer put(final K key, final Integer value) {
+            final Integer position = this.index.get(key);
+            if (position == null) {
+                throw new IllegalArgumentException("'" + key + "' is not part of the topology");
+            }
+            final int old = this.counts[position];
+            this.add(position, value - old);
+            return old;
+        }
+
+        /**
+         * @param position
+         *            of the counter in the counts.
+         * @param delta
+         *            to add to the counter and the counters it rolls up to.
+         */
+        protected abstract void add(int position, int delta);
+
+        @Override
+        public Set<Map.Entry<K, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<K, Integer>>() {
+                @Override
+                public int size() {
+                    return CounterView.this.index.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<K, Integer>> iterator() {
+                    return new EntryIterator(CounterView.this.index.entrySet().iterator());
+                }
+            };
+        }
+
+        /**
+         * Iterates over the counters, with entries writing through.
+         */
+        private final class EntryIterator implements Iterator<Map.Entry<K, Integer>> {
+
+            private final Iterator<Map.Entry<K, Integer>> positions;
+
+            /**
+             * @param positions
+             *            iterator over the index.
+             */
+            private EntryIterator(final Iterator<Map.Entry<K, Integer>> positions) {
+                this.positions = positions;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.positions.hasNext();
+            }
+
+            @Override
+            public Map.Entry<K, Integer> next() {
+                if (!this.positions.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Map.Entry<K, Integer> position = this.positions.next();
+                return new AbstractMap.SimpleEntry<K, Integer>(position.getKey(),
+                        CounterView.this.counts[position.getValue()]) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public Integer setValue(final Integer value) {
+                        CounterView.this.put(position.getKey(), value);
+                        return super.setValue(value);
+                    }
+                };
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Topology entities can not be removed");
+            }
+        }
+    }
+}
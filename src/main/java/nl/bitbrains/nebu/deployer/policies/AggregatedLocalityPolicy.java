@@ -19,6 +19,7 @@ import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
 import nl.bitbrains.nebu.containers.VMTemplate;
 import nl.bitbrains.nebu.deployer.DeployerException;
 import nl.bitbrains.nebu.deployer.DeployerPolicy;
+import nl.bitbrains.nebu.deployer.PlacementContext;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -79,8 +80,8 @@ public class AggregatedLocalityPolicy extends DeployerPolicy {
             superTopo = PhysicalTopology.mergeTree(topology, superTopo);
         }
 
-        this.initializeVmCounters(superTopo);
-        this.updateVMCountersForApplicationAndTemplate(request.getApplication(), null, superTopo);
+        final PlacementContext context = this.newPlacementContext(superTopo);
+        context.updateVMCountersForApplicationAndTemplate(request.getApplication(), null);
 
         // Algorithm idea: Place maxMVsPerHost on the same host, before moving
         // to the next. Keeping in mind the vms already in place. You put as
@@ -91,24 +92,24 @@ public class AggregatedLocalityPolicy extends DeployerPolicy {
             final VMTemplate template = entry.getKey();
             final PhysicalTopology topology = topos.get(template);
             int numberOfTemplate = entry.getValue();
-            final List<PhysicalRack> racks = topology.getRacks();
+            final List<PhysicalRack> racks = new ArrayList<PhysicalRack>(topology.getRacks());
             Collections.shuffle(racks);
-            Collections.sort(racks, new PhysicalRackComparator(this.getVmsPerRack()));
+            Collections.sort(racks, new PhysicalRackComparator(context.getVmsPerRack()));
             for (final PhysicalRack r : racks) {
-                final List<PhysicalHost> hosts = r.getCPUs();
+                final List<PhysicalHost> hosts = new ArrayList<PhysicalHost>(r.getCPUs());
                 Collections.shuffle(hosts);
-                Collections.sort(hosts, new PhysicalHostComparator(this.getVmsPerHost()));
+                Collections.sort(hosts, new PhysicalHostComparator(context.getVmsPerHost()));
                 for (final PhysicalHost h : hosts) {
-                    while (this.getVmsPerHost().get(h.getUniqueIdentifier()) < this.maxVMsPerHost
-                            && numberOfTemplate > 0) {
-                        final PhysicalStore store = this.getSuitableStoreFromLeastUsedOrFull(r
+                    while (context.getVmsPerHost().get(h.getUniqueIdentifier())
+                            < this.maxVMsPerHost && numberOfTemplate > 0) {
+                        final PhysicalStore store = context.getSuitableStoreFromLeastUsedOrFull(r
                                 .getDisks());
                         final VMDeploymentSpecification spec = new VMDeploymentSpecificationBuilder()
                                 .withHost(h.getUniqueIdentifier())
                                 .withStore(store.getUniqueIdentifier()).withTemplate(template)
                                 .build();
                         result.add(spec);
-                        this.updateVMCountersWithNewlyChosenHostAndStore(h, store);
+                        context.updateVMCountersWithNewlyChosenHostAndStore(h, store);
                         numberOfTemplate--;
                     }
                     if (numberOfTemplate == 0) {
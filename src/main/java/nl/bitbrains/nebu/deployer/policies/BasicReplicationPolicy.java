@@ -14,6 +14,7 @@ import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
 import nl.bitbrains.nebu.containers.VMTemplate;
 import nl.bitbrains.nebu.deployer.DeployerException;
 import nl.bitbrains.nebu.deployer.DeployerPolicy;
+import nl.bitbrains.nebu.deployer.PlacementContext;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -33,7 +34,7 @@ public class BasicReplicationPolicy extends DeployerPolicy {
      * Basic default constructor.
      */
     public BasicReplicationPolicy() {
-
+        this.setIndexedSelection(true);
     }
 
     @Override
@@ -56,23 +57,20 @@ public class BasicReplicationPolicy extends DeployerPolicy {
             final int nt = request.getTemplateRequests().get(template);
 
             final PhysicalTopology topology = super.retrieveTopology(template);
-            this.initializeVmCounters(topology);
-            this.updateVMCountersForApplicationAndTemplate(request.getApplication(),
-                                                           template,
-                                                           topology);
+            final PlacementContext context = this.newPlacementContext(topology);
+            context.updateVMCountersForApplicationAndTemplate(request.getApplication(), template);
 
             for (int i = 0; i < nt; i++) {
-                final PhysicalRack r = this.getLeastUsedRack();
-                final PhysicalHost h = this
-                        .getLeastStressedHostFromLeastUsed(r.getCPUs(), template);
-                final PhysicalStore s = this.getSuitableStoreFromLeastUsedOrFull(r.getDisks());
+                final PhysicalRack r = context.getLeastUsedRack();
+                final PhysicalHost h = context.getLeastStressedHostFromLeastUsed(r, template);
+                final PhysicalStore s = context.getSuitableStoreFromLeastUsedOrFull(r);
 
                 final VMDeploymentSpecification spec = new VMDeploymentSpecificationBuilder()
                         .withTemplate(template).withHost(h.getUniqueIdentifier())
                         .withStore(s.getUniqueIdentifier()).build();
                 result.add(spec);
 
-                this.updateVMCountersWithNewlyChosenHostAndStore(h, s);
+                context.updateVMCountersWithNewlyChosenHostAndStore(h, s);
             }
         }
 
@@ -0,0 +1,333 @@
+package nl.bitbrains.nebu.deployer.policies;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalStore;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.DeploymentRequest;
+import nl.bitbrains.nebu.containers.OccupancyIndex;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.deployer.DeployerException;
+import nl.bitbrains.nebu.deployer.DeployerPolicy;
+import nl.bitbrains.nebu.deployer.PlacementContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Policy that packs VMs on as few hosts as possible, using vector bin-packing
+ * over the cpu, mem, io and net resources of the {@link VMTemplate}s.
+ * Templates are placed in decreasing order of size, and every VM is placed on
+ * the host that has the least capacity left after placing it (best fit). Hosts
+ * that are left empty can be powered off.
+ * 
+ * All hosts are assumed to have the same capacity, which is configured in the
+ * same units as the resources of the templates. The capacity of a host is
+ * reduced by the resources of the VMs the application already has on it, as
+ * counted by its {@link OccupancyIndex}. The cpu and mem capacity is reduced
+ * further if the reported usage of the host, interpreted as a fraction, leaves
+ * less.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class BinPackingPolicy extends DeployerPolicy {
+
+    public static final String POLICY_NAME = "binpacking";
+    private static Logger logger = LogManager.getLogger();
+
+    public static final int DEFAULT_HOST_CAPACITY = 100;
+    private static final int CPU = 0;
+    private static final int MEM = 1;
+    private static final int IO = 2;
+    private static final int NET = 3;
+    private static final int DIMENSIONS = 4;
+
+    private final int[] hostCapacity;
+
+    /**
+     * Simple default empty constructor.
+     */
+    public BinPackingPolicy() {
+        this.hostCapacity = new int[BinPackingPolicy.DIMENSIONS];
+        for (int i = 0; i < BinPackingPolicy.DIMENSIONS; i++) {
+            this.hostCapacity[i] = BinPackingPolicy.DEFAULT_HOST_CAPACITY;
+        }
+    }
+
+    /**
+     * @param cpu
+     *            capacity of a host.
+     * @param mem
+     *            capacity of a host.
+     * @param io
+     *            capacity of a host.
+     * @param net
+     *            capacity of a host.
+     */
+    public final void setHostCapacity(final int cpu, final int mem, final int io, final int net) {
+        if (cpu <= 0 || mem <= 0 || io <= 0 || net <= 0) {
+            throw new IllegalArgumentException("Host capacity must be positive");
+        }
+        this.hostCapacity[BinPackingPolicy.CPU] = cpu;
+        this.hostCapacity[BinPackingPolicy.MEM] = mem;
+        this.hostCapacity[BinPackingPolicy.IO] = io;
+        this.hostCapacity[BinPackingPolicy.NET] = net;
+    }
+
+    /**
+     * @return the cpu capacity of a host.
+     */
+    public final int getHostCpu() {
+        return this.hostCapacity[BinPackingPolicy.CPU];
+    }
+
+    /**
+     * @return the mem capacity of a host.
+     */
+    public final int getHostMem() {
+        return this.hostCapacity[BinPackingPolicy.MEM];
+    }
+
+    /**
+     * @return the io capacity of a host.
+     */
+    public final int getHostIo() {
+        return this.hostCapacity[BinPackingPolicy.IO];
+    }
+
+    /**
+     * @return the net capacity of a host.
+     */
+    public final int getHostNet() {
+        return this.hostCapacity[BinPackingPolicy.NET];
+    }
+
+    @Override
+    public final List<VMDeploymentSpecification> generateDeployment(final DeploymentRequest request)
+            throws DeployerException {
+        BinPackingPolicy.logger.entry();
+        ErrorChecker.throwIfNullArgument(request, "request");
+        final Map<VMTemplate, Integer> requestedTemplates = request.getTemplateRequests();
+        final List<VMDeploymentSpecification> result = new ArrayList<VMDeploymentSpecification>();
+
+        // Best-fit-decreasing: the biggest templates are placed first, so the
+        // small ones can fill up the gaps they leave behind.
+        final List<VMTemplate> templates = new ArrayList<VMTemplate>(requestedTemplates.keySet());
+        Collections.sort(templates, new Comparator<VMTemplate>() {
+            @Override
+            public int compare(final VMTemplate o1, final VMTemplate o2) {
+                return Double.compare(BinPackingPolicy.this.size(o2),
+                                      BinPackingPolicy.this.size(o1));
+            }
+        });
+
+        // Residual capacity and VMs placed during this request, per host.
+        final Map<String, double[]> residuals = new HashMap<String, double[]>();
+        final Map<String, Integer> placed = new HashMap<String, Integer>();
+        final Collection<VMTemplate> known = BinPackingPolicy.getKnownTemplates(request);
+        for (final VMTemplate template : templates) {
+            final int numberOfTemplate = requestedTemplates.get(template);
+            final PhysicalTopology topology = DeployerPolicy.retrieveTopology(template);
+            final PlacementContext context = this.newPlacementContext(topology);
+            context.updateVMCountersForApplicationAndTemplate(request.getApplication(), template);
+            final double[] demand = this.getDemand(template);
+            for (final PhysicalHost host : topology.getCPUs()) {
+                if (!residuals.containsKey(host.getUniqueIdentifier())) {
+                    residuals.put(host.getUniqueIdentifier(), this.getInitialResidual(host,
+                            request.getApplication().getOccupancy(), known));
+                }
+            }
+
+            for (int i = 0; i < numberOfTemplate; i++) {
+                final PhysicalHost host = this.getBestFit(topology.getCPUs(),
+                                                          demand,
+                                                          residuals,
+                                                          placed);
+                if (host == null) {
+                    throw BinPackingPolicy.logger.throwing(new DeployerException(
+                            "Can not fit template '" + template.getUniqueIdentifier()
+                                    + "' on any host"));
+                }
+                final double[] residual = residuals.get(host.getUniqueIdentifier());
+                for (int d = 0; d < BinPackingPolicy.DIMENSIONS; d++) {
+                    residual[d] -= demand[d];
+                }
+                final Integer count = placed.get(host.getUniqueIdentifier());
+                placed.put(host.getUniqueIdentifier(), count == null ? 1 : count + 1);
+
+                final VMDeploymentSpecificationBuilder builder =
+                        new VMDeploymentSpecificationBuilder().withTemplate(template)
+                                .withHost(host.getUniqueIdentifier());
+                final List<PhysicalStore> stores = this.getStores(host);
+                if (stores.isEmpty()) {
+                    context.updateVMCountersWithNewlyChosenHost(host);
+                } else {
+                    final PhysicalStore store = context.getSuitableStoreFromLeastUsedOrFull(stores);
+                    builder.withStore(store.getUniqueIdentifier());
+                    context.updateVMCountersWithNewlyChosenHostAndStore(host, store);
+                }
+                result.add(builder.build());
+            }
+        }
+
+        return BinPackingPolicy.logger.exit(result);
+    }
+
+    /**
+     * Finds the host that fits the demand and has the least capacity left
+     * after placing it. Ties are broken in favor of the host with the most VMs
+     * placed during this request.
+     * 
+     * @param hosts
+     *            to pick from.
+     * @param demand
+     *            of the VM to place.
+     * @param residuals
+     *            residual capacity per host, containing all hosts.
+     * @param placed
+     *            the number of VMs placed per host during this request.
+     * @return the best fitting host, or null if the VM fits on none of them.
+     */
+    private PhysicalHost getBestFit(final List<PhysicalHost> hosts, final double[] demand,
+            final Map<String, double[]> residuals, final Map<String, Integer> placed) {
+        PhysicalHost best = null;
+        double bestSlack = Double.MAX_VALUE;
+        int bestPlaced = -1;
+        for (final PhysicalHost host : hosts) {
+            final double[] residual = residuals.get(host.getUniqueIdentifier());
+            double slack = 0;
+            boolean fits = true;
+            for (int d = 0; d < BinPackingPolicy.DIMENSIONS && fits; d++) {
+                final double left = residual[d] - demand[d];
+                fits = left >= 0;
+                slack += left / this.hostCapacity[d];
+            }
+            if (!fits) {
+                continue;
+            }
+            final Integer count = placed.get(host.getUniqueIdentifier());
+            final int hostPlaced = count == null ? 0 : count;
+            if (slack < bestSlack || (slack == bestSlack && hostPlaced > bestPlaced)) {
+                best = host;
+                bestSlack = slack;
+                bestPlaced = hostPlaced;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param request
+     *            to get the templates of.
+     * @return the templates of the application and the requested templates,
+     *         which are all templates existing VMs can have been launched
+     *         from.
+     */
+    private static Collection<VMTemplate> getKnownTemplates(final DeploymentRequest request) {
+        final Map<String, VMTemplate> known = new HashMap<String, VMTemplate>();
+        final Application application = request.getApplication();
+        for (final VMTemplate template : application.getVMTemplates()) {
+            known.put(template.getUniqueIdentifier(), template);
+        }
+        for (final VMTemplate template : request.getTemplateRequests().keySet()) {
+            known.put(template.getUniqueIdentifier(), template);
+        }
+        return known.values();
+    }
+
+    /**
+     * @param host
+     *            to get the capacity of.
+     * @param occupancy
+     *            the VMs the application already has, per host and template.
+     * @param known
+     *            the templates the existing VMs can have.
+     * @return the capacity of the host that is not in use yet.
+     */
+    private double[] getInitialResidual(final PhysicalHost host, final OccupancyIndex occupancy,
+            final Collection<VMTemplate> known) {
+        final double[] residual = new double[BinPackingPolicy.DIMENSIONS];
+        for (int d = 0; d < BinPackingPolicy.DIMENSIONS; d++) {
+            residual[d] = this.hostCapacity[d];
+        }
+        for (final VMTemplate template : known) {
+            final int existing = occupancy.getVMsOnHost(host.getUniqueIdentifier(), template);
+            if (existing > 0) {
+                final double[] demand = this.getDemand(template);
+                for (int d = 0; d < BinPackingPolicy.DIMENSIONS; d++) {
+                    residual[d] -= existing * demand[d];
+                }
+            }
+        }
+        residual[BinPackingPolicy.CPU] = Math.min(residual[BinPackingPolicy.CPU],
+                this.hostCapacity[BinPackingPolicy.CPU]
+                        * (1 - BinPackingPolicy.clamp(host.getCpuUsage())));
+        residual[BinPackingPolicy.MEM] = Math.min(residual[BinPackingPolicy.MEM],
+                this.hostCapacity[BinPackingPolicy.MEM]
+                        * (1 - BinPackingPolicy.clamp(host.getMemUsage())));
+        return residual;
+    }
+
+    /**
+     * @param template
+     *            to get the demand of.
+     * @return the resources required by the template.
+     */
+    private double[] getDemand(final VMTemplate template) {
+        final double[] demand = new double[BinPackingPolicy.DIMENSIONS];
+        demand[BinPackingPolicy.CPU] = template.getCpu();
+        demand[BinPackingPolicy.MEM] = template.getMem();
+        demand[BinPackingPolicy.IO] = template.getIo();
+        demand[BinPackingPolicy.NET] = template.getNet();
+        return demand;
+    }
+
+    /**
+     * @param template
+     *            to get the size of.
+     * @return the sum of the resources of the template, relative to the
+     *         capacity of a host.
+     */
+    private double size(final VMTemplate template) {
+        final double[] demand = this.getDemand(template);
+        double size = 0;
+        for (int d = 0; d < BinPackingPolicy.DIMENSIONS; d++) {
+            size += demand[d] / this.hostCapacity[d];
+        }
+        return size;
+    }
+
+    /**
+     * @param host
+     *            to get the stores for.
+     * @return the local stores of the host and the stores of its rack.
+     */
+    private List<PhysicalStore> getStores(final PhysicalHost host) {
+        final List<PhysicalStore> stores = new ArrayList<PhysicalStore>(host.getDisks());
+        if (host.getParent() != null) {
+            stores.addAll(host.getParent().getDisks());
+        }
+        return stores;
+    }
+
+    /**
+     * @param usage
+     *            to clamp.
+     * @return the usage, limited to [0, 1].
+     */
+    private static double clamp(final double usage) {
+        return Math.max(0, Math.min(1, usage));
+    }
+}
@@ -0,0 +1,71 @@
+package nl.bitbrains.nebu.deployer.policies;
+
+import java.text.ParseException;
+
+import nl.bitbrains.nebu.deployer.DeployerPolicyFactory;
+
+import org.jdom2.Element;
+
+/**
+ * Factory for the instantiation of the {@link BinPackingPolicy} class.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class BinPackingPolicyFactory implements DeployerPolicyFactory {
+
+    public static final String TAG_HOST_CPU = "hostCpu";
+    public static final String TAG_HOST_MEM = "hostMem";
+    public static final String TAG_HOST_IO = "hostIo";
+    public static final String TAG_HOST_NET = "hostNet";
+
+    /**
+     * Default empty constructor.
+     */
+    public BinPackingPolicyFactory() {
+
+    }
+
+    @Override
+    public final BinPackingPolicy fromXML(final Element xml) throws ParseException {
+        final BinPackingPolicy policy = this.newInstance();
+        final int cpu = this.parseCapacity(xml, BinPackingPolicyFactory.TAG_HOST_CPU);
+        final int mem = this.parseCapacity(xml, BinPackingPolicyFactory.TAG_HOST_MEM);
+        final int io = this.parseCapacity(xml, BinPackingPolicyFactory.TAG_HOST_IO);
+        final int net = this.parseCapacity(xml, BinPackingPolicyFactory.TAG_HOST_NET);
+        policy.setHostCapacity(cpu, mem, io, net);
+        return policy;
+    }
+
+    /**
+     * @param xml
+     *            to read the capacity from.
+     * @param tag
+     *            of the capacity.
+     * @return the capacity, or the default if the tag is not present.
+     * @throws ParseException
+     *             if the capacity is not a positive number.
+     */
+    private int parseCapacity(final Element xml, final String tag) throws ParseException {
+        if (xml.getChild(tag) == null) {
+            return BinPackingPolicy.DEFAULT_HOST_CAPACITY;
+        }
+        final String text = xml.getChildTextTrim(tag);
+        try {
+            final int capacity = Integer.parseInt(text);
+            if (capacity > 0) {
+                return capacity;
+            }
+        } catch (final NumberFormatException e) {
+            // Reported below.
+        }
+        throw new ParseException("Capacity '" + tag + "' must be a positive number, got '" + text
+                + "'", 0);
+    }
+
+    @Override
+    public final BinPackingPolicy newInstance() {
+        return new BinPackingPolicy();
+    }
+
+}
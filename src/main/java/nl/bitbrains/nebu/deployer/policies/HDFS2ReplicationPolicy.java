@@ -17,6 +17,7 @@ import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
 import nl.bitbrains.nebu.containers.VMTemplate;
 import nl.bitbrains.nebu.deployer.DeployerException;
 import nl.bitbrains.nebu.deployer.DeployerPolicy;
+import nl.bitbrains.nebu.deployer.PlacementContext;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -41,6 +42,7 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
      * Simple default (empty) constructor.
      */
     public HDFS2ReplicationPolicy() {
+        this.setIndexedSelection(true);
     }
 
     @Override
@@ -78,14 +80,12 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
             final VMTemplate template = entry.getKey();
             int numberOfTemplate = entry.getValue();
             final PhysicalTopology topology = super.retrieveTopology(template);
-            this.initializeVmCounters(topology);
-            this.updateVMCountersForApplicationAndTemplate(request.getApplication(),
-                                                           template,
-                                                           topology);
+            final PlacementContext context = this.newPlacementContext(topology);
+            context.updateVMCountersForApplicationAndTemplate(request.getApplication(), template);
 
-            final PhysicalRack fatCluster = this.getFatCluster();
-            int numFatClusterVMs = this.getNumberOfVMs(fatCluster);
-            int numvms = this.getTotalNumVMs();
+            final PhysicalRack fatCluster = this.getFatCluster(context);
+            int numFatClusterVMs = this.getNumberOfVMs(context, fatCluster);
+            int numvms = this.getTotalNumVMs(context);
 
             while (numberOfTemplate-- > 0) {
                 PhysicalRack rack = null;
@@ -95,7 +95,7 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
                 } else {
                     rack = this.pickDifferentCluster(topology, fatCluster);
                 }
-                this.placeOnRack(template, rack, result);
+                this.placeOnRack(context, template, rack, result);
             }
         }
 
@@ -105,6 +105,8 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
     /**
      * Assigns a VM to the given rack.
      * 
+     * @param context
+     *            The {@link PlacementContext} holding the counters.
      * @param template
      *            The {@link VMTemplate} of the VM.
      * @param rack
@@ -116,14 +118,15 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
      *             If no suitable {@link PhysicalStore} can be found for
      *             deployment.
      */
-    private void placeOnRack(final VMTemplate template, final PhysicalRack rack,
-            final List<VMDeploymentSpecification> result) throws DeployerException {
-        final PhysicalHost host = this.getLeastStressedHostFromLeastUsed(rack.getCPUs(), template);
-        final PhysicalStore store = this.getSuitableStoreFromLeastUsed(rack.getDisks());
+    private void placeOnRack(final PlacementContext context, final VMTemplate template,
+            final PhysicalRack rack, final List<VMDeploymentSpecification> result)
+            throws DeployerException {
+        final PhysicalHost host = context.getLeastStressedHostFromLeastUsed(rack, template);
+        final PhysicalStore store = context.getSuitableStoreFromLeastUsed(rack);
         final VMDeploymentSpecification spec = new VMDeploymentSpecificationBuilder()
                 .withHost(host.getUniqueIdentifier()).withStore(store.getUniqueIdentifier())
                 .withTemplate(template).build();
-        this.updateVMCountersWithNewlyChosenHostAndStore(host, store);
+        context.updateVMCountersWithNewlyChosenHostAndStore(host, store);
         result.add(spec);
     }
 
@@ -141,7 +144,8 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
      */
     private PhysicalRack pickDifferentCluster(final PhysicalTopology topology,
             final PhysicalRack fatCluster) throws DeployerException {
-        final PhysicalRack otherRack = this.pick(topology.getRacks(), fatCluster);
+        final PhysicalRack otherRack = this.pick(new ArrayList<PhysicalRack>(topology.getRacks()),
+                                                 fatCluster);
         if (fatCluster.equals(otherRack)) {
             throw new DeployerException("No other rack to place VMs. This policy is useless.");
         }
@@ -151,10 +155,12 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
     /**
      * Calculates the total number of VMs.
      * 
+     * @param context
+     *            The {@link PlacementContext} holding the counters.
      * @return The number of VMs.
      */
-    private int getTotalNumVMs() {
-        final Map<PhysicalRack, Integer> vmsPerRack = this.getVmsPerRack();
+    private int getTotalNumVMs(final PlacementContext context) {
+        final Map<PhysicalRack, Integer> vmsPerRack = context.getVmsPerRack();
         int total = 0;
         if (vmsPerRack != null) {
             for (final Integer i : vmsPerRack.values()) {
@@ -167,11 +173,13 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
     /**
      * Get the cluster that has the most number of VMs.
      * 
+     * @param context
+     *            The {@link PlacementContext} holding the counters.
      * @return The {@link PhysicalRack} containing the most VMs in the cloud.
      * @throws DeployerException
      */
-    private PhysicalRack getFatCluster() throws DeployerException {
-        final Map<PhysicalRack, Integer> vmsPerRack = this.getVmsPerRack();
+    private PhysicalRack getFatCluster(final PlacementContext context) throws DeployerException {
+        final Map<PhysicalRack, Integer> vmsPerRack = context.getVmsPerRack();
         int maxVms = -1;
         PhysicalRack rack = null;
         if (vmsPerRack != null) {
@@ -188,12 +196,14 @@ public class HDFS2ReplicationPolicy extends DeployerPolicy {
     /**
      * Retrieves the number of VMs on the given {@link PhysicalRack}.
      * 
+     * @param context
+     *            The {@link PlacementContext} holding the counters.
      * @param fatCluster
      *            The {@link PhysicalRack} whose number of VMs to calculate.
      * @return The number of VMs on the given {@link PhysicalRack}.
      */
-    private int getNumberOfVMs(final PhysicalRack fatCluster) {
-        final Map<PhysicalRack, Integer> vmsPerRack = super.getVmsPerRack();
+    private int getNumberOfVMs(final PlacementContext context, final PhysicalRack fatCluster) {
+        final Map<PhysicalRack, Integer> vmsPerRack = context.getVmsPerRack();
         if (vmsPerRack != null) {
             return vmsPerRack.get(fatCluster);
         }
@@ -18,6 +18,7 @@ import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
 import nl.bitbrains.nebu.containers.VMTemplate;
 import nl.bitbrains.nebu.deployer.DeployerException;
 import nl.bitbrains.nebu.deployer.DeployerPolicy;
+import nl.bitbrains.nebu.deployer.PlacementContext;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -65,24 +66,24 @@ public class HDFSReplicationPolicy extends DeployerPolicy {
             int numberOfTemplate = entry.getValue();
             final PhysicalTopology topology = super.retrieveTopology(template);
             final List<PhysicalHost> allHosts = topology.getCPUs();
-            this.initializeVmCounters(topology);
-            this.updateVMCountersForApplicationAndTemplate(request.getApplication(),
-                                                           template,
-                                                           topology);
+            final PlacementContext context = this.newPlacementContext(topology);
+            context.updateVMCountersForApplicationAndTemplate(request.getApplication(), template);
 
             while (numberOfTemplate >= this.groupingSize) {
-                final PhysicalHost host1 = this.getLeastStressedHostFromLeastUsed(allHosts,
-                                                                                  template);
+                final PhysicalHost host1 = context.getLeastStressedHostFromLeastUsed(allHosts,
+                                                                                     template);
                 final PhysicalHost host2 = this.pickDifferentHost(host1, topology);
-                final List<PhysicalStore> stores = host1.getParent().getDisks();
+                final List<PhysicalStore> stores = new ArrayList<PhysicalStore>(host1.getParent()
+                        .getDisks());
                 for (int i = 1; i < this.groupingSize; i++) {
-                    final PhysicalStore store = this.getSuitableStoreFromLeastUsedOrFull(stores);
+                    final PhysicalStore store = context.getSuitableStoreFromLeastUsedOrFull(stores);
                     final VMDeploymentSpecification spec = new VMDeploymentSpecificationBuilder()
                             .withHost(host1.getUniqueIdentifier()).withTemplate(template)
                             .withStore(store.getUniqueIdentifier()).build();
                     result.add(spec);
                 }
-                final List<PhysicalStore> stores2 = host2.getParent().getDisks();
+                final List<PhysicalStore> stores2 = new ArrayList<PhysicalStore>(host2.getParent()
+                        .getDisks());
                 Collections.shuffle(stores2);
                 final VMDeploymentSpecification spec = new VMDeploymentSpecificationBuilder()
                         .withHost(host2.getUniqueIdentifier()).withTemplate(template)
@@ -92,12 +93,13 @@ public class HDFSReplicationPolicy extends DeployerPolicy {
             }
 
             if (numberOfTemplate > 0) {
-                final PhysicalHost host = this
-                        .getLeastStressedHostFromLeastUsed(allHosts, template);
-                final List<PhysicalStore> stores = host.getParent().getDisks();
+                final PhysicalHost host = context.getLeastStressedHostFromLeastUsed(allHosts,
+                                                                                    template);
+                final List<PhysicalStore> stores = new ArrayList<PhysicalStore>(host.getParent()
+                        .getDisks());
                 Collections.shuffle(stores);
                 for (int i = 0; i < numberOfTemplate; i++) {
-                    final PhysicalStore store = this.getSuitableStoreFromLeastUsedOrFull(stores);
+                    final PhysicalStore store = context.getSuitableStoreFromLeastUsedOrFull(stores);
                     final VMDeploymentSpecification spec = new VMDeploymentSpecificationBuilder()
                             .withHost(host.getUniqueIdentifier()).withTemplate(template)
                             .withStore(store.getUniqueIdentifier()).build();
@@ -124,11 +126,11 @@ public class HDFSReplicationPolicy extends DeployerPolicy {
         final PhysicalDataCenter dc1 = rack1.getParent();
 
         final List<PhysicalDataCenter> dcs = topology.getDataCenters();
-        final PhysicalDataCenter dc2 = this.pick(dcs, dc1);
+        final PhysicalDataCenter dc2 = this.pick(new ArrayList<PhysicalDataCenter>(dcs), dc1);
         final List<PhysicalRack> racks = dc2.getRacks();
-        final PhysicalRack r2 = this.pick(racks, rack1);
+        final PhysicalRack r2 = this.pick(new ArrayList<PhysicalRack>(racks), rack1);
         final List<PhysicalHost> hosts = r2.getCPUs();
-        return this.pick(hosts, host1);
+        return this.pick(new ArrayList<PhysicalHost>(hosts), host1);
     }
 
     /**
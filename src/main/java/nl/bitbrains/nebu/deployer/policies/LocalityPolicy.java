@@ -83,13 +83,15 @@ public class LocalityPolicy extends DeployerPolicy {
             final Map<String, Integer> vmsPerHost = this.newVmsPerHost(topology.getCPUs());
             this.updateVmsPerHostForExistingVMs(vmsPerHost, request.getApplication(), template);
 
-            final List<PhysicalDataCenter> dcs = topology.getDataCenters();
+            final List<PhysicalDataCenter> dcs = new ArrayList<PhysicalDataCenter>(
+                    topology.getDataCenters());
             Collections.shuffle(dcs);
             for (int i = 0; i < dcs.size() && numberOfTemplate > 0; i++) {
-                final List<PhysicalRack> racks = dcs.get(i).getRacks();
+                final List<PhysicalRack> racks = new ArrayList<PhysicalRack>(dcs.get(i).getRacks());
                 Collections.shuffle(racks);
                 for (int j = 0; j < racks.size() && numberOfTemplate > 0; j++) {
-                    final List<PhysicalHost> hosts = racks.get(j).getCPUs();
+                    final List<PhysicalHost> hosts = new ArrayList<PhysicalHost>(racks.get(j)
+                            .getCPUs());
                     Collections.shuffle(hosts);
                     for (int k = 0; k < hosts.size() && numberOfTemplate > 0; k++) {
                         final String hostId = hosts.get(k).getUniqueIdentifier();
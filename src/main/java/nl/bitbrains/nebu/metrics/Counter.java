@@ -0,0 +1,47 @@
+package nl.bitbrains.nebu.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that only goes up, such as a number of failed requests. Safe for
+ * use by multiple threads at once.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class Counter {
+
+    private final AtomicLong value;
+
+    /**
+     * Creates a counter at zero.
+     */
+    public Counter() {
+        this.value = new AtomicLong();
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        this.value.incrementAndGet();
+    }
+
+    /**
+     * @param amount
+     *            to add to the count, not negative.
+     */
+    public void add(final long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("A counter can not be decreased");
+        }
+        this.value.addAndGet(amount);
+    }
+
+    /**
+     * @return the count.
+     */
+    public long get() {
+        return this.value.get();
+    }
+}
@@ -0,0 +1,16 @@
+package nl.bitbrains.nebu.metrics;
+
+/**
+ * A value that is read when the metrics are written, such as the state of a
+ * circuit breaker or the size of a cache.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public interface Gauge {
+
+    /**
+     * @return the current value.
+     */
+    double getValue();
+}
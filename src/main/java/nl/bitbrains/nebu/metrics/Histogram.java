@@ -0,0 +1,160 @@
+package nl.bitbrains.nebu.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the distribution of non-negative values in the manner of an HDR
+ * histogram: values below 128 get a bucket each, and every power of two above
+ * that is split into 64 buckets of equal width. Percentiles are therefore
+ * accurate to within 1/64 of the value, while the histogram has a fixed size
+ * and recording a value is a few atomic increments without locking.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << Histogram.SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = Histogram.SUB_BUCKET_COUNT / 2;
+    private static final int LONG_BITS = 64;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    /**
+     * @param highestTrackableValue
+     *            the largest value that can be told apart, larger values are
+     *            recorded as this value. At least 128.
+     */
+    public Histogram(final long highestTrackableValue) {
+        if (highestTrackableValue < Histogram.SUB_BUCKET_COUNT) {
+            throw new IllegalArgumentException("The highest trackable value must be at least "
+                    + Histogram.SUB_BUCKET_COUNT);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(Histogram.indexOf(highestTrackableValue) + 1);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * @param value
+     *            to get the bucket of, not negative.
+     * @return the index of the bucket the value is counted in.
+     */
+    static int indexOf(final long value) {
+        if (value < Histogram.SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = Histogram.LONG_BITS - Long.numberOfLeadingZeros(value)
+                - Histogram.SUB_BUCKET_BITS;
+        return shift * Histogram.SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index
+     *            of a bucket.
+     * @return the largest value that is counted in the bucket.
+     */
+    static long highestEquivalentValue(final int index) {
+        if (index < Histogram.SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / Histogram.SUB_BUCKET_HALF - 1;
+        final long subBucket = index % Histogram.SUB_BUCKET_HALF + Histogram.SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * @param value
+     *            to record. Negative values are recorded as zero, values above
+     *            the highest trackable value as that value.
+     */
+    public void record(final long value) {
+        final long clamped = Math.min(Math.max(0, value), this.highestTrackableValue);
+        this.counts.incrementAndGet(Histogram.indexOf(clamped));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(clamped);
+        long current = this.max.get();
+        while (clamped > current && !this.max.compareAndSet(current, clamped)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * @return the number of recorded values.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * @return the sum of the recorded values.
+     */
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    /**
+     * @return the largest recorded value, 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 1.
+     * @return the largest value that is counted in the same bucket as the
+     *         value at the percentile, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        return Histogram.getValueAtPercentile(percentile, this);
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 1.
+     * @param histograms
+     *            to combine, all with the same highest trackable value.
+     * @return the largest value that is counted in the same bucket as the
+     *         value at the percentile of the values recorded in all the
+     *         histograms together, or 0 if nothing was recorded.
+     */
+    static long getValueAtPercentile(final double percentile, final Histogram... histograms) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1");
+        }
+        final int buckets = histograms[0].counts.length();
+        long total = 0;
+        long max = 0;
+        for (final Histogram histogram : histograms) {
+            for (int i = 0; i < buckets; i++) {
+                total += histogram.counts.get(i);
+            }
+            max = Math.max(max, histogram.getMax());
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        int index = 0;
+        while (index < buckets - 1) {
+            for (final Histogram histogram : histograms) {
+                seen += histogram.counts.get(index);
+            }
+            if (seen >= rank) {
+                break;
+            }
+            index++;
+        }
+        return Math.min(Histogram.highestEquivalentValue(index), max);
+    }
+}
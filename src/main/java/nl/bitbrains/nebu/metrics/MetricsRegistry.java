@@ -0,0 +1,261 @@
+package nl.bitbrains.nebu.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * Keeps the metrics of nebu-core, and writes them in the Prometheus text
+ * format so they can be scraped from the /metrics resource.
+ * 
+ * Every metric has a name and a set of labels, such as the resource method
+ * that was requested. The histograms are durations in microseconds, which are
+ * written as summaries in seconds.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class MetricsRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+    public static final String SUFFIX_SECONDS = "_seconds";
+    public static final String SUFFIX_ERRORS = "_errors_total";
+    public static final long HIGHEST_TRACKABLE_MICROS = 3600000000L;
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final double MICROS_PER_SECOND = 1000000.0;
+    private static MetricsRegistry instance;
+
+    private final ConcurrentMap<String, ConcurrentNavigableMap<String, Histogram>> histograms;
+    private final ConcurrentMap<String, ConcurrentNavigableMap<String, Counter>> counters;
+    private final ConcurrentMap<String, ConcurrentNavigableMap<String, Gauge>> gauges;
+
+    /**
+     * Private constructor to prevent instantiation outside of this class.
+     */
+    private MetricsRegistry() {
+        this.histograms = new ConcurrentSkipListMap<String,
+                ConcurrentNavigableMap<String, Histogram>>();
+        this.counters = new ConcurrentSkipListMap<String,
+                ConcurrentNavigableMap<String, Counter>>();
+        this.gauges = new ConcurrentSkipListMap<String,
+                ConcurrentNavigableMap<String, Gauge>>();
+    }
+
+    /**
+     * @return the MetricsRegistry singleton.
+     */
+    public static synchronized MetricsRegistry get() {
+        if (MetricsRegistry.instance == null) {
+            MetricsRegistry.instance = new MetricsRegistry();
+        }
+        return MetricsRegistry.instance;
+    }
+
+    /**
+     * @param name
+     *            of the operation, the durations are kept under the name with
+     *            {@link #SUFFIX_SECONDS} and the failures under the name with
+     *            {@link #SUFFIX_ERRORS}.
+     * @param labels
+     *            as built by {@link #labels(String...)}.
+     * @return the timer of the operation, created if needed.
+     */
+    public Timer timer(final String name, final String labels) {
+        return new Timer(this.histogram(name + MetricsRegistry.SUFFIX_SECONDS, labels),
+                this.counter(name + MetricsRegistry.SUFFIX_ERRORS, labels));
+    }
+
+    /**
+     * @param name
+     *            of the histogram.
+     * @param labels
+     *            as built by {@link #labels(String...)}.
+     * @return the histogram, created if needed.
+     */
+    public Histogram histogram(final String name, final String labels) {
+        final ConcurrentNavigableMap<String, Histogram> family = MetricsRegistry
+                .family(this.histograms, name);
+        Histogram histogram = family.get(labels);
+        if (histogram == null) {
+            final Histogram created = new Histogram(MetricsRegistry.HIGHEST_TRACKABLE_MICROS);
+            histogram = family.putIfAbsent(labels, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @param name
+     *            of the counter.
+     * @param labels
+     *            as built by {@link #labels(String...)}.
+     * @return the counter, created if needed.
+     */
+    public Counter counter(final String name, final String labels) {
+        final ConcurrentNavigableMap<String, Counter> family = MetricsRegistry
+                .family(this.counters, name);
+        Counter counter = family.get(labels);
+        if (counter == null) {
+            final Counter created = new Counter();
+            counter = family.putIfAbsent(labels, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Registers a gauge, replacing the gauge that was registered with the same
+     * name and labels before.
+     * 
+     * @param name
+     *            of the gauge.
+     * @param labels
+     *            as built by {@link #labels(String...)}.
+     * @param gauge
+     *            to read the value from.
+     */
+    public void gauge(final String name, final String labels, final Gauge gauge) {
+        ErrorChecker.throwIfNullArgument(gauge, "gauge");
+        MetricsRegistry.family(this.gauges, name).put(labels, gauge);
+    }
+
+    /**
+     * @param <T>
+     *            type of the metrics.
+     * @param metrics
+     *            by name and labels.
+     * @param name
+     *            of the metric.
+     * @return the metrics with the name by labels, created if needed.
+     */
+    private static <T> ConcurrentNavigableMap<String, T> family(
+            final ConcurrentMap<String, ConcurrentNavigableMap<String, T>> metrics,
+            final String name) {
+        ErrorChecker.throwIfNullArgument(name, "name");
+        ConcurrentNavigableMap<String, T> family = metrics.get(name);
+        if (family == null) {
+            final ConcurrentNavigableMap<String, T> created;
+            created = new ConcurrentSkipListMap<String, T>();
+            family = metrics.putIfAbsent(name, created);
+            if (family == null) {
+                family = created;
+            }
+        }
+        return family;
+    }
+
+    /**
+     * @param pairs
+     *            label names each followed by its value.
+     * @return the labels in the text format, such as
+     *         <code>method="GET",status="200"</code>.
+     */
+    public static String labels(final String... pairs) {
+        if (pairs.length % 2 != 0) {
+            throw new IllegalArgumentException("Every label needs a value");
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(pairs[i]).append("=\"");
+            builder.append(pairs[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")
+                    .replace("\n", "\\n"));
+            builder.append('"');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return all metrics in the Prometheus text format, sorted by name and
+     *         labels.
+     */
+    public String toText() {
+        final StringBuilder builder = new StringBuilder();
+        for (final String name : this.histograms.keySet()) {
+            builder.append("# TYPE ").append(name).append(" summary\n");
+            for (final Map.Entry<String, Histogram> entry : this.histograms.get(name).entrySet()) {
+                MetricsRegistry.appendSummary(builder, name, entry.getKey(), entry.getValue());
+            }
+        }
+        for (final String name : this.counters.keySet()) {
+            builder.append("# TYPE ").append(name).append(" counter\n");
+            for (final Map.Entry<String, Counter> entry : this.counters.get(name).entrySet()) {
+                MetricsRegistry.appendSample(builder, name, entry.getKey(),
+                                             Long.toString(entry.getValue().get()));
+            }
+        }
+        for (final String name : this.gauges.keySet()) {
+            builder.append("# TYPE ").append(name).append(" gauge\n");
+            for (final Map.Entry<String, Gauge> entry : this.gauges.get(name).entrySet()) {
+                MetricsRegistry.appendSample(builder, name, entry.getKey(),
+                                             Double.toString(entry.getValue().getValue()));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param builder
+     *            to append to.
+     * @param name
+     *            of the histogram.
+     * @param labels
+     *            of the histogram.
+     * @param histogram
+     *            of durations in microseconds, written in seconds.
+     */
+    private static void appendSummary(final StringBuilder builder, final String name,
+            final String labels, final Histogram histogram) {
+        String separator = "";
+        if (!labels.isEmpty()) {
+            separator = ",";
+        }
+        for (final double quantile : MetricsRegistry.QUANTILES) {
+            MetricsRegistry.appendSample(builder, name, labels + separator + "quantile=\""
+                    + quantile + "\"", MetricsRegistry.toSeconds(histogram
+                    .getValueAtPercentile(quantile)));
+        }
+        MetricsRegistry.appendSample(builder, name + "_sum", labels,
+                                     MetricsRegistry.toSeconds(histogram.getSum()));
+        MetricsRegistry.appendSample(builder, name + "_count", labels,
+                                     Long.toString(histogram.getCount()));
+    }
+
+    /**
+     * @param builder
+     *            to append to.
+     * @param name
+     *            of the sample.
+     * @param labels
+     *            of the sample, may be empty.
+     * @param value
+     *            of the sample.
+     */
+    private static void appendSample(final StringBuilder builder, final String name,
+            final String labels, final String value) {
+        builder.append(name);
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+        builder.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * @param micros
+     *            a duration in microseconds.
+     * @return the duration in seconds, as text.
+     */
+    private static String toSeconds(final long micros) {
+        return String.format(Locale.ENGLISH, "%.6f", micros / MetricsRegistry.MICROS_PER_SECOND);
+    }
+}
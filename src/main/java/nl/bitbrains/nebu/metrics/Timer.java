@@ -0,0 +1,58 @@
+package nl.bitbrains.nebu.metrics;
+
+/**
+ * Times an operation: keeps a {@link Histogram} of its durations in
+ * microseconds, and a {@link Counter} of the times it failed. Obtained from
+ * the {@link MetricsRegistry}.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class Timer {
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private final Histogram durations;
+    private final Counter errors;
+
+    /**
+     * @param durations
+     *            to record the durations in.
+     * @param errors
+     *            to count the failures with.
+     */
+    Timer(final Histogram durations, final Counter errors) {
+        this.durations = durations;
+        this.errors = errors;
+    }
+
+    /**
+     * Records an operation that started at the given time and ends now.
+     * 
+     * @param start
+     *            the {@link System#nanoTime()} at which the operation
+     *            started.
+     * @param success
+     *            false iff the operation failed.
+     */
+    public void stop(final long start, final boolean success) {
+        this.durations.record((System.nanoTime() - start) / Timer.NANOS_PER_MICRO);
+        if (!success) {
+            this.errors.increment();
+        }
+    }
+
+    /**
+     * @return the durations of the operation in microseconds.
+     */
+    public Histogram getDurations() {
+        return this.durations;
+    }
+
+    /**
+     * @return the number of times the operation failed.
+     */
+    public Counter getErrors() {
+        return this.errors;
+    }
+}
@@ -0,0 +1,89 @@
+package nl.bitbrains.nebu.metrics;
+
+/**
+ * Records the distribution of recent values: the values are recorded in a
+ * {@link Histogram} that is replaced by an empty one after every window.
+ * Lookups combine the current window with the previous one, so they cover at
+ * least one full window and values older than two windows are forgotten.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class WindowedHistogram {
+
+    private final long highestTrackableValue;
+    private final long window;
+    private Histogram current;
+    private Histogram previous;
+    private long windowStart;
+
+    /**
+     * @param highestTrackableValue
+     *            the largest value that can be told apart, see
+     *            {@link Histogram#Histogram(long)}.
+     * @param window
+     *            time in milliseconds after which the current window is
+     *            closed.
+     */
+    public WindowedHistogram(final long highestTrackableValue, final long window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.window = window;
+        this.current = new Histogram(highestTrackableValue);
+        this.previous = new Histogram(highestTrackableValue);
+        this.windowStart = System.currentTimeMillis();
+    }
+
+    /**
+     * Closes the current window if it has passed.
+     */
+    private synchronized void rotate() {
+        final long now = System.currentTimeMillis();
+        if (now - this.windowStart < this.window) {
+            return;
+        }
+        if (now - this.windowStart < 2 * this.window) {
+            this.previous = this.current;
+        } else {
+            this.previous = new Histogram(this.highestTrackableValue);
+        }
+        this.current = new Histogram(this.highestTrackableValue);
+        this.windowStart = now;
+    }
+
+    /**
+     * @param value
+     *            to record, see {@link Histogram#record(long)}.
+     */
+    public void record(final long value) {
+        final Histogram histogram;
+        synchronized (this) {
+            this.rotate();
+            histogram = this.current;
+        }
+        histogram.record(value);
+    }
+
+    /**
+     * @return the number of values recorded in the current and previous
+     *         window.
+     */
+    public synchronized long getCount() {
+        this.rotate();
+        return this.current.getCount() + this.previous.getCount();
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 1.
+     * @return the value at the percentile of the values recorded in the
+     *         current and previous window, see
+     *         {@link Histogram#getValueAtPercentile(double)}.
+     */
+    public synchronized long getValueAtPercentile(final double percentile) {
+        this.rotate();
+        return Histogram.getValueAtPercentile(percentile, this.current, this.previous);
+    }
+}
@@ -0,0 +1,129 @@
+package nl.bitbrains.nebu.rest.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Stops requests to the VMM while it is unhealthy, so callers fail fast
+ * instead of each waiting for a timeout.
+ * 
+ * The breaker is closed while requests succeed. After a number of consecutive
+ * failures it opens, and rejects all requests for the open time. After that it
+ * is half-open: a single trial request is let through, which closes the
+ * breaker if it succeeds and opens it again if it fails. A breaker with a
+ * failure threshold of 0 never opens. Safe for use by multiple threads at
+ * once.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class CircuitBreaker {
+
+    /**
+     * The states of the breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static Logger logger = LogManager.getLogger();
+
+    private final int failureThreshold;
+    private final long openTime;
+    private State state;
+    private int failures;
+    private long changedAt;
+    private long timesOpened;
+
+    /**
+     * @param failureThreshold
+     *            number of consecutive failures that opens the breaker, 0 to
+     *            never open it.
+     * @param openTime
+     *            time in milliseconds that the breaker stays open before a
+     *            trial request is let through.
+     */
+    public CircuitBreaker(final int failureThreshold, final long openTime) {
+        if (failureThreshold < 0) {
+            throw new IllegalArgumentException("Failure threshold can not be negative");
+        }
+        if (openTime <= 0) {
+            throw new IllegalArgumentException("Open time must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openTime = openTime;
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * @return true iff a request may be sent. If the breaker lets a trial
+     *         request through, the caller must report its outcome.
+     */
+    public synchronized boolean allowRequest() {
+        if (this.state == State.CLOSED) {
+            return true;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - this.changedAt < this.openTime) {
+            return false;
+        }
+        // Open for long enough, or the last trial request never reported.
+        this.setState(State.HALF_OPEN, now);
+        return true;
+    }
+
+    /**
+     * Reports that a request succeeded, which closes the breaker.
+     */
+    public synchronized void recordSuccess() {
+        this.failures = 0;
+        if (this.state != State.CLOSED) {
+            this.setState(State.CLOSED, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Reports that a request failed, which opens the breaker if it was
+     * half-open or if the failure threshold is reached.
+     */
+    public synchronized void recordFailure() {
+        if (this.failureThreshold == 0) {
+            return;
+        }
+        this.failures++;
+        if (this.state == State.HALF_OPEN
+                || (this.state == State.CLOSED && this.failures >= this.failureThreshold)) {
+            this.timesOpened++;
+            this.setState(State.OPEN, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @param newState
+     *            to change to.
+     * @param now
+     *            the current time.
+     */
+    private void setState(final State newState, final long now) {
+        if (newState != this.state) {
+            CircuitBreaker.logger.warn("Circuit breaker of the VMM changed from " + this.state
+                    + " to " + newState);
+        }
+        this.state = newState;
+        this.changedAt = now;
+    }
+
+    /**
+     * @return the state of the breaker.
+     */
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    /**
+     * @return the number of times the breaker has opened.
+     */
+    public synchronized long getTimesOpened() {
+        return this.timesOpened;
+    }
+}
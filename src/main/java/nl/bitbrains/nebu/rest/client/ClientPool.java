@@ -0,0 +1,244 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         This singleton class keeps one long-lived Jersey {@link Client} per
+ *         VMM. Every client has its own pool of keep-alive connections, so
+ *         consecutive requests to a VMM reuse the same TCP connections.
+ *         Connections that have been idle for longer than the configured idle
+ *         timeout are closed by a background thread, which also closes the
+ *         clients that were replaced by new settings once the requests they
+ *         were used for have had time to finish.
+ * 
+ *         This class is safe for use by multiple concurrent threads.
+ */
+public final class ClientPool {
+
+    private static Logger logger = LogManager.getLogger();
+    private static ClientPool instance = new ClientPool();
+
+    private final ConcurrentMap<String, PooledClient> clients;
+    private final List<PooledClient> replaced;
+    private volatile ClientSettings settings;
+    private ScheduledExecutorService evictor;
+
+    /**
+     * A client together with the connection pool it uses.
+     */
+    private static final class PooledClient {
+        private final Client client;
+        private final PoolingHttpClientConnectionManager connectionManager;
+
+        /**
+         * @param client
+         *            to set.
+         * @param connectionManager
+         *            used by the client.
+         */
+        private PooledClient(final Client client,
+                final PoolingHttpClientConnectionManager connectionManager) {
+            this.client = client;
+            this.connectionManager = connectionManager;
+        }
+    }
+
+    /**
+     * Private constructor to ensure it can not be instantiated outside of this
+     * class.
+     */
+    private ClientPool() {
+        this.clients = new ConcurrentHashMap<String, PooledClient>();
+        this.replaced = new ArrayList<PooledClient>();
+        this.settings = new ClientSettings();
+    }
+
+    /**
+     * @return the ClientPool singleton.
+     */
+    public static ClientPool get() {
+        return ClientPool.instance;
+    }
+
+    /**
+     * Sets the settings used for the clients. Clients that already exist are
+     * replaced, so the new settings apply to all subsequent requests. The
+     * replaced clients are closed once requests that are still using them
+     * have timed out under the old settings.
+     * 
+     * @param settings
+     *            to use.
+     */
+    public synchronized void configure(final ClientSettings settings) {
+        ErrorChecker.throwIfNullArgument(settings, "settings");
+        final ClientSettings old = this.settings;
+        this.settings = settings;
+        if (this.clients.isEmpty()) {
+            return;
+        }
+        final List<PooledClient> toClose = new ArrayList<PooledClient>(this.clients.values());
+        this.clients.clear();
+        this.replaced.addAll(toClose);
+        this.startEvictor();
+        this.evictor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ClientPool.this.closeReplaced(toClose);
+            }
+        }, ClientPool.getGracePeriod(old), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the settings used for the clients.
+     */
+    public ClientSettings getSettings() {
+        return this.settings;
+    }
+
+    /**
+     * @param baseUri
+     *            of the VMM.
+     * @return the client to use for requests to the VMM.
+     */
+    public Client getClient(final String baseUri) {
+        ErrorChecker.throwIfNullArgument(baseUri, "baseUri");
+        final PooledClient pooled = this.clients.get(baseUri);
+        if (pooled != null) {
+            return pooled.client;
+        }
+        synchronized (this) {
+            PooledClient created = this.clients.get(baseUri);
+            if (created == null) {
+                created = this.newPooledClient(this.settings);
+                this.clients.put(baseUri, created);
+                this.startEvictor();
+            }
+            return created.client;
+        }
+    }
+
+    /**
+     * Closes all clients and their connections, including replaced clients
+     * that were not closed yet. Clients are created again when they are next
+     * requested.
+     */
+    public synchronized void shutdown() {
+        for (final PooledClient pooled : this.clients.values()) {
+            pooled.client.close();
+        }
+        this.clients.clear();
+        this.closeReplaced(new ArrayList<PooledClient>(this.replaced));
+        if (this.evictor != null) {
+            this.evictor.shutdownNow();
+            this.evictor = null;
+        }
+    }
+
+    /**
+     * @param toClose
+     *            replaced clients to close, if they were not closed yet.
+     */
+    private synchronized void closeReplaced(final List<PooledClient> toClose) {
+        for (final PooledClient pooled : toClose) {
+            if (this.replaced.remove(pooled)) {
+                pooled.client.close();
+            }
+        }
+    }
+
+    /**
+     * @param old
+     *            settings the replaced clients were created with.
+     * @return time in milliseconds after which a request of a replaced client
+     *         has finished: its connect and read timeout, or the idle timeout
+     *         if either of those is unlimited.
+     */
+    private static long getGracePeriod(final ClientSettings old) {
+        if (old.getConnectTimeout() == 0 || old.getReadTimeout() == 0) {
+            return old.getIdleTimeout();
+        }
+        return (long) old.getConnectTimeout() + old.getReadTimeout();
+    }
+
+    /**
+     * @param clientSettings
+     *            to create the client with.
+     * @return a new client with its own connection pool.
+     */
+    private PooledClient newPooledClient(final ClientSettings clientSettings) {
+        final PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(clientSettings.getPoolSize());
+        connectionManager.setDefaultMaxPerRoute(clientSettings.getPoolSize());
+
+        final ClientConfig config = new ClientConfig();
+        config.connectorProvider(new ApacheConnectorProvider());
+        config.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+        config.property(ClientProperties.CONNECT_TIMEOUT, clientSettings.getConnectTimeout());
+        config.property(ClientProperties.READ_TIMEOUT, clientSettings.getReadTimeout());
+        return new PooledClient(ClientBuilder.newClient(config), connectionManager);
+    }
+
+    /**
+     * Starts the thread that closes idle connections, if it is not running
+     * yet.
+     */
+    private synchronized void startEvictor() {
+        if (this.evictor != null) {
+            return;
+        }
+        this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "nebu-client-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long period = Math.max(1, this.settings.getIdleTimeout() / 2);
+        this.evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                ClientPool.this.evictIdleConnections();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes the connections that have been idle for longer than the idle
+     * timeout.
+     */
+    private void evictIdleConnections() {
+        final long idleTimeout = this.settings.getIdleTimeout();
+        for (final PooledClient pooled : this.clients.values()) {
+            try {
+                pooled.connectionManager.closeExpiredConnections();
+                pooled.connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+            } catch (final RuntimeException e) {
+                ClientPool.logger.warn("Could not evict idle connections", e);
+            }
+        }
+    }
+}
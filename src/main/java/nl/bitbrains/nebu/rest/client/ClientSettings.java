@@ -0,0 +1,151 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+
+import nl.bitbrains.nebu.util.SettingsParser;
+
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable settings of the HTTP clients that are used to contact the
+ *         VMMs. All times are in milliseconds.
+ */
+public final class ClientSettings {
+
+    public static final String TAG_CONNECTION = "connection";
+    public static final String TAG_POOL_SIZE = "poolsize";
+    public static final String TAG_CONNECT_TIMEOUT = "connecttimeout";
+    public static final String TAG_READ_TIMEOUT = "readtimeout";
+    public static final String TAG_IDLE_TIMEOUT = "idletimeout";
+    public static final String TAG_LAUNCH_PARALLELISM = "launchparallelism";
+
+    public static final int DEFAULT_POOL_SIZE = 20;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+    public static final int DEFAULT_IDLE_TIMEOUT = 60000;
+    public static final int DEFAULT_LAUNCH_PARALLELISM = 8;
+
+    private final int poolSize;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int idleTimeout;
+    private final int launchParallelism;
+
+    /**
+     * Creates settings with all values set to their defaults.
+     */
+    public ClientSettings() {
+        this(ClientSettings.DEFAULT_POOL_SIZE,
+             ClientSettings.DEFAULT_CONNECT_TIMEOUT,
+             ClientSettings.DEFAULT_READ_TIMEOUT,
+             ClientSettings.DEFAULT_IDLE_TIMEOUT,
+             ClientSettings.DEFAULT_LAUNCH_PARALLELISM);
+    }
+
+    /**
+     * @param poolSize
+     *            maximum number of connections kept open to a single VMM.
+     * @param connectTimeout
+     *            time to wait for a connection to be established, 0 waits
+     *            forever.
+     * @param readTimeout
+     *            time to wait for data on an open connection, 0 waits forever.
+     * @param idleTimeout
+     *            time after which an unused connection is closed.
+     * @param launchParallelism
+     *            maximum number of VMs that is launched on a VMM at once.
+     */
+    public ClientSettings(final int poolSize, final int connectTimeout, final int readTimeout,
+            final int idleTimeout, final int launchParallelism) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        if (connectTimeout < 0 || readTimeout < 0) {
+            throw new IllegalArgumentException("Timeouts can not be negative");
+        }
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive");
+        }
+        if (launchParallelism <= 0) {
+            throw new IllegalArgumentException("Launch parallelism must be positive");
+        }
+        this.poolSize = poolSize;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.idleTimeout = idleTimeout;
+        this.launchParallelism = launchParallelism;
+    }
+
+    /**
+     * @param xml
+     *            the connection element to read the settings from, may be
+     *            null.
+     * @return the settings, with defaults for values that are not present.
+     * @throws ParseException
+     *             if one of the values is not a valid number.
+     */
+    public static ClientSettings fromXML(final Element xml) throws ParseException {
+        if (xml == null) {
+            return new ClientSettings();
+        }
+        final int poolSize = SettingsParser.parseInt(xml,
+                                                     ClientSettings.TAG_POOL_SIZE,
+                                                     ClientSettings.DEFAULT_POOL_SIZE);
+        final int connectTimeout = SettingsParser.parseInt(xml,
+                                                           ClientSettings.TAG_CONNECT_TIMEOUT,
+                                                           ClientSettings.DEFAULT_CONNECT_TIMEOUT);
+        final int readTimeout = SettingsParser.parseInt(xml,
+                                                        ClientSettings.TAG_READ_TIMEOUT,
+                                                        ClientSettings.DEFAULT_READ_TIMEOUT);
+        final int idleTimeout = SettingsParser.parseInt(xml,
+                                                        ClientSettings.TAG_IDLE_TIMEOUT,
+                                                        ClientSettings.DEFAULT_IDLE_TIMEOUT);
+        final int launchParallelism = SettingsParser
+                .parseInt(xml,
+                          ClientSettings.TAG_LAUNCH_PARALLELISM,
+                          ClientSettings.DEFAULT_LAUNCH_PARALLELISM);
+        try {
+            return new ClientSettings(poolSize, connectTimeout, readTimeout, idleTimeout,
+                    launchParallelism);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @return the maximum number of connections kept open to a single VMM.
+     */
+    public int getPoolSize() {
+        return this.poolSize;
+    }
+
+    /**
+     * @return the connect timeout.
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * @return the read timeout.
+     */
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * @return the time after which an unused connection is closed.
+     */
+    public int getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * @return the maximum number of VMs that is launched on a VMM at once.
+     */
+    public int getLaunchParallelism() {
+        return this.launchParallelism;
+    }
+}
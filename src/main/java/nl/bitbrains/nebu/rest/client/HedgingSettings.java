@@ -0,0 +1,138 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+
+import nl.bitbrains.nebu.util.SettingsParser;
+
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable settings of the {@link RequestHedger}. When hedging is
+ *         enabled, a read that has not been answered after the given
+ *         percentile of the latency of its operation is sent a second time.
+ *         The delay is never shorter than the minimum delay, and reads are
+ *         not hedged until their operation has the minimum number of samples.
+ *         All times are in milliseconds.
+ */
+public final class HedgingSettings {
+
+    public static final String TAG_HEDGING = "hedging";
+    public static final String TAG_PERCENTILE = "percentile";
+    public static final String TAG_MIN_DELAY = "mindelay";
+    public static final String TAG_MIN_SAMPLES = "minsamples";
+    public static final String ATTRIBUTE_ENABLED = "enabled";
+
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final long DEFAULT_MIN_DELAY = 20;
+    public static final long DEFAULT_MIN_SAMPLES = 100;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelay;
+    private final long minSamples;
+
+    /**
+     * Creates settings with hedging disabled.
+     */
+    public HedgingSettings() {
+        this(false, HedgingSettings.DEFAULT_PERCENTILE, HedgingSettings.DEFAULT_MIN_DELAY,
+                HedgingSettings.DEFAULT_MIN_SAMPLES);
+    }
+
+    /**
+     * @param enabled
+     *            true iff reads are hedged.
+     * @param percentile
+     *            of the latency of an operation after which it is hedged,
+     *            between 0 and 1.
+     * @param minDelay
+     *            minimum time before a read is hedged.
+     * @param minSamples
+     *            number of latencies an operation needs before it is hedged.
+     */
+    public HedgingSettings(final boolean enabled, final double percentile, final long minDelay,
+            final long minSamples) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1");
+        }
+        if (minDelay < 0) {
+            throw new IllegalArgumentException("Minimum delay can not be negative");
+        }
+        if (minSamples < 0) {
+            throw new IllegalArgumentException("Minimum number of samples can not be negative");
+        }
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Reads the settings from xml such as:
+     * 
+     * <pre>
+     * &lt;hedging enabled="true"&gt;
+     *     &lt;percentile&gt;0.95&lt;/percentile&gt;
+     *     &lt;mindelay&gt;20&lt;/mindelay&gt;
+     *     &lt;minsamples&gt;100&lt;/minsamples&gt;
+     * &lt;/hedging&gt;
+     * </pre>
+     * 
+     * @param xml
+     *            the hedging element to read the settings from, may be null.
+     * @return the settings, with defaults for values that are not present.
+     * @throws ParseException
+     *             if the settings are invalidly specified.
+     */
+    public static HedgingSettings fromXML(final Element xml) throws ParseException {
+        if (xml == null) {
+            return new HedgingSettings();
+        }
+        final boolean enabled = Boolean.parseBoolean(xml
+                .getAttributeValue(HedgingSettings.ATTRIBUTE_ENABLED));
+        final double percentile = SettingsParser.parseDouble(xml,
+                                                             HedgingSettings.TAG_PERCENTILE,
+                                                             HedgingSettings.DEFAULT_PERCENTILE);
+        final long minDelay = SettingsParser.parseLong(xml,
+                                                       HedgingSettings.TAG_MIN_DELAY,
+                                                       HedgingSettings.DEFAULT_MIN_DELAY);
+        final long minSamples = SettingsParser.parseLong(xml,
+                                                         HedgingSettings.TAG_MIN_SAMPLES,
+                                                         HedgingSettings.DEFAULT_MIN_SAMPLES);
+        try {
+            return new HedgingSettings(enabled, percentile, minDelay, minSamples);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @return true iff reads are hedged.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return the percentile of the latency after which a read is hedged.
+     */
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    /**
+     * @return the minimum time before a read is hedged.
+     */
+    public long getMinDelay() {
+        return this.minDelay;
+    }
+
+    /**
+     * @return the number of latencies an operation needs before it is hedged.
+     */
+    public long getMinSamples() {
+        return this.minSamples;
+    }
+}
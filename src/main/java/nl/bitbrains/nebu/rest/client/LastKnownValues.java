@@ -0,0 +1,93 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * Remembers the last value that was loaded for each key, so it can be served
+ * when the VMM is unhealthy and the value can not be loaded again. Holds at
+ * most a fixed number of keys; the least recently loaded key is forgotten
+ * first. Safe for use by multiple threads at once.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class LastKnownValues {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final Map<String, Object> values;
+
+    /**
+     * @param capacity
+     *            maximum number of keys to remember.
+     */
+    public LastKnownValues(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.values = new LinkedHashMap<String, Object>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param key
+     *            to remember the values of.
+     * @param loader
+     *            that loads the values.
+     * @return a loader that loads with the given loader, and remembers what
+     *         it loads.
+     */
+    public CacheLoader<Object> remembering(final String key, final CacheLoader<Object> loader) {
+        ErrorChecker.throwIfNullArgument(key, "key");
+        ErrorChecker.throwIfNullArgument(loader, "loader");
+        return new CacheLoader<Object>() {
+            @Override
+            public Object refresh() throws CacheException {
+                final Object value = loader.refresh();
+                LastKnownValues.this.put(key, value);
+                return value;
+            }
+        };
+    }
+
+    /**
+     * @param key
+     *            of the value.
+     * @param value
+     *            to remember, null to forget the key.
+     */
+    public synchronized void put(final String key, final Object value) {
+        // Removed first, so the key becomes the most recently loaded one.
+        this.values.remove(key);
+        if (value != null) {
+            this.values.put(key, value);
+        }
+    }
+
+    /**
+     * @param key
+     *            to look up.
+     * @return the last value that was loaded for the key, or null.
+     */
+    public synchronized Object get(final String key) {
+        return this.values.get(key);
+    }
+
+    /**
+     * @return the number of keys that are remembered.
+     */
+    public synchronized int size() {
+        return this.values.size();
+    }
+}
@@ -0,0 +1,199 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * Makes sure that at most one {@link CacheLoader} runs per cache key at a
+ * time. Callers that need a key that is already being loaded wait for that
+ * load to finish and share its result, instead of sending an identical
+ * request to the VMM.
+ * 
+ * Keeps track of the number of lookups that were served from the cache
+ * (hits), that ran a loader (misses) and that waited for the loader of another
+ * caller (coalesced).
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class LoadCoalescer {
+
+    private final ConcurrentMap<String, FutureTask<Object>> inFlight;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong coalesced;
+
+    /**
+     * Simple constructor.
+     */
+    public LoadCoalescer() {
+        this.inFlight = new ConcurrentHashMap<String, FutureTask<Object>>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.coalesced = new AtomicLong();
+    }
+
+    /**
+     * Loader that hands its loads to a {@link LoadCoalescer}, and remembers
+     * whether it has been asked to load at all.
+     */
+    private static final class CoalescingCacheLoader implements CacheLoader<Object> {
+        private final LoadCoalescer coalescer;
+        private final String key;
+        private final CacheLoader<Object> loader;
+        private volatile boolean invoked;
+
+        /**
+         * @param coalescer
+         *            to hand the loads to.
+         * @param key
+         *            that is loaded.
+         * @param loader
+         *            that performs the load.
+         */
+        private CoalescingCacheLoader(final LoadCoalescer coalescer, final String key,
+                final CacheLoader<Object> loader) {
+            this.coalescer = coalescer;
+            this.key = key;
+            this.loader = loader;
+        }
+
+        @Override
+        public Object refresh() throws CacheException {
+            this.invoked = true;
+            return this.coalescer.load(this.key, this.loader);
+        }
+    }
+
+    /**
+     * @param key
+     *            that is looked up.
+     * @param loader
+     *            that loads the key.
+     * @return a loader to pass to the cache instead of the given one. Must be
+     *         passed to {@link #lookupFinished(CacheLoader)} once the lookup
+     *         is done.
+     */
+    public CacheLoader<Object> newLoader(final String key, final CacheLoader<Object> loader) {
+        ErrorChecker.throwIfNullArgument(key, "key");
+        ErrorChecker.throwIfNullArgument(loader, "loader");
+        return new CoalescingCacheLoader(this, key, loader);
+    }
+
+    /**
+     * Counts the lookup as a hit if the cache did not use the loader.
+     * 
+     * @param loader
+     *            as returned by {@link #newLoader(String, CacheLoader)}.
+     */
+    public void lookupFinished(final CacheLoader<Object> loader) {
+        if (!((CoalescingCacheLoader) loader).invoked) {
+            this.recordHit();
+        }
+    }
+
+    /**
+     * Counts a lookup that was served from a cache without loading.
+     */
+    public void recordHit() {
+        this.hits.incrementAndGet();
+    }
+
+    /**
+     * Loads the key, or waits for the load that is already running for it.
+     * 
+     * @param key
+     *            to load.
+     * @param loader
+     *            to use if no load is running for the key yet.
+     * @return the loaded value.
+     * @throws CacheException
+     *             if the load fails.
+     */
+    public Object load(final String key, final CacheLoader<Object> loader) throws CacheException {
+        final FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+            @Override
+            public Object call() throws CacheException {
+                return loader.refresh();
+            }
+        });
+        FutureTask<Object> running = this.inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            this.misses.incrementAndGet();
+            running = task;
+            try {
+                task.run();
+            } finally {
+                this.inFlight.remove(key, task);
+            }
+        } else {
+            this.coalesced.incrementAndGet();
+        }
+        return LoadCoalescer.getResult(running);
+    }
+
+    /**
+     * @param task
+     *            to wait for.
+     * @return the result of the task.
+     * @throws CacheException
+     *             if the task failed with it.
+     */
+    private static Object getResult(final FutureTask<Object> task) throws CacheException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (final InterruptedException e) {
+                    // The load is shared, so waiting for it is not aborted.
+                    interrupted = true;
+                }
+            }
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof CacheException) {
+                throw (CacheException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of lookups that were served from the cache.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of lookups that ran a loader.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of lookups that waited for the load of another
+     *         lookup.
+     */
+    public long getCoalesced() {
+        return this.coalesced.get();
+    }
+}
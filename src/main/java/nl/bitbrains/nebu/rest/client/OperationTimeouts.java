@@ -0,0 +1,49 @@
+package nl.bitbrains.nebu.rest.client;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable connect and read timeouts of a single operation on the
+ *         VMM, such as {@link RequestSender#OP_GET_VIRTUAL_MACHINE}. They
+ *         replace the timeouts of the {@link ClientSettings} for that
+ *         operation. All times are in milliseconds.
+ */
+public final class OperationTimeouts {
+
+    public static final int DEFAULT = -1;
+
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    /**
+     * @param connectTimeout
+     *            time to wait for a connection to be established, 0 waits
+     *            forever and {@link #DEFAULT} uses the timeout of the
+     *            {@link ClientSettings}.
+     * @param readTimeout
+     *            time to wait for data on an open connection, 0 waits forever
+     *            and {@link #DEFAULT} uses the timeout of the
+     *            {@link ClientSettings}.
+     */
+    public OperationTimeouts(final int connectTimeout, final int readTimeout) {
+        if (connectTimeout < OperationTimeouts.DEFAULT || readTimeout < OperationTimeouts.DEFAULT) {
+            throw new IllegalArgumentException("Timeouts can not be negative");
+        }
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @return the connect timeout, or {@link #DEFAULT}.
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * @return the read timeout, or {@link #DEFAULT}.
+     */
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+}
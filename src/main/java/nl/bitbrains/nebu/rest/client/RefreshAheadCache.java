@@ -0,0 +1,223 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Cache that refreshes its values in the background before they expire
+ * (stale-while-revalidate). Callers get the last known value immediately, as
+ * long as it is not older than the max staleness of its {@link RefreshPolicy}.
+ * Only the first lookup of a key, and lookups of values that could not be
+ * refreshed in time, wait for the loader.
+ * 
+ * A key that is not looked up for longer than its max staleness is no longer
+ * refreshed, and is dropped from the cache.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class RefreshAheadCache {
+
+    private static final int THREADS = 2;
+    private static Logger logger = LogManager.getLogger();
+
+    private final ConcurrentMap<String, Entry> entries;
+    private final LoadCoalescer coalescer;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * A cached value, with the loader and policy used to refresh it.
+     */
+    private static final class Entry {
+        private final String key;
+        private final CacheLoader<Object> loader;
+        private final RefreshPolicy policy;
+        private volatile Object value;
+        private volatile long loadedAt;
+        private volatile long lastRead;
+        private volatile ScheduledFuture<?> task;
+
+        /**
+         * @param key
+         *            of the value.
+         * @param loader
+         *            to refresh the value with.
+         * @param policy
+         *            to refresh the value by.
+         * @param value
+         *            the value.
+         * @param now
+         *            the time the value was loaded.
+         */
+        private Entry(final String key, final CacheLoader<Object> loader,
+                final RefreshPolicy policy, final Object value, final long now) {
+            this.key = key;
+            this.loader = loader;
+            this.policy = policy;
+            this.value = value;
+            this.loadedAt = now;
+            this.lastRead = now;
+        }
+    }
+
+    /**
+     * @param coalescer
+     *            to run the loads through, so background refreshes and
+     *            lookups of the same key share their result.
+     */
+    public RefreshAheadCache(final LoadCoalescer coalescer) {
+        ErrorChecker.throwIfNullArgument(coalescer, "coalescer");
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * @param key
+     *            to look up.
+     * @param loader
+     *            to load the value with, if it is not cached or too stale.
+     * @param policy
+     *            to refresh the value by.
+     * @return the cached value, or the loaded value if there is none.
+     * @throws CacheException
+     *             if the value had to be loaded, and loading failed.
+     */
+    public Object get(final String key, final CacheLoader<Object> loader,
+            final RefreshPolicy policy) throws CacheException {
+        ErrorChecker.throwIfNullArgument(key, "key");
+        ErrorChecker.throwIfNullArgument(loader, "loader");
+        ErrorChecker.throwIfNullArgument(policy, "policy");
+        final long now = System.currentTimeMillis();
+        final Entry entry = this.entries.get(key);
+        if (entry != null) {
+            entry.lastRead = now;
+            if (now - entry.loadedAt <= entry.policy.getMaxStaleness()) {
+                this.coalescer.recordHit();
+                return entry.value;
+            }
+        }
+
+        final Object value = this.coalescer.load(key, loader);
+        final Entry fresh = new Entry(key, loader, policy, value, System.currentTimeMillis());
+        final Entry previous = this.entries.put(key, fresh);
+        if (previous != null && previous.task != null) {
+            previous.task.cancel(false);
+        }
+        this.schedule(fresh);
+        return value;
+    }
+
+    /**
+     * Drops all values and stops refreshing them.
+     */
+    public void clear() {
+        for (final String key : this.entries.keySet()) {
+            final Entry entry = this.entries.remove(key);
+            if (entry != null && entry.task != null) {
+                entry.task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Drops all values and stops the threads of the background refreshes.
+     * The threads are created again when a value is next cached.
+     */
+    public void shutdown() {
+        this.clear();
+        synchronized (this) {
+            if (this.scheduler != null) {
+                this.scheduler.shutdownNow();
+                this.scheduler = null;
+            }
+        }
+    }
+
+    /**
+     * @param key
+     *            to check.
+     * @return true iff a value is cached for the key.
+     */
+    public boolean contains(final String key) {
+        return this.entries.containsKey(key);
+    }
+
+    /**
+     * Schedules the periodic background refresh of the entry.
+     * 
+     * @param entry
+     *            to refresh.
+     */
+    private void schedule(final Entry entry) {
+        final long interval = entry.policy.getRefreshInterval();
+        entry.task = this.getScheduler().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                RefreshAheadCache.this.refresh(entry);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        if (this.entries.get(entry.key) != entry) {
+            // Replaced or cleared while it was being scheduled.
+            entry.task.cancel(false);
+        }
+    }
+
+    /**
+     * Refreshes the value of the entry, or drops the entry if it has not been
+     * read for too long.
+     * 
+     * @param entry
+     *            to refresh.
+     */
+    private void refresh(final Entry entry) {
+        final long now = System.currentTimeMillis();
+        if (now - entry.lastRead > entry.policy.getMaxStaleness()
+                || this.entries.get(entry.key) != entry) {
+            this.entries.remove(entry.key, entry);
+            if (entry.task != null) {
+                entry.task.cancel(false);
+            }
+            return;
+        }
+        try {
+            entry.value = this.coalescer.load(entry.key, entry.loader);
+            entry.loadedAt = System.currentTimeMillis();
+        } catch (final CacheException e) {
+            RefreshAheadCache.logger.catching(Level.WARN, e);
+        } catch (final RuntimeException e) {
+            // Must not escape, or the refresh would never be scheduled again.
+            RefreshAheadCache.logger.catching(Level.ERROR, e);
+        }
+    }
+
+    /**
+     * @return the scheduler of the background refreshes.
+     */
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (this.scheduler == null) {
+            this.scheduler = Executors.newScheduledThreadPool(RefreshAheadCache.THREADS,
+                                                              new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "nebu-cache-refresher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return this.scheduler;
+    }
+}
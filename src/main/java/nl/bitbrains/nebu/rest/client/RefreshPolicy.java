@@ -0,0 +1,49 @@
+package nl.bitbrains.nebu.rest.client;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Determines how often a cached value is refreshed in the background
+ *         by the {@link RefreshAheadCache}, and how old it may become before
+ *         callers have to wait for a fresh value. All times are in
+ *         milliseconds.
+ */
+public final class RefreshPolicy {
+
+    private final long refreshInterval;
+    private final long maxStaleness;
+
+    /**
+     * @param refreshInterval
+     *            time between two background refreshes.
+     * @param maxStaleness
+     *            maximum age of a value that is returned without loading it
+     *            again. Must be at least the refresh interval.
+     */
+    public RefreshPolicy(final long refreshInterval, final long maxStaleness) {
+        if (refreshInterval <= 0) {
+            throw new IllegalArgumentException("Refresh interval must be positive");
+        }
+        if (maxStaleness < refreshInterval) {
+            throw new IllegalArgumentException("Max staleness can not be less than the refresh "
+                    + "interval");
+        }
+        this.refreshInterval = refreshInterval;
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * @return the time between two background refreshes.
+     */
+    public long getRefreshInterval() {
+        return this.refreshInterval;
+    }
+
+    /**
+     * @return the maximum age of a value that is returned without loading it
+     *         again.
+     */
+    public long getMaxStaleness() {
+        return this.maxStaleness;
+    }
+}
@@ -1,7 +1,8 @@
 package nl.bitbrains.nebu.rest.client;
 
+import java.util.Collection;
+
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.Invocation.Builder;
 import javax.ws.rs.client.WebTarget;
@@ -10,8 +11,6 @@ import javax.ws.rs.core.MediaType;
 import nl.bitbrains.nebu.common.config.ClientConfiguration;
 import nl.bitbrains.nebu.common.config.Configuration;
 
-import org.glassfish.jersey.client.ClientConfig;
-
 /**
  * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
  * 
@@ -26,10 +25,12 @@ public final class RequestBuilder {
     public static final String URI_CREATE_VM = "createVM";
     public static final String URI_STATUS = "status";
     public static final String URI_VMTEMPLATES = "vmtemplates";
+    public static final String URI_BULK = "bulk";
 
     public static final String QUERY_PARAM_HOSTNAME = "hostname";
     public static final String QUERY_PARAM_TEMPLATE = "template";
     public static final String QUERY_PARAM_STORE = "store";
+    public static final String QUERY_PARAM_UUID = "uuid";
     private static final String NEBU_VMM = "nebu-vmm";
 
     private static RequestBuilder instance = null;
@@ -83,6 +84,20 @@ public final class RequestBuilder {
         return this.newXMLTypeInvocationBuilder(uriTarget);
     }
 
+    /**
+     * @param uuids
+     *            identifiers of the VMs you are requesting.
+     * @return a builder that can call .get() to perform the GET on the bulk
+     *         virtual machines URI with the specified uuids.
+     */
+    public Invocation.Builder newGetVirtualMachinesBulkClient(final Collection<String> uuids) {
+        final WebTarget target = this.newNebuWebTarget();
+        final WebTarget uriTarget = target.path(RequestBuilder.URI_VIRTUAL_MACHINES)
+                .path(RequestBuilder.URI_BULK)
+                .queryParam(RequestBuilder.QUERY_PARAM_UUID, uuids.toArray());
+        return this.newXMLTypeInvocationBuilder(uriTarget);
+    }
+
     /**
      * @param templateUUID
      *            uuid of the template to get the physical tree for.
@@ -174,32 +189,18 @@ public final class RequestBuilder {
     }
 
     /**
-     * @return a Jersey ClientConfig that is suited for contact with Nebu
-     *         provided APIs.
-     */
-    private ClientConfig newNebuClientConfig() {
-        return new ClientConfig();
-    }
-
-    /**
-     * @return a Client that is suited for contact with Nebu provided APIs.
-     */
-    private Client newNebuClient() {
-        final ClientConfig config = this.newNebuClientConfig();
-        return ClientBuilder.newClient(config);
-    }
-
-    /**
-     * NB: Required a valid {@link Configuration}.
+     * NB: Required a valid {@link Configuration}. The target uses the shared
+     * client of the VMM from the {@link ClientPool}.
      * 
      * @return a WebTarget that is suited for contact with Nebu that contains
      *         the base URI.
      */
     private WebTarget newNebuWebTarget() {
-        final Client client = this.newNebuClient();
         final ClientConfiguration config = Configuration.get()
                 .getClientConfig(RequestBuilder.NEBU_VMM);
-        return client.target("http://" + config.getIpAddress() + ":" + config.getPort());
+        final String baseUri = "http://" + config.getIpAddress() + ":" + config.getPort();
+        final Client client = ClientPool.get().getClient(baseUri);
+        return client.target(baseUri);
     }
 
 }
@@ -0,0 +1,386 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.Response;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
+import nl.bitbrains.nebu.metrics.WindowedHistogram;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Hedges idempotent reads from the VMM by its {@link HedgingSettings}: if a
+ * read has not been answered after the configured percentile of the recent
+ * latency of its operation, the same read is sent a second time. The first
+ * answer wins, and the other attempt is cancelled. A server error or
+ * connection problem is not an answer, so the other attempt is still waited
+ * for.
+ * 
+ * The latencies are those of the attempts of the last one to two
+ * {@link #LATENCY_WINDOW}s, so the delay follows the VMM when it slows down.
+ * Hedges are limited by a token bucket: every read adds
+ * {@link #HEDGE_BUDGET} of a hedge to the bucket, and a hedge is only sent if
+ * the bucket holds a whole one. At most {@link #HEDGE_BURST} hedges are saved
+ * up, so a slow VMM never gets much more than 5% extra reads. At most
+ * {@link #MAX_THREADS} attempts run at once; when all threads are busy, reads
+ * are performed by the caller without hedging.
+ * 
+ * Cancelling interrupts the thread of the losing attempt. A request that is
+ * already being read from the VMM runs to its end, after which its response
+ * is discarded and its connection is released.
+ * 
+ * The hedges and the hedges that won are counted by operation in the
+ * {@link MetricsRegistry}.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class RequestHedger {
+
+    public static final String METRIC_HEDGES = "nebu_vmm_hedges_total";
+    public static final String METRIC_HEDGE_WINS = "nebu_vmm_hedge_wins_total";
+    public static final int MAX_THREADS = 32;
+    public static final double HEDGE_BUDGET = 0.05;
+    public static final int HEDGE_BURST = 10;
+    public static final long LATENCY_WINDOW = 60000;
+    private static final long TOKENS_PER_HEDGE = 100;
+    private static final long TOKENS_PER_READ = (long) (RequestHedger.HEDGE_BUDGET
+            * RequestHedger.TOKENS_PER_HEDGE);
+    private static final long MAX_TOKENS = RequestHedger.HEDGE_BURST
+            * RequestHedger.TOKENS_PER_HEDGE;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long MICROS_PER_MILLI = 1000;
+    private static final long NANOS_PER_MICRO = 1000;
+    private static Logger logger = LogManager.getLogger();
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentMap<String, WindowedHistogram> latencies;
+    private final AtomicLong tokens;
+    private final AtomicLong hedges;
+    private final AtomicLong wins;
+    private volatile HedgingSettings settings;
+
+    /**
+     * Creates a hedger with hedging disabled.
+     */
+    public RequestHedger() {
+        this.executor = new ThreadPoolExecutor(0, RequestHedger.MAX_THREADS,
+                RequestHedger.KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread = new Thread(r, "nebu-vmm-hedger");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.latencies = new ConcurrentHashMap<String, WindowedHistogram>();
+        this.tokens = new AtomicLong(RequestHedger.MAX_TOKENS);
+        this.hedges = new AtomicLong();
+        this.wins = new AtomicLong();
+        this.settings = new HedgingSettings();
+    }
+
+    /**
+     * @param hedgingSettings
+     *            to use.
+     */
+    public void configure(final HedgingSettings hedgingSettings) {
+        ErrorChecker.throwIfNullArgument(hedgingSettings, "hedgingSettings");
+        this.settings = hedgingSettings;
+    }
+
+    /**
+     * @param <T>
+     *            type of the result of the read.
+     * @param operation
+     *            the read that is performed, one of the OP_ constants of
+     *            {@link RequestSender}.
+     * @param attempt
+     *            performs the read once, may be performed twice at the same
+     *            time.
+     * @return an attempt that hedges the read, or the given attempt if
+     *         hedging is disabled.
+     */
+    public <T> ResilientInvoker.Attempt<T> hedged(final String operation,
+            final ResilientInvoker.Attempt<T> attempt) {
+        if (!this.settings.isEnabled()) {
+            return attempt;
+        }
+        return new ResilientInvoker.Attempt<T>() {
+            @Override
+            public T perform() throws RESTRequestException {
+                RequestHedger.this.deposit(RequestHedger.TOKENS_PER_READ);
+                final long delay = RequestHedger.this.getDelay(operation);
+                if (delay < 0) {
+                    return RequestHedger.this.performTimed(operation, attempt,
+                                                           new AtomicBoolean());
+                }
+                return RequestHedger.this.perform(operation, attempt, delay);
+            }
+        };
+    }
+
+    /**
+     * @param operation
+     *            to get the delay of.
+     * @return the time in microseconds after which a read of the operation
+     *         is hedged, or -1 if the operation has too few latencies to
+     *         hedge it.
+     */
+    long getDelay(final String operation) {
+        final HedgingSettings current = this.settings;
+        final WindowedHistogram recent = this.getLatencies(operation);
+        if (recent.getCount() < current.getMinSamples()) {
+            return -1;
+        }
+        return Math.max(current.getMinDelay() * RequestHedger.MICROS_PER_MILLI,
+                        recent.getValueAtPercentile(current.getPercentile()));
+    }
+
+    /**
+     * @param operation
+     *            to get the latencies of.
+     * @return the recent latencies of the attempts of the operation, in
+     *         microseconds.
+     */
+    private WindowedHistogram getLatencies(final String operation) {
+        WindowedHistogram recent = this.latencies.get(operation);
+        if (recent == null) {
+            final WindowedHistogram created = new WindowedHistogram(
+                    MetricsRegistry.HIGHEST_TRACKABLE_MICROS, RequestHedger.LATENCY_WINDOW);
+            recent = this.latencies.putIfAbsent(operation, created);
+            if (recent == null) {
+                recent = created;
+            }
+        }
+        return recent;
+    }
+
+    /**
+     * @param operation
+     *            the read that was performed.
+     * @param micros
+     *            the time the attempt took to answer, in microseconds.
+     */
+    void recordLatency(final String operation, final long micros) {
+        this.getLatencies(operation).record(micros);
+    }
+
+    /**
+     * Performs the attempt, and records its latency unless the read was
+     * already answered. The attempt that lost is cancelled, so its latency
+     * would be cut short.
+     * 
+     * @param <T>
+     *            type of the result of the read.
+     * @param operation
+     *            the read that is performed.
+     * @param attempt
+     *            performs the read once.
+     * @param answered
+     *            true once the read has been answered.
+     * @return the result of the attempt.
+     * @throws RESTRequestException
+     *             if the attempt failed.
+     */
+    private <T> T performTimed(final String operation, final ResilientInvoker.Attempt<T> attempt,
+            final AtomicBoolean answered) throws RESTRequestException {
+        final long start = System.nanoTime();
+        try {
+            return attempt.perform();
+        } finally {
+            if (!answered.get()) {
+                this.recordLatency(operation, (System.nanoTime() - start)
+                        / RequestHedger.NANOS_PER_MICRO);
+            }
+        }
+    }
+
+    /**
+     * Adds tokens to the hedge budget, up to its maximum.
+     * 
+     * @param amount
+     *            of tokens to add.
+     */
+    private void deposit(final long amount) {
+        long current = this.tokens.get();
+        while (current < RequestHedger.MAX_TOKENS
+                && !this.tokens.compareAndSet(current, Math.min(RequestHedger.MAX_TOKENS,
+                                                                current + amount))) {
+            current = this.tokens.get();
+        }
+    }
+
+    /**
+     * @return true iff the hedge budget held a hedge, which is taken from it.
+     */
+    private boolean withdraw() {
+        long current = this.tokens.get();
+        while (current >= RequestHedger.TOKENS_PER_HEDGE) {
+            if (this.tokens.compareAndSet(current, current - RequestHedger.TOKENS_PER_HEDGE)) {
+                return true;
+            }
+            current = this.tokens.get();
+        }
+        return false;
+    }
+
+    /**
+     * @param <T>
+     *            type of the result of the read.
+     * @param operation
+     *            the read that is performed.
+     * @param attempt
+     *            performs the read once.
+     * @param delay
+     *            time in microseconds after which the read is hedged.
+     * @return the result of the attempt that answered first.
+     * @throws RESTRequestException
+     *             if the attempt that answered first failed with a client
+     *             error, or both attempts failed.
+     */
+    private <T> T perform(final String operation, final ResilientInvoker.Attempt<T> attempt,
+            final long delay) throws RESTRequestException {
+        final CompletionService<T> service = new ExecutorCompletionService<T>(this.executor);
+        final AtomicBoolean answered = new AtomicBoolean();
+        final Callable<T> call = new Callable<T>() {
+            @Override
+            public T call() throws RESTRequestException {
+                return RequestHedger.this.performTimed(operation, attempt, answered);
+            }
+        };
+        final List<Future<T>> attempts = new ArrayList<Future<T>>();
+        try {
+            attempts.add(service.submit(call));
+        } catch (final RejectedExecutionException e) {
+            RequestHedger.logger.debug("Not hedging " + operation + ", all threads are busy");
+            return this.performTimed(operation, attempt, answered);
+        }
+        try {
+            Future<T> done = service.poll(delay, TimeUnit.MICROSECONDS);
+            if (done == null && this.withdraw()) {
+                try {
+                    attempts.add(service.submit(call));
+                    this.hedges.incrementAndGet();
+                    RequestHedger.count(RequestHedger.METRIC_HEDGES, operation);
+                    RequestHedger.logger.debug("Hedging " + operation + " after " + delay
+                            + " us");
+                } catch (final RejectedExecutionException e) {
+                    this.deposit(RequestHedger.TOKENS_PER_HEDGE);
+                    RequestHedger.logger.debug("Not hedging " + operation
+                            + ", all threads are busy");
+                }
+            }
+            if (done == null) {
+                done = service.take();
+            }
+            int pending = attempts.size();
+            while (true) {
+                pending--;
+                try {
+                    final T result = done.get();
+                    if (done != attempts.get(0)) {
+                        this.wins.incrementAndGet();
+                        RequestHedger.count(RequestHedger.METRIC_HEDGE_WINS, operation);
+                    }
+                    return result;
+                } catch (final ExecutionException e) {
+                    final RESTRequestException failure = RequestHedger.unwrap(e);
+                    if (pending == 0 || !ResilientInvoker.isFailure(failure)) {
+                        throw failure;
+                    }
+                }
+                done = service.take();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RESTRequestException("Interrupted while waiting for " + operation,
+                    Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e);
+        } finally {
+            answered.set(true);
+            for (final Future<T> future : attempts) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @param e
+     *            the exception thrown by an attempt.
+     * @return the cause of the exception as a {@link RESTRequestException}.
+     */
+    private static RESTRequestException unwrap(final ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof RESTRequestException) {
+            return (RESTRequestException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new RESTRequestException(cause.getMessage(),
+                Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), cause);
+    }
+
+    /**
+     * @param operation
+     *            to get the labels of.
+     * @return the labels of the metrics of the operation.
+     */
+    private static String labels(final String operation) {
+        return MetricsRegistry.labels(RequestSender.LABEL_OPERATION, operation);
+    }
+
+    /**
+     * @param name
+     *            of the counter.
+     * @param operation
+     *            to count for.
+     */
+    private static void count(final String name, final String operation) {
+        MetricsRegistry.get().counter(name, RequestHedger.labels(operation)).increment();
+    }
+
+    /**
+     * @return the settings in use.
+     */
+    public HedgingSettings getSettings() {
+        return this.settings;
+    }
+
+    /**
+     * @return the number of reads that were sent a second time.
+     */
+    public long getHedges() {
+        return this.hedges.get();
+    }
+
+    /**
+     * @return the number of hedged reads that were answered first.
+     */
+    public long getWins() {
+        return this.wins.get();
+    }
+}
@@ -1,6 +1,24 @@
 package nl.bitbrains.nebu.rest.client;
 
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
@@ -12,11 +30,15 @@ import javax.ws.rs.core.Response;
 
 import nl.bitbrains.nebu.common.VirtualMachine;
 import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
 import nl.bitbrains.nebu.common.cache.CacheManager;
 import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
 import nl.bitbrains.nebu.common.util.xml.XMLConverter;
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
 import nl.bitbrains.nebu.rest.RESTRequestException;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
@@ -34,28 +56,105 @@ public final class RequestSender {
     public static final String INVALID_RESPONSE = "Invalid response gotten :";
     public static final String CONNECTION_REFUSED = "Connection refused :";
     private static final String INVALID_BODY = "Invalid xml specified";
+    public static final int BULK_BATCH_SIZE = 100;
+    public static final long BULK_RETRY_INTERVAL = 600000;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    public static final String METRIC = "nebu_vmm_requests";
+    public static final String LABEL_OPERATION = "operation";
+    public static final String METRIC_FALLBACKS = "nebu_vmm_fallbacks_total";
+    public static final String OP_GET_TOPOLOGY = "GET " + RequestBuilder.URI_TOPOLOGY;
+    public static final String OP_GET_VIRTUAL_MACHINES = "GET "
+            + RequestBuilder.URI_VIRTUAL_MACHINES;
+    public static final String OP_GET_VIRTUAL_MACHINE = RequestSender.OP_GET_VIRTUAL_MACHINES
+            + "/{uuid}";
+    public static final String OP_GET_VIRTUAL_MACHINES_BULK =
+            RequestSender.OP_GET_VIRTUAL_MACHINES + "/" + RequestBuilder.URI_BULK;
+    public static final String OP_GET_STATUS = "GET " + RequestBuilder.URI_STATUS + "/{uuid}";
+    public static final String OP_GET_TEMPLATE_TOPOLOGY = "GET "
+            + RequestBuilder.URI_VMTEMPLATES + "/{uuid}/" + RequestBuilder.URI_PHYSICAL_MACHINES;
+    public static final String OP_PUT_TEMPLATE = "PUT " + RequestBuilder.URI_VMTEMPLATES
+            + "/{uuid}";
+    public static final String OP_POST_CREATE_VM = "POST "
+            + RequestBuilder.URI_PHYSICAL_MACHINES + "/{uuid}/" + RequestBuilder.URI_CREATE_VM;
+    public static final String CACHE_VIRTUAL_MACHINES = "virt";
+    public static final String CACHE_STATUS = "status";
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final Set<String> HEDGED_OPERATIONS = new HashSet<String>(Arrays.asList(
+            RequestSender.OP_GET_VIRTUAL_MACHINE, RequestSender.OP_GET_STATUS,
+            RequestSender.OP_GET_TEMPLATE_TOPOLOGY));
     private static Logger logger = LogManager.getLogger();
     private static RequestSender instance;
 
+    private final ThreadPoolExecutor fetchExecutor;
+    private final LoadCoalescer coalescer;
+    private final RefreshAheadCache refreshAheadCache;
+    private final ResilientInvoker invoker;
+    private final RequestHedger hedger;
+    private final LastKnownValues lastKnown;
+    private volatile VirtualMachineCache vmCache;
+    private volatile VirtualMachineCache statusCache;
+    private volatile TopologyCacheSettings topologyCacheSettings;
+    private volatile long bulkUnsupportedSince;
+
     /**
      * Private constructor to prevent instantiation outside of this class.
      */
     private RequestSender() {
+        this.fetchExecutor = new ThreadPoolExecutor(ClientSettings.DEFAULT_POOL_SIZE,
+                ClientSettings.DEFAULT_POOL_SIZE, RequestSender.KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread = new Thread(r, "nebu-vm-fetcher");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.fetchExecutor.allowCoreThreadTimeOut(true);
+        this.coalescer = new LoadCoalescer();
+        this.refreshAheadCache = new RefreshAheadCache(this.coalescer);
+        this.invoker = new ResilientInvoker();
+        this.invoker.registerMetrics();
+        this.hedger = new RequestHedger();
+        this.lastKnown = new LastKnownValues(LastKnownValues.DEFAULT_CAPACITY);
+        this.topologyCacheSettings = new TopologyCacheSettings();
+        this.configureVMCache(new VMCacheSettings());
+        this.resetBulkSupport();
     }
 
     /**
      * @return the RequestSender singleton.
      */
-    public static RequestSender get() {
+    public static synchronized RequestSender get() {
         if (RequestSender.instance == null) {
             RequestSender.instance = new RequestSender();
         }
         return RequestSender.instance;
     }
 
+    /**
+     * Records the duration of a request to the VMM in the
+     * {@link MetricsRegistry}.
+     * 
+     * @param operation
+     *            the request that was performed, one of the OP_ constants.
+     * @param start
+     *            the {@link System#nanoTime()} at which the request started.
+     * @param success
+     *            false iff the request failed.
+     */
+    private static void recordRequest(final String operation, final long start,
+            final boolean success) {
+        MetricsRegistry.get().timer(RequestSender.METRIC,
+                                    MetricsRegistry.labels(RequestSender.LABEL_OPERATION,
+                                                           operation)).stop(start, success);
+    }
+
     /**
      * @param <T>
      *            Type that you want returned out.
+     * @param operation
+     *            the request that is performed, one of the OP_ constants.
      * @param builder
      *            invocation to perform.
      * @param classType
@@ -64,16 +163,71 @@ public final class RequestSender {
      * @throws RESTRequestException
      *             if an HTTP error code is returned.
      */
-    protected static <T> T performGETRequestAndCheckResponse(final Invocation.Builder builder,
-            final Class<T> classType) throws RESTRequestException {
+    protected static <T> T performGETRequestAndCheckResponse(final String operation,
+            final Invocation.Builder builder, final Class<T> classType)
+            throws RESTRequestException {
+        return RequestSender.get().invoker.invoke(operation, builder, true, RequestSender
+                .hedged(operation, new ResilientInvoker.Attempt<T>() {
+                    @Override
+                    public T perform() throws RESTRequestException {
+                        return RequestSender.attemptGETRequest(operation, builder, classType);
+                    }
+                }));
+    }
+
+    /**
+     * @param <T>
+     *            type of the result of the read.
+     * @param operation
+     *            the read that is performed, one of the OP_ constants.
+     * @param attempt
+     *            performs the read once.
+     * @return an attempt that hedges the read if its operation may be hedged,
+     *         otherwise the given attempt.
+     */
+    private static <T> ResilientInvoker.Attempt<T> hedged(final String operation,
+            final ResilientInvoker.Attempt<T> attempt) {
+        if (!RequestSender.HEDGED_OPERATIONS.contains(operation)) {
+            return attempt;
+        }
+        return RequestSender.get().hedger.hedged(operation, attempt);
+    }
+
+    /**
+     * Performs the GET request once.
+     * 
+     * @param <T>
+     *            Type that you want returned out.
+     * @param operation
+     *            the request that is performed, one of the OP_ constants.
+     * @param builder
+     *            invocation to perform.
+     * @param classType
+     *            type of result you expect.
+     * @return the expected result of the request.
+     * @throws RESTRequestException
+     *             if an HTTP error code is returned.
+     */
+    private static <T> T attemptGETRequest(final String operation,
+            final Invocation.Builder builder, final Class<T> classType)
+            throws RESTRequestException {
+        final long start = System.nanoTime();
+        boolean success = false;
         try {
             final Response rep = builder.get();
-
-            if (rep.getStatus() != Response.Status.OK.getStatusCode()) {
-                RequestSender.logger.error("Got StatusCode: " + rep.getStatus());
-                throw new RESTRequestException(rep.getStatusInfo().toString(), rep.getStatus());
+            try {
+                if (rep.getStatus() != Response.Status.OK.getStatusCode()) {
+                    RequestSender.logger.error("Got StatusCode: " + rep.getStatus());
+                    throw new RESTRequestException(rep.getStatusInfo().toString(),
+                            rep.getStatus());
+                }
+                final T result = rep.readEntity(classType);
+                success = true;
+                return result;
+            } finally {
+                // Releases the connection back to the pool.
+                rep.close();
             }
-            return rep.readEntity(classType);
         } catch (final WebApplicationException e) {
             throw RequestSender.logger.throwing(new RESTRequestException(
                     RequestSender.INVALID_RESPONSE + e.getMessage(),
@@ -82,6 +236,77 @@ public final class RequestSender {
             throw RequestSender.logger.throwing(new RESTRequestException(
                     RequestSender.CONNECTION_REFUSED + e.getMessage(),
                     Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e));
+        } finally {
+            RequestSender.recordRequest(operation, start, success);
+        }
+    }
+
+    /**
+     * Performs the GET request and parses the topology while the response is
+     * streamed in, instead of reading the whole response first.
+     * 
+     * @param operation
+     *            the request that is performed, one of the OP_ constants.
+     * @param builder
+     *            invocation to perform.
+     * @return the topology in the response.
+     * @throws RESTRequestException
+     *             if an HTTP error code is returned, or the response does not
+     *             contain a valid topology.
+     */
+    protected static PhysicalTopology performGETTopologyRequest(final String operation,
+            final Invocation.Builder builder) throws RESTRequestException {
+        return RequestSender.get().invoker.invoke(operation, builder, true, RequestSender
+                .hedged(operation, new ResilientInvoker.Attempt<PhysicalTopology>() {
+                    @Override
+                    public PhysicalTopology perform() throws RESTRequestException {
+                        return RequestSender.attemptGETTopologyRequest(operation, builder);
+                    }
+                }));
+    }
+
+    /**
+     * Performs the GET request of a topology once.
+     * 
+     * @param operation
+     *            the request that is performed, one of the OP_ constants.
+     * @param builder
+     *            invocation to perform.
+     * @return the topology in the response.
+     * @throws RESTRequestException
+     *             if an HTTP error code is returned, or the response does not
+     *             contain a valid topology.
+     */
+    private static PhysicalTopology attemptGETTopologyRequest(final String operation,
+            final Invocation.Builder builder) throws RESTRequestException {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final Response rep = builder.get();
+            try {
+                if (rep.getStatus() != Response.Status.OK.getStatusCode()) {
+                    RequestSender.logger.error("Got StatusCode: " + rep.getStatus());
+                    throw new RESTRequestException(rep.getStatusInfo().toString(),
+                            rep.getStatus());
+                }
+                final PhysicalTopology topology = StreamingTopologyParser.parse(rep
+                        .readEntity(InputStream.class));
+                success = true;
+                return topology;
+            } finally {
+                // Closes the entity stream and releases the connection.
+                rep.close();
+            }
+        } catch (final ParseException | WebApplicationException e) {
+            throw RequestSender.logger.throwing(new RESTRequestException(
+                    RequestSender.INVALID_RESPONSE + e.getMessage(),
+                    Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e));
+        } catch (final ProcessingException e) {
+            throw RequestSender.logger.throwing(new RESTRequestException(
+                    RequestSender.CONNECTION_REFUSED + e.getMessage(),
+                    Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e));
+        } finally {
+            RequestSender.recordRequest(operation, start, success);
         }
     }
 
@@ -91,8 +316,38 @@ public final class RequestSender {
      *             if an HTTP error code is returned.
      */
     public PhysicalTopology getTopology() throws CacheException {
-        return (PhysicalTopology) CacheManager.get(RequestBuilder.URI_TOPOLOGY,
-                                                   new TopologyCacheLoader());
+        final TopologyCacheSettings settings = this.topologyCacheSettings;
+        if (settings.isEnabled()) {
+            return (PhysicalTopology) this.getRefreshedAhead(RequestBuilder.URI_TOPOLOGY,
+                                                             new TopologyCacheLoader(),
+                                                             settings.getTopologyPolicy());
+        }
+        return (PhysicalTopology) this.getCoalesced(RequestBuilder.URI_TOPOLOGY,
+                                                    new TopologyCacheLoader());
+    }
+
+    /**
+     * Sets the settings of the topology caches. When the refresh-ahead mode
+     * is enabled, {@link #getTopology()} and
+     * {@link #getVMTemplateTopologyOptions(String)} return the last known
+     * topology while it is refreshed in the background. Topologies cached
+     * under the previous settings are dropped.
+     * 
+     * @param settings
+     *            to use.
+     */
+    public void configureTopologyCache(final TopologyCacheSettings settings) {
+        ErrorChecker.throwIfNullArgument(settings, "settings");
+        this.topologyCacheSettings = settings;
+        this.refreshAheadCache.clear();
+    }
+
+    /**
+     * Stops the background refreshes of the topology caches, and drops the
+     * topologies they cached.
+     */
+    public void shutdown() {
+        this.refreshAheadCache.shutdown();
     }
 
     /**
@@ -102,8 +357,8 @@ public final class RequestSender {
      */
     @SuppressWarnings("unchecked")
     public List<String> getVirtualMachines() throws CacheException {
-        return (List<String>) CacheManager.get(RequestBuilder.URI_VIRTUAL_MACHINES,
-                                               new VirtListCacheLoader());
+        return (List<String>) this.getCoalesced(RequestBuilder.URI_VIRTUAL_MACHINES,
+                                                new VirtListCacheLoader());
     }
 
     /**
@@ -114,8 +369,151 @@ public final class RequestSender {
      *             if an HTTP error code is returned.
      */
     public VirtualMachine getVirtualMachine(final String uuid) throws CacheException {
-        return (VirtualMachine) CacheManager.get(RequestBuilder.URI_VIRTUAL_MACHINES + "/" + uuid,
-                                                 new VirtItemCacheLoader(uuid));
+        final String key = RequestSender.getVirtualMachineKey(uuid);
+        try {
+            return this.vmCache.get(key, this.lastKnown
+                    .remembering(key, new VirtItemCacheLoader(uuid)));
+        } catch (final CacheException e) {
+            return (VirtualMachine) this.fallBack(key, e);
+        }
+    }
+
+    /**
+     * Forgets everything that is cached of the VM, because it no longer
+     * exists.
+     * 
+     * @param uuid
+     *            identifier of the VM.
+     */
+    public void invalidateVirtualMachine(final String uuid) {
+        final String key = RequestSender.getVirtualMachineKey(uuid);
+        final String statusKey = RequestSender.getStatusKey(uuid);
+        this.vmCache.invalidate(key);
+        this.statusCache.invalidate(statusKey);
+        this.lastKnown.put(key, null);
+        this.lastKnown.put(statusKey, null);
+    }
+
+    /**
+     * @param uuid
+     *            identifier of the VM.
+     * @return the key of the VM in the caches.
+     */
+    private static String getVirtualMachineKey(final String uuid) {
+        return RequestBuilder.URI_VIRTUAL_MACHINES + "/" + uuid;
+    }
+
+    /**
+     * @param uuid
+     *            identifier of the VM.
+     * @return the key of the status of the VM in the caches.
+     */
+    private static String getStatusKey(final String uuid) {
+        return RequestSender.getVirtualMachineKey(uuid) + "/" + RequestBuilder.URI_STATUS;
+    }
+
+    /**
+     * Gets the information of many VMs at once. The VMs are fetched in batches
+     * from the bulk resource of the VMM. If the VMM does not have that
+     * resource, or leaves VMs out of its response, the remaining VMs are
+     * fetched with concurrent single requests instead. VMs that can not be
+     * fetched at all are left out of the result.
+     * 
+     * @param uuids
+     *            identifiers of the VMs you want information on.
+     * @return the Virtualmachine instances obtained from the server, by uuid.
+     */
+    public Map<String, VirtualMachine> getVirtualMachineDetails(final Collection<String> uuids) {
+        RequestSender.logger.entry();
+        final Map<String, VirtualMachine> result = new HashMap<String, VirtualMachine>();
+        final List<String> remaining = new ArrayList<String>(new LinkedHashSet<String>(uuids));
+        if (!remaining.isEmpty() && this.isBulkSupported()) {
+            for (int from = 0; from < remaining.size(); from += RequestSender.BULK_BATCH_SIZE) {
+                final int to = Math.min(remaining.size(), from + RequestSender.BULK_BATCH_SIZE);
+                try {
+                    result.putAll(new VirtBulkCacheLoader(remaining.subList(from, to)).refresh());
+                } catch (final RESTRequestException e) {
+                    if (RequestSender.isBulkUnsupported(e)) {
+                        RequestSender.logger.info("VMM has no bulk resource, using single GETs");
+                        this.bulkUnsupportedSince = System.currentTimeMillis();
+                        break;
+                    }
+                    RequestSender.logger.catching(Level.WARN, e);
+                }
+            }
+        }
+
+        final List<String> missing = new ArrayList<String>();
+        for (final String uuid : remaining) {
+            if (!result.containsKey(uuid)) {
+                missing.add(uuid);
+            }
+        }
+        result.putAll(this.getVirtualMachinesConcurrently(missing));
+        return RequestSender.logger.exit(result);
+    }
+
+    /**
+     * @param uuids
+     *            identifiers of the VMs to get with single requests.
+     * @return the VMs that could be fetched, by uuid.
+     */
+    private Map<String, VirtualMachine> getVirtualMachinesConcurrently(
+            final List<String> uuids) {
+        final Map<String, VirtualMachine> result = new HashMap<String, VirtualMachine>();
+        final Map<String, Future<VirtualMachine>> futures =
+                new LinkedHashMap<String, Future<VirtualMachine>>();
+        for (final String uuid : uuids) {
+            futures.put(uuid, this.fetchExecutor.submit(new Callable<VirtualMachine>() {
+                @Override
+                public VirtualMachine call() throws CacheException {
+                    return RequestSender.this.getVirtualMachine(uuid);
+                }
+            }));
+        }
+        for (final Map.Entry<String, Future<VirtualMachine>> entry : futures.entrySet()) {
+            try {
+                final VirtualMachine vm = entry.getValue().get();
+                if (vm != null) {
+                    result.put(entry.getKey(), vm);
+                }
+            } catch (final ExecutionException e) {
+                RequestSender.logger.catching(Level.ERROR, e.getCause());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true iff the bulk resource of the VMM should be tried.
+     */
+    private boolean isBulkSupported() {
+        return System.currentTimeMillis() - this.bulkUnsupportedSince
+                >= RequestSender.BULK_RETRY_INTERVAL;
+    }
+
+    /**
+     * Makes the next call to {@link #getVirtualMachineDetails(Collection)} try
+     * the bulk resource of the VMM again.
+     */
+    void resetBulkSupport() {
+        this.bulkUnsupportedSince = -RequestSender.BULK_RETRY_INTERVAL;
+    }
+
+    /**
+     * @param e
+     *            the exception to check.
+     * @return true iff the exception indicates that the VMM has no bulk
+     *         resource.
+     */
+    private static boolean isBulkUnsupported(final RESTRequestException e) {
+        final int code = e.getHttpCode();
+        return code == Response.Status.NOT_FOUND.getStatusCode()
+                || code == Response.Status.METHOD_NOT_ALLOWED.getStatusCode()
+                || code == Response.Status.NOT_IMPLEMENTED.getStatusCode();
     }
 
     /**
@@ -126,9 +524,13 @@ public final class RequestSender {
      *             if an HTTP error code is returned.
      */
     public VirtualMachine getVirtualMachineStatus(final String uuid) throws CacheException {
-        return (VirtualMachine) CacheManager.get(RequestBuilder.URI_VIRTUAL_MACHINES + "/" + uuid,
-                                                 new VirtStatusCacheLoader(uuid),
-                                                 VirtStatusCacheLoader.EXPIRATION_TIME);
+        final String statusKey = RequestSender.getStatusKey(uuid);
+        try {
+            return this.statusCache.get(statusKey, this.lastKnown
+                    .remembering(statusKey, new VirtStatusCacheLoader(uuid)));
+        } catch (final CacheException e) {
+            return (VirtualMachine) this.fallBack(statusKey, e);
+        }
     }
 
     /**
@@ -139,8 +541,165 @@ public final class RequestSender {
      *             if an HTTP error code is returned.
      */
     public PhysicalTopology getVMTemplateTopologyOptions(final String uuid) throws CacheException {
-        return (PhysicalTopology) CacheManager.get(RequestBuilder.URI_VMTEMPLATES + "/" + uuid
-                + "/phys", new VMTemplateTopologyCacheLoader(uuid));
+        final String key = RequestBuilder.URI_VMTEMPLATES + "/" + uuid + "/phys";
+        final TopologyCacheSettings settings = this.topologyCacheSettings;
+        if (settings.isEnabled()) {
+            return (PhysicalTopology) this
+                    .getRefreshedAhead(key, new VMTemplateTopologyCacheLoader(uuid), settings
+                            .getTemplatePolicy(uuid));
+        }
+        return (PhysicalTopology) this.getCoalesced(key, new VMTemplateTopologyCacheLoader(uuid));
+    }
+
+    /**
+     * Looks up the key in the cache. If the cache has to load it, the load is
+     * coalesced with other loads of the same key that are still running.
+     * 
+     * @param key
+     *            to look up.
+     * @param cacheLoader
+     *            to load the key with.
+     * @return the cached or loaded value.
+     * @throws CacheException
+     *             if loading fails.
+     */
+    private Object getCoalesced(final String key, final CacheLoader<Object> cacheLoader)
+            throws CacheException {
+        final CacheLoader<Object> loader = this.coalescer.newLoader(key, this.lastKnown
+                .remembering(key, cacheLoader));
+        try {
+            return CacheManager.get(key, loader);
+        } catch (final CacheException e) {
+            return this.fallBack(key, e);
+        } finally {
+            this.coalescer.lookupFinished(loader);
+        }
+    }
+
+    /**
+     * Looks up the key in the refresh-ahead cache.
+     * 
+     * @param key
+     *            to look up.
+     * @param cacheLoader
+     *            to load the key with.
+     * @param policy
+     *            to refresh the key by.
+     * @return the cached or loaded value.
+     * @throws CacheException
+     *             if loading fails.
+     */
+    private Object getRefreshedAhead(final String key, final CacheLoader<Object> cacheLoader,
+            final RefreshPolicy policy) throws CacheException {
+        try {
+            return this.refreshAheadCache.get(key, this.lastKnown.remembering(key, cacheLoader),
+                                              policy);
+        } catch (final CacheException e) {
+            return this.fallBack(key, e);
+        }
+    }
+
+    /**
+     * Serves the last known value of a key that could not be loaded, if the
+     * circuit breaker of the VMM is not closed.
+     * 
+     * @param key
+     *            that could not be loaded.
+     * @param e
+     *            the reason it could not be loaded.
+     * @return the last known value of the key.
+     * @throws CacheException
+     *             the given exception, if the breaker is closed or the key has
+     *             no last known value.
+     */
+    private Object fallBack(final String key, final CacheException e) throws CacheException {
+        final Object value = this.lastKnown.get(key);
+        if (value == null
+                || this.invoker.getBreaker().getState() == CircuitBreaker.State.CLOSED) {
+            throw e;
+        }
+        RequestSender.logger.warn("VMM is unhealthy, serving the last known value of " + key);
+        MetricsRegistry.get().counter(RequestSender.METRIC_FALLBACKS, "").increment();
+        return value;
+    }
+
+    /**
+     * Sets the settings of the timeouts, retries and circuit breaker of the
+     * requests to the VMM. While the breaker is open, lookups that can not be
+     * loaded are served the last value that was loaded for them.
+     * 
+     * @param settings
+     *            to use.
+     */
+    public void configureResilience(final ResilienceSettings settings) {
+        this.invoker.configure(settings);
+    }
+
+    /**
+     * Sets the size and time to live of the cache of the details of VMs, and
+     * the size of the cache of their status. Cached VMs are dropped.
+     * 
+     * @param settings
+     *            to use.
+     */
+    public void configureVMCache(final VMCacheSettings settings) {
+        ErrorChecker.throwIfNullArgument(settings, "settings");
+        this.vmCache = new VirtualMachineCache(this.coalescer, settings);
+        this.vmCache.registerMetrics(RequestSender.CACHE_VIRTUAL_MACHINES);
+        this.statusCache = new VirtualMachineCache(this.coalescer, new VMCacheSettings(settings
+                .getMaxSize(), VirtStatusCacheLoader.EXPIRATION_TIME
+                * RequestSender.MILLIS_PER_SECOND));
+        this.statusCache.registerMetrics(RequestSender.CACHE_STATUS);
+    }
+
+    /**
+     * Drops all cached VMs and statuses.
+     */
+    void clearVirtualMachineCaches() {
+        this.vmCache.clear();
+        this.statusCache.clear();
+    }
+
+    /**
+     * @return the cache of the details of VMs.
+     */
+    public VirtualMachineCache getVirtualMachineCache() {
+        return this.vmCache;
+    }
+
+    /**
+     * Sets the settings of the hedging of the reads of single VMs, their
+     * status and the topologies of VMTemplates.
+     * 
+     * @param settings
+     *            to use.
+     */
+    public void configureHedging(final HedgingSettings settings) {
+        this.hedger.configure(settings);
+    }
+
+    /**
+     * @return the hedger of the reads from the VMM, which keeps the number of
+     *         hedged reads.
+     */
+    public RequestHedger getRequestHedger() {
+        return this.hedger;
+    }
+
+    /**
+     * @return the invoker of the requests to the VMM, which keeps the state
+     *         of the circuit breaker and the retry counts.
+     */
+    public ResilientInvoker getResilientInvoker() {
+        return this.invoker;
+    }
+
+    /**
+     * @return the coalescer of the cache loads, which keeps the hit, miss and
+     *         coalesced counts.
+     */
+    public LoadCoalescer getLoadCoalescer() {
+        return this.coalescer;
     }
 
     /**
@@ -153,7 +712,14 @@ public final class RequestSender {
      */
     public void putTemplate(final String uuid, final Element xml) throws RESTRequestException {
         final Invocation.Builder builder = RequestBuilder.get().newPutTemplateClient(uuid);
-        RequestSender.performPUTRequestAndCheckResponseCreated(builder, xml);
+        // Putting the same template twice has the same effect, so it is retried.
+        this.invoker.invoke(RequestSender.OP_PUT_TEMPLATE, builder, true,
+                            new ResilientInvoker.Attempt<Response>() {
+            @Override
+            public Response perform() throws RESTRequestException {
+                return RequestSender.performPUTRequestAndCheckResponseCreated(builder, xml);
+            }
+        });
     }
 
     /**
@@ -172,7 +738,7 @@ public final class RequestSender {
         final Invocation.Builder builder = RequestBuilder.get().newPostCreateVMClient(uuid,
                                                                                       hostName,
                                                                                       template);
-        return RequestSender.performPOSTRequestAndCheckResponseCreated(builder);
+        return this.postCreateVM(builder);
     }
 
     /**
@@ -194,7 +760,26 @@ public final class RequestSender {
                                                                                       hostName,
                                                                                       template,
                                                                                       store);
-        return RequestSender.performPOSTRequestAndCheckResponseCreated(builder);
+        return this.postCreateVM(builder);
+    }
+
+    /**
+     * Creating a VM is not idempotent, so it is never retried.
+     * 
+     * @param builder
+     *            invocation to perform.
+     * @return the response
+     * @throws RESTRequestException
+     *             if an HTTP error code is returned.
+     */
+    private Response postCreateVM(final Invocation.Builder builder) throws RESTRequestException {
+        return this.invoker.invoke(RequestSender.OP_POST_CREATE_VM, builder, false,
+                                   new ResilientInvoker.Attempt<Response>() {
+            @Override
+            public Response perform() throws RESTRequestException {
+                return RequestSender.performPOSTRequestAndCheckResponseCreated(builder);
+            }
+        });
     }
 
     /**
@@ -207,14 +792,20 @@ public final class RequestSender {
      */
     private static Response performPOSTRequestAndCheckResponseCreated(final Builder builder)
             throws RESTRequestException {
+        final long start = System.nanoTime();
+        boolean success = false;
         try {
             final Response rep = builder.post(null);
+            // The body is not used, only the headers, so the connection can be
+            // released back to the pool right away.
+            rep.close();
 
             if (rep.getStatus() != Response.Status.CREATED.getStatusCode()) {
                 RequestSender.logger.error(rep.getStatus());
                 throw RequestSender.logger.throwing(new RESTRequestException(rep.getStatusInfo()
                         .toString(), rep.getStatus()));
             }
+            success = true;
             return rep;
         } catch (final WebApplicationException e) {
             throw RequestSender.logger.throwing(new RESTRequestException(
@@ -224,6 +815,8 @@ public final class RequestSender {
             throw RequestSender.logger.throwing(new RESTRequestException(
                     RequestSender.CONNECTION_REFUSED + e.getMessage(),
                     Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e));
+        } finally {
+            RequestSender.recordRequest(RequestSender.OP_POST_CREATE_VM, start, success);
         }
     }
 
@@ -238,16 +831,20 @@ public final class RequestSender {
      */
     private static Response performPUTRequestAndCheckResponseCreated(final Builder builder,
             final Element xml) throws RESTRequestException {
+        final long start = System.nanoTime();
+        boolean success = false;
         try {
             final Entity<Document> entity = Entity.entity(XMLConverter
                     .convertJDOMElementW3CDocument(xml), MediaType.APPLICATION_XML_TYPE);
             final Response rep = builder.put(entity);
+            rep.close();
 
             if (rep.getStatus() != Response.Status.CREATED.getStatusCode()) {
                 RequestSender.logger.error(rep.getStatus());
                 throw RequestSender.logger.throwing(new RESTRequestException(rep.getStatusInfo()
                         .toString(), rep.getStatus()));
             }
+            success = true;
             return RequestSender.logger.exit(rep);
         } catch (final WebApplicationException e) {
             throw RequestSender.logger.throwing(new RESTRequestException(
@@ -260,6 +857,8 @@ public final class RequestSender {
         } catch (final JDOMException e) {
             throw RequestSender.logger.throwing(new RESTRequestException(RequestSender.INVALID_BODY
                     + e.getMessage(), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e));
+        } finally {
+            RequestSender.recordRequest(RequestSender.OP_PUT_TEMPLATE, start, success);
         }
     }
 }
@@ -0,0 +1,195 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.util.SettingsParser;
+
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable settings of how requests to the VMM deal with failures:
+ *         the {@link RetryPolicy} of idempotent requests, the
+ *         {@link CircuitBreaker} and the {@link OperationTimeouts} of single
+ *         operations. By default nothing is retried and the breaker never
+ *         opens. All times are in milliseconds.
+ */
+public final class ResilienceSettings {
+
+    public static final String TAG_RESILIENCE = "resilience";
+    public static final String TAG_RETRIES = "retries";
+    public static final String TAG_BACKOFF = "backoff";
+    public static final String TAG_MAX_BACKOFF = "maxbackoff";
+    public static final String TAG_FAILURE_THRESHOLD = "failurethreshold";
+    public static final String TAG_OPEN_TIME = "opentime";
+    public static final String TAG_OPERATION = "operation";
+    public static final String ATTRIBUTE_NAME = "name";
+
+    public static final int DEFAULT_RETRIES = 0;
+    public static final long DEFAULT_BACKOFF = 100;
+    public static final long DEFAULT_MAX_BACKOFF = 2000;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 0;
+    public static final long DEFAULT_OPEN_TIME = 10000;
+
+    private final RetryPolicy retryPolicy;
+    private final int failureThreshold;
+    private final long openTime;
+    private final Map<String, OperationTimeouts> timeouts;
+
+    /**
+     * Creates settings with all values set to their defaults.
+     */
+    public ResilienceSettings() {
+        this(new RetryPolicy(ResilienceSettings.DEFAULT_RETRIES,
+                ResilienceSettings.DEFAULT_BACKOFF, ResilienceSettings.DEFAULT_MAX_BACKOFF),
+                ResilienceSettings.DEFAULT_FAILURE_THRESHOLD, ResilienceSettings.DEFAULT_OPEN_TIME,
+                new HashMap<String, OperationTimeouts>());
+    }
+
+    /**
+     * @param retryPolicy
+     *            policy for retrying idempotent requests.
+     * @param failureThreshold
+     *            number of consecutive failures that opens the circuit
+     *            breaker, 0 to never open it.
+     * @param openTime
+     *            time the circuit breaker stays open.
+     * @param timeouts
+     *            timeouts of specific operations, by operation.
+     */
+    public ResilienceSettings(final RetryPolicy retryPolicy, final int failureThreshold,
+            final long openTime, final Map<String, OperationTimeouts> timeouts) {
+        ErrorChecker.throwIfNullArgument(retryPolicy, "retryPolicy");
+        ErrorChecker.throwIfNullArgument(timeouts, "timeouts");
+        if (failureThreshold < 0) {
+            throw new IllegalArgumentException("Failure threshold can not be negative");
+        }
+        if (openTime <= 0) {
+            throw new IllegalArgumentException("Open time must be positive");
+        }
+        this.retryPolicy = retryPolicy;
+        this.failureThreshold = failureThreshold;
+        this.openTime = openTime;
+        this.timeouts = new HashMap<String, OperationTimeouts>(timeouts);
+    }
+
+    /**
+     * Reads the settings from xml such as:
+     * 
+     * <pre>
+     * &lt;resilience&gt;
+     *     &lt;retries&gt;2&lt;/retries&gt;
+     *     &lt;backoff&gt;100&lt;/backoff&gt;
+     *     &lt;maxbackoff&gt;2000&lt;/maxbackoff&gt;
+     *     &lt;failurethreshold&gt;5&lt;/failurethreshold&gt;
+     *     &lt;opentime&gt;10000&lt;/opentime&gt;
+     *     &lt;operation name="GET virt/{uuid}"&gt;
+     *         &lt;connecttimeout&gt;1000&lt;/connecttimeout&gt;
+     *         &lt;readtimeout&gt;2000&lt;/readtimeout&gt;
+     *     &lt;/operation&gt;
+     * &lt;/resilience&gt;
+     * </pre>
+     * 
+     * The operations are named as the OP_ constants of {@link RequestSender}.
+     * 
+     * @param xml
+     *            the resilience element to read the settings from, may be
+     *            null.
+     * @return the settings, with defaults for values that are not present.
+     * @throws ParseException
+     *             if the settings are invalidly specified.
+     */
+    public static ResilienceSettings fromXML(final Element xml) throws ParseException {
+        if (xml == null) {
+            return new ResilienceSettings();
+        }
+        final Map<String, OperationTimeouts> timeouts = new HashMap<String, OperationTimeouts>();
+        for (final Element operation : xml.getChildren(ResilienceSettings.TAG_OPERATION)) {
+            final String name = operation.getAttributeValue(ResilienceSettings.ATTRIBUTE_NAME);
+            if (name == null) {
+                throw new ParseException("Operation without " + ResilienceSettings.ATTRIBUTE_NAME,
+                        0);
+            }
+            timeouts.put(name, ResilienceSettings.parseTimeouts(operation));
+        }
+        final int retries = SettingsParser.parseInt(xml,
+                                                    ResilienceSettings.TAG_RETRIES,
+                                                    ResilienceSettings.DEFAULT_RETRIES);
+        final long backoff = SettingsParser.parseLong(xml,
+                                                      ResilienceSettings.TAG_BACKOFF,
+                                                      ResilienceSettings.DEFAULT_BACKOFF);
+        final long maxBackoff = SettingsParser.parseLong(xml,
+                                                         ResilienceSettings.TAG_MAX_BACKOFF,
+                                                         ResilienceSettings.DEFAULT_MAX_BACKOFF);
+        final int failureThreshold = SettingsParser
+                .parseInt(xml,
+                          ResilienceSettings.TAG_FAILURE_THRESHOLD,
+                          ResilienceSettings.DEFAULT_FAILURE_THRESHOLD);
+        final long openTime = SettingsParser.parseLong(xml,
+                                                       ResilienceSettings.TAG_OPEN_TIME,
+                                                       ResilienceSettings.DEFAULT_OPEN_TIME);
+        try {
+            return new ResilienceSettings(new RetryPolicy(retries, backoff, maxBackoff),
+                    failureThreshold, openTime, timeouts);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @param xml
+     *            the operation element to read the timeouts from.
+     * @return the timeouts, {@link OperationTimeouts#DEFAULT} for the ones
+     *         that are not present.
+     * @throws ParseException
+     *             if the timeouts are invalidly specified.
+     */
+    private static OperationTimeouts parseTimeouts(final Element xml) throws ParseException {
+        final int connectTimeout = SettingsParser.parseInt(xml,
+                                                           ClientSettings.TAG_CONNECT_TIMEOUT,
+                                                           OperationTimeouts.DEFAULT);
+        final int readTimeout = SettingsParser.parseInt(xml,
+                                                        ClientSettings.TAG_READ_TIMEOUT,
+                                                        OperationTimeouts.DEFAULT);
+        try {
+            return new OperationTimeouts(connectTimeout, readTimeout);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @return the policy for retrying idempotent requests.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * @return the number of consecutive failures that opens the circuit
+     *         breaker, 0 if it never opens.
+     */
+    public int getFailureThreshold() {
+        return this.failureThreshold;
+    }
+
+    /**
+     * @return the time the circuit breaker stays open.
+     */
+    public long getOpenTime() {
+        return this.openTime;
+    }
+
+    /**
+     * @param operation
+     *            one of the OP_ constants of {@link RequestSender}.
+     * @return the timeouts of the operation, null if it has none of its own.
+     */
+    public OperationTimeouts getTimeouts(final String operation) {
+        return this.timeouts.get(operation);
+    }
+}
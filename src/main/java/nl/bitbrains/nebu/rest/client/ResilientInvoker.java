@@ -0,0 +1,237 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.metrics.Gauge;
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * Performs the requests to the VMM by its {@link ResilienceSettings}: sets
+ * the timeouts of the operation, retries idempotent requests that fail with a
+ * server error or a connection problem, and fails fast while its
+ * {@link CircuitBreaker} is open. Client errors, such as a VM that does not
+ * exist, are neither retried nor counted as failures of the VMM.
+ * 
+ * The retries and rejected requests are counted by operation, and the state
+ * of the breaker is a gauge, in the {@link MetricsRegistry}.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class ResilientInvoker {
+
+    public static final String METRIC_RETRIES = "nebu_vmm_retries_total";
+    public static final String METRIC_REJECTED = "nebu_vmm_rejected_total";
+    public static final String METRIC_BREAKER_STATE = "nebu_vmm_breaker_state";
+    public static final String BREAKER_OPEN = "Circuit breaker of the VMM is open";
+    private static final int SERVER_ERROR = 500;
+    private static Logger logger = LogManager.getLogger();
+
+    private final Random random;
+    private final AtomicLong retries;
+    private final AtomicLong rejected;
+    private volatile ResilienceSettings settings;
+    private volatile CircuitBreaker breaker;
+
+    /**
+     * A single attempt at a request.
+     * 
+     * @param <T>
+     *            type of the result of the request.
+     */
+    public interface Attempt<T> {
+        /**
+         * @return the result of the request.
+         * @throws RESTRequestException
+         *             if the request fails.
+         */
+        T perform() throws RESTRequestException;
+    }
+
+    /**
+     * Creates an invoker with the default settings.
+     */
+    public ResilientInvoker() {
+        this.random = new Random();
+        this.retries = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.configure(new ResilienceSettings());
+    }
+
+    /**
+     * Sets the settings, and replaces the breaker by a closed one.
+     * 
+     * @param resilienceSettings
+     *            to use.
+     */
+    public void configure(final ResilienceSettings resilienceSettings) {
+        ErrorChecker.throwIfNullArgument(resilienceSettings, "resilienceSettings");
+        this.settings = resilienceSettings;
+        this.breaker = new CircuitBreaker(resilienceSettings.getFailureThreshold(),
+                resilienceSettings.getOpenTime());
+    }
+
+    /**
+     * Reports the state of the breaker of this invoker in the
+     * {@link MetricsRegistry}, as 0 when it is closed, 1 when it is open and
+     * 2 when it is half-open.
+     */
+    public void registerMetrics() {
+        MetricsRegistry.get().gauge(ResilientInvoker.METRIC_BREAKER_STATE, "", new Gauge() {
+            @Override
+            public double getValue() {
+                return ResilientInvoker.this.getBreaker().getState().ordinal();
+            }
+        });
+    }
+
+    /**
+     * @param <T>
+     *            type of the result of the request.
+     * @param operation
+     *            the request that is performed, one of the OP_ constants of
+     *            {@link RequestSender}.
+     * @param builder
+     *            invocation that the attempts perform, its timeouts are set.
+     * @param idempotent
+     *            true iff the request may be retried.
+     * @param attempt
+     *            performs the request once.
+     * @return the result of the first attempt that succeeds.
+     * @throws RESTRequestException
+     *             if the breaker is open, or the last attempt fails.
+     */
+    public <T> T invoke(final String operation, final Invocation.Builder builder,
+            final boolean idempotent, final Attempt<T> attempt) throws RESTRequestException {
+        final CircuitBreaker currentBreaker = this.breaker;
+        final RetryPolicy retryPolicy = this.settings.getRetryPolicy();
+        ResilientInvoker.applyTimeouts(builder, this.settings.getTimeouts(operation));
+        int retry = 0;
+        while (true) {
+            if (!currentBreaker.allowRequest()) {
+                this.rejected.incrementAndGet();
+                ResilientInvoker.count(ResilientInvoker.METRIC_REJECTED, operation);
+                throw new RESTRequestException(ResilientInvoker.BREAKER_OPEN,
+                        Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+            }
+            try {
+                final T result = attempt.perform();
+                currentBreaker.recordSuccess();
+                return result;
+            } catch (final RESTRequestException e) {
+                if (!ResilientInvoker.isFailure(e)) {
+                    // The VMM answered, so it is healthy.
+                    currentBreaker.recordSuccess();
+                    throw e;
+                }
+                currentBreaker.recordFailure();
+                if (!idempotent || retry >= retryPolicy.getMaxRetries()) {
+                    throw e;
+                }
+                this.sleep(retryPolicy.getBackoff(retry, this.random), e);
+            }
+            retry++;
+            this.retries.incrementAndGet();
+            ResilientInvoker.count(ResilientInvoker.METRIC_RETRIES, operation);
+            ResilientInvoker.logger.info("Retrying " + operation + ", retry " + retry);
+        }
+    }
+
+    /**
+     * @param backoff
+     *            time to sleep in milliseconds.
+     * @param cause
+     *            the failure that is retried, thrown if the sleep is
+     *            interrupted.
+     * @throws RESTRequestException
+     *             if the sleep is interrupted.
+     */
+    private void sleep(final long backoff, final RESTRequestException cause)
+            throws RESTRequestException {
+        try {
+            Thread.sleep(backoff);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * @param builder
+     *            to set the timeouts of.
+     * @param timeouts
+     *            to set, may be null.
+     */
+    private static void applyTimeouts(final Invocation.Builder builder,
+            final OperationTimeouts timeouts) {
+        if (timeouts == null) {
+            return;
+        }
+        if (timeouts.getConnectTimeout() != OperationTimeouts.DEFAULT) {
+            builder.property(ClientProperties.CONNECT_TIMEOUT, timeouts.getConnectTimeout());
+        }
+        if (timeouts.getReadTimeout() != OperationTimeouts.DEFAULT) {
+            builder.property(ClientProperties.READ_TIMEOUT, timeouts.getReadTimeout());
+        }
+    }
+
+    /**
+     * @param e
+     *            the exception to check.
+     * @return true iff the exception indicates that the VMM is unhealthy: a
+     *         server error, or a connection problem, which is reported as an
+     *         internal server error.
+     */
+    static boolean isFailure(final RESTRequestException e) {
+        return e.getHttpCode() >= ResilientInvoker.SERVER_ERROR;
+    }
+
+    /**
+     * @param name
+     *            of the counter.
+     * @param operation
+     *            to count for.
+     */
+    private static void count(final String name, final String operation) {
+        MetricsRegistry.get().counter(name, MetricsRegistry.labels(RequestSender.LABEL_OPERATION,
+                                                                   operation)).increment();
+    }
+
+    /**
+     * @return the breaker of the VMM.
+     */
+    public CircuitBreaker getBreaker() {
+        return this.breaker;
+    }
+
+    /**
+     * @return the settings in use.
+     */
+    public ResilienceSettings getSettings() {
+        return this.settings;
+    }
+
+    /**
+     * @return the number of retries of all operations.
+     */
+    public long getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * @return the number of requests that were rejected by the breaker.
+     */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+}
@@ -0,0 +1,77 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.Random;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable policy for retrying failed idempotent requests. The wait
+ *         before a retry grows exponentially from the base backoff up to the
+ *         max backoff, and is jittered over the whole range below that bound
+ *         so that callers that failed together do not retry together. All
+ *         times are in milliseconds.
+ */
+public final class RetryPolicy {
+
+    private static final int MAX_SHIFT = 30;
+
+    private final int maxRetries;
+    private final long baseBackoff;
+    private final long maxBackoff;
+
+    /**
+     * @param maxRetries
+     *            number of times a request is retried, 0 to never retry.
+     * @param baseBackoff
+     *            bound of the wait before the first retry.
+     * @param maxBackoff
+     *            bound of the wait before any retry.
+     */
+    public RetryPolicy(final int maxRetries, final long baseBackoff, final long maxBackoff) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Retries can not be negative");
+        }
+        if (baseBackoff < 0 || maxBackoff < baseBackoff) {
+            throw new IllegalArgumentException(
+                    "Backoff can not be negative, or larger than the max backoff");
+        }
+        this.maxRetries = maxRetries;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * @param retry
+     *            the number of the retry, starting at 0.
+     * @param random
+     *            to jitter with.
+     * @return the time to wait before the retry, between 0 and the bound of
+     *         the retry.
+     */
+    public long getBackoff(final int retry, final Random random) {
+        final long bound = Math.min(this.maxBackoff,
+                                    this.baseBackoff << Math.min(retry, RetryPolicy.MAX_SHIFT));
+        return (long) (random.nextDouble() * (bound + 1));
+    }
+
+    /**
+     * @return the number of times a request is retried.
+     */
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    /**
+     * @return the bound of the wait before the first retry.
+     */
+    public long getBaseBackoff() {
+        return this.baseBackoff;
+    }
+
+    /**
+     * @return the bound of the wait before any retry.
+     */
+    public long getMaxBackoff() {
+        return this.maxBackoff;
+    }
+}
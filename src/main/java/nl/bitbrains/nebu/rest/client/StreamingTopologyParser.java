@@ -0,0 +1,181 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.io.InputStream;
+import java.text.ParseException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.common.topology.factory.TopologyFactories;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+
+/**
+ * Reads a {@link PhysicalTopology} from a stream with a StAX pull parser.
+ * 
+ * The topology element is built directly from the parse events, so no W3C
+ * {@link org.w3c.dom.Document} is created and no copy of the tree has to be
+ * converted. Whitespace between elements, comments and processing
+ * instructions are skipped instead of kept in the tree, which makes up a large
+ * part of a pretty-printed topology with many hosts and stores.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class StreamingTopologyParser {
+
+    private static final XMLInputFactory INPUT_FACTORY = StreamingTopologyParser
+            .newInputFactory();
+
+    /**
+     * Private constructor, only static methods.
+     */
+    private StreamingTopologyParser() {
+    }
+
+    /**
+     * @return a factory that does not resolve DTDs or external entities.
+     */
+    private static XMLInputFactory newInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * @param stream
+     *            to read the topology from. Is not closed.
+     * @return the topology.
+     * @throws ParseException
+     *             if the stream does not contain a valid topology.
+     */
+    public static PhysicalTopology parse(final InputStream stream) throws ParseException {
+        ErrorChecker.throwIfNullArgument(stream, "stream");
+        final Element root = StreamingTopologyParser.readElement(stream);
+        return new PhysicalTopology(TopologyFactories.createDefault().getPhysicalRootFactory()
+                .fromXML(root).build());
+    }
+
+    /**
+     * @param stream
+     *            to read from.
+     * @return the root element of the document in the stream.
+     * @throws ParseException
+     *             if the stream does not contain well-formed xml.
+     */
+    protected static Element readElement(final InputStream stream) throws ParseException {
+        XMLStreamReader reader = null;
+        try {
+            // Creating readers is thread-safe once the factory is configured.
+            reader = StreamingTopologyParser.INPUT_FACTORY.createXMLStreamReader(stream);
+            return StreamingTopologyParser.readElement(reader);
+        } catch (final XMLStreamException e) {
+            final int offset = e.getLocation() == null ? 0 : e.getLocation().getCharacterOffset();
+            final ParseException exception = new ParseException(e.getMessage(),
+                    Math.max(offset, 0));
+            exception.initCause(e);
+            throw exception;
+        } finally {
+            StreamingTopologyParser.close(reader);
+        }
+    }
+
+    /**
+     * @param reader
+     *            to read the events from.
+     * @return the root element of the document.
+     * @throws XMLStreamException
+     *             if the xml is not well-formed.
+     * @throws ParseException
+     *             if the document has no root element.
+     */
+    private static Element readElement(final XMLStreamReader reader) throws XMLStreamException,
+            ParseException {
+        Element root = null;
+        Element current = null;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                final Element element = StreamingTopologyParser.newElement(reader);
+                if (current == null) {
+                    root = element;
+                } else {
+                    current.addContent(element);
+                }
+                current = element;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                current = current.getParentElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+                if (current != null && !reader.isWhiteSpace()) {
+                    current.addContent(reader.getText());
+                }
+                break;
+            default:
+                // Comments, processing instructions and ignorable whitespace.
+                break;
+            }
+        }
+        if (root == null) {
+            throw new ParseException("No root element", 0);
+        }
+        return root;
+    }
+
+    /**
+     * @param reader
+     *            positioned at a start element.
+     * @return the element, with its attributes.
+     */
+    private static Element newElement(final XMLStreamReader reader) {
+        final Element element = new Element(reader.getLocalName(),
+                StreamingTopologyParser.getNamespace(reader.getPrefix(),
+                                                     reader.getNamespaceURI()));
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttribute(reader.getAttributeLocalName(i),
+                                 reader.getAttributeValue(i),
+                                 StreamingTopologyParser.getNamespace(reader
+                                         .getAttributePrefix(i), reader
+                                         .getAttributeNamespace(i)));
+        }
+        return element;
+    }
+
+    /**
+     * @param prefix
+     *            of the namespace, may be null.
+     * @param uri
+     *            of the namespace, may be null.
+     * @return the namespace.
+     */
+    private static Namespace getNamespace(final String prefix, final String uri) {
+        if (uri == null || uri.isEmpty()) {
+            return Namespace.NO_NAMESPACE;
+        }
+        return Namespace.getNamespace(prefix == null ? "" : prefix, uri);
+    }
+
+    /**
+     * @param reader
+     *            to close, may be null.
+     */
+    private static void close(final XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (final XMLStreamException e) {
+            // Nothing left to read, and the stream is closed by the caller.
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.util.SettingsParser;
+
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Settings of the refresh-ahead mode of the topology caches. When it
+ *         is enabled, the topology and the topologies of the VMTemplates are
+ *         refreshed in the background, and callers get the last known
+ *         topology without waiting for the VMM. Every template can have its
+ *         own {@link RefreshPolicy}; templates without one use the default
+ *         template policy.
+ */
+public final class TopologyCacheSettings {
+
+    public static final String TAG_TOPOLOGY_CACHE = "topologycache";
+    public static final String TAG_TEMPLATE = "template";
+    public static final String TAG_REFRESH_INTERVAL = "refreshinterval";
+    public static final String TAG_MAX_STALENESS = "maxstaleness";
+    public static final String ATTRIBUTE_ENABLED = "enabled";
+    public static final String ATTRIBUTE_ID = "id";
+
+    public static final long DEFAULT_REFRESH_INTERVAL = 30000;
+    public static final long DEFAULT_MAX_STALENESS = 300000;
+
+    private final boolean enabled;
+    private final RefreshPolicy topologyPolicy;
+    private final RefreshPolicy templatePolicy;
+    private final Map<String, RefreshPolicy> templatePolicies;
+
+    /**
+     * Creates settings with the refresh-ahead mode disabled.
+     */
+    public TopologyCacheSettings() {
+        this(false, TopologyCacheSettings.newDefaultPolicy(), TopologyCacheSettings
+                .newDefaultPolicy(), new HashMap<String, RefreshPolicy>());
+    }
+
+    /**
+     * @param enabled
+     *            true iff the refresh-ahead mode is used.
+     * @param topologyPolicy
+     *            policy for the topology.
+     * @param templatePolicy
+     *            policy for the topologies of templates without their own
+     *            policy.
+     * @param templatePolicies
+     *            policies of the topologies of specific templates, by template
+     *            uuid.
+     */
+    public TopologyCacheSettings(final boolean enabled, final RefreshPolicy topologyPolicy,
+            final RefreshPolicy templatePolicy, final Map<String, RefreshPolicy> templatePolicies) {
+        ErrorChecker.throwIfNullArgument(topologyPolicy, "topologyPolicy");
+        ErrorChecker.throwIfNullArgument(templatePolicy, "templatePolicy");
+        ErrorChecker.throwIfNullArgument(templatePolicies, "templatePolicies");
+        this.enabled = enabled;
+        this.topologyPolicy = topologyPolicy;
+        this.templatePolicy = templatePolicy;
+        this.templatePolicies = new HashMap<String, RefreshPolicy>(templatePolicies);
+    }
+
+    /**
+     * @return a policy with the default interval and staleness.
+     */
+    private static RefreshPolicy newDefaultPolicy() {
+        return new RefreshPolicy(TopologyCacheSettings.DEFAULT_REFRESH_INTERVAL,
+                TopologyCacheSettings.DEFAULT_MAX_STALENESS);
+    }
+
+    /**
+     * Reads the settings from xml such as:
+     * 
+     * <pre>
+     * &lt;topologycache enabled="true"&gt;
+     *     &lt;refreshinterval&gt;30000&lt;/refreshinterval&gt;
+     *     &lt;maxstaleness&gt;300000&lt;/maxstaleness&gt;
+     *     &lt;template id="uuid"&gt;
+     *         &lt;refreshinterval&gt;5000&lt;/refreshinterval&gt;
+     *         &lt;maxstaleness&gt;60000&lt;/maxstaleness&gt;
+     *     &lt;/template&gt;
+     * &lt;/topologycache&gt;
+     * </pre>
+     * 
+     * The interval and staleness directly under the root apply to the
+     * topology and to all templates that are not listed.
+     * 
+     * @param xml
+     *            the topologycache element to read the settings from, may be
+     *            null.
+     * @return the settings.
+     * @throws ParseException
+     *             if the settings are invalidly specified.
+     */
+    public static TopologyCacheSettings fromXML(final Element xml) throws ParseException {
+        if (xml == null) {
+            return new TopologyCacheSettings();
+        }
+        final boolean enabled = Boolean.parseBoolean(xml
+                .getAttributeValue(TopologyCacheSettings.ATTRIBUTE_ENABLED));
+        final RefreshPolicy defaultPolicy = TopologyCacheSettings
+                .parsePolicy(xml, TopologyCacheSettings.newDefaultPolicy());
+        final Map<String, RefreshPolicy> templatePolicies = new HashMap<String, RefreshPolicy>();
+        for (final Element template : xml.getChildren(TopologyCacheSettings.TAG_TEMPLATE)) {
+            final String id = template.getAttributeValue(TopologyCacheSettings.ATTRIBUTE_ID);
+            if (id == null) {
+                throw new ParseException("Template without " + TopologyCacheSettings.ATTRIBUTE_ID,
+                        0);
+            }
+            templatePolicies.put(id, TopologyCacheSettings.parsePolicy(template, defaultPolicy));
+        }
+        return new TopologyCacheSettings(enabled, defaultPolicy, defaultPolicy, templatePolicies);
+    }
+
+    /**
+     * @param xml
+     *            to read the policy from.
+     * @param defaults
+     *            to use for values that are not present.
+     * @return the policy.
+     * @throws ParseException
+     *             if the policy is invalidly specified.
+     */
+    private static RefreshPolicy parsePolicy(final Element xml, final RefreshPolicy defaults)
+            throws ParseException {
+        final long interval = SettingsParser.parseLong(xml,
+                                                       TopologyCacheSettings.TAG_REFRESH_INTERVAL,
+                                                       defaults.getRefreshInterval());
+        final long staleness = SettingsParser.parseLong(xml,
+                                                        TopologyCacheSettings.TAG_MAX_STALENESS,
+                                                        Math.max(interval,
+                                                                 defaults.getMaxStaleness()));
+        try {
+            return new RefreshPolicy(interval, staleness);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @return true iff the refresh-ahead mode is used.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return the policy for the topology.
+     */
+    public RefreshPolicy getTopologyPolicy() {
+        return this.topologyPolicy;
+    }
+
+    /**
+     * @param templateUuid
+     *            uuid of the template.
+     * @return the policy for the topology of the template.
+     */
+    public RefreshPolicy getTemplatePolicy(final String templateUuid) {
+        final RefreshPolicy policy = this.templatePolicies.get(templateUuid);
+        if (policy == null) {
+            return this.templatePolicy;
+        }
+        return policy;
+    }
+}
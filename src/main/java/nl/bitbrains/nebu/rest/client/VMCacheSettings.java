@@ -0,0 +1,98 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+
+import nl.bitbrains.nebu.util.SettingsParser;
+
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable settings of the {@link VirtualMachineCache} of the details
+ *         of VMs: the maximum number of VMs it keeps, and the time in
+ *         milliseconds after which a cached VM is loaded again.
+ */
+public final class VMCacheSettings {
+
+    public static final String TAG_VM_CACHE = "vmcache";
+    public static final String TAG_MAX_SIZE = "maxsize";
+    public static final String TAG_TIME_TO_LIVE = "ttl";
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE = 5000;
+
+    private final int maxSize;
+    private final long timeToLive;
+
+    /**
+     * Creates settings with the default size and time to live.
+     */
+    public VMCacheSettings() {
+        this(VMCacheSettings.DEFAULT_MAX_SIZE, VMCacheSettings.DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param maxSize
+     *            maximum number of VMs in the cache.
+     * @param timeToLive
+     *            time after which a cached VM is loaded again.
+     */
+    public VMCacheSettings(final int maxSize, final long timeToLive) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Reads the settings from xml such as:
+     * 
+     * <pre>
+     * &lt;vmcache&gt;
+     *     &lt;maxsize&gt;10000&lt;/maxsize&gt;
+     *     &lt;ttl&gt;5000&lt;/ttl&gt;
+     * &lt;/vmcache&gt;
+     * </pre>
+     * 
+     * @param xml
+     *            the vmcache element to read the settings from, may be null.
+     * @return the settings, with defaults for values that are not present.
+     * @throws ParseException
+     *             if the settings are invalidly specified.
+     */
+    public static VMCacheSettings fromXML(final Element xml) throws ParseException {
+        if (xml == null) {
+            return new VMCacheSettings();
+        }
+        final int maxSize = SettingsParser.parseInt(xml,
+                                                    VMCacheSettings.TAG_MAX_SIZE,
+                                                    VMCacheSettings.DEFAULT_MAX_SIZE);
+        final long timeToLive = SettingsParser.parseLong(xml,
+                                                         VMCacheSettings.TAG_TIME_TO_LIVE,
+                                                         VMCacheSettings.DEFAULT_TIME_TO_LIVE);
+        try {
+            return new VMCacheSettings(maxSize, timeToLive);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @return the maximum number of VMs in the cache.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the time after which a cached VM is loaded again.
+     */
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+}
@@ -0,0 +1,79 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+import nl.bitbrains.nebu.common.factories.VirtualMachineFactory;
+import nl.bitbrains.nebu.common.util.xml.XMLConverter;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdom2.Element;
+import org.w3c.dom.Document;
+
+/**
+ * Can fetch the /virt/bulk resource, which holds the information of multiple
+ * VMs at once.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class VirtBulkCacheLoader implements CacheLoader<Object> {
+
+    private static Logger logger = LogManager.getLogger();
+    private final Collection<String> uuids;
+
+    /**
+     * Simple constructor, takes the uuids to fetch.
+     * 
+     * @param uuids
+     *            to fetch the information of.
+     */
+    public VirtBulkCacheLoader(final Collection<String> uuids) {
+        this.uuids = uuids;
+    }
+
+    /**
+     * @return the VMs that the VMM returned, by uuid.
+     * @throws RESTRequestException
+     *             if an HTTP error code is returned, or the response is not a
+     *             list of VMs. The latter happens when the VMM has no bulk
+     *             resource.
+     */
+    @Override
+    public final Map<String, VirtualMachine> refresh() throws RESTRequestException {
+        VirtBulkCacheLoader.logger.entry();
+        final Invocation.Builder builder = RequestBuilder.get()
+                .newGetVirtualMachinesBulkClient(this.uuids);
+        final Document doc = RequestSender.performGETRequestAndCheckResponse(
+                RequestSender.OP_GET_VIRTUAL_MACHINES_BULK, builder, Document.class);
+        final Element elem = XMLConverter.convertW3CDocumentJDOMElement(doc);
+        if (!VirtualMachineFactory.TAG_LIST_ELEMENT_ROOT.equals(elem.getName())) {
+            throw VirtBulkCacheLoader.logger.throwing(new RESTRequestException(
+                    RequestSender.INVALID_RESPONSE + elem.getName(),
+                    Response.Status.NOT_IMPLEMENTED.getStatusCode()));
+        }
+        final VirtualMachineFactory factory = new VirtualMachineFactory();
+        final Map<String, VirtualMachine> result = new HashMap<String, VirtualMachine>();
+        try {
+            for (final Element child : elem.getChildren(VirtualMachineFactory.TAG_ELEMENT_ROOT)) {
+                final VirtualMachine vm = factory.fromXML(child).build();
+                result.put(vm.getUniqueIdentifier(), vm);
+            }
+        } catch (final ParseException e) {
+            throw VirtBulkCacheLoader.logger.throwing(new RESTRequestException(
+                    RequestSender.INVALID_RESPONSE, Response.Status.INTERNAL_SERVER_ERROR
+                            .getStatusCode(), e));
+        }
+        return VirtBulkCacheLoader.logger.exit(result);
+    }
+
+}
@@ -42,8 +42,8 @@ public class VirtItemCacheLoader implements CacheLoader<Object> {
         VirtItemCacheLoader.logger.entry();
         final Invocation.Builder builder = RequestBuilder.get()
                 .newGetVirtualMachineClient(this.uuid);
-        final Document doc = RequestSender.performGETRequestAndCheckResponse(builder,
-                                                                             Document.class);
+        final Document doc = RequestSender.performGETRequestAndCheckResponse(
+                RequestSender.OP_GET_VIRTUAL_MACHINE, builder, Document.class);
         final Element elem = XMLConverter.convertW3CDocumentJDOMElement(doc);
         final VirtualMachineFactory factory = new VirtualMachineFactory();
         try {
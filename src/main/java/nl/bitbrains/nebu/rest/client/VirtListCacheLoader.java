@@ -36,8 +36,8 @@ public class VirtListCacheLoader implements CacheLoader<Object> {
     public final List<String> refresh() throws RESTRequestException {
         VirtListCacheLoader.logger.entry();
         final Invocation.Builder builder = RequestBuilder.get().newGetVirtualMachinesClient();
-        final Document doc = RequestSender.performGETRequestAndCheckResponse(builder,
-                                                                             Document.class);
+        final Document doc = RequestSender.performGETRequestAndCheckResponse(
+                RequestSender.OP_GET_VIRTUAL_MACHINES, builder, Document.class);
         final Element elem = XMLConverter.convertW3CDocumentJDOMElement(doc);
         try {
             return VirtListCacheLoader.logger.exit(XMLConverter
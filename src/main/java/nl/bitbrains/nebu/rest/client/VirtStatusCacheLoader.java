@@ -44,8 +44,8 @@ public class VirtStatusCacheLoader implements CacheLoader<Object> {
         VirtStatusCacheLoader.logger.entry();
         final Invocation.Builder builder = RequestBuilder.get()
                 .newGetVirtualMachineStatusClient(this.uuid);
-        final Document doc = RequestSender.performGETRequestAndCheckResponse(builder,
-                                                                             Document.class);
+        final Document doc = RequestSender.performGETRequestAndCheckResponse(
+                RequestSender.OP_GET_STATUS, builder, Document.class);
         final Element elem = XMLConverter.convertW3CDocumentJDOMElement(doc);
         final StringFactory factory = new StringFactory();
         try {
@@ -0,0 +1,381 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.metrics.Gauge;
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
+
+/**
+ * Bounded cache of VMs by key, such as <code>virt/{uuid}</code>. A cached VM
+ * is loaded again once it is older than the time to live, and can be
+ * invalidated when the VM no longer exists.
+ * 
+ * When the cache is full, a VM is evicted by segmented LRU: a VM that is
+ * loaded starts in the probation segment, and moves to the protected segment
+ * when it is looked up again. The protected segment holds at most
+ * {@link #PROTECTED_SHARE} of the VMs; its least recently used VMs move back
+ * to probation. VMs are evicted from probation first, so VMs that are looked
+ * up often survive a burst of VMs that are looked up once.
+ * 
+ * Loads go through a {@link LoadCoalescer}. A VM that is invalidated while it
+ * is being loaded is not cached when the load finishes, as the load may have
+ * read it before the change that invalidated it. The hits, misses, evictions,
+ * expirations and invalidations are counted, and can be reported in the
+ * {@link MetricsRegistry}.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class VirtualMachineCache {
+
+    public static final double PROTECTED_SHARE = 0.8;
+    public static final String METRIC_ENTRIES = "nebu_vm_cache_entries";
+    public static final String METRIC_HIT_RATIO = "nebu_vm_cache_hit_ratio";
+    public static final String METRIC_HITS = "nebu_vm_cache_hits_total";
+    public static final String METRIC_MISSES = "nebu_vm_cache_misses_total";
+    public static final String METRIC_EVICTIONS = "nebu_vm_cache_evictions_total";
+    public static final String LABEL_CACHE = "cache";
+
+    private final LoadCoalescer coalescer;
+    private final int maxSize;
+    private final int protectedSize;
+    private final long timeToLive;
+    private final LinkedHashMap<String, Entry> probation;
+    private final LinkedHashMap<String, Entry> protectedSegment;
+    private final Map<String, Load> loads;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final AtomicLong expirations;
+    private final AtomicLong invalidations;
+    private volatile String labels;
+
+    /**
+     * A cached VM.
+     */
+    private static final class Entry {
+        private final VirtualMachine value;
+        private final long loadedAt;
+
+        /**
+         * @param value
+         *            the VM.
+         * @param loadedAt
+         *            the time the VM was loaded.
+         */
+        private Entry(final VirtualMachine value, final long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * The lookups of a key that are waiting for the VM to be loaded.
+     */
+    private static final class Load {
+        private int waiters;
+        private boolean invalidated;
+    }
+
+    /**
+     * @param coalescer
+     *            to run the loads through.
+     * @param settings
+     *            the size and time to live of the cache.
+     */
+    public VirtualMachineCache(final LoadCoalescer coalescer, final VMCacheSettings settings) {
+        ErrorChecker.throwIfNullArgument(coalescer, "coalescer");
+        ErrorChecker.throwIfNullArgument(settings, "settings");
+        this.coalescer = coalescer;
+        this.maxSize = settings.getMaxSize();
+        this.protectedSize = (int) (settings.getMaxSize() * VirtualMachineCache.PROTECTED_SHARE);
+        this.timeToLive = settings.getTimeToLive();
+        this.probation = new LinkedHashMap<String, Entry>();
+        this.protectedSegment = new LinkedHashMap<String, Entry>();
+        this.loads = new HashMap<String, Load>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+        this.expirations = new AtomicLong();
+        this.invalidations = new AtomicLong();
+    }
+
+    /**
+     * @param key
+     *            to look up.
+     * @param loader
+     *            to load the VM with, if it is not cached or has expired.
+     * @return the cached VM, or the loaded VM if there is none.
+     * @throws CacheException
+     *             if the VM had to be loaded, and loading failed.
+     */
+    public VirtualMachine get(final String key, final CacheLoader<Object> loader)
+            throws CacheException {
+        ErrorChecker.throwIfNullArgument(key, "key");
+        ErrorChecker.throwIfNullArgument(loader, "loader");
+        final VirtualMachine cached = this.getIfPresent(key);
+        if (cached != null) {
+            this.hits.incrementAndGet();
+            this.count(VirtualMachineCache.METRIC_HITS);
+            this.coalescer.recordHit();
+            return cached;
+        }
+        this.misses.incrementAndGet();
+        this.count(VirtualMachineCache.METRIC_MISSES);
+        final Load load = this.startLoad(key);
+        VirtualMachine loaded = null;
+        try {
+            loaded = (VirtualMachine) this.coalescer.load(key, loader);
+        } finally {
+            this.finishLoad(key, load, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * @param key
+     *            of the VM that is loaded.
+     * @return the load of the key, which the lookup waits for.
+     */
+    private synchronized Load startLoad(final String key) {
+        Load load = this.loads.get(key);
+        if (load == null) {
+            load = new Load();
+            this.loads.put(key, load);
+        }
+        load.waiters++;
+        return load;
+    }
+
+    /**
+     * Caches the loaded VM, unless the key was invalidated during the load.
+     * 
+     * @param key
+     *            of the VM that was loaded.
+     * @param load
+     *            returned by {@link #startLoad(String)}.
+     * @param vm
+     *            that was loaded, null if there is none or loading failed.
+     */
+    private synchronized void finishLoad(final String key, final Load load,
+            final VirtualMachine vm) {
+        if (vm != null && !load.invalidated) {
+            this.store(key, vm);
+        }
+        load.waiters--;
+        if (load.waiters == 0) {
+            this.loads.remove(key);
+        }
+    }
+
+    /**
+     * @param key
+     *            to look up.
+     * @return the VM cached for the key, null if there is none or it has
+     *         expired.
+     */
+    private synchronized VirtualMachine getIfPresent(final String key) {
+        final long now = System.currentTimeMillis();
+        Entry entry = this.protectedSegment.remove(key);
+        if (entry == null) {
+            entry = this.probation.remove(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (now - entry.loadedAt > this.timeToLive) {
+            this.expirations.incrementAndGet();
+            return null;
+        }
+        // Looked up again, so it is protected as the most recently used VM.
+        this.protectedSegment.put(key, entry);
+        while (this.protectedSegment.size() > this.protectedSize) {
+            final String eldest = this.protectedSegment.keySet().iterator().next();
+            this.probation.put(eldest, this.protectedSegment.remove(eldest));
+        }
+        return entry.value;
+    }
+
+    /**
+     * Caches the VM as the most recently used VM on probation, and evicts
+     * VMs if the cache is full.
+     * 
+     * @param key
+     *            of the VM.
+     * @param vm
+     *            to cache.
+     */
+    public synchronized void put(final String key, final VirtualMachine vm) {
+        ErrorChecker.throwIfNullArgument(key, "key");
+        ErrorChecker.throwIfNullArgument(vm, "vm");
+        this.store(key, vm);
+    }
+
+    /**
+     * @param key
+     *            of the VM.
+     * @param vm
+     *            to cache.
+     */
+    private void store(final String key, final VirtualMachine vm) {
+        final Entry entry = new Entry(vm, System.currentTimeMillis());
+        if (this.protectedSegment.containsKey(key)) {
+            this.protectedSegment.put(key, entry);
+            return;
+        }
+        this.probation.remove(key);
+        this.probation.put(key, entry);
+        while (this.size() > this.maxSize) {
+            final Map<String, Entry> segment;
+            if (this.probation.isEmpty()) {
+                segment = this.protectedSegment;
+            } else {
+                segment = this.probation;
+            }
+            segment.remove(segment.keySet().iterator().next());
+            this.evictions.incrementAndGet();
+            this.count(VirtualMachineCache.METRIC_EVICTIONS);
+        }
+    }
+
+    /**
+     * Removes the VM of the key, so it is loaded again when it is looked up.
+     * A load of the VM that is running is not cached.
+     * 
+     * @param key
+     *            of the VM.
+     */
+    public synchronized void invalidate(final String key) {
+        final Load load = this.loads.get(key);
+        if (load != null) {
+            load.invalidated = true;
+        }
+        if (this.protectedSegment.remove(key) != null || this.probation.remove(key) != null) {
+            this.invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all VMs. Loads that are running are not cached.
+     */
+    public synchronized void clear() {
+        for (final Load load : this.loads.values()) {
+            load.invalidated = true;
+        }
+        this.protectedSegment.clear();
+        this.probation.clear();
+    }
+
+    /**
+     * @param key
+     *            to check.
+     * @return true iff a VM is cached for the key, even if it has expired.
+     */
+    public synchronized boolean contains(final String key) {
+        return this.protectedSegment.containsKey(key) || this.probation.containsKey(key);
+    }
+
+    /**
+     * @return the number of cached VMs.
+     */
+    public synchronized int size() {
+        return this.protectedSegment.size() + this.probation.size();
+    }
+
+    /**
+     * Reports the size and hit ratio of this cache as gauges in the
+     * {@link MetricsRegistry}, replacing those of the cache with the same
+     * name. From then on its hits, misses and evictions are also counted in
+     * counters of the registry, which are shared by the caches with the same
+     * name.
+     * 
+     * @param name
+     *            of the cache, used as the value of its label.
+     */
+    public void registerMetrics(final String name) {
+        final String cacheLabels = MetricsRegistry.labels(VirtualMachineCache.LABEL_CACHE, name);
+        final MetricsRegistry registry = MetricsRegistry.get();
+        registry.gauge(VirtualMachineCache.METRIC_ENTRIES, cacheLabels, new Gauge() {
+            @Override
+            public double getValue() {
+                return VirtualMachineCache.this.size();
+            }
+        });
+        registry.gauge(VirtualMachineCache.METRIC_HIT_RATIO, cacheLabels, new Gauge() {
+            @Override
+            public double getValue() {
+                return VirtualMachineCache.this.getHitRatio();
+            }
+        });
+        this.labels = cacheLabels;
+    }
+
+    /**
+     * Counts one in the counter of the registry, if the metrics of this cache
+     * are reported.
+     * 
+     * @param name
+     *            of the counter.
+     */
+    private void count(final String name) {
+        final String cacheLabels = this.labels;
+        if (cacheLabels != null) {
+            MetricsRegistry.get().counter(name, cacheLabels).increment();
+        }
+    }
+
+    /**
+     * @return the fraction of the lookups that were served from the cache, 0
+     *         if there were none.
+     */
+    public double getHitRatio() {
+        final long hitCount = this.hits.get();
+        final long total = hitCount + this.misses.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hitCount / total;
+    }
+
+    /**
+     * @return the number of lookups that were served from the cache.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of lookups that had to load the VM.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of VMs that were evicted because the cache was full.
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return the number of VMs that were looked up after they expired.
+     */
+    public long getExpirations() {
+        return this.expirations.get();
+    }
+
+    /**
+     * @return the number of VMs that were invalidated.
+     */
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+}
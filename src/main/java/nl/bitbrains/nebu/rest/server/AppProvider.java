@@ -14,12 +14,12 @@ import nl.bitbrains.nebu.common.util.xml.XMLConverter;
 import nl.bitbrains.nebu.containers.Application;
 import nl.bitbrains.nebu.containers.ApplicationBuilder;
 import nl.bitbrains.nebu.containers.ApplicationFactory;
+import nl.bitbrains.nebu.store.StateStore;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
 import org.w3c.dom.Document;
 
 /**
@@ -80,16 +80,13 @@ public class AppProvider {
      * Handles the GET Request on this path/:uuid.
      * 
      * @return the app information
-     * @throws JDOMException
-     *             iff conversion fails.
      */
     @GET
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response getApp() throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final Response getApp() {
         Response rep = null;
         final Element elem = new ApplicationFactory().toXML(this.app);
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(elem);
-        rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+        rep = Response.ok(StreamingXMLOutput.ofElement(elem)).build();
         return rep;
     }
 
@@ -101,18 +98,19 @@ public class AppProvider {
      * @return http status code 200 iff all went successful.
      */
     @POST
-    @Produces(MediaType.APPLICATION_XML)
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public final Response postApp(final Document doc) {
         AppProvider.logger.entry();
         Response rep = null;
         try {
-            final ApplicationBuilder builder = new ApplicationFactory().fromXML(XMLConverter
-                    .convertW3CDocumentJDOMElement(doc));
+            final Element xml = XMLConverter.convertW3CDocumentJDOMElement(doc);
+            final ApplicationBuilder builder = new ApplicationFactory().fromXML(xml);
             builder.withUuid(this.app.getUniqueIdentifier());
             final Application receivedApp = builder.build();
             this.app.setName(receivedApp.getName());
             this.app.setDeploymentPolicy(receivedApp.getDeploymentPolicy());
-            rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+            StateStore.get().recordApplicationChanged(this.app);
+            rep = Response.ok(StreamingXMLOutput.ofElement(xml)).build();
         } catch (final ParseException e) {
             AppProvider.logger.catching(Level.WARN, e);
             rep = Response.status(Status.BAD_REQUEST).build();
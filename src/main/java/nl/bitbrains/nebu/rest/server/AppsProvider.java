@@ -4,9 +4,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.ParseException;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -26,12 +26,12 @@ import nl.bitbrains.nebu.containers.ApplicationBuilder;
 import nl.bitbrains.nebu.containers.ApplicationFactory;
 import nl.bitbrains.nebu.deployer.Deployer;
 import nl.bitbrains.nebu.deployer.MissingPolicyException;
+import nl.bitbrains.nebu.store.StateStore;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
 import org.w3c.dom.Document;
 
 /**
@@ -74,17 +74,19 @@ public class AppsProvider {
     }
 
     /**
-     * Gets the cache, also accessible for other classes.
+     * Gets the cache, also accessible for other classes. The cache is a
+     * concurrent map, so it can be iterated over while applications are
+     * added.
      * 
      * @return the map of applications currently known to the system.
      */
     @SuppressWarnings("unchecked")
-    protected static final Map<String, Application> getCache() {
+    protected static final synchronized Map<String, Application> getCache() {
         Map<String, Application> map;
         try {
             map = (Map<String, Application>) CacheManager.get(AppsProvider.CACHE_KEY_APPS);
         } catch (final CacheException | IllegalArgumentException e) {
-            map = new HashMap<String, Application>();
+            map = new ConcurrentHashMap<String, Application>();
             CacheManager.put(AppsProvider.CACHE_KEY_APPS, map);
         }
         return map;
@@ -110,23 +112,20 @@ public class AppsProvider {
      * Handles the GET request on this path.
      * 
      * @return list of the currently known applications.
-     * @throws JDOMException
-     *             if xml conversion fails.
      */
     @GET
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response getApps() throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final Response getApps() {
         AppsProvider.logger.entry();
         final Map<String, Application> map = AppsProvider.getCache();
         final Collection<Application> apps = map.values();
 
-        final Element elem = XMLConverter
-                .convertCollectionToJDOMElement(apps,
-                                                new ApplicationFactory(false),
-                                                ApplicationFactory.LIST_TAG_ELEMENT_ROOT,
-                                                ApplicationFactory.TAG_ELEMENT_ROOT);
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(elem);
-        final Response rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+        final StreamingXMLOutput output = StreamingXMLOutput
+                .ofCollection(apps,
+                              new ApplicationFactory(false),
+                              ApplicationFactory.LIST_TAG_ELEMENT_ROOT,
+                              ApplicationFactory.TAG_ELEMENT_ROOT);
+        final Response rep = Response.ok(output).build();
         return AppsProvider.logger.exit(rep);
     }
 
@@ -142,7 +141,7 @@ public class AppsProvider {
      *             if cache fails.
      */
     @POST
-    @Produces(MediaType.APPLICATION_XML)
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public final Response postApps(final Document doc) throws URISyntaxException, CacheException {
         AppsProvider.logger.entry();
         final Map<String, Application> map = AppsProvider.getCache();
@@ -153,11 +152,11 @@ public class AppsProvider {
             final ApplicationBuilder builder = new ApplicationFactory().fromXML(xml);
             builder.withUuid(key);
             final Application app = builder.build();
+            final Element policyXML = new ApplicationFactory().getPolicyXML(xml);
             final Deployer deployer = (Deployer) CacheManager.get(Deployer.CACHE_KEY);
-            deployer.setPolicy(app,
-                               app.getDeploymentPolicy(),
-                               new ApplicationFactory().getPolicyXML(xml));
+            deployer.setPolicy(app, app.getDeploymentPolicy(), policyXML);
             map.put(key, app);
+            StateStore.get().recordApplicationCreated(app, policyXML);
             final URI location = new URI(key);
             rep = Response.created(location).build();
         } catch (final ParseException | MissingPolicyException e) {
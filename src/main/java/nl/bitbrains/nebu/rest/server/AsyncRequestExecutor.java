@@ -0,0 +1,190 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         This singleton class handles the requests that have to wait for the
+ *         VMM on threads of its own, so a slow VMM does not take up the worker
+ *         threads of the server and requests that do not contact the VMM are
+ *         still answered.
+ * 
+ *         A request that is not answered within the timeout gets a 503
+ *         Service Unavailable response. If its work had not started yet it is
+ *         dropped; work that had started is finished, so changes made by the
+ *         VMM are not lost. At most {@value #QUEUE_PER_THREAD} requests per
+ *         thread wait for a thread; further requests get a 503 right away,
+ *         instead of waiting until they time out.
+ */
+public final class AsyncRequestExecutor {
+
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+    static final int QUEUE_PER_THREAD = 4;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static Logger logger = LogManager.getLogger();
+    private static AsyncRequestExecutor instance = new AsyncRequestExecutor();
+
+    private ThreadPoolExecutor executor;
+    private int threads;
+    private volatile long timeout;
+
+    /**
+     * Private constructor to ensure it can not be instantiated outside of this
+     * class.
+     */
+    private AsyncRequestExecutor() {
+        this.threads = AsyncSettings.DEFAULT_THREADS;
+        this.timeout = AsyncSettings.DEFAULT_TIMEOUT;
+    }
+
+    /**
+     * @return the AsyncRequestExecutor singleton.
+     */
+    public static AsyncRequestExecutor get() {
+        return AsyncRequestExecutor.instance;
+    }
+
+    /**
+     * @param settings
+     *            to apply.
+     */
+    public synchronized void configure(final AsyncSettings settings) {
+        ErrorChecker.throwIfNullArgument(settings, "settings");
+        if (settings.getThreads() != this.threads) {
+            // The queue is sized for the threads, so both are replaced.
+            this.shutdown();
+        }
+        this.threads = settings.getThreads();
+        this.timeout = settings.getTimeout();
+    }
+
+    /**
+     * @return the maximum number of requests that wait for the VMM at once.
+     */
+    public synchronized int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * @return the time in milliseconds after which a waiting request is
+     *         answered.
+     */
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Runs the task in the background, and resumes the suspended request with
+     * its response. An exception thrown by the task is passed on to Jersey,
+     * as if it was thrown by the resource method.
+     * 
+     * @param response
+     *            the suspended request.
+     * @param task
+     *            that creates the response.
+     */
+    public void submit(final AsyncResponse response, final Callable<Response> task) {
+        ErrorChecker.throwIfNullArgument(response, "response");
+        ErrorChecker.throwIfNullArgument(task, "task");
+        final ThreadPoolExecutor executor = this.getExecutor();
+        final FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                AsyncRequestExecutor.this.resume(response, task);
+            }
+        }, null);
+        response.setTimeoutHandler(new TimeoutHandler() {
+            @Override
+            public void handleTimeout(final AsyncResponse timedOut) {
+                // Only drops work that has not started, see the class comment.
+                if (future.cancel(false)) {
+                    executor.remove(future);
+                }
+                timedOut.resume(AsyncRequestExecutor.unavailable());
+            }
+        });
+        response.setTimeout(this.timeout, TimeUnit.MILLISECONDS);
+        try {
+            executor.execute(future);
+        } catch (final RejectedExecutionException e) {
+            AsyncRequestExecutor.logger.catching(Level.ERROR, e);
+            response.resume(AsyncRequestExecutor.unavailable());
+        }
+    }
+
+    /**
+     * Stops the threads of the executor. Requests that have been submitted
+     * are answered; the threads are created again when the next request is
+     * submitted.
+     */
+    public synchronized void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * @return the executor of the requests.
+     */
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new ThreadPoolExecutor(this.threads, this.threads,
+                    AsyncRequestExecutor.KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(AsyncRequestExecutor.QUEUE_PER_THREAD
+                            * this.threads), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r, "nebu-async");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+        return this.executor;
+    }
+
+    /**
+     * @param response
+     *            to resume.
+     * @param task
+     *            that creates the response.
+     */
+    private void resume(final AsyncResponse response, final Callable<Response> task) {
+        try {
+            if (!response.resume(task.call())) {
+                AsyncRequestExecutor.logger.debug("Response was ready after the timeout");
+            }
+        } catch (final Exception e) {
+            AsyncRequestExecutor.logger.catching(Level.ERROR, e);
+            response.resume(e);
+        }
+    }
+
+    /**
+     * @return the response to a request that could not be handled in time.
+     */
+    private static Response unavailable() {
+        return Response.status(Status.SERVICE_UNAVAILABLE)
+                .header(AsyncRequestExecutor.RETRY_AFTER_HEADER, 1).build();
+    }
+}
@@ -0,0 +1,99 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.text.ParseException;
+
+import nl.bitbrains.nebu.util.SettingsParser;
+
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable settings of the {@link AsyncRequestExecutor}, which
+ *         handles the requests that have to wait for the VMM. All times are in
+ *         milliseconds.
+ */
+public final class AsyncSettings {
+
+    public static final String TAG_ASYNC = "async";
+    public static final String TAG_THREADS = "threads";
+    public static final String TAG_TIMEOUT = "timeout";
+
+    public static final int DEFAULT_THREADS = 32;
+    public static final long DEFAULT_TIMEOUT = 120000;
+
+    private final int threads;
+    private final long timeout;
+
+    /**
+     * Creates settings with all values set to their defaults.
+     */
+    public AsyncSettings() {
+        this(AsyncSettings.DEFAULT_THREADS, AsyncSettings.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param threads
+     *            maximum number of requests that wait for the VMM at once.
+     * @param timeout
+     *            time after which a request that is still waiting is answered
+     *            with 503 Service Unavailable.
+     */
+    public AsyncSettings(final int threads, final long timeout) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.threads = threads;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Reads the settings from xml such as:
+     * 
+     * <pre>
+     * &lt;async&gt;
+     *     &lt;threads&gt;32&lt;/threads&gt;
+     *     &lt;timeout&gt;120000&lt;/timeout&gt;
+     * &lt;/async&gt;
+     * </pre>
+     * 
+     * @param xml
+     *            the async element to read the settings from, may be null.
+     * @return the settings, with defaults for values that are not present.
+     * @throws ParseException
+     *             if the settings are invalidly specified.
+     */
+    public static AsyncSettings fromXML(final Element xml) throws ParseException {
+        if (xml == null) {
+            return new AsyncSettings();
+        }
+        final int threads = SettingsParser.parseInt(xml,
+                                                    AsyncSettings.TAG_THREADS,
+                                                    AsyncSettings.DEFAULT_THREADS);
+        final long timeout = SettingsParser.parseLong(xml,
+                                                      AsyncSettings.TAG_TIMEOUT,
+                                                      AsyncSettings.DEFAULT_TIMEOUT);
+        try {
+            return new AsyncSettings(threads, timeout);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @return the maximum number of requests that wait for the VMM at once.
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * @return the time after which a waiting request is answered.
+     */
+    public long getTimeout() {
+        return this.timeout;
+    }
+}
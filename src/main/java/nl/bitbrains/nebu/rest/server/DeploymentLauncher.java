@@ -0,0 +1,358 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.common.util.UUIDGenerator;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+import nl.bitbrains.nebu.rest.client.ClientSettings;
+import nl.bitbrains.nebu.rest.client.RequestSender;
+import nl.bitbrains.nebu.store.StateStore;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         This singleton class launches the VMs of a deployment on the VMM.
+ *         Launches are issued concurrently, but never more than the configured
+ *         parallelism at once, also when multiple deployments are launched at
+ *         the same time: nebu-core talks to a single VMM, so the limit protects
+ *         that VMM as a whole.
+ * 
+ *         A deployment is launched in the background by
+ *         {@link #start(Application, Deployment)}; the {@link LaunchProgress}
+ *         of its last launch is kept, so it can be followed by clients. The
+ *         progress of a launch is dropped once it has been finished for the
+ *         retention time.
+ */
+public final class DeploymentLauncher {
+
+    public static final int DEFAULT_PARALLELISM = ClientSettings.DEFAULT_LAUNCH_PARALLELISM;
+    public static final long DEFAULT_RETENTION = 3600000;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static Logger logger = LogManager.getLogger();
+    private static DeploymentLauncher instance = new DeploymentLauncher();
+
+    private final Map<String, LaunchProgress> launches;
+    private ThreadPoolExecutor executor;
+    private int parallelism;
+    private volatile long retention;
+
+    /**
+     * Private constructor to ensure it can not be instantiated outside of this
+     * class.
+     */
+    private DeploymentLauncher() {
+        this.parallelism = DeploymentLauncher.DEFAULT_PARALLELISM;
+        this.launches = new ConcurrentHashMap<String, LaunchProgress>();
+        this.retention = DeploymentLauncher.DEFAULT_RETENTION;
+    }
+
+    /**
+     * @return the DeploymentLauncher singleton.
+     */
+    public static DeploymentLauncher get() {
+        return DeploymentLauncher.instance;
+    }
+
+    /**
+     * @return the maximum number of VMs that is launched at once.
+     */
+    public synchronized int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * @param parallelism
+     *            the maximum number of VMs that is launched at once.
+     */
+    public synchronized void setParallelism(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        if (this.executor == null) {
+            return;
+        }
+        if (parallelism > this.executor.getMaximumPoolSize()) {
+            this.executor.setMaximumPoolSize(parallelism);
+            this.executor.setCorePoolSize(parallelism);
+        } else {
+            this.executor.setCorePoolSize(parallelism);
+            this.executor.setMaximumPoolSize(parallelism);
+        }
+    }
+
+    /**
+     * @return the time in milliseconds the progress of a finished launch is
+     *         kept.
+     */
+    public long getRetention() {
+        return this.retention;
+    }
+
+    /**
+     * @param retention
+     *            the time in milliseconds the progress of a finished launch
+     *            is kept.
+     */
+    public void setRetention(final long retention) {
+        if (retention < 0) {
+            throw new IllegalArgumentException("Retention can not be negative");
+        }
+        this.retention = retention;
+    }
+
+    /**
+     * Stops the threads of the launcher. Launches that have been issued are
+     * finished; the threads are created again when the next launch is
+     * issued.
+     */
+    public synchronized void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * @return the executor of the launches.
+     */
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism,
+                    DeploymentLauncher.KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r, "nebu-launcher");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+        return this.executor;
+    }
+
+    /**
+     * Launches the VMs of the deployment in the background, and returns
+     * immediately. Every launched VM is added to the deployment as soon as its
+     * create call has been answered, and the deployment counts as launched
+     * from the first one on. A deployment without specifications is launched
+     * at once.
+     * 
+     * @param app
+     *            the deployment belongs to.
+     * @param deployment
+     *            to launch.
+     * @return the progress of the launch, or null if the deployment is
+     *         already being launched.
+     */
+    public LaunchProgress start(final Application app, final Deployment deployment) {
+        DeploymentLauncher.logger.entry();
+        ErrorChecker.throwIfNullArgument(app, "app");
+        ErrorChecker.throwIfNullArgument(deployment, "deployment");
+        final List<VMDeploymentSpecification> specs = new ArrayList<VMDeploymentSpecification>(
+                deployment.getSpecs());
+        final LaunchProgress progress = new LaunchProgress(deployment.getUniqueIdentifier(),
+                specs);
+        this.prune();
+        synchronized (this.launches) {
+            if (this.isLaunching(deployment)) {
+                return DeploymentLauncher.logger.exit(null);
+            }
+            this.launches.put(deployment.getUniqueIdentifier(), progress);
+        }
+        if (specs.isEmpty()) {
+            deployment.setLaunched(true);
+            StateStore.get().recordDeployment(app, deployment);
+            progress.setFinished();
+            return DeploymentLauncher.logger.exit(progress);
+        }
+        final AtomicInteger remaining = new AtomicInteger(specs.size());
+        final ThreadPoolExecutor launcher = this.getExecutor();
+        for (int i = 0; i < specs.size(); i++) {
+            final int index = i;
+            launcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        progress.setRequested(index);
+                        final LaunchResult result = DeploymentLauncher.this
+                                .launchOrFail(specs.get(index));
+                        if (result.isSuccess()) {
+                            deployment.addVirtualMachines(result.getVirtualMachine(),
+                                                          result.getSpec());
+                            deployment.setLaunched(true);
+                            StateStore.get().recordVirtualMachineAdded(app, deployment,
+                                    result.getVirtualMachine(), result.getSpec());
+                        }
+                        progress.setResult(index, result);
+                    } finally {
+                        // The launch must finish, or it could never be started again.
+                        if (remaining.decrementAndGet() == 0) {
+                            StateStore.get().recordDeployment(app, deployment);
+                            progress.setFinished();
+                        }
+                    }
+                }
+            });
+        }
+        return DeploymentLauncher.logger.exit(progress);
+    }
+
+    /**
+     * @param deploymentID
+     *            uuid of the deployment.
+     * @return the progress of its last launch, or null if it was not launched
+     *         by this launcher.
+     */
+    public LaunchProgress getProgress(final String deploymentID) {
+        this.prune();
+        return this.launches.get(deploymentID);
+    }
+
+    /**
+     * Drops the progress of the launches that have been finished for longer
+     * than the retention time.
+     */
+    private void prune() {
+        final long threshold = System.currentTimeMillis() - this.retention;
+        final Iterator<LaunchProgress> iterator = this.launches.values().iterator();
+        while (iterator.hasNext()) {
+            final LaunchProgress progress = iterator.next();
+            final long finished = progress.getFinished();
+            if (finished != 0 && finished < threshold) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param deployment
+     *            to check.
+     * @return true iff the deployment is being launched.
+     */
+    public boolean isLaunching(final Deployment deployment) {
+        final LaunchProgress progress = this.launches.get(deployment.getUniqueIdentifier());
+        return progress != null && !progress.isFinished();
+    }
+
+    /**
+     * @param spec
+     *            to launch.
+     * @return the result of the launch.
+     */
+    private LaunchResult launchOrFail(final VMDeploymentSpecification spec) {
+        try {
+            return LaunchResult.success(spec, this.launchSpecification(spec));
+        } catch (final RESTRequestException e) {
+            DeploymentLauncher.logger.catching(e);
+            return LaunchResult.failure(spec, e);
+        } catch (final RuntimeException e) {
+            DeploymentLauncher.logger.catching(e);
+            return LaunchResult.failure(spec, DeploymentLauncher.toFailure(e));
+        }
+    }
+
+    /**
+     * @param e
+     *            cause of the failure.
+     * @return the failure to report.
+     */
+    private static RESTRequestException toFailure(final Throwable e) {
+        if (e instanceof RESTRequestException) {
+            return (RESTRequestException) e;
+        }
+        return new RESTRequestException("Launch failed: " + e.getMessage(),
+                Status.INTERNAL_SERVER_ERROR.getStatusCode(), e);
+    }
+
+    /**
+     * Launches a VM according to the specified specification.
+     * 
+     * @param spec
+     *            to launch
+     * @return the launched {@link VirtualMachine}
+     * @throws RESTRequestException
+     *             if launching fails.
+     */
+    private VirtualMachine launchSpecification(final VMDeploymentSpecification spec)
+            throws RESTRequestException {
+
+        VirtualMachine vm;
+        if (spec.getStore() != null) {
+            vm = this.launchWithDisk(spec);
+        } else {
+            vm = this.launchWithoutDisk(spec);
+        }
+        DeploymentLauncher.logger
+                .debug("Just requested a VM to be launched. Status can be found under hash: "
+                        + vm.getUniqueIdentifier());
+        vm.setStatus(VirtualMachine.Status.LAUNCHING);
+        return vm;
+    }
+
+    /**
+     * @param spec
+     *            to launch
+     * @return the {@link VirtualMachine} representing the VM that just
+     *         launched.
+     * @throws RESTRequestException
+     *             if launching fails.
+     */
+    private VirtualMachine launchWithDisk(final VMDeploymentSpecification spec)
+            throws RESTRequestException {
+        final String hostName = UUIDGenerator.generate(spec.getTemplate().getName());
+        final Response postRep = RequestSender.get().postCreateVM(spec.getHost(),
+                                                                  hostName,
+                                                                  spec.getTemplate()
+                                                                          .getUniqueIdentifier(),
+                                                                  spec.getStore());
+        final VirtualMachine vm = new VirtualMachineBuilder()
+                .withUuid(postRep.getLocation().getRawPath().split("/")[2])
+                .withHost(spec.getHost()).withDisk(spec.getStore()).build();
+        return vm;
+    }
+
+    /**
+     * @param spec
+     *            to launch
+     * @return the {@link VirtualMachine} representing the VM that just
+     *         launched.
+     * @throws RESTRequestException
+     *             if launching fails.
+     */
+    private VirtualMachine launchWithoutDisk(final VMDeploymentSpecification spec)
+            throws RESTRequestException {
+        final String hostName = UUIDGenerator.generate(spec.getTemplate().getName());
+        final Response postRep = RequestSender.get().postCreateVM(spec.getHost(),
+                                                                  hostName,
+                                                                  spec.getTemplate()
+                                                                          .getUniqueIdentifier());
+        final VirtualMachine vm = new VirtualMachineBuilder()
+                .withUuid(postRep.getLocation().getRawPath().split("/")[2])
+                .withHost(spec.getHost()).build();
+        return vm;
+    }
+}
@@ -1,35 +1,41 @@
 package nl.bitbrains.nebu.rest.server;
 
+import java.net.URI;
 import java.text.ParseException;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
 
 import nl.bitbrains.nebu.common.VirtualMachine;
-import nl.bitbrains.nebu.common.VirtualMachineBuilder;
 import nl.bitbrains.nebu.common.factories.VirtualMachineFactory;
-import nl.bitbrains.nebu.common.util.UUIDGenerator;
 import nl.bitbrains.nebu.common.util.xml.XMLConverter;
 import nl.bitbrains.nebu.containers.Application;
 import nl.bitbrains.nebu.containers.Deployment;
 import nl.bitbrains.nebu.containers.DeploymentFactory;
 import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
 import nl.bitbrains.nebu.containers.VMDeploymentSpecificationFactory;
-import nl.bitbrains.nebu.rest.RESTRequestException;
-import nl.bitbrains.nebu.rest.client.RequestSender;
+import nl.bitbrains.nebu.store.StateStore;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
 import org.w3c.dom.Document;
 
 /**
@@ -41,6 +47,10 @@ import org.w3c.dom.Document;
 public class DeploymentProvider {
 
     public static final String PATH_START = "start";
+    public static final String PATH_PROGRESS = "progress";
+    public static final String PARAM_VERSION = "version";
+    public static final String PARAM_WAIT = "wait";
+    public static final long MAX_WAIT = 60000;
     private static Logger logger = LogManager.getLogger();
     private final Application app;
     private final Deployment dep;
@@ -62,17 +72,14 @@ public class DeploymentProvider {
      * Handles a GET request for a specific deployment.
      * 
      * @return all information on that deployment.
-     * @throws JDOMException
-     *             iff conversion fails.
      */
     @GET
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response getDeployment() throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final Response getDeployment() {
         DeploymentProvider.logger.entry();
         Response rep = null;
         final Element elem = new DeploymentFactory().toXML(this.dep);
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(elem);
-        rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+        rep = Response.ok(StreamingXMLOutput.ofElement(elem)).build();
         return DeploymentProvider.logger.exit(rep);
     }
 
@@ -85,11 +92,11 @@ public class DeploymentProvider {
      * @return a 200 on successful change
      */
     @POST
-    @Produces(MediaType.APPLICATION_XML)
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public final Response postDeployment(final Document doc) {
         DeploymentProvider.logger.entry();
         Response rep = null;
-        if (this.dep.isLaunched()) {
+        if (this.dep.isLaunched() || DeploymentLauncher.get().isLaunching(this.dep)) {
             rep = Response.status(Status.FORBIDDEN).build();
         } else {
             try {
@@ -97,6 +104,7 @@ public class DeploymentProvider {
                         .fromXML(XMLConverter.convertW3CDocumentJDOMElement(doc))
                         .withUuid(this.dep.getUniqueIdentifier()).build();
                 this.app.putDeployment(newDeployment);
+                StateStore.get().recordDeployment(this.app, newDeployment);
                 rep = Response.ok().build();
             } catch (final ParseException e) {
                 rep = Response.status(Status.BAD_REQUEST).build();
@@ -115,7 +123,7 @@ public class DeploymentProvider {
      * @return 200 iff successfull, 404 if not found and 500 if errored.
      */
     @PUT
-    @Produces(MediaType.APPLICATION_XML)
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public final Response addVMToDeployment(final Document doc,
             @QueryParam("template") final String templateID) {
         DeploymentProvider.logger.entry();
@@ -130,6 +138,7 @@ public class DeploymentProvider {
                         .fromXML(xml.getChild(VMDeploymentSpecificationFactory.TAG_ELEMENT_ROOT))
                         .build();
                 this.dep.addVirtualMachines(vm, spec);
+                StateStore.get().recordVirtualMachineAdded(this.app, this.dep, vm, spec);
                 rep = Response.ok().build();
             } catch (final ParseException e) {
                 rep = Response.status(Status.BAD_REQUEST).build();
@@ -140,100 +149,115 @@ public class DeploymentProvider {
 
     /**
      * Handles the POST on the /start URI, indicating the vms should be
-     * launched.
+     * launched. The vms are launched in the background by the
+     * {@link DeploymentLauncher}; the progress can be followed on the /progress
+     * URI, which the Location header points to.
      * 
-     * @return 202 if succesfully propagated.
+     * @param uriInfo
+     *            of the request.
+     * @return 202 with the initial progress if the launch was started, 403 if
+     *         the deployment was launched before, 409 if it is being launched.
      */
     @Path(DeploymentProvider.PATH_START)
     @POST
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response postDeploymentStart() {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final Response postDeploymentStart(@Context final UriInfo uriInfo) {
         DeploymentProvider.logger.entry();
         Response rep = null;
         if (this.dep.isLaunched()) {
             rep = Response.status(Status.FORBIDDEN).build();
         } else {
-            final List<VMDeploymentSpecification> specs = this.dep.getSpecs();
-            for (final VMDeploymentSpecification spec : specs) {
-                try {
-                    final VirtualMachine vm = this.launchSpecification(spec);
-                    this.dep.addVirtualMachines(vm, spec);
-                } catch (final RESTRequestException e) {
-                    DeploymentProvider.logger.catching(e);
-                    return DeploymentProvider.logger.exit(Response.status(e.getHttpCode()).build());
-                }
+            final LaunchProgress progress = DeploymentLauncher.get().start(this.app, this.dep);
+            if (progress == null) {
+                rep = Response.status(Status.CONFLICT).build();
+            } else {
+                final URI location = uriInfo.getBaseUriBuilder().path(AppsProvider.PATH)
+                        .path(this.app.getUniqueIdentifier()).path(DeploymentsProvider.PATH)
+                        .path(this.dep.getUniqueIdentifier())
+                        .path(DeploymentProvider.PATH_PROGRESS).build();
+                rep = Response.accepted(StreamingXMLOutput.ofElement(progress.toXML()))
+                        .location(location).build();
             }
-            this.dep.setLaunched(true);
-            rep = Response.accepted().build();
         }
         return DeploymentProvider.logger.exit(rep);
     }
 
     /**
-     * Launches a VM according to the specified specification.
+     * Handles the GET on the /progress URI, returning the progress of the last
+     * launch of this deployment. The version of the progress is sent as ETag,
+     * so a client that passes it as If-None-Match gets a 304 while nothing has
+     * changed.
      * 
-     * @param spec
-     *            to launch
-     * @return the launched {@link VirtualMachine}
-     * @throws RESTRequestException
-     *             if launching fails.
+     * If the client passes the version it has seen and a wait time, the
+     * request is held until the launch changes or the wait time has passed,
+     * without taking up a worker thread. A launching VM that a refresh sees
+     * running is such a change, so a client can wait until every VM is on or
+     * failed.
+     * 
+     * @param version
+     *            the version the client has seen, -1 if none.
+     * @param wait
+     *            maximum time in milliseconds to wait for a change, at most
+     *            {@link #MAX_WAIT}.
+     * @param ifNoneMatch
+     *            the If-None-Match header, may be null.
+     * @param response
+     *            the suspended request, resumed with the progress, or 404 if
+     *            the deployment was not launched by this server.
      */
-    private VirtualMachine launchSpecification(final VMDeploymentSpecification spec)
-            throws RESTRequestException {
-
-        VirtualMachine vm;
-        if (spec.getStore() != null) {
-            vm = this.launchWithDisk(spec);
+    @Path(DeploymentProvider.PATH_PROGRESS)
+    @GET
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final void getLaunchProgress(
+            @QueryParam(DeploymentProvider.PARAM_VERSION) @DefaultValue("-1") final long version,
+            @QueryParam(DeploymentProvider.PARAM_WAIT) @DefaultValue("0") final long wait,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch,
+            @Suspended final AsyncResponse response) {
+        DeploymentProvider.logger.entry();
+        final LaunchProgress progress = DeploymentLauncher.get()
+                .getProgress(this.dep.getUniqueIdentifier());
+        if (progress == null) {
+            response.resume(Response.status(Status.NOT_FOUND).build());
+        } else if (wait <= 0) {
+            response.resume(DeploymentProvider.toResponse(progress, ifNoneMatch));
         } else {
-            vm = this.launchWithoutDisk(spec);
+            final Runnable listener = new Runnable() {
+                @Override
+                public void run() {
+                    response.resume(DeploymentProvider.toResponse(progress, ifNoneMatch));
+                }
+            };
+            response.setTimeoutHandler(new TimeoutHandler() {
+                @Override
+                public void handleTimeout(final AsyncResponse timedOut) {
+                    progress.removeListener(listener);
+                    timedOut.resume(DeploymentProvider.toResponse(progress, ifNoneMatch));
+                }
+            });
+            response.setTimeout(Math.min(wait, DeploymentProvider.MAX_WAIT),
+                                TimeUnit.MILLISECONDS);
+            if (!progress.runOnChange(version, listener)) {
+                response.resume(DeploymentProvider.toResponse(progress, ifNoneMatch));
+            }
         }
-        DeploymentProvider.logger
-                .debug("Just requested a VM to be launched. Status can be found under hash: "
-                        + vm.getUniqueIdentifier());
-        vm.setStatus(VirtualMachine.Status.LAUNCHING);
-        return vm;
+        DeploymentProvider.logger.exit();
     }
 
     /**
-     * @param spec
-     *            to launch
-     * @return the {@link VirtualMachine} representing the VM that just
-     *         launched.
-     * @throws RESTRequestException
-     *             if launching fails.
+     * @param progress
+     *            to send.
+     * @param ifNoneMatch
+     *            the If-None-Match header of the request, may be null.
+     * @return the progress, or 304 if it matches the header.
      */
-    private VirtualMachine launchWithDisk(final VMDeploymentSpecification spec)
-            throws RESTRequestException {
-        final String hostName = UUIDGenerator.generate(spec.getTemplate().getName());
-        final Response postRep = RequestSender.get().postCreateVM(spec.getHost(),
-                                                                  hostName,
-                                                                  spec.getTemplate()
-                                                                          .getUniqueIdentifier(),
-                                                                  spec.getStore());
-        final VirtualMachine vm = new VirtualMachineBuilder()
-                .withUuid(postRep.getLocation().getRawPath().split("/")[2])
-                .withHost(spec.getHost()).withDisk(spec.getStore()).build();
-        return vm;
-    }
-
-    /**
-     * @param spec
-     *            to launch
-     * @return the {@link VirtualMachine} representing the VM that just
-     *         launched.
-     * @throws RESTRequestException
-     *             if launching fails.
-     */
-    private VirtualMachine launchWithoutDisk(final VMDeploymentSpecification spec)
-            throws RESTRequestException {
-        final String hostName = UUIDGenerator.generate(spec.getTemplate().getName());
-        final Response postRep = RequestSender.get().postCreateVM(spec.getHost(),
-                                                                  hostName,
-                                                                  spec.getTemplate()
-                                                                          .getUniqueIdentifier());
-        final VirtualMachine vm = new VirtualMachineBuilder()
-                .withUuid(postRep.getLocation().getRawPath().split("/")[2])
-                .withHost(spec.getHost()).build();
-        return vm;
+    private static Response toResponse(final LaunchProgress progress, final String ifNoneMatch) {
+        // The tag is taken from the xml, so both describe the same version.
+        final Element xml = progress.toXML();
+        final EntityTag tag = new EntityTag(xml
+                .getAttributeValue(LaunchProgress.ATTRIBUTE_VERSION));
+        if (ifNoneMatch != null && ifNoneMatch.trim().equals(tag.toString())) {
+            return Response.notModified(tag).build();
+        }
+        return Response.ok(StreamingXMLOutput.ofElement(xml)).tag(tag).build();
     }
 }
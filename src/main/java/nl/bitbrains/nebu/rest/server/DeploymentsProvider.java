@@ -22,12 +22,12 @@ import nl.bitbrains.nebu.containers.DeploymentRequest;
 import nl.bitbrains.nebu.containers.DeploymentRequestFactory;
 import nl.bitbrains.nebu.deployer.Deployer;
 import nl.bitbrains.nebu.deployer.DeployerException;
+import nl.bitbrains.nebu.store.StateStore;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
 import org.w3c.dom.Document;
 
 /**
@@ -76,21 +76,18 @@ public class DeploymentsProvider {
      * Handles a GET request on the base URI.
      * 
      * @return a list of deployments for the specified app.
-     * @throws JDOMException
-     *             iff conversion fails
      */
     @GET
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response getDeployments() throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final Response getDeployments() {
         DeploymentsProvider.logger.entry();
         Response rep = null;
-        final Element elem = XMLConverter
-                .convertCollectionToJDOMElement(this.app.getDeployments(),
-                                                new DeploymentFactory(false),
-                                                DeploymentFactory.LIST_TAG_ELEMENT_ROOT,
-                                                DeploymentFactory.TAG_ELEMENT_ROOT);
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(elem);
-        rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+        final StreamingXMLOutput output = StreamingXMLOutput
+                .ofCollection(this.app.getDeployments(),
+                              new DeploymentFactory(false),
+                              DeploymentFactory.LIST_TAG_ELEMENT_ROOT,
+                              DeploymentFactory.TAG_ELEMENT_ROOT);
+        rep = Response.ok(output).build();
         return DeploymentsProvider.logger.exit(rep);
     }
 
@@ -103,7 +100,7 @@ public class DeploymentsProvider {
      * @return a 201 on successful creation
      */
     @POST
-    @Produces(MediaType.APPLICATION_XML)
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public final Response postDeployments(final Document doc) {
         DeploymentsProvider.logger.entry();
         Response rep = null;
@@ -137,6 +134,7 @@ public class DeploymentsProvider {
         }
 
         this.app.putDeployment(deployment);
+        StateStore.get().recordDeployment(this.app, deployment);
         final URI location = URI.create(deployment.getUniqueIdentifier());
         rep = Response.created(location).build();
         return DeploymentsProvider.logger.exit(rep);
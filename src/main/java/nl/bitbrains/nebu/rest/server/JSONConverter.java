@@ -0,0 +1,267 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nl.bitbrains.nebu.common.util.xml.XMLConverter;
+import nl.bitbrains.nebu.containers.ApplicationFactory;
+import nl.bitbrains.nebu.containers.DeploymentFactory;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationFactory;
+import nl.bitbrains.nebu.containers.VMTemplateFactory;
+
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+
+import com.owlike.genson.stream.ObjectReader;
+import com.owlike.genson.stream.ObjectWriter;
+import com.owlike.genson.stream.ValueType;
+
+/**
+ * Converts the xml of the REST API to and from json, so the factories stay
+ * the only definition of the format. Works directly on the streams of Genson,
+ * without building an intermediate json tree.
+ * 
+ * An element is written as an object with a member per attribute, prefixed
+ * with {@value #ATTRIBUTE_PREFIX}, a member per child element name, and a
+ * {@value #TEXT_NAME} member for its text. Children that occur more than once
+ * become an array, as do children that can be repeated in the format, such as
+ * the specifications of a deployment, even if there is only one of them, so
+ * clients do not have to handle both shapes. An element without attributes
+ * and children is written as its text. A document is an object with the root
+ * element as its only member, so
+ * 
+ * <pre>
+ * &lt;app id="a"&gt;&lt;name&gt;x&lt;/name&gt;&lt;/app&gt;
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * {"app":{"@id":"a","name":"x"}}
+ * </pre>
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class JSONConverter {
+
+    public static final String ATTRIBUTE_PREFIX = "@";
+    public static final String TEXT_NAME = "#text";
+
+    /**
+     * Elements of which every child can be repeated.
+     */
+    private static final Set<String> LIST_ELEMENTS = new HashSet<String>(Arrays.asList(
+            XMLConverter.TAG_MAP, ApplicationFactory.LIST_TAG_ELEMENT_ROOT,
+            VMTemplateFactory.LIST_TAG_ELEMENT_ROOT, DeploymentFactory.LIST_TAG_ELEMENT_ROOT));
+
+    /**
+     * Children that can be repeated, as paths from their parent.
+     */
+    private static final Set<String> REPEATED_CHILDREN = new HashSet<String>(Arrays.asList(
+            JSONConverter.path(DeploymentFactory.TAG_ELEMENT_ROOT,
+                               VMDeploymentSpecificationFactory.TAG_ELEMENT_ROOT),
+            JSONConverter.path(LaunchProgress.TAG_LAUNCH, LaunchProgress.TAG_SPEC)));
+
+    /**
+     * Private constructor, only static methods.
+     */
+    private JSONConverter() {
+    }
+
+    /**
+     * Writes the element as a document.
+     * 
+     * @param element
+     *            to write.
+     * @param writer
+     *            to write to.
+     */
+    public static void writeDocument(final Element element, final ObjectWriter writer) {
+        writer.beginObject();
+        writer.writeName(element.getName());
+        JSONConverter.writeElement(element, writer);
+        writer.endObject();
+    }
+
+    /**
+     * Writes the value of the element.
+     * 
+     * @param element
+     *            to write.
+     * @param writer
+     *            to write to.
+     */
+    public static void writeElement(final Element element, final ObjectWriter writer) {
+        final List<Element> children = element.getChildren();
+        if (!element.hasAttributes() && children.isEmpty()) {
+            writer.writeValue(element.getText());
+            return;
+        }
+        writer.beginObject();
+        for (final Attribute attribute : element.getAttributes()) {
+            writer.writeName(JSONConverter.ATTRIBUTE_PREFIX + attribute.getName());
+            writer.writeValue(attribute.getValue());
+        }
+        for (final Map.Entry<String, List<Element>> group : JSONConverter.groupByName(children)
+                .entrySet()) {
+            writer.writeName(group.getKey());
+            if (group.getValue().size() == 1
+                    && !JSONConverter.isRepeated(element.getName(), group.getKey())) {
+                JSONConverter.writeElement(group.getValue().get(0), writer);
+            } else {
+                writer.beginArray();
+                for (final Element child : group.getValue()) {
+                    JSONConverter.writeElement(child, writer);
+                }
+                writer.endArray();
+            }
+        }
+        final String text = element.getTextTrim();
+        if (!text.isEmpty()) {
+            writer.writeName(JSONConverter.TEXT_NAME);
+            writer.writeValue(text);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * @param parent
+     *            name of the parent element.
+     * @param child
+     *            name of the child element.
+     * @return the path from the parent to the child.
+     */
+    private static String path(final String parent, final String child) {
+        return parent + "/" + child;
+    }
+
+    /**
+     * @param parent
+     *            name of the parent element.
+     * @param child
+     *            name of the child element.
+     * @return true iff the child can occur more than once in the parent, so
+     *         it is always written as an array.
+     */
+    private static boolean isRepeated(final String parent, final String child) {
+        return JSONConverter.LIST_ELEMENTS.contains(parent)
+                || JSONConverter.REPEATED_CHILDREN.contains(JSONConverter.path(parent, child));
+    }
+
+    /**
+     * @param children
+     *            to group.
+     * @return the children by name, in the order in which the names first
+     *         occur.
+     */
+    private static Map<String, List<Element>> groupByName(final List<Element> children) {
+        final Map<String, List<Element>> groups = new LinkedHashMap<String, List<Element>>();
+        for (final Element child : children) {
+            List<Element> group = groups.get(child.getName());
+            if (group == null) {
+                group = new ArrayList<Element>();
+                groups.put(child.getName(), group);
+            }
+            group.add(child);
+        }
+        return groups;
+    }
+
+    /**
+     * Reads a document as written by {@link #writeDocument(Element, ObjectWriter)}.
+     * 
+     * @param reader
+     *            positioned at the start of the document.
+     * @return the root element.
+     * @throws IllegalArgumentException
+     *             if the document is not an object with a single member.
+     */
+    public static Element readDocument(final ObjectReader reader) {
+        if (reader.getValueType() != ValueType.OBJECT) {
+            throw new IllegalArgumentException("Document must be an object");
+        }
+        reader.beginObject();
+        if (!reader.hasNext()) {
+            throw new IllegalArgumentException("Document has no root element");
+        }
+        final ValueType type = reader.next();
+        final Element root = new Element(reader.name());
+        JSONConverter.readValue(type, root, reader);
+        if (reader.hasNext()) {
+            throw new IllegalArgumentException("Document has more than one root element");
+        }
+        reader.endObject();
+        return root;
+    }
+
+    /**
+     * Reads the current value into the element.
+     * 
+     * @param type
+     *            of the current value.
+     * @param element
+     *            to read the value into.
+     * @param reader
+     *            positioned at the value.
+     */
+    private static void readValue(final ValueType type, final Element element,
+            final ObjectReader reader) {
+        if (type == ValueType.OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final ValueType memberType = reader.next();
+                JSONConverter.readMember(reader.name(), memberType, element, reader);
+            }
+            reader.endObject();
+        } else if (type == ValueType.ARRAY) {
+            throw new IllegalArgumentException("Unexpected array in " + element.getName());
+        } else if (type != ValueType.NULL) {
+            element.setText(reader.valueAsString());
+        }
+    }
+
+    /**
+     * Reads a member of an object into the element of the object.
+     * 
+     * @param name
+     *            of the member.
+     * @param type
+     *            of the value of the member.
+     * @param element
+     *            of the object.
+     * @param reader
+     *            positioned at the value of the member.
+     */
+    private static void readMember(final String name, final ValueType type,
+            final Element element, final ObjectReader reader) {
+        if (name.startsWith(JSONConverter.ATTRIBUTE_PREFIX)) {
+            if (type != ValueType.NULL) {
+                element.setAttribute(name.substring(JSONConverter.ATTRIBUTE_PREFIX.length()),
+                                     reader.valueAsString());
+            }
+        } else if (name.equals(JSONConverter.TEXT_NAME)) {
+            if (type != ValueType.NULL) {
+                element.addContent(reader.valueAsString());
+            }
+        } else if (type == ValueType.ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                final ValueType itemType = reader.next();
+                final Element child = new Element(name);
+                JSONConverter.readValue(itemType, child, reader);
+                element.addContent(child);
+            }
+            reader.endArray();
+        } else {
+            final Element child = new Element(name);
+            JSONConverter.readValue(type, child, reader);
+            element.addContent(child);
+        }
+    }
+}
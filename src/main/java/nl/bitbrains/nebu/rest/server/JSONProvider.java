@@ -0,0 +1,100 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import nl.bitbrains.nebu.common.util.xml.XMLConverter;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.w3c.dom.Document;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.stream.JsonStreamException;
+
+/**
+ * Lets the resources produce and consume application/json next to
+ * application/xml. Responses are written from {@link StreamingXMLOutput}
+ * entities; request bodies are read into the {@link Document} that the
+ * resources already accept. See {@link JSONConverter} for the format.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class JSONProvider implements MessageBodyWriter<StreamingXMLOutput>,
+        MessageBodyReader<Document> {
+
+    private static final Genson GENSON = new Genson();
+    private static Logger logger = LogManager.getLogger();
+
+    /**
+     * Empty constructor, needed by Jersey.
+     */
+    public JSONProvider() {
+
+    }
+
+    @Override
+    public final boolean isWriteable(final Class<?> type, final Type genericType,
+            final Annotation[] annotations, final MediaType mediaType) {
+        return StreamingXMLOutput.class.isAssignableFrom(type)
+                && MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public final long getSize(final StreamingXMLOutput t, final Class<?> type,
+            final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+        // Unknown, the output is streamed.
+        return -1;
+    }
+
+    @Override
+    public final void writeTo(final StreamingXMLOutput t, final Class<?> type,
+            final Type genericType, final Annotation[] annotations, final MediaType mediaType,
+            final MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream)
+            throws IOException {
+        t.writeJSON(entityStream);
+    }
+
+    @Override
+    public final boolean isReadable(final Class<?> type, final Type genericType,
+            final Annotation[] annotations, final MediaType mediaType) {
+        return Document.class.isAssignableFrom(type)
+                && MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public final Document readFrom(final Class<Document> type, final Type genericType,
+            final Annotation[] annotations, final MediaType mediaType,
+            final MultivaluedMap<String, String> httpHeaders, final InputStream entityStream)
+            throws IOException {
+        try {
+            final Element root = JSONConverter.readDocument(JSONProvider.GENSON
+                    .createReader(entityStream, Charset.forName(StreamingXMLOutput.ENCODING)));
+            return XMLConverter.convertJDOMElementW3CDocument(root);
+        } catch (final JsonStreamException | IllegalArgumentException | JDOMException e) {
+            JSONProvider.logger.catching(Level.WARN, e);
+            throw new WebApplicationException(e, Status.BAD_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationFactory;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         The progress of launching a deployment in the background, as
+ *         reported by the progress resource of the deployment. Every
+ *         specification goes from queued to requested when its create call is
+ *         sent, and then to launching or failed. A launching VM is reported on
+ *         once a refresh of the deployment has seen it running. The launch is
+ *         complete once every create call has been answered and every
+ *         specification is on or failed.
+ * 
+ *         Every change increases the version, so clients can tell whether the
+ *         progress has changed since they last read it.
+ */
+public final class LaunchProgress {
+
+    /**
+     * The state of a single specification.
+     */
+    public enum State {
+        QUEUED, REQUESTED, LAUNCHING, ON, FAILED;
+
+        /**
+         * @return the name used in xml.
+         */
+        public String toXMLName() {
+            return this.name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    public static final String TAG_LAUNCH = "launch";
+    public static final String TAG_SPEC = "spec";
+    public static final String ATTRIBUTE_DEPLOYMENT = "deployment";
+    public static final String ATTRIBUTE_VERSION = "version";
+    public static final String ATTRIBUTE_STARTED = "started";
+    public static final String ATTRIBUTE_FINISHED = "finished";
+    public static final String ATTRIBUTE_INDEX = "index";
+    public static final String ATTRIBUTE_STATE = "state";
+    public static final String ATTRIBUTE_VM = "vm";
+    public static final String ATTRIBUTE_CODE = "code";
+    public static final String ATTRIBUTE_MESSAGE = "message";
+    public static final String ATTRIBUTE_QUEUED = "queued";
+    public static final String ATTRIBUTE_REQUESTED = "requested";
+    public static final String ATTRIBUTE_LAUNCHED = "launched";
+    public static final String ATTRIBUTE_ON = "on";
+    public static final String ATTRIBUTE_FAILED = "failed";
+
+    private static Logger logger = LogManager.getLogger();
+
+    /**
+     * The progress of a single specification. Times are 0 until the state is
+     * reached.
+     */
+    private static final class Entry {
+        private final VMDeploymentSpecification spec;
+        private State state = State.QUEUED;
+        private long queued;
+        private long requested;
+        private long launched;
+        private long finished;
+        private VirtualMachine vm;
+        private RESTRequestException failure;
+
+        /**
+         * @param spec
+         *            to launch.
+         * @param queued
+         *            time at which the launch was queued.
+         */
+        private Entry(final VMDeploymentSpecification spec, final long queued) {
+            this.spec = spec;
+            this.queued = queued;
+        }
+    }
+
+    private final String deploymentID;
+    private final long started;
+    private final List<Entry> entries;
+    private final List<Runnable> listeners;
+    private long finished;
+    private long version;
+
+    /**
+     * Creates the progress of a launch with all specifications queued.
+     * 
+     * @param deploymentID
+     *            uuid of the deployment that is launched.
+     * @param specs
+     *            that are launched.
+     */
+    public LaunchProgress(final String deploymentID, final List<VMDeploymentSpecification> specs) {
+        ErrorChecker.throwIfNullArgument(deploymentID, "deploymentID");
+        ErrorChecker.throwIfNullArgument(specs, "specs");
+        this.deploymentID = deploymentID;
+        this.started = System.currentTimeMillis();
+        this.entries = new ArrayList<Entry>();
+        for (final VMDeploymentSpecification spec : specs) {
+            this.entries.add(new Entry(spec, this.started));
+        }
+        this.listeners = new ArrayList<Runnable>();
+    }
+
+    /**
+     * @return the uuid of the deployment that is launched.
+     */
+    public String getDeploymentID() {
+        return this.deploymentID;
+    }
+
+    /**
+     * @param index
+     *            of the specification whose create call is being sent.
+     */
+    public void setRequested(final int index) {
+        final List<Runnable> toRun;
+        synchronized (this) {
+            final Entry entry = this.entries.get(index);
+            entry.state = State.REQUESTED;
+            entry.requested = System.currentTimeMillis();
+            toRun = this.changed();
+        }
+        LaunchProgress.run(toRun);
+    }
+
+    /**
+     * @param index
+     *            of the specification that was launched.
+     * @param result
+     *            of its create call.
+     */
+    public void setResult(final int index, final LaunchResult result) {
+        final List<Runnable> toRun;
+        synchronized (this) {
+            final Entry entry = this.entries.get(index);
+            if (result.isSuccess()) {
+                entry.state = State.LAUNCHING;
+                entry.launched = System.currentTimeMillis();
+                entry.vm = result.getVirtualMachine();
+            } else {
+                entry.state = State.FAILED;
+                entry.finished = System.currentTimeMillis();
+                entry.failure = result.getFailure();
+            }
+            toRun = this.changed();
+        }
+        LaunchProgress.run(toRun);
+    }
+
+    /**
+     * Marks the launch as finished: every create call has been answered.
+     */
+    public void setFinished() {
+        final List<Runnable> toRun;
+        synchronized (this) {
+            this.finished = System.currentTimeMillis();
+            toRun = this.changed();
+        }
+        LaunchProgress.run(toRun);
+    }
+
+    /**
+     * @return true iff every create call has been answered.
+     */
+    public synchronized boolean isFinished() {
+        return this.finished != 0;
+    }
+
+    /**
+     * @return the time at which every create call had been answered, 0 if
+     *         they have not been yet.
+     */
+    public synchronized long getFinished() {
+        return this.finished;
+    }
+
+    /**
+     * @return true iff every create call has been answered, and every
+     *         specification is on or failed.
+     */
+    public boolean isComplete() {
+        final List<Runnable> toRun;
+        final boolean complete;
+        synchronized (this) {
+            toRun = this.update();
+            complete = this.isCompleteLocked();
+        }
+        LaunchProgress.run(toRun);
+        return complete;
+    }
+
+    /**
+     * @return the current version of the progress.
+     */
+    public long getVersion() {
+        final List<Runnable> toRun;
+        final long current;
+        synchronized (this) {
+            toRun = this.update();
+            current = this.version;
+        }
+        LaunchProgress.run(toRun);
+        return current;
+    }
+
+    /**
+     * @param index
+     *            of the specification.
+     * @return its current state.
+     */
+    public State getState(final int index) {
+        final List<Runnable> toRun;
+        final State state;
+        synchronized (this) {
+            toRun = this.update();
+            state = this.entries.get(index).state;
+        }
+        LaunchProgress.run(toRun);
+        return state;
+    }
+
+    /**
+     * Marks launching VMs that have been seen running as on, and runs the
+     * listeners if there were any. Called after the VMs of the deployment
+     * have been refreshed.
+     */
+    public void checkVirtualMachines() {
+        final List<Runnable> toRun;
+        synchronized (this) {
+            toRun = this.update();
+        }
+        LaunchProgress.run(toRun);
+    }
+
+    /**
+     * Registers a listener that is run once, at the next change of the
+     * launch, including a launching VM that is seen running.
+     * 
+     * @param seenVersion
+     *            the version the caller has seen.
+     * @param listener
+     *            to run.
+     * @return false if the listener was not registered, because the version
+     *         has changed since or the launch is complete.
+     */
+    public boolean runOnChange(final long seenVersion, final Runnable listener) {
+        ErrorChecker.throwIfNullArgument(listener, "listener");
+        final List<Runnable> toRun;
+        boolean registered = false;
+        synchronized (this) {
+            toRun = this.update();
+            if (this.version == seenVersion && !this.isCompleteLocked()) {
+                this.listeners.add(listener);
+                registered = true;
+            }
+        }
+        LaunchProgress.run(toRun);
+        return registered;
+    }
+
+    /**
+     * Removes a listener that has not been run yet, for example because its
+     * caller stopped waiting.
+     * 
+     * @param listener
+     *            registered by {@link #runOnChange(long, Runnable)}.
+     * @return true iff the listener was registered and has not been run.
+     */
+    public synchronized boolean removeListener(final Runnable listener) {
+        return this.listeners.remove(listener);
+    }
+
+    /**
+     * @return true iff every create call has been answered, and every
+     *         specification is on or failed.
+     */
+    private boolean isCompleteLocked() {
+        if (this.finished == 0) {
+            return false;
+        }
+        for (final Entry entry : this.entries) {
+            if (entry.state != State.ON && entry.state != State.FAILED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks launching VMs that have been seen running as on.
+     * 
+     * @return the listeners that waited for it if a VM was marked, to be run
+     *         once the lock is released.
+     */
+    private List<Runnable> update() {
+        boolean changed = false;
+        for (final Entry entry : this.entries) {
+            if (entry.state == State.LAUNCHING && entry.vm.isOn()) {
+                entry.state = State.ON;
+                entry.finished = System.currentTimeMillis();
+                changed = true;
+            }
+        }
+        if (changed) {
+            return this.changed();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Increases the version.
+     * 
+     * @return the listeners that waited for it, to be run once the lock is
+     *         released.
+     */
+    private List<Runnable> changed() {
+        this.version++;
+        final List<Runnable> toRun = new ArrayList<Runnable>(this.listeners);
+        this.listeners.clear();
+        return toRun;
+    }
+
+    /**
+     * @param listeners
+     *            to run.
+     */
+    private static void run(final List<Runnable> listeners) {
+        for (final Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (final RuntimeException e) {
+                // Must not escape, the launch itself has to continue.
+                LaunchProgress.logger.catching(Level.ERROR, e);
+            }
+        }
+    }
+
+    /**
+     * @return the progress as xml. Its version attribute is the version of
+     *         the progress it describes.
+     */
+    public Element toXML() {
+        final List<Runnable> toRun;
+        final Element xml;
+        synchronized (this) {
+            toRun = this.update();
+            xml = this.toXMLLocked();
+        }
+        LaunchProgress.run(toRun);
+        return xml;
+    }
+
+    /**
+     * @return the progress as xml.
+     */
+    private Element toXMLLocked() {
+        final VMDeploymentSpecificationFactory factory = new VMDeploymentSpecificationFactory();
+        final Element xml = new Element(LaunchProgress.TAG_LAUNCH);
+        xml.setAttribute(LaunchProgress.ATTRIBUTE_DEPLOYMENT, this.deploymentID);
+        xml.setAttribute(LaunchProgress.ATTRIBUTE_VERSION, Long.toString(this.version));
+        xml.setAttribute(LaunchProgress.ATTRIBUTE_STARTED, Long.toString(this.started));
+        if (this.finished != 0) {
+            xml.setAttribute(LaunchProgress.ATTRIBUTE_FINISHED, Long.toString(this.finished));
+        }
+        for (int i = 0; i < this.entries.size(); i++) {
+            final Entry entry = this.entries.get(i);
+            final Element elem = new Element(LaunchProgress.TAG_SPEC);
+            elem.setAttribute(LaunchProgress.ATTRIBUTE_INDEX, Integer.toString(i));
+            elem.setAttribute(LaunchProgress.ATTRIBUTE_STATE, entry.state.toXMLName());
+            LaunchProgress.setTime(elem, LaunchProgress.ATTRIBUTE_QUEUED, entry.queued);
+            LaunchProgress.setTime(elem, LaunchProgress.ATTRIBUTE_REQUESTED, entry.requested);
+            LaunchProgress.setTime(elem, LaunchProgress.ATTRIBUTE_LAUNCHED, entry.launched);
+            if (entry.state == State.ON) {
+                LaunchProgress.setTime(elem, LaunchProgress.ATTRIBUTE_ON, entry.finished);
+            } else if (entry.state == State.FAILED) {
+                LaunchProgress.setTime(elem, LaunchProgress.ATTRIBUTE_FAILED, entry.finished);
+            }
+            if (entry.vm != null) {
+                elem.setAttribute(LaunchProgress.ATTRIBUTE_VM, entry.vm.getUniqueIdentifier());
+            }
+            if (entry.failure != null) {
+                elem.setAttribute(LaunchProgress.ATTRIBUTE_CODE,
+                                  Integer.toString(entry.failure.getHttpCode()));
+                if (entry.failure.getMessage() != null) {
+                    elem.setAttribute(LaunchProgress.ATTRIBUTE_MESSAGE,
+                                      entry.failure.getMessage());
+                }
+            }
+            elem.addContent(factory.toXML(entry.spec));
+            xml.addContent(elem);
+        }
+        return xml;
+    }
+
+    /**
+     * @param elem
+     *            to set the time on.
+     * @param attribute
+     *            to set.
+     * @param time
+     *            to set, not set if 0.
+     */
+    private static void setTime(final Element elem, final String attribute, final long time) {
+        if (time != 0) {
+            elem.setAttribute(attribute, Long.toString(time));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package nl.bitbrains.nebu.rest.server;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+/**
+ * The outcome of launching a single {@link VMDeploymentSpecification}: either
+ * the launched {@link VirtualMachine} or the reason the launch failed.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class LaunchResult {
+
+    private final VMDeploymentSpecification spec;
+    private final VirtualMachine vm;
+    private final RESTRequestException failure;
+
+    /**
+     * @param spec
+     *            that was launched.
+     * @param vm
+     *            that was launched, null if the launch failed.
+     * @param failure
+     *            reason the launch failed, null if it succeeded.
+     */
+    private LaunchResult(final VMDeploymentSpecification spec, final VirtualMachine vm,
+            final RESTRequestException failure) {
+        this.spec = spec;
+        this.vm = vm;
+        this.failure = failure;
+    }
+
+    /**
+     * @param spec
+     *            that was launched.
+     * @param vm
+     *            that was launched.
+     * @return a successful result.
+     */
+    public static LaunchResult success(final VMDeploymentSpecification spec,
+            final VirtualMachine vm) {
+        return new LaunchResult(spec, vm, null);
+    }
+
+    /**
+     * @param spec
+     *            that could not be launched.
+     * @param failure
+     *            reason the launch failed.
+     * @return a failed result.
+     */
+    public static LaunchResult failure(final VMDeploymentSpecification spec,
+            final RESTRequestException failure) {
+        return new LaunchResult(spec, null, failure);
+    }
+
+    /**
+     * @return the specification that was launched.
+     */
+    public VMDeploymentSpecification getSpec() {
+        return this.spec;
+    }
+
+    /**
+     * @return the launched vm, or null if the launch failed.
+     */
+    public VirtualMachine getVirtualMachine() {
+        return this.vm;
+    }
+
+    /**
+     * @return the reason the launch failed, or null if it succeeded.
+     */
+    public RESTRequestException getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * @return true iff the vm was launched.
+     */
+    public boolean isSuccess() {
+        return this.failure == null;
+    }
+}
@@ -0,0 +1,90 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response.Status.Family;
+import javax.ws.rs.ext.Provider;
+
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
+
+/**
+ * Times every request to a resource method, from the moment it is matched
+ * until its response is sent. For suspended requests this includes the time
+ * the request waited for the {@link AsyncRequestExecutor}. Responses with a
+ * server error status count as failures.
+ * 
+ * The requests are labelled with the resource class and method that handled
+ * them, and not with their path, so the uuids in the paths do not create a
+ * metric each.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String METRIC = "nebu_http_requests";
+    public static final String METRIC_RESPONSES = "nebu_http_responses_total";
+    public static final String LABEL_RESOURCE = "resource";
+    public static final String LABEL_METHOD = "method";
+    public static final String LABEL_STATUS = "status";
+    private static final String PROPERTY_START = MetricsFilter.class.getName() + ".start";
+    private static final String UNMATCHED = "unmatched";
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    /**
+     * Empty constructor, needed by Jersey.
+     */
+    public MetricsFilter() {
+
+    }
+
+    @Override
+    public final void filter(final ContainerRequestContext requestContext) throws IOException {
+        requestContext.setProperty(MetricsFilter.PROPERTY_START, System.nanoTime());
+    }
+
+    @Override
+    public final void filter(final ContainerRequestContext requestContext,
+            final ContainerResponseContext responseContext) throws IOException {
+        final Object start = requestContext.getProperty(MetricsFilter.PROPERTY_START);
+        if (!(start instanceof Long)) {
+            // The request was not matched to a resource method.
+            return;
+        }
+        final String resource = this.getResourceName();
+        final Family family = responseContext.getStatusInfo().getFamily();
+        final MetricsRegistry registry = MetricsRegistry.get();
+        registry.timer(MetricsFilter.METRIC,
+                       MetricsRegistry.labels(MetricsFilter.LABEL_RESOURCE, resource,
+                                              MetricsFilter.LABEL_METHOD,
+                                              requestContext.getMethod()))
+                .stop((Long) start, family != Family.SERVER_ERROR);
+        registry.counter(MetricsFilter.METRIC_RESPONSES,
+                         MetricsRegistry.labels(MetricsFilter.LABEL_RESOURCE, resource,
+                                                MetricsFilter.LABEL_STATUS,
+                                                Integer.toString(responseContext.getStatus())))
+                .increment();
+    }
+
+    /**
+     * @return the class and method that handled the request, such as
+     *         <code>AppProvider.getApp</code>.
+     */
+    private String getResourceName() {
+        final Method method = this.resourceInfo.getResourceMethod();
+        if (method == null) {
+            return MetricsFilter.UNMATCHED;
+        }
+        return this.resourceInfo.getResourceClass().getSimpleName() + "." + method.getName();
+    }
+}
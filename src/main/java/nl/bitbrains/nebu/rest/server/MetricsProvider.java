@@ -0,0 +1,39 @@
+package nl.bitbrains.nebu.rest.server;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
+
+/**
+ * Handles the requests on the /metrics uri, which serves the metrics of the
+ * {@link MetricsRegistry} in the Prometheus text format.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+@Path(MetricsProvider.PATH)
+public class MetricsProvider {
+
+    public static final String PATH = "metrics";
+
+    /**
+     * Empty constructor, needed by Jersey.
+     */
+    public MetricsProvider() {
+
+    }
+
+    /**
+     * Handles the GET request on this path.
+     * 
+     * @return all metrics as text.
+     */
+    @GET
+    @Produces(MetricsRegistry.CONTENT_TYPE)
+    public final Response getMetrics() {
+        return Response.ok(MetricsRegistry.get().toText()).build();
+    }
+}
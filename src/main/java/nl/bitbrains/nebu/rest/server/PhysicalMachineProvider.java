@@ -4,9 +4,12 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -24,7 +27,6 @@ import nl.bitbrains.nebu.common.topology.PhysicalStore;
 import nl.bitbrains.nebu.common.topology.PhysicalStoreBuilder;
 import nl.bitbrains.nebu.common.topology.PhysicalTopology;
 import nl.bitbrains.nebu.common.topology.factory.TopologyFactories;
-import nl.bitbrains.nebu.common.util.xml.XMLConverter;
 import nl.bitbrains.nebu.containers.Application;
 import nl.bitbrains.nebu.containers.Deployment;
 import nl.bitbrains.nebu.containers.VMTemplate;
@@ -33,8 +35,6 @@ import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.w3c.dom.Document;
 
 /**
  * Provides virtual machine information to clients.
@@ -64,19 +64,31 @@ public class PhysicalMachineProvider {
 
     /**
      * Returns a list of all virtual machine uuids known to the virtual machine
-     * manager.
+     * manager. The VMs and the topology may have to be requested from the VMM,
+     * so the request is handled by the {@link AsyncRequestExecutor}.
      * 
-     * @return A list of virtual machine uuids.
-     * @throws JDOMException
-     *             if the xml can not be converted.
+     * @param response
+     *            the suspended request, resumed with a list of virtual machine
+     *            uuids.
      */
     @GET
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response getPhysicalResources() throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final void getPhysicalResources(@Suspended final AsyncResponse response) {
         PhysicalMachineProvider.logger.entry();
-        Response rep = null;
-        rep = null;
+        AsyncRequestExecutor.get().submit(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return PhysicalMachineProvider.this.getPhysicalResponse();
+            }
+        });
+        PhysicalMachineProvider.logger.exit();
+    }
 
+    /**
+     * @return the response with the topology of the VMs of this app.
+     */
+    private Response getPhysicalResponse() {
+        Response rep = null;
         final List<VirtualMachine> vms = this.getAllVMsFromApp();
 
         if (this.isReal) {
@@ -84,6 +96,12 @@ public class PhysicalMachineProvider {
         } else {
             rep = this.getMockedResponse(vms);
         }
+        if (rep.getStatus() == Status.OK.getStatusCode()) {
+            rep = Response.fromResponse(rep)
+                    .header(VMStateRefresher.AGE_HEADER,
+                            VMStateRefresher.getAge(this.app.getDeployments(),
+                                                    System.currentTimeMillis())).build();
+        }
         return rep;
     }
 
@@ -94,10 +112,8 @@ public class PhysicalMachineProvider {
      * @param vms
      *            to place in the topology.
      * @return the mocked topology.
-     * @throws JDOMException
-     *             if parsing fails.
      */
-    public final Response getMockedResponse(final List<VirtualMachine> vms) throws JDOMException {
+    public final Response getMockedResponse(final List<VirtualMachine> vms) {
         final PhysicalTopology topo = new PhysicalTopology();
         for (final VirtualMachine vm : vms) {
             final String id = vm.getUniqueIdentifier();
@@ -113,8 +129,7 @@ public class PhysicalMachineProvider {
         }
         final TopologyFactories factories = TopologyFactories.createDefault();
         final Element xml = factories.getPhysicalRootFactory().toXML(topo.getRoot());
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(xml);
-        return Response.ok(doc, MediaType.APPLICATION_XML).build();
+        return Response.ok(StreamingXMLOutput.ofElement(xml)).build();
     }
 
     /**
@@ -123,10 +138,8 @@ public class PhysicalMachineProvider {
      * @param vms
      *            to filter it for.
      * @return the topology.
-     * @throws JDOMException
-     *             if parsing fails.
      */
-    public final Response getRealResponse(final List<VirtualMachine> vms) throws JDOMException {
+    public final Response getRealResponse(final List<VirtualMachine> vms) {
         final Set<String> hosts = this.getAllHostsFromVMs(vms);
         final Set<String> stores = this.getAllStoresFromVMs(vms);
         PhysicalTopology fullTopology;
@@ -141,8 +154,7 @@ public class PhysicalMachineProvider {
         final PhysicalTopology topology = this.filterTopology(fullTopology, hosts, stores);
         final TopologyFactories factories = TopologyFactories.createDefault();
         final Element xml = factories.getPhysicalRootFactory().toXML(topology.getRoot());
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(xml);
-        return Response.ok(doc, MediaType.APPLICATION_XML).build();
+        return Response.ok(StreamingXMLOutput.ofElement(xml)).build();
     }
 
     /**
@@ -230,7 +242,7 @@ public class PhysicalMachineProvider {
     private List<VirtualMachine> getAllVMsFromApp() {
         final List<VirtualMachine> result = new ArrayList<VirtualMachine>();
         for (final Deployment deployment : this.app.getDeployments()) {
-            deployment.refreshVMInformation();
+            VMStateRefresher.get().prepareRead(deployment);
             result.addAll(deployment.getVirtualMachines(true));
         }
         return result;
@@ -0,0 +1,165 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.common.util.xml.XMLFactory;
+
+import org.jdom2.Element;
+import org.jdom2.output.StAXStreamOutputter;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.stream.ObjectWriter;
+
+/**
+ * Writes xml straight to the response stream, instead of handing Jersey a W3C
+ * {@link org.w3c.dom.Document} to serialize.
+ * 
+ * Lists are written one item at a time: the element of an item is created by
+ * its factory just before it is written, so only one item is held in memory
+ * as xml instead of the whole list twice. The output is the same as that of
+ * {@link nl.bitbrains.nebu.common.util.xml.XMLConverter} for the same
+ * objects.
+ * 
+ * The same output can be written as json, see {@link JSONConverter}. Lists are
+ * then always written as an array, also when they have fewer than two items.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public abstract class StreamingXMLOutput implements StreamingOutput {
+
+    public static final String ENCODING = "UTF-8";
+    private static final String VERSION = "1.0";
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final Genson GENSON = new Genson();
+
+    /**
+     * @param <T>
+     *            type of the items.
+     * @param items
+     *            to write. The collection is copied, so later changes to it
+     *            are not written.
+     * @param factory
+     *            to convert each item to xml with.
+     * @param listTag
+     *            name of the element that contains the items.
+     * @param itemTag
+     *            name of the element of an item.
+     * @return the output of the list.
+     */
+    public static <T> StreamingXMLOutput ofCollection(final Collection<T> items,
+            final XMLFactory<T> factory, final String listTag, final String itemTag) {
+        ErrorChecker.throwIfNullArgument(items, "items");
+        ErrorChecker.throwIfNullArgument(factory, "factory");
+        ErrorChecker.throwIfNullArgument(listTag, "listTag");
+        ErrorChecker.throwIfNullArgument(itemTag, "itemTag");
+        final List<T> copy = new ArrayList<T>(items);
+        return new StreamingXMLOutput() {
+            @Override
+            protected void writeContent(final XMLStreamWriter writer,
+                    final StAXStreamOutputter outputter) throws XMLStreamException {
+                writer.writeStartElement(listTag);
+                for (final T item : copy) {
+                    outputter.output(factory.toXML(item), writer);
+                }
+                writer.writeEndElement();
+            }
+
+            @Override
+            protected void writeJSONContent(final ObjectWriter writer) {
+                writer.beginObject().writeName(listTag).beginObject().writeName(itemTag);
+                writer.beginArray();
+                for (final T item : copy) {
+                    JSONConverter.writeElement(factory.toXML(item), writer);
+                }
+                writer.endArray().endObject().endObject();
+            }
+        };
+    }
+
+    /**
+     * @param element
+     *            to write.
+     * @return the output of the element.
+     */
+    public static StreamingXMLOutput ofElement(final Element element) {
+        ErrorChecker.throwIfNullArgument(element, "element");
+        return new StreamingXMLOutput() {
+            @Override
+            protected void writeContent(final XMLStreamWriter writer,
+                    final StAXStreamOutputter outputter) throws XMLStreamException {
+                outputter.output(element, writer);
+            }
+
+            @Override
+            protected void writeJSONContent(final ObjectWriter writer) {
+                JSONConverter.writeDocument(element, writer);
+            }
+        };
+    }
+
+    @Override
+    public final void write(final OutputStream output) throws IOException {
+        try {
+            final XMLStreamWriter writer = StreamingXMLOutput.OUTPUT_FACTORY
+                    .createXMLStreamWriter(output, StreamingXMLOutput.ENCODING);
+            try {
+                writer.writeStartDocument(StreamingXMLOutput.ENCODING,
+                                          StreamingXMLOutput.VERSION);
+                this.writeContent(writer, new StAXStreamOutputter());
+                writer.writeEndDocument();
+                writer.flush();
+            } finally {
+                // Does not close the response stream, that is left to Jersey.
+                writer.close();
+            }
+        } catch (final XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes the output as json.
+     * 
+     * @param output
+     *            to write to. Is not closed.
+     */
+    public final void writeJSON(final OutputStream output) {
+        final ObjectWriter writer = StreamingXMLOutput.GENSON
+                .createWriter(output, Charset.forName(StreamingXMLOutput.ENCODING));
+        this.writeJSONContent(writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes the root element of the document.
+     * 
+     * @param writer
+     *            to write to.
+     * @param outputter
+     *            to write JDOM elements with.
+     * @throws XMLStreamException
+     *             if writing fails.
+     */
+    protected abstract void writeContent(XMLStreamWriter writer, StAXStreamOutputter outputter)
+            throws XMLStreamException;
+
+    /**
+     * Writes the document as json.
+     * 
+     * @param writer
+     *            to write to.
+     */
+    protected abstract void writeJSONContent(ObjectWriter writer);
+}
@@ -0,0 +1,155 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.text.ParseException;
+
+import nl.bitbrains.nebu.util.SettingsParser;
+
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable settings of the {@link VMStateRefresher}. When it is
+ *         enabled, the VMs of all deployments are refreshed in the background,
+ *         and read requests are answered from the last refreshed state. All
+ *         times are in milliseconds.
+ */
+public final class VMRefreshSettings {
+
+    public static final String TAG_VM_REFRESH = "vmrefresh";
+    public static final String TAG_REFRESH_INTERVAL = "refreshinterval";
+    public static final String TAG_LAUNCHING_INTERVAL = "launchinginterval";
+    public static final String TAG_THREADS = "threads";
+    public static final String ATTRIBUTE_ENABLED = "enabled";
+
+    public static final long DEFAULT_REFRESH_INTERVAL = 10000;
+    public static final long DEFAULT_LAUNCHING_INTERVAL = 2000;
+    public static final int DEFAULT_THREADS = 2;
+
+    private final boolean enabled;
+    private final long refreshInterval;
+    private final long launchingInterval;
+    private final int threads;
+
+    /**
+     * Creates settings with the background refresh disabled.
+     */
+    public VMRefreshSettings() {
+        this(false, VMRefreshSettings.DEFAULT_REFRESH_INTERVAL,
+                VMRefreshSettings.DEFAULT_LAUNCHING_INTERVAL);
+    }
+
+    /**
+     * @param enabled
+     *            true iff the VMs are refreshed in the background.
+     * @param refreshInterval
+     *            time between two refreshes of a deployment.
+     * @param launchingInterval
+     *            time between two refreshes of a deployment that has VMs that
+     *            are still launching. May not be larger than the refresh
+     *            interval.
+     */
+    public VMRefreshSettings(final boolean enabled, final long refreshInterval,
+            final long launchingInterval) {
+        this(enabled, refreshInterval, launchingInterval, VMRefreshSettings.DEFAULT_THREADS);
+    }
+
+    /**
+     * @param enabled
+     *            true iff the VMs are refreshed in the background.
+     * @param refreshInterval
+     *            time between two refreshes of a deployment.
+     * @param launchingInterval
+     *            time between two refreshes of a deployment that has VMs that
+     *            are still launching. May not be larger than the refresh
+     *            interval.
+     * @param threads
+     *            maximum number of applications that are refreshed at once.
+     */
+    public VMRefreshSettings(final boolean enabled, final long refreshInterval,
+            final long launchingInterval, final int threads) {
+        if (launchingInterval <= 0) {
+            throw new IllegalArgumentException("Launching interval must be positive");
+        }
+        if (refreshInterval < launchingInterval) {
+            throw new IllegalArgumentException(
+                    "Refresh interval must be at least the launching interval");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        this.enabled = enabled;
+        this.refreshInterval = refreshInterval;
+        this.launchingInterval = launchingInterval;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads the settings from xml such as:
+     * 
+     * <pre>
+     * &lt;vmrefresh enabled="true"&gt;
+     *     &lt;refreshinterval&gt;10000&lt;/refreshinterval&gt;
+     *     &lt;launchinginterval&gt;2000&lt;/launchinginterval&gt;
+     *     &lt;threads&gt;2&lt;/threads&gt;
+     * &lt;/vmrefresh&gt;
+     * </pre>
+     * 
+     * @param xml
+     *            the vmrefresh element to read the settings from, may be null.
+     * @return the settings.
+     * @throws ParseException
+     *             if the settings are invalidly specified.
+     */
+    public static VMRefreshSettings fromXML(final Element xml) throws ParseException {
+        if (xml == null) {
+            return new VMRefreshSettings();
+        }
+        final boolean enabled = Boolean.parseBoolean(xml
+                .getAttributeValue(VMRefreshSettings.ATTRIBUTE_ENABLED));
+        final long launchingInterval = SettingsParser
+                .parseLong(xml,
+                           VMRefreshSettings.TAG_LAUNCHING_INTERVAL,
+                           VMRefreshSettings.DEFAULT_LAUNCHING_INTERVAL);
+        final long refreshInterval = SettingsParser
+                .parseLong(xml,
+                           VMRefreshSettings.TAG_REFRESH_INTERVAL,
+                           Math.max(launchingInterval, VMRefreshSettings.DEFAULT_REFRESH_INTERVAL));
+        final int threads = SettingsParser.parseInt(xml,
+                                                    VMRefreshSettings.TAG_THREADS,
+                                                    VMRefreshSettings.DEFAULT_THREADS);
+        try {
+            return new VMRefreshSettings(enabled, refreshInterval, launchingInterval, threads);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @return true iff the VMs are refreshed in the background.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return time between two refreshes of a deployment.
+     */
+    public long getRefreshInterval() {
+        return this.refreshInterval;
+    }
+
+    /**
+     * @return time between two refreshes of a deployment with launching VMs.
+     */
+    public long getLaunchingInterval() {
+        return this.launchingInterval;
+    }
+
+    /**
+     * @return maximum number of applications that are refreshed at once.
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+}
@@ -0,0 +1,246 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.Deployment;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         This singleton class keeps the VMs of all deployments up to date in
+ *         the background, so read requests do not have to contact the VMM.
+ *         Every deployment is refreshed once per refresh interval, and once
+ *         per launching interval while it has VMs that are still launching.
+ *         The deployments of an application are refreshed one after the
+ *         other; different applications are refreshed concurrently, by up to
+ *         the configured number of threads. A thread of its own checks which
+ *         deployments are due, so it is not held up by slow refreshes.
+ * 
+ *         While the refresher is not running, read requests refresh the
+ *         deployments themselves, as before.
+ */
+public final class VMStateRefresher {
+
+    public static final String AGE_HEADER = "Age";
+    private static Logger logger = LogManager.getLogger();
+    private static VMStateRefresher instance = new VMStateRefresher();
+
+    private final Set<String> running;
+    private volatile VMRefreshSettings settings;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workers;
+
+    /**
+     * Private constructor to ensure it can not be instantiated outside of this
+     * class.
+     */
+    private VMStateRefresher() {
+        this.running = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.settings = new VMRefreshSettings();
+    }
+
+    /**
+     * @return the VMStateRefresher singleton.
+     */
+    public static VMStateRefresher get() {
+        return VMStateRefresher.instance;
+    }
+
+    /**
+     * Applies the settings, and starts or stops the background refresh
+     * accordingly.
+     * 
+     * @param newSettings
+     *            to apply.
+     */
+    public synchronized void configure(final VMRefreshSettings newSettings) {
+        ErrorChecker.throwIfNullArgument(newSettings, "newSettings");
+        this.shutdown();
+        this.settings = newSettings;
+        if (!newSettings.isEnabled()) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(VMStateRefresher
+                .newThreadFactory("nebu-vm-refresh-scheduler"));
+        this.workers = Executors.newFixedThreadPool(newSettings.getThreads(),
+                                                    VMStateRefresher
+                                                            .newThreadFactory("nebu-vm-refresher"));
+        final long interval = newSettings.getLaunchingInterval();
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    VMStateRefresher.this.refreshDue();
+                } catch (final RuntimeException e) {
+                    // Must not escape, or the refresh would never run again.
+                    VMStateRefresher.logger.catching(Level.ERROR, e);
+                }
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background refresh. Refreshes that are running are finished.
+     */
+    public synchronized void shutdown() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+            this.scheduler = null;
+            this.workers.shutdown();
+            this.workers = null;
+        }
+    }
+
+    /**
+     * @param name
+     *            of the threads.
+     * @return a factory of daemon threads with the name.
+     */
+    private static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * @return true iff the deployments are refreshed in the background.
+     */
+    public synchronized boolean isRunning() {
+        return this.scheduler != null;
+    }
+
+    /**
+     * Makes sure the VMs of the deployment can be read. If the refresher is
+     * running, the deployment is only refreshed here if it was never
+     * refreshed before; otherwise the last refreshed state is used.
+     * 
+     * @param deployment
+     *            to read the VMs of.
+     */
+    public void prepareRead(final Deployment deployment) {
+        if (!this.isRunning() || deployment.getLastRefreshed() == 0) {
+            deployment.refreshVMInformation();
+        }
+    }
+
+    /**
+     * @param deployments
+     *            that are read.
+     * @param now
+     *            the current time in milliseconds.
+     * @return the age in seconds of the least recently refreshed deployment,
+     *         as used in the Age header of responses.
+     */
+    public static long getAge(final Collection<Deployment> deployments, final long now) {
+        long oldest = now;
+        for (final Deployment deployment : deployments) {
+            if (deployment.getLastRefreshed() > 0) {
+                oldest = Math.min(oldest, deployment.getLastRefreshed());
+            }
+        }
+        return TimeUnit.MILLISECONDS.toSeconds(Math.max(0, now - oldest));
+    }
+
+    /**
+     * @param deployment
+     *            to check.
+     * @param now
+     *            the current time in milliseconds.
+     * @param refreshSettings
+     *            that apply.
+     * @return true iff the deployment should be refreshed.
+     */
+    protected static boolean isDue(final Deployment deployment, final long now,
+            final VMRefreshSettings refreshSettings) {
+        final long age = now - deployment.getLastRefreshed();
+        if (deployment.hasLaunchingVirtualMachines()) {
+            return age >= refreshSettings.getLaunchingInterval();
+        }
+        return age >= refreshSettings.getRefreshInterval();
+    }
+
+    /**
+     * Refreshes, for every application, the deployments that are due.
+     */
+    private void refreshDue() {
+        for (final Application app : AppsProvider.getCache().values()) {
+            this.submit(app);
+        }
+    }
+
+    /**
+     * Refreshes the deployments of the application that are due in the
+     * background, unless the application is still being refreshed.
+     * 
+     * @param app
+     *            to refresh.
+     */
+    private void submit(final Application app) {
+        final ExecutorService executor;
+        synchronized (this) {
+            executor = this.workers;
+        }
+        if (executor == null || !this.running.add(app.getUniqueIdentifier())) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        VMStateRefresher.this.refresh(app);
+                    } finally {
+                        VMStateRefresher.this.running.remove(app.getUniqueIdentifier());
+                    }
+                }
+            });
+        } catch (final RuntimeException e) {
+            // Shut down meanwhile.
+            this.running.remove(app.getUniqueIdentifier());
+        }
+    }
+
+    /**
+     * @param app
+     *            to refresh the deployments of that are due.
+     */
+    private void refresh(final Application app) {
+        final VMRefreshSettings refreshSettings = this.settings;
+        for (final Deployment deployment : app.getDeployments()) {
+            if (!VMStateRefresher.isDue(deployment, System.currentTimeMillis(),
+                                        refreshSettings)) {
+                continue;
+            }
+            try {
+                deployment.refreshVMInformation();
+                final LaunchProgress progress = DeploymentLauncher.get()
+                        .getProgress(deployment.getUniqueIdentifier());
+                if (progress != null) {
+                    progress.checkVirtualMachines();
+                }
+            } catch (final RuntimeException e) {
+                // Must not escape, the other deployments still need a refresh.
+                VMStateRefresher.logger.catching(Level.ERROR, e);
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package nl.bitbrains.nebu.rest.server;
 
 import java.text.ParseException;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -15,12 +18,12 @@ import nl.bitbrains.nebu.containers.VMTemplate;
 import nl.bitbrains.nebu.containers.VMTemplateFactory;
 import nl.bitbrains.nebu.rest.RESTRequestException;
 import nl.bitbrains.nebu.rest.client.RequestSender;
+import nl.bitbrains.nebu.store.StateStore;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
 import org.w3c.dom.Document;
 
 /**
@@ -50,50 +53,73 @@ public class VMTemplateProvider {
      * Handles the GET Request on this path/:uuid.
      * 
      * @return the app information
-     * @throws JDOMException
-     *             iff conversion fails.
      */
     @GET
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response getTemplate() throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final Response getTemplate() {
         VMTemplateProvider.logger.entry();
         Response rep = null;
         final Element elem = new VMTemplateFactory().toXML(this.template);
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(elem);
-        rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+        rep = Response.ok(StreamingXMLOutput.ofElement(elem)).build();
         return VMTemplateProvider.logger.exit(rep);
     }
 
     /**
      * 
-     * Handles the POST Request on this path/:uuid.
+     * Handles the POST Request on this path/:uuid. The template is put on the
+     * VMM by the {@link AsyncRequestExecutor}.
      * 
      * @param doc
      *            post body.
-     * 
-     * @return http status code 200 iff all went successful.
+     * @param response
+     *            the suspended request, resumed with http status code 200 iff
+     *            all went successful.
      */
     @POST
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response postTemplate(final Document doc) {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final void postTemplate(final Document doc, @Suspended final AsyncResponse response) {
         VMTemplateProvider.logger.entry();
-        Response rep = null;
+        final Element xml;
+        final VMTemplate newTemplate;
         try {
-            final VMTemplate newTemplate = new VMTemplateFactory()
-                    .fromXML(XMLConverter.convertW3CDocumentJDOMElement(doc))
+            xml = XMLConverter.convertW3CDocumentJDOMElement(doc);
+            newTemplate = new VMTemplateFactory().fromXML(xml)
                     .withUuid(this.template.getUniqueIdentifier()).build();
-            RequestSender.get().putTemplate(this.template.getUniqueIdentifier(),
-                                            XMLConverter.convertW3CDocumentJDOMElement(doc)
-                                                    .getChild(VMTemplateFactory.TAG_VMMCONFIG));
-            this.app.putVMTemplate(newTemplate);
-            rep = Response.ok().build();
         } catch (final ParseException e) {
             VMTemplateProvider.logger.catching(Level.ERROR, e);
-            rep = Response.status(Status.BAD_REQUEST).build();
+            response.resume(Response.status(Status.BAD_REQUEST).build());
+            VMTemplateProvider.logger.exit();
+            return;
+        }
+        final Element config = xml.getChild(VMTemplateFactory.TAG_VMMCONFIG);
+        AsyncRequestExecutor.get().submit(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return VMTemplateProvider.this.putTemplate(newTemplate, config);
+            }
+        });
+        VMTemplateProvider.logger.exit();
+    }
+
+    /**
+     * Puts the changed template on the VMM, and replaces it in the
+     * application.
+     * 
+     * @param newTemplate
+     *            to put.
+     * @param config
+     *            the configuration of the template for the VMM.
+     * @return the response to the post request.
+     */
+    private Response putTemplate(final VMTemplate newTemplate, final Element config) {
+        try {
+            RequestSender.get().putTemplate(newTemplate.getUniqueIdentifier(), config);
+            this.app.putVMTemplate(newTemplate);
+            StateStore.get().recordTemplate(this.app, newTemplate);
+            return Response.ok().build();
         } catch (final RESTRequestException e) {
             VMTemplateProvider.logger.catching(Level.ERROR, e);
-            rep = Response.status(e.getHttpCode()).build();
+            return Response.status(e.getHttpCode()).build();
         }
-        return VMTemplateProvider.logger.exit(rep);
     }
 }
@@ -3,12 +3,15 @@ package nl.bitbrains.nebu.rest.server;
 import java.net.URI;
 import java.text.ParseException;
 import java.util.Collection;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -19,12 +22,12 @@ import nl.bitbrains.nebu.containers.VMTemplate;
 import nl.bitbrains.nebu.containers.VMTemplateFactory;
 import nl.bitbrains.nebu.rest.RESTRequestException;
 import nl.bitbrains.nebu.rest.client.RequestSender;
+import nl.bitbrains.nebu.store.StateStore;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
 import org.w3c.dom.Document;
 
 /**
@@ -70,58 +73,75 @@ public class VMTemplatesProvider {
      * Handles the GET request on this path.
      * 
      * @return list of the currently known templates
-     * @throws JDOMException
-     *             iff conversion fails
      */
     @GET
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response getTemplates() throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final Response getTemplates() {
         VMTemplatesProvider.logger.entry();
         Response rep = null;
         final Collection<VMTemplate> templates = this.app.getVMTemplates();
-        final Element elem = XMLConverter
-                .convertCollectionToJDOMElement(templates,
-                                                new VMTemplateFactory(false),
-                                                VMTemplateFactory.LIST_TAG_ELEMENT_ROOT,
-                                                VMTemplateFactory.TAG_ELEMENT_ROOT);
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(elem);
-        rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+        final StreamingXMLOutput output = StreamingXMLOutput
+                .ofCollection(templates,
+                              new VMTemplateFactory(false),
+                              VMTemplateFactory.LIST_TAG_ELEMENT_ROOT,
+                              VMTemplateFactory.TAG_ELEMENT_ROOT);
+        rep = Response.ok(output).build();
 
         return VMTemplatesProvider.logger.exit(rep);
     }
 
     /**
      * 
-     * Handles the POST request on this path.
+     * Handles the POST request on this path. The template is put on the VMM
+     * by the {@link AsyncRequestExecutor}.
      * 
      * 
      * @param doc
      *            post body
-     * @return location header set iff successfull.
+     * @param response
+     *            the suspended request, resumed with the location header set
+     *            iff successfull.
      * 
      * @throws ParseException
      *             iff xml conversion fails.
      */
     @POST
-    @Produces(MediaType.APPLICATION_XML)
-    public final Response postTemplates(final Document doc) throws ParseException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public final void postTemplates(final Document doc,
+            @Suspended final AsyncResponse response) throws ParseException {
         VMTemplatesProvider.logger.entry();
-        Response rep = null;
         final String key = UUIDGenerator.generate(VMTemplate.UUID_PREFIX);
-        final VMTemplate template = new VMTemplateFactory()
-                .fromXML(XMLConverter.convertW3CDocumentJDOMElement(doc)).withUuid(key).build();
+        final Element xml = XMLConverter.convertW3CDocumentJDOMElement(doc);
+        final VMTemplate template = new VMTemplateFactory().fromXML(xml).withUuid(key).build();
+        final Element config = xml.getChild(VMTemplateFactory.TAG_VMMCONFIG);
+        AsyncRequestExecutor.get().submit(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return VMTemplatesProvider.this.putTemplate(template, config);
+            }
+        });
+        VMTemplatesProvider.logger.exit();
+    }
+
+    /**
+     * Puts the template on the VMM, and adds it to the application.
+     * 
+     * @param template
+     *            to put.
+     * @param config
+     *            the configuration of the template for the VMM.
+     * @return the response to the post request.
+     */
+    private Response putTemplate(final VMTemplate template, final Element config) {
         try {
-            RequestSender.get().putTemplate(key,
-                                            XMLConverter.convertW3CDocumentJDOMElement(doc)
-                                                    .getChild(VMTemplateFactory.TAG_VMMCONFIG));
+            RequestSender.get().putTemplate(template.getUniqueIdentifier(), config);
             this.app.putVMTemplate(template);
-            final URI location = URI.create(key);
-            rep = Response.created(location).build();
+            StateStore.get().recordTemplate(this.app, template);
+            return Response.created(URI.create(template.getUniqueIdentifier())).build();
         } catch (final RESTRequestException e) {
             VMTemplatesProvider.logger.catching(Level.ERROR, e);
-            rep = Response.status(e.getHttpCode()).build();
+            return Response.status(e.getHttpCode()).build();
         }
-        return VMTemplatesProvider.logger.exit(rep);
     }
 
 }
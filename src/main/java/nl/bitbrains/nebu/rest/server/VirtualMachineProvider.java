@@ -3,12 +3,15 @@ package nl.bitbrains.nebu.rest.server;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -16,18 +19,16 @@ import javax.ws.rs.core.Response.Status;
 import nl.bitbrains.nebu.common.VirtualMachine;
 import nl.bitbrains.nebu.common.cache.CacheException;
 import nl.bitbrains.nebu.common.factories.VirtualMachineFactory;
-import nl.bitbrains.nebu.common.util.xml.XMLConverter;
 import nl.bitbrains.nebu.containers.Application;
 import nl.bitbrains.nebu.containers.Deployment;
 import nl.bitbrains.nebu.rest.RESTRequestException;
 import nl.bitbrains.nebu.rest.client.RequestSender;
+import nl.bitbrains.nebu.store.StateStore;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.w3c.dom.Document;
 
 /**
  * Provides virtual machine information to clients.
@@ -58,60 +59,81 @@ public final class VirtualMachineProvider {
 
     /**
      * Returns a list of all virtual machine uuids known to the virtual machine
-     * manager.
+     * manager. If the {@link VMStateRefresher} is running, the VMs are as they
+     * were at its last refresh; the Age header tells how long ago that was.
      * 
      * @return A list of virtual machine uuids.
-     * @throws JDOMException
-     *             if it can not convert xml
      */
     @GET
-    @Produces(MediaType.APPLICATION_XML)
-    public Response getVirtualResources() throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public Response getVirtualResources() {
         VirtualMachineProvider.logger.entry();
         Response rep = null;
         final Collection<Deployment> deployments = this.app.getDeployments();
         final List<VirtualMachine> vms = new ArrayList<VirtualMachine>();
         for (final Deployment dep : deployments) {
-            dep.refreshVMInformation();
+            VMStateRefresher.get().prepareRead(dep);
             for (final VirtualMachine vm : dep.getVirtualMachines()) {
                 if (vm.isOn()) {
                     vms.add(vm);
                 }
             }
         }
-        final Element elem = XMLConverter
-                .convertCollectionToJDOMElement(vms,
-                                                new VirtualMachineFactory(false),
-                                                VirtualMachineFactory.TAG_LIST_ELEMENT_ROOT,
-                                                VirtualMachineFactory.TAG_ELEMENT_ROOT);
-        final Document doc = XMLConverter.convertJDOMElementW3CDocument(elem);
-        rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+        final StreamingXMLOutput output = StreamingXMLOutput
+                .ofCollection(vms,
+                              new VirtualMachineFactory(false),
+                              VirtualMachineFactory.TAG_LIST_ELEMENT_ROOT,
+                              VirtualMachineFactory.TAG_ELEMENT_ROOT);
+        rep = Response.ok(output)
+                .header(VMStateRefresher.AGE_HEADER,
+                        VMStateRefresher.getAge(deployments, System.currentTimeMillis()))
+                .build();
         return VirtualMachineProvider.logger.exit(rep);
     }
 
     /**
-     * Returns information about a virtual machine based on the given uuid.
+     * Returns information about a virtual machine based on the given uuid. The
+     * information is requested from the VMM by the
+     * {@link AsyncRequestExecutor}.
      * 
      * @param uuid
      *            The uuid of the virtual machine whose information needs to be
      *            retrieved.
-     * @return Information about a given virtual machine.
-     * @throws JDOMException
-     *             if invalid xml conversion.
+     * @param response
+     *            the suspended request, resumed with information about the
+     *            virtual machine.
      */
     @GET
     @Path("{uuid}")
-    @Produces(MediaType.APPLICATION_XML)
-    public Response getVirtualMachineInfo(@PathParam("uuid") final String uuid)
-            throws JDOMException {
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public void getVirtualMachineInfo(@PathParam("uuid") final String uuid,
+            @Suspended final AsyncResponse response) {
         VirtualMachineProvider.logger.entry();
-        Response rep = null;
         final VirtualMachine requestedVM = this.translateUUID2VM(uuid);
         if (requestedVM == null) {
-            return VirtualMachineProvider.logger.exit(Response.status(Status.NOT_FOUND).build());
+            response.resume(Response.status(Status.NOT_FOUND).build());
+        } else {
+            AsyncRequestExecutor.get().submit(response, new Callable<Response>() {
+                @Override
+                public Response call() {
+                    return VirtualMachineProvider.this.requestVirtualMachineInfo(requestedVM);
+                }
+            });
         }
+        VirtualMachineProvider.logger.exit();
+    }
+
+    /**
+     * Requests the information of a virtual machine from the VMM.
+     * 
+     * @param requestedVM
+     *            to update with the information.
+     * @return the response with the information.
+     */
+    private Response requestVirtualMachineInfo(final VirtualMachine requestedVM) {
         try {
-            final VirtualMachine newVM = RequestSender.get().getVirtualMachine(uuid);
+            final VirtualMachine newVM = RequestSender.get()
+                    .getVirtualMachine(requestedVM.getUniqueIdentifier());
             requestedVM.adoptFromOther(newVM);
             if (!this.isReal) {
                 newVM.setHost("host-" + newVM.getUniqueIdentifier());
@@ -119,24 +141,18 @@ public final class VirtualMachineProvider {
                 newVM.addStore("store-" + newVM.getUniqueIdentifier());
             }
             final Element elem = new VirtualMachineFactory().toXML(newVM);
-
-            final Document doc = XMLConverter.convertJDOMElementW3CDocument(elem);
-            rep = Response.ok(doc, MediaType.APPLICATION_XML).build();
+            return Response.ok(StreamingXMLOutput.ofElement(elem)).build();
         } catch (final RESTRequestException e) {
             if (e.getHttpCode() == Status.ACCEPTED.getStatusCode()) {
                 VirtualMachineProvider.logger.debug("VM is not yet fully launched");
             } else {
                 VirtualMachineProvider.logger.catching(Level.WARN, e);
             }
-            return VirtualMachineProvider.logger.exit(Response.status(Status.INTERNAL_SERVER_ERROR)
-                    .build());
+            return Response.status(Status.INTERNAL_SERVER_ERROR).build();
         } catch (final CacheException e) {
             VirtualMachineProvider.logger.catching(Level.ERROR, e);
-            return VirtualMachineProvider.logger.exit(Response.status(Status.INTERNAL_SERVER_ERROR)
-                    .build());
+            return Response.status(Status.INTERNAL_SERVER_ERROR).build();
         }
-
-        return VirtualMachineProvider.logger.exit(rep);
     }
 
     /**
@@ -148,7 +164,7 @@ public final class VirtualMachineProvider {
      */
     @DELETE
     @Path("{uuid}")
-    @Produces(MediaType.APPLICATION_XML)
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public Response deleteVirtualMachine(@PathParam("uuid") final String uuid) {
         VirtualMachineProvider.logger.entry();
         Response rep = null;
@@ -162,6 +178,7 @@ public final class VirtualMachineProvider {
         VirtualMachineProvider.logger.debug(dep.getUniqueIdentifier());
         VirtualMachineProvider.logger.debug(dep.getVirtualMachines());
         dep.removeVirtualMachine(requestedVM);
+        StateStore.get().recordVirtualMachineRemoved(this.app, dep, requestedVM);
         VirtualMachineProvider.logger.debug(dep.getVirtualMachines());
 
         rep = Response.ok().build();
@@ -176,21 +193,7 @@ public final class VirtualMachineProvider {
      * @return the found VM or null if none found.
      */
     private VirtualMachine translateUUID2VM(final String uuid) {
-        final Collection<Deployment> deployments = this.app.getDeployments();
-        VirtualMachine requestedVM = null;
-        for (final Deployment dep : deployments) {
-            final List<VirtualMachine> vms = dep.getVirtualMachines();
-            for (final VirtualMachine vm : vms) {
-                if (vm.getUniqueIdentifier().equals(uuid)) {
-                    requestedVM = vm;
-                    break;
-                }
-            }
-            if (requestedVM != null) {
-                break;
-            }
-        }
-        return requestedVM;
+        return this.app.getVirtualMachine(uuid);
     }
 
     /**
@@ -201,13 +204,6 @@ public final class VirtualMachineProvider {
      * @return the deployment that the vm belongs to.
      */
     private Deployment getDeploymentForVM(final VirtualMachine vm) {
-        final Collection<Deployment> deployments = this.app.getDeployments();
-        for (final Deployment dep : deployments) {
-            final List<VirtualMachine> vms = dep.getVirtualMachines();
-            if (vms.contains(vm)) {
-                return dep;
-            }
-        }
-        return null;
+        return this.app.getDeploymentForVirtualMachine(vm.getUniqueIdentifier());
     }
 }
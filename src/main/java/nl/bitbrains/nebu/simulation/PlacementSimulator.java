@@ -0,0 +1,318 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheManager;
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.ApplicationBuilder;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.DeploymentRequest;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.containers.VMTemplateBuilder;
+import nl.bitbrains.nebu.deployer.Deployer;
+import nl.bitbrains.nebu.deployer.DeployerException;
+import nl.bitbrains.nebu.deployer.DeployerPolicyFactories;
+import nl.bitbrains.nebu.deployer.MissingPolicyException;
+import nl.bitbrains.nebu.rest.client.RequestBuilder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Replays a workload trace through
+ *         {@link Deployer#generateDeployment(DeploymentRequest)} without a
+ *         VMM, to compare placement policies offline. The topology of every
+ *         template of the application is put in the cache under the key the
+ *         RequestSender looks it up with. The VMs of a placed deployment are
+ *         registered with the occupancy index of the application right away,
+ *         as if they were launched at once, so later deployments take them
+ *         into account.
+ * 
+ *         A simulator is not thread-safe, and changes the state of its
+ *         application. Use a new application for every replay.
+ */
+public class PlacementSimulator {
+
+    public static final String VM_PREFIX = "sim-vm-";
+    public static final String TEMPLATE_UUID = "sim-template";
+    public static final String APPLICATION_UUID = "sim-app";
+    public static final int DEFAULT_EXISTING_VMS = 0;
+    private static final int ARGUMENTS = 4;
+    private static Logger logger = LogManager.getLogger();
+
+    private final Deployer deployer;
+    private final Application application;
+    private final Map<String, PhysicalHost> hosts;
+    private final Map<String, Integer> vmsPerHost;
+    private final List<List<VirtualMachine>> deployments;
+    private int nextVM;
+
+    /**
+     * @param deployer
+     *            with a policy for the application.
+     * @param application
+     *            to deploy for.
+     * @param topology
+     *            that every template of the application can be deployed on.
+     * @throws CacheException
+     *             if the topology can not be put in the cache.
+     */
+    public PlacementSimulator(final Deployer deployer, final Application application,
+            final PhysicalTopology topology) throws CacheException {
+        ErrorChecker.throwIfNullArgument(deployer, "deployer");
+        ErrorChecker.throwIfNullArgument(application, "application");
+        ErrorChecker.throwIfNullArgument(topology, "topology");
+        this.deployer = deployer;
+        this.application = application;
+        this.hosts = new HashMap<String, PhysicalHost>();
+        for (final PhysicalHost host : topology.getCPUs()) {
+            this.hosts.put(host.getUniqueIdentifier(), host);
+        }
+        this.vmsPerHost = new HashMap<String, Integer>();
+        this.deployments = new ArrayList<List<VirtualMachine>>();
+        for (final VMTemplate template : application.getVMTemplates()) {
+            PlacementSimulator.registerTopology(template, topology);
+        }
+    }
+
+    /**
+     * Puts the topology in the cache, so
+     * {@link VMTemplate#getTopology()} returns it without contacting the VMM.
+     * 
+     * @param template
+     *            to register the topology for.
+     * @param topology
+     *            of the template.
+     * @throws CacheException
+     *             if the topology is not returned from the cache afterwards.
+     */
+    public static void registerTopology(final VMTemplate template,
+            final PhysicalTopology topology) throws CacheException {
+        CacheManager.put(RequestBuilder.URI_VMTEMPLATES + "/" + template.getUniqueIdentifier()
+                + "/" + RequestBuilder.URI_PHYSICAL_MACHINES, topology);
+        if (template.getTopology() != topology) {
+            throw new CacheException("The topology of template '"
+                    + template.getUniqueIdentifier() + "' was not read from the cache");
+        }
+    }
+
+    /**
+     * Registers VMs that were in place before the trace starts.
+     * 
+     * @param vms
+     *            to register, for example generated by a
+     *            {@link TopologyGenerator}.
+     * @param template
+     *            the VMs were launched with.
+     */
+    public final void addExistingVirtualMachines(final List<VirtualMachine> vms,
+            final VMTemplate template) {
+        for (final VirtualMachine vm : vms) {
+            String store = null;
+            if (!vm.getStores().isEmpty()) {
+                store = vm.getStores().iterator().next();
+            }
+            final VMDeploymentSpecification spec = new VMDeploymentSpecificationBuilder()
+                    .withTemplate(template).withHost(vm.getHost()).withStore(store).build();
+            this.add(vm, spec);
+        }
+    }
+
+    /**
+     * @param trace
+     *            to replay.
+     * @return the results of the replay.
+     */
+    public final SimulationReport replay(final List<TraceEvent> trace) {
+        final SimulationReport report = new SimulationReport();
+        for (final TraceEvent event : trace) {
+            if (event.getType() == TraceEvent.Type.DEPLOY) {
+                this.deploy(event, report);
+            } else {
+                this.remove(event, report);
+            }
+        }
+        int live = 0;
+        int used = 0;
+        for (final int count : this.vmsPerHost.values()) {
+            live += count;
+            if (count > 0) {
+                used++;
+            }
+        }
+        report.setOccupation(live, used, this.hosts.size());
+        return report;
+    }
+
+    /**
+     * @param event
+     *            the deploy event.
+     * @param report
+     *            to record the result in.
+     */
+    private void deploy(final TraceEvent event, final SimulationReport report) {
+        final VMTemplate template = this.application.getVMTemplate(event.getTemplate());
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown template '" + event.getTemplate() + "'");
+        }
+        final DeploymentRequest request = new DeploymentRequest.Builder()
+                .withApplication(this.application).withRequest(template, event.getCount())
+                .createDeploymentRequest();
+        final List<VirtualMachine> vms = new ArrayList<VirtualMachine>();
+        this.deployments.add(vms);
+
+        final long start = System.nanoTime();
+        final Deployment deployment;
+        try {
+            deployment = this.deployer.generateDeployment(request);
+        } catch (final DeployerException e) {
+            report.recordFailure(System.nanoTime() - start);
+            PlacementSimulator.logger.catching(Level.DEBUG, e);
+            return;
+        }
+        final long time = System.nanoTime() - start;
+
+        final Set<String> racks = new HashSet<String>();
+        for (final VMDeploymentSpecification spec : deployment.getSpecs()) {
+            final VirtualMachineBuilder builder = new VirtualMachineBuilder()
+                    .withUuid(PlacementSimulator.VM_PREFIX + this.nextVM++)
+                    .withHost(spec.getHost());
+            if (spec.getStore() != null) {
+                builder.withDisk(spec.getStore());
+            }
+            final VirtualMachine vm = builder.build();
+            this.add(vm, spec);
+            vms.add(vm);
+            final PhysicalHost host = this.hosts.get(spec.getHost());
+            if (host != null) {
+                racks.add(host.getParent().getUniqueIdentifier());
+            }
+        }
+        report.recordPlacement(time, vms.size(), racks.size());
+    }
+
+    /**
+     * @param event
+     *            the remove event.
+     * @param report
+     *            to record the result in.
+     */
+    private void remove(final TraceEvent event, final SimulationReport report) {
+        if (event.getDeployment() >= this.deployments.size()) {
+            throw new IllegalArgumentException("Deployment " + event.getDeployment()
+                    + " has not been deployed yet");
+        }
+        final List<VirtualMachine> vms = this.deployments.get(event.getDeployment());
+        int count = vms.size();
+        if (event.getCount() != TraceEvent.ALL) {
+            count = Math.min(count, event.getCount());
+        }
+        for (int i = 0; i < count; i++) {
+            final VirtualMachine vm = vms.remove(vms.size() - 1);
+            this.application.getOccupancy().remove(vm);
+            this.vmsPerHost.put(vm.getHost(), this.vmsPerHost.get(vm.getHost()) - 1);
+        }
+        report.recordRemoval(count);
+    }
+
+    /**
+     * @param vm
+     *            to register.
+     * @param spec
+     *            it was placed with.
+     */
+    private void add(final VirtualMachine vm, final VMDeploymentSpecification spec) {
+        this.application.getOccupancy().add(vm, spec);
+        final Integer count = this.vmsPerHost.get(vm.getHost());
+        if (count == null) {
+            this.vmsPerHost.put(vm.getHost(), 1);
+        } else {
+            this.vmsPerHost.put(vm.getHost(), count + 1);
+        }
+    }
+
+    /**
+     * Simulates a policy on a generated topology, and prints the report. If
+     * no trace file is given, a trace is generated. Templates in a trace file
+     * must be named {@value #TEMPLATE_UUID}. Set the log level to warn or
+     * higher for large simulations, the policies log every placement at debug
+     * level.
+     * 
+     * @param args
+     *            policy name, number of data centers, racks per data center,
+     *            hosts per rack, and optionally a trace file and the number of
+     *            VMs in place before the trace starts.
+     * @throws IOException
+     *             if the trace can not be read.
+     * @throws ParseException
+     *             if the trace is invalid.
+     * @throws MissingPolicyException
+     *             if the policy does not exist.
+     * @throws CacheException
+     *             if the topology can not be put in the cache.
+     */
+    public static void main(final String[] args) throws IOException, ParseException,
+            MissingPolicyException, CacheException {
+        if (args.length < PlacementSimulator.ARGUMENTS) {
+            System.err.println("Usage: PlacementSimulator <policy> <datacenters> "
+                    + "<racks-per-datacenter> <hosts-per-rack> [<trace> [<existing-vms>]]");
+            return;
+        }
+        final TopologyGenerator generator = new TopologyGenerator()
+                .withDataCenters(Integer.parseInt(args[1]))
+                .withRacksPerDataCenter(Integer.parseInt(args[2]))
+                .withHostsPerRack(Integer.parseInt(args[3]));
+        final PhysicalTopology topology = generator.generate();
+        final VMTemplate template = new VMTemplateBuilder()
+                .withUuid(PlacementSimulator.TEMPLATE_UUID).withCPU(1).withMem(1).build();
+        final Application app = new ApplicationBuilder()
+                .withUuid(PlacementSimulator.APPLICATION_UUID).withDeploymentPolicy(args[0])
+                .withTemplate(template).build();
+        final Deployer deployer = new Deployer().withPolicyFactories(DeployerPolicyFactories
+                .createDefault());
+        deployer.setPolicy(app, args[0]);
+
+        final List<TraceEvent> trace;
+        if (args.length > PlacementSimulator.ARGUMENTS) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(
+                    args[PlacementSimulator.ARGUMENTS]))) {
+                trace = TraceEvent.readTrace(reader);
+            }
+        } else {
+            trace = new WorkloadGenerator(Collections.singletonList(template
+                    .getUniqueIdentifier())).generate();
+        }
+        int existing = PlacementSimulator.DEFAULT_EXISTING_VMS;
+        if (args.length > PlacementSimulator.ARGUMENTS + 1) {
+            existing = Integer.parseInt(args[PlacementSimulator.ARGUMENTS + 1]);
+        }
+
+        final PlacementSimulator simulator = new PlacementSimulator(deployer, app, topology);
+        simulator.addExistingVirtualMachines(generator.generateVirtualMachines(topology,
+                                                                               existing,
+                                                                               "existing-vm-"),
+                                             template);
+        System.out.println(simulator.replay(trace));
+    }
+}
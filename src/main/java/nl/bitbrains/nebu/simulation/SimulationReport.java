@@ -0,0 +1,221 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         The results of replaying a trace with the {@link PlacementSimulator}:
+ *         how long placing took, how many deployments could not be placed, how
+ *         densely the VMs that are left are packed, and over how many racks
+ *         deployments were spread.
+ */
+public class SimulationReport {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double MEDIAN = 0.5;
+    private static final double P99 = 0.99;
+    private static final double PERCENT = 100;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] placementTimes;
+    private int attempts;
+    private int failures;
+    private int placedVMs;
+    private int removedVMs;
+    private long rackSpread;
+    private int liveVMs;
+    private int usedHosts;
+    private int hosts;
+
+    /**
+     * Creates an empty report.
+     */
+    SimulationReport() {
+        this.placementTimes = new long[SimulationReport.INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param nanos
+     *            time the placement took.
+     * @param vms
+     *            number of VMs placed.
+     * @param racks
+     *            number of racks the VMs were placed in.
+     */
+    final void recordPlacement(final long nanos, final int vms, final int racks) {
+        this.recordTime(nanos);
+        this.placedVMs += vms;
+        this.rackSpread += racks;
+    }
+
+    /**
+     * @param nanos
+     *            time it took for the placement to fail.
+     */
+    final void recordFailure(final long nanos) {
+        this.recordTime(nanos);
+        this.failures++;
+    }
+
+    /**
+     * @param vms
+     *            number of VMs removed.
+     */
+    final void recordRemoval(final int vms) {
+        this.removedVMs += vms;
+    }
+
+    /**
+     * @param live
+     *            number of VMs in place at the end of the trace.
+     * @param used
+     *            number of hosts with at least one VM.
+     * @param total
+     *            number of hosts.
+     */
+    final void setOccupation(final int live, final int used, final int total) {
+        this.liveVMs = live;
+        this.usedHosts = used;
+        this.hosts = total;
+    }
+
+    /**
+     * @param nanos
+     *            placement time to record.
+     */
+    private void recordTime(final long nanos) {
+        if (this.attempts == this.placementTimes.length) {
+            this.placementTimes = Arrays.copyOf(this.placementTimes, this.attempts * 2);
+        }
+        this.placementTimes[this.attempts++] = nanos;
+    }
+
+    /**
+     * @return the number of deployments that were attempted.
+     */
+    public final int getAttempts() {
+        return this.attempts;
+    }
+
+    /**
+     * @return the number of deployments that could not be placed.
+     */
+    public final int getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * @return the fraction of deployments that could not be placed.
+     */
+    public final double getFailureRate() {
+        if (this.attempts == 0) {
+            return 0;
+        }
+        return (double) this.failures / this.attempts;
+    }
+
+    /**
+     * @return the number of VMs that were placed.
+     */
+    public final int getPlacedVMs() {
+        return this.placedVMs;
+    }
+
+    /**
+     * @return the number of VMs that were removed.
+     */
+    public final int getRemovedVMs() {
+        return this.removedVMs;
+    }
+
+    /**
+     * @return the mean placement time in nanoseconds, over all attempts.
+     */
+    public final double getMeanPlacementTime() {
+        if (this.attempts == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < this.attempts; i++) {
+            total += this.placementTimes[i];
+        }
+        return (double) total / this.attempts;
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 1.
+     * @return the placement time in nanoseconds at the percentile, 0 if
+     *         nothing was placed.
+     */
+    public final long getPlacementTime(final double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1");
+        }
+        if (this.attempts == 0) {
+            return 0;
+        }
+        final long[] sorted = Arrays.copyOf(this.placementTimes, this.attempts);
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /**
+     * @return the number of VMs per host that has VMs, at the end of the
+     *         trace.
+     */
+    public final double getPackingDensity() {
+        if (this.usedHosts == 0) {
+            return 0;
+        }
+        return (double) this.liveVMs / this.usedHosts;
+    }
+
+    /**
+     * @return the fraction of hosts that has VMs, at the end of the trace.
+     */
+    public final double getUsedHostFraction() {
+        if (this.hosts == 0) {
+            return 0;
+        }
+        return (double) this.usedHosts / this.hosts;
+    }
+
+    /**
+     * @return the mean number of racks a placed deployment was spread over.
+     */
+    public final double getMeanRackSpread() {
+        final int placed = this.attempts - this.failures;
+        if (placed == 0) {
+            return 0;
+        }
+        return (double) this.rackSpread / placed;
+    }
+
+    @Override
+    public final String toString() {
+        return String.format(Locale.ENGLISH,
+                             "deployments: %d, failed: %d (%.2f%%)%n"
+                                     + "placement time (ms): mean %.3f, p50 %.3f, p99 %.3f, "
+                                     + "max %.3f%n"
+                                     + "vms: %d placed, %d removed, %d in place%n"
+                                     + "packing: %.2f vms per used host, %.2f%% of %d hosts "
+                                     + "used%n"
+                                     + "rack spread: %.2f racks per deployment",
+                             this.attempts, this.failures,
+                             this.getFailureRate() * SimulationReport.PERCENT,
+                             this.getMeanPlacementTime() / SimulationReport.NANOS_PER_MILLI,
+                             this.getPlacementTime(SimulationReport.MEDIAN)
+                                     / SimulationReport.NANOS_PER_MILLI,
+                             this.getPlacementTime(SimulationReport.P99)
+                                     / SimulationReport.NANOS_PER_MILLI,
+                             this.getPlacementTime(1) / SimulationReport.NANOS_PER_MILLI,
+                             this.placedVMs, this.removedVMs, this.liveVMs,
+                             this.getPackingDensity(), this.getUsedHostFraction()
+                                     * SimulationReport.PERCENT,
+                             this.hosts, this.getMeanRackSpread());
+    }
+}
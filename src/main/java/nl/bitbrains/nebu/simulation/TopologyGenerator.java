@@ -0,0 +1,281 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalDataCenter;
+import nl.bitbrains.nebu.common.topology.PhysicalDataCenterBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalHostBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalRack;
+import nl.bitbrains.nebu.common.topology.PhysicalRackBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalStore;
+import nl.bitbrains.nebu.common.topology.PhysicalStoreBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Generates synthetic {@link PhysicalTopology} instances of a
+ *         configurable shape, and VMs that already occupy them.
+ * 
+ *         The occupation is skewed: the hosts are ranked in a random order and
+ *         the host of rank r gets a share of the VMs proportional to 1 / (r +
+ *         1)^skew. A skew of 0 spreads the VMs evenly, higher values
+ *         concentrate them on fewer hosts, as seen in data centers that have
+ *         been in use for a while.
+ */
+public class TopologyGenerator {
+
+    public static final int DEFAULT_DATA_CENTERS = 1;
+    public static final int DEFAULT_RACKS_PER_DATA_CENTER = 4;
+    public static final int DEFAULT_HOSTS_PER_RACK = 40;
+    public static final int DEFAULT_LOCAL_DISKS_PER_HOST = 1;
+    public static final int DEFAULT_NETWORK_DISKS_PER_RACK = 1;
+    public static final int DEFAULT_STORE_CAPACITY = 1000;
+
+    private int dataCenters;
+    private int racksPerDataCenter;
+    private int hostsPerRack;
+    private int localDisksPerHost;
+    private int networkDisksPerRack;
+    private int storeCapacity;
+    private double skew;
+    private long seed;
+
+    /**
+     * Creates a generator with all values set to their defaults, no skew and
+     * seed 0.
+     */
+    public TopologyGenerator() {
+        this.dataCenters = TopologyGenerator.DEFAULT_DATA_CENTERS;
+        this.racksPerDataCenter = TopologyGenerator.DEFAULT_RACKS_PER_DATA_CENTER;
+        this.hostsPerRack = TopologyGenerator.DEFAULT_HOSTS_PER_RACK;
+        this.localDisksPerHost = TopologyGenerator.DEFAULT_LOCAL_DISKS_PER_HOST;
+        this.networkDisksPerRack = TopologyGenerator.DEFAULT_NETWORK_DISKS_PER_RACK;
+        this.storeCapacity = TopologyGenerator.DEFAULT_STORE_CAPACITY;
+        this.skew = 0;
+        this.seed = 0;
+    }
+
+    /**
+     * @param dataCenters
+     *            number of data centers, at least 1.
+     * @return this for fluency.
+     */
+    public final TopologyGenerator withDataCenters(final int dataCenters) {
+        TopologyGenerator.throwIfLessThan(dataCenters, 1, "dataCenters");
+        this.dataCenters = dataCenters;
+        return this;
+    }
+
+    /**
+     * @param racksPerDataCenter
+     *            number of racks in every data center, at least 1.
+     * @return this for fluency.
+     */
+    public final TopologyGenerator withRacksPerDataCenter(final int racksPerDataCenter) {
+        TopologyGenerator.throwIfLessThan(racksPerDataCenter, 1, "racksPerDataCenter");
+        this.racksPerDataCenter = racksPerDataCenter;
+        return this;
+    }
+
+    /**
+     * @param hostsPerRack
+     *            number of hosts in every rack, at least 1.
+     * @return this for fluency.
+     */
+    public final TopologyGenerator withHostsPerRack(final int hostsPerRack) {
+        TopologyGenerator.throwIfLessThan(hostsPerRack, 1, "hostsPerRack");
+        this.hostsPerRack = hostsPerRack;
+        return this;
+    }
+
+    /**
+     * @param localDisksPerHost
+     *            number of disks attached to every host.
+     * @return this for fluency.
+     */
+    public final TopologyGenerator withLocalDisksPerHost(final int localDisksPerHost) {
+        TopologyGenerator.throwIfLessThan(localDisksPerHost, 0, "localDisksPerHost");
+        this.localDisksPerHost = localDisksPerHost;
+        return this;
+    }
+
+    /**
+     * @param networkDisksPerRack
+     *            number of disks attached to every rack.
+     * @return this for fluency.
+     */
+    public final TopologyGenerator withNetworkDisksPerRack(final int networkDisksPerRack) {
+        TopologyGenerator.throwIfLessThan(networkDisksPerRack, 0, "networkDisksPerRack");
+        this.networkDisksPerRack = networkDisksPerRack;
+        return this;
+    }
+
+    /**
+     * @param storeCapacity
+     *            capacity of every disk, at least 1.
+     * @return this for fluency.
+     */
+    public final TopologyGenerator withStoreCapacity(final int storeCapacity) {
+        TopologyGenerator.throwIfLessThan(storeCapacity, 1, "storeCapacity");
+        this.storeCapacity = storeCapacity;
+        return this;
+    }
+
+    /**
+     * @param skew
+     *            of the occupation, see the class comment. 0 for none.
+     * @return this for fluency.
+     */
+    public final TopologyGenerator withSkew(final double skew) {
+        if (skew < 0) {
+            throw new IllegalArgumentException("Skew must not be negative");
+        }
+        this.skew = skew;
+        return this;
+    }
+
+    /**
+     * @param seed
+     *            of the random numbers used for the occupation.
+     * @return this for fluency.
+     */
+    public final TopologyGenerator withSeed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @return the number of hosts in the generated topologies.
+     */
+    public final int getHosts() {
+        return this.dataCenters * this.racksPerDataCenter * this.hostsPerRack;
+    }
+
+    /**
+     * Generates a topology. Identifiers are derived from the position in the
+     * tree, so topologies of the same shape use the same identifiers.
+     * 
+     * @return a new topology.
+     */
+    public final PhysicalTopology generate() {
+        final PhysicalTopology topology = new PhysicalTopology();
+        for (int i = 0; i < this.dataCenters; i++) {
+            final String dcID = "dc" + i;
+            final PhysicalDataCenter dc = new PhysicalDataCenterBuilder().withUuid(dcID).build();
+            topology.addDataCenter(dc);
+            for (int j = 0; j < this.racksPerDataCenter; j++) {
+                final String rackID = dcID + "-rack" + j;
+                final PhysicalRack rack = new PhysicalRackBuilder().withUuid(rackID).build();
+                topology.addRackToDataCenter(rack, dc);
+                for (int k = 0; k < this.networkDisksPerRack; k++) {
+                    topology.addDiskToRack(this.newStore(rackID + "-disk" + k), rack);
+                }
+                for (int k = 0; k < this.hostsPerRack; k++) {
+                    final String hostID = rackID + "-host" + k;
+                    final PhysicalHost host = new PhysicalHostBuilder().withUuid(hostID).build();
+                    topology.addCPUToRack(host, rack);
+                    for (int l = 0; l < this.localDisksPerHost; l++) {
+                        topology.addDiskToHost(this.newStore(hostID + "-disk" + l), host);
+                    }
+                }
+            }
+        }
+        return topology;
+    }
+
+    /**
+     * Generates VMs that occupy the hosts of the topology with the configured
+     * skew. Every VM is placed on a disk of its host if it has one, and on a
+     * disk of its rack otherwise.
+     * 
+     * @param topology
+     *            to place the VMs on.
+     * @param count
+     *            number of VMs to generate.
+     * @param prefix
+     *            of the identifiers of the VMs.
+     * @return the VMs.
+     */
+    public final List<VirtualMachine> generateVirtualMachines(final PhysicalTopology topology,
+            final int count, final String prefix) {
+        final List<PhysicalHost> hosts = new ArrayList<PhysicalHost>(topology.getCPUs());
+        final List<VirtualMachine> vms = new ArrayList<VirtualMachine>();
+        if (hosts.isEmpty()) {
+            return vms;
+        }
+        final Random random = new Random(this.seed);
+        Collections.shuffle(hosts, random);
+
+        final double[] cumulative = new double[hosts.size()];
+        double total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += 1 / Math.pow(i + 1, this.skew);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < count; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            final PhysicalHost host = hosts.get(Math.min(index, hosts.size() - 1));
+            final VirtualMachineBuilder builder = new VirtualMachineBuilder().withUuid(prefix + i)
+                    .withHost(host.getUniqueIdentifier());
+            final PhysicalStore store = TopologyGenerator.getStore(host, random);
+            if (store != null) {
+                builder.withDisk(store.getUniqueIdentifier());
+            }
+            vms.add(builder.build());
+        }
+        return vms;
+    }
+
+    /**
+     * @param host
+     *            to get a disk for.
+     * @param random
+     *            to pick the disk with.
+     * @return a disk of the host, or of its rack if the host has none. Null
+     *         if neither has disks.
+     */
+    private static PhysicalStore getStore(final PhysicalHost host, final Random random) {
+        List<PhysicalStore> stores = host.getDisks();
+        if (stores.isEmpty()) {
+            stores = host.getParent().getDisks();
+        }
+        if (stores.isEmpty()) {
+            return null;
+        }
+        return stores.get(random.nextInt(stores.size()));
+    }
+
+    /**
+     * @param id
+     *            of the store.
+     * @return a new store with the configured capacity.
+     */
+    private PhysicalStore newStore(final String id) {
+        return new PhysicalStoreBuilder().withUuid(id).withCapacity(this.storeCapacity).build();
+    }
+
+    /**
+     * @param value
+     *            to check.
+     * @param minimum
+     *            allowed value.
+     * @param name
+     *            of the value.
+     */
+    private static void throwIfLessThan(final int value, final int minimum, final String name) {
+        if (value < minimum) {
+            throw new IllegalArgumentException(name + " must be at least " + minimum);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         A single event of a workload trace, replayed by the
+ *         {@link PlacementSimulator}. A trace is a text file with one event
+ *         per line:
+ * 
+ *         <pre>
+ * # comments and empty lines are ignored
+ * deploy &lt;template&gt; &lt;count&gt;
+ * remove &lt;deployment&gt; [&lt;count&gt;]
+ * </pre>
+ * 
+ *         A deploy event requests count VMs of the template. A remove event
+ *         removes count VMs of an earlier deployment, or all its remaining VMs
+ *         if no count is given. Deployments are numbered from 0, in the order
+ *         of the deploy events in the trace.
+ */
+public final class TraceEvent {
+
+    /**
+     * The kind of event.
+     */
+    public enum Type {
+        DEPLOY, REMOVE;
+
+        /**
+         * @return the name used in traces.
+         */
+        public String toTraceName() {
+            return this.name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    public static final String COMMENT = "#";
+    public static final int ALL = -1;
+
+    private final Type type;
+    private final String template;
+    private final int deployment;
+    private final int count;
+
+    /**
+     * @param type
+     *            of the event.
+     * @param template
+     *            to deploy, null for a remove event.
+     * @param deployment
+     *            to remove from, -1 for a deploy event.
+     * @param count
+     *            number of VMs.
+     */
+    private TraceEvent(final Type type, final String template, final int deployment,
+            final int count) {
+        this.type = type;
+        this.template = template;
+        this.deployment = deployment;
+        this.count = count;
+    }
+
+    /**
+     * @param template
+     *            uuid of the template to deploy.
+     * @param count
+     *            number of VMs to deploy, at least 1.
+     * @return a new deploy event.
+     */
+    public static TraceEvent deploy(final String template, final int count) {
+        ErrorChecker.throwIfNullArgument(template, "template");
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be at least 1");
+        }
+        return new TraceEvent(Type.DEPLOY, template, -1, count);
+    }
+
+    /**
+     * @param deployment
+     *            number of the deployment to remove VMs from.
+     * @param count
+     *            number of VMs to remove, at least 1, or {@link #ALL}.
+     * @return a new remove event.
+     */
+    public static TraceEvent remove(final int deployment, final int count) {
+        if (deployment < 0) {
+            throw new IllegalArgumentException("Deployment must not be negative");
+        }
+        if (count < 1 && count != TraceEvent.ALL) {
+            throw new IllegalArgumentException("Count must be at least 1");
+        }
+        return new TraceEvent(Type.REMOVE, null, deployment, count);
+    }
+
+    /**
+     * @return the type of the event.
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * @return the uuid of the template to deploy, null for a remove event.
+     */
+    public String getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * @return the number of the deployment to remove from, -1 for a deploy
+     *         event.
+     */
+    public int getDeployment() {
+        return this.deployment;
+    }
+
+    /**
+     * @return the number of VMs, {@link #ALL} to remove all VMs.
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * @param line
+     *            of a trace, without comments.
+     * @return the event on the line.
+     * @throws ParseException
+     *             if the line is not a valid event.
+     */
+    public static TraceEvent fromString(final String line) throws ParseException {
+        final String[] parts = line.trim().split("\\s+");
+        try {
+            if (Type.DEPLOY.toTraceName().equals(parts[0]) && parts.length == 3) {
+                return TraceEvent.deploy(parts[1], Integer.parseInt(parts[2]));
+            } else if (Type.REMOVE.toTraceName().equals(parts[0]) && parts.length == 2) {
+                return TraceEvent.remove(Integer.parseInt(parts[1]), TraceEvent.ALL);
+            } else if (Type.REMOVE.toTraceName().equals(parts[0]) && parts.length == 3) {
+                return TraceEvent.remove(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            }
+        } catch (final IllegalArgumentException e) {
+            // Includes NumberFormatException.
+            throw new ParseException("Invalid event '" + line + "': " + e.getMessage(), 0);
+        }
+        throw new ParseException("Invalid event '" + line + "'", 0);
+    }
+
+    /**
+     * @param reader
+     *            to read the trace from.
+     * @return the events of the trace, in order.
+     * @throws IOException
+     *             if reading fails.
+     * @throws ParseException
+     *             if a line is not a valid event. The error offset is the
+     *             line number.
+     */
+    public static List<TraceEvent> readTrace(final BufferedReader reader) throws IOException,
+            ParseException {
+        final List<TraceEvent> events = new ArrayList<TraceEvent>();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String event = line;
+            final int comment = line.indexOf(TraceEvent.COMMENT);
+            if (comment >= 0) {
+                event = line.substring(0, comment);
+            }
+            event = event.trim();
+            if (event.isEmpty()) {
+                continue;
+            }
+            try {
+                events.add(TraceEvent.fromString(event));
+            } catch (final ParseException e) {
+                throw new ParseException(e.getMessage(), lineNumber);
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public String toString() {
+        if (this.type == Type.DEPLOY) {
+            return this.type.toTraceName() + " " + this.template + " " + this.count;
+        } else if (this.count == TraceEvent.ALL) {
+            return this.type.toTraceName() + " " + this.deployment;
+        }
+        return this.type.toTraceName() + " " + this.deployment + " " + this.count;
+    }
+}
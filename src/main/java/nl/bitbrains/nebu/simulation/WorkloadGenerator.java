@@ -0,0 +1,117 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Generates synthetic workload traces for the
+ *         {@link PlacementSimulator}. Every event is a removal with the
+ *         configured probability, as long as a deployment is left to remove,
+ *         and a deployment of a random template otherwise. Deployments request
+ *         between 1 and the maximum request size VMs, uniformly; a removal
+ *         removes all VMs of a random deployment that is still in place.
+ */
+public class WorkloadGenerator {
+
+    public static final int DEFAULT_EVENTS = 1000;
+    public static final int DEFAULT_MAX_REQUEST_SIZE = 16;
+    public static final double DEFAULT_REMOVE_PROBABILITY = 0.3;
+
+    private final List<String> templates;
+    private int events;
+    private int maxRequestSize;
+    private double removeProbability;
+    private long seed;
+
+    /**
+     * @param templates
+     *            uuids of the templates to deploy, at least one.
+     */
+    public WorkloadGenerator(final List<String> templates) {
+        ErrorChecker.throwIfNullArgument(templates, "templates");
+        if (templates.isEmpty()) {
+            throw new IllegalArgumentException("At least one template is required");
+        }
+        this.templates = new ArrayList<String>(templates);
+        this.events = WorkloadGenerator.DEFAULT_EVENTS;
+        this.maxRequestSize = WorkloadGenerator.DEFAULT_MAX_REQUEST_SIZE;
+        this.removeProbability = WorkloadGenerator.DEFAULT_REMOVE_PROBABILITY;
+        this.seed = 0;
+    }
+
+    /**
+     * @param events
+     *            number of events in the trace.
+     * @return this for fluency.
+     */
+    public final WorkloadGenerator withEvents(final int events) {
+        if (events < 0) {
+            throw new IllegalArgumentException("Events must not be negative");
+        }
+        this.events = events;
+        return this;
+    }
+
+    /**
+     * @param maxRequestSize
+     *            maximum number of VMs in a deployment, at least 1.
+     * @return this for fluency.
+     */
+    public final WorkloadGenerator withMaxRequestSize(final int maxRequestSize) {
+        if (maxRequestSize < 1) {
+            throw new IllegalArgumentException("Max request size must be at least 1");
+        }
+        this.maxRequestSize = maxRequestSize;
+        return this;
+    }
+
+    /**
+     * @param removeProbability
+     *            probability that an event is a removal, between 0 and 1.
+     * @return this for fluency.
+     */
+    public final WorkloadGenerator withRemoveProbability(final double removeProbability) {
+        if (removeProbability < 0 || removeProbability > 1) {
+            throw new IllegalArgumentException("Remove probability must be between 0 and 1");
+        }
+        this.removeProbability = removeProbability;
+        return this;
+    }
+
+    /**
+     * @param seed
+     *            of the random numbers.
+     * @return this for fluency.
+     */
+    public final WorkloadGenerator withSeed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @return a new trace.
+     */
+    public final List<TraceEvent> generate() {
+        final Random random = new Random(this.seed);
+        final List<TraceEvent> trace = new ArrayList<TraceEvent>();
+        final List<Integer> placed = new ArrayList<Integer>();
+        int deployments = 0;
+        for (int i = 0; i < this.events; i++) {
+            if (!placed.isEmpty() && random.nextDouble() < this.removeProbability) {
+                final int deployment = placed.remove(random.nextInt(placed.size()));
+                trace.add(TraceEvent.remove(deployment, TraceEvent.ALL));
+            } else {
+                final String template = this.templates.get(random.nextInt(this.templates.size()));
+                final int count = 1 + random.nextInt(this.maxRequestSize);
+                trace.add(TraceEvent.deploy(template, count));
+                placed.add(deployments++);
+            }
+        }
+        return trace;
+    }
+}
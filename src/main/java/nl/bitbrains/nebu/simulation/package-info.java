@@ -0,0 +1,4 @@
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ */
+package nl.bitbrains.nebu.simulation;
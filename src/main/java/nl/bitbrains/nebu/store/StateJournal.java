@@ -0,0 +1,213 @@
+package nl.bitbrains.nebu.store;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * An append-only file of xml records. Every record is written as its length,
+ * a CRC32 checksum and the xml itself, and is forced to disk before
+ * {@link #append(Element)} returns.
+ * 
+ * A record that was only partly written when the process stopped is detected
+ * by its length or checksum. Reading stops at such a record, and opening the
+ * journal again cuts it off, so new records follow the last complete one.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class StateJournal implements Closeable {
+
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static Logger logger = LogManager.getLogger();
+
+    private final File file;
+    private final FileOutputStream stream;
+    private final DataOutputStream output;
+    private int recordCount;
+
+    /**
+     * @param file
+     *            of the journal.
+     * @param recordCount
+     *            number of records already in the file.
+     * @throws IOException
+     *             if the file can not be opened.
+     */
+    private StateJournal(final File file, final int recordCount) throws IOException {
+        this.file = file;
+        this.stream = new FileOutputStream(file, true);
+        this.output = new DataOutputStream(this.stream);
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Opens the journal for appending, creating it if it does not exist. An
+     * incomplete record at the end of the file is removed.
+     * 
+     * @param file
+     *            of the journal.
+     * @return the journal.
+     * @throws IOException
+     *             if the file can not be read or opened.
+     */
+    public static StateJournal open(final File file) throws IOException {
+        ErrorChecker.throwIfNullArgument(file, "file");
+        final List<Element> records = new ArrayList<Element>();
+        final long validLength = StateJournal.readRecords(file, records);
+        if (file.exists() && file.length() > validLength) {
+            StateJournal.logger.warn("Removing incomplete record at the end of " + file);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return new StateJournal(file, records.size());
+    }
+
+    /**
+     * @param file
+     *            of the journal.
+     * @return the complete records in the journal, in the order in which they
+     *         were appended. Empty if the file does not exist.
+     * @throws IOException
+     *             if the file can not be read.
+     */
+    public static List<Element> read(final File file) throws IOException {
+        ErrorChecker.throwIfNullArgument(file, "file");
+        final List<Element> records = new ArrayList<Element>();
+        StateJournal.readRecords(file, records);
+        return records;
+    }
+
+    /**
+     * @param file
+     *            to read.
+     * @param records
+     *            to add the complete records to.
+     * @return the length of the file up to and including the last complete
+     *         record.
+     * @throws IOException
+     *             if the file can not be read.
+     */
+    private static long readRecords(final File file, final List<Element> records)
+            throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long validLength = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            while (true) {
+                final int length;
+                try {
+                    length = input.readInt();
+                } catch (final EOFException e) {
+                    return validLength;
+                }
+                if (length <= 0 || length > StateJournal.MAX_RECORD_SIZE) {
+                    return validLength;
+                }
+                final byte[] data = new byte[length];
+                final long checksum;
+                try {
+                    checksum = input.readLong();
+                    input.readFully(data);
+                } catch (final EOFException e) {
+                    return validLength;
+                }
+                if (checksum != StateJournal.checksum(data)) {
+                    return validLength;
+                }
+                records.add(StateJournal.parse(data));
+                validLength += 4 + 8 + length;
+            }
+        }
+    }
+
+    /**
+     * @param data
+     *            of a record.
+     * @return the record.
+     * @throws IOException
+     *             if the data is not well-formed xml.
+     */
+    private static Element parse(final byte[] data) throws IOException {
+        try {
+            return new SAXBuilder().build(new ByteArrayInputStream(data)).detachRootElement();
+        } catch (final JDOMException e) {
+            throw new IOException("Invalid record: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param data
+     *            to compute the checksum of.
+     * @return the checksum.
+     */
+    private static long checksum(final byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Appends a record, and forces it to disk.
+     * 
+     * @param record
+     *            to append.
+     * @throws IOException
+     *             if writing fails.
+     */
+    public synchronized void append(final Element record) throws IOException {
+        ErrorChecker.throwIfNullArgument(record, "record");
+        final byte[] data = new XMLOutputter(Format.getRawFormat()).outputString(record)
+                .getBytes(StandardCharsets.UTF_8);
+        this.output.writeInt(data.length);
+        this.output.writeLong(StateJournal.checksum(data));
+        this.output.write(data);
+        this.output.flush();
+        this.stream.getChannel().force(false);
+        this.recordCount++;
+    }
+
+    /**
+     * @return the number of records in the journal.
+     */
+    public synchronized int getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * @return the file of the journal.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.output.close();
+    }
+}
@@ -0,0 +1,354 @@
+package nl.bitbrains.nebu.store;
+
+import java.text.ParseException;
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.factories.IdentifiableFactory;
+import nl.bitbrains.nebu.common.factories.VirtualMachineFactory;
+import nl.bitbrains.nebu.common.util.xml.XMLConverter;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.ApplicationBuilder;
+import nl.bitbrains.nebu.containers.ApplicationFactory;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.DeploymentBuilder;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationFactory;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.containers.VMTemplateFactory;
+import nl.bitbrains.nebu.deployer.Deployer;
+import nl.bitbrains.nebu.deployer.MissingPolicyException;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdom2.Element;
+
+/**
+ * Creates the records of the {@link StateStore}, and applies them to the
+ * state when it is restored. Every record describes the new state of one
+ * object rather than the change, so applying a record twice has the same
+ * effect as applying it once. This lets a snapshot be taken while new records
+ * are written.
+ * 
+ * The objects are written with the factories of the REST API where those
+ * write the complete object. Deployments are written with all their
+ * specifications and VMs, including VMs that are still launching.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class StateRecords {
+
+    public static final String TAG_RECORD = "record";
+    public static final String TAG_DEPLOYMENT = "deployment";
+    public static final String TAG_SPECS = "specs";
+    public static final String ATTRIBUTE_TYPE = "type";
+    public static final String ATTRIBUTE_APP = "app";
+    public static final String ATTRIBUTE_DEPLOYMENT = "deployment";
+    public static final String ATTRIBUTE_VM = "vm";
+    public static final String ATTRIBUTE_LAUNCHED = "launched";
+
+    public static final String TYPE_APP = "app";
+    public static final String TYPE_TEMPLATE = "template";
+    public static final String TYPE_DEPLOYMENT = "deployment";
+    public static final String TYPE_VM_ADDED = "vmadded";
+    public static final String TYPE_VM_REMOVED = "vmremoved";
+
+    private static Logger logger = LogManager.getLogger();
+
+    /**
+     * Private constructor, only static methods.
+     */
+    private StateRecords() {
+    }
+
+    /**
+     * @param type
+     *            of the record.
+     * @param app
+     *            the record applies to.
+     * @return an empty record.
+     */
+    private static Element newRecord(final String type, final Application app) {
+        final Element record = new Element(StateRecords.TAG_RECORD);
+        record.setAttribute(StateRecords.ATTRIBUTE_TYPE, type);
+        record.setAttribute(StateRecords.ATTRIBUTE_APP, app.getUniqueIdentifier());
+        return record;
+    }
+
+    /**
+     * @param app
+     *            that was created or changed.
+     * @param policyXML
+     *            the deploymentpolicy element the application was created
+     *            with, or null if the application already existed. Its policy
+     *            is bound to the application when the record is applied to a
+     *            state without the application.
+     * @return the record.
+     */
+    public static Element application(final Application app, final Element policyXML) {
+        final Element xml = new ApplicationFactory().toXML(app);
+        if (policyXML != null) {
+            xml.removeChild(ApplicationFactory.TAG_DEPLOYMENT_POLICY);
+            xml.addContent(policyXML.clone());
+        }
+        return StateRecords.newRecord(StateRecords.TYPE_APP, app).addContent(xml);
+    }
+
+    /**
+     * @param app
+     *            the template belongs to.
+     * @param template
+     *            that was put.
+     * @return the record.
+     */
+    public static Element template(final Application app, final VMTemplate template) {
+        return StateRecords.newRecord(StateRecords.TYPE_TEMPLATE, app)
+                .addContent(new VMTemplateFactory().toXML(template));
+    }
+
+    /**
+     * @param app
+     *            the deployment belongs to.
+     * @param deployment
+     *            that was created or changed.
+     * @return the record.
+     */
+    public static Element deployment(final Application app, final Deployment deployment) {
+        final Element xml = new Element(StateRecords.TAG_DEPLOYMENT);
+        xml.setAttribute(IdentifiableFactory.TAG_ID, deployment.getUniqueIdentifier());
+        xml.setAttribute(StateRecords.ATTRIBUTE_LAUNCHED,
+                         Boolean.toString(deployment.isLaunched()));
+        final Element specs = new Element(StateRecords.TAG_SPECS);
+        final VMDeploymentSpecificationFactory specFactory = new VMDeploymentSpecificationFactory();
+        for (final VMDeploymentSpecification spec : deployment.getSpecs()) {
+            specs.addContent(specFactory.toXML(spec));
+        }
+        xml.addContent(specs);
+        xml.addContent(XMLConverter.convertMapToJDOMElement(deployment
+                .getVirtualMachinesWithSpecs(), new VirtualMachineFactory(), specFactory));
+        return StateRecords.newRecord(StateRecords.TYPE_DEPLOYMENT, app).addContent(xml);
+    }
+
+    /**
+     * @param app
+     *            the deployment belongs to.
+     * @param deployment
+     *            the VM was added to.
+     * @param vm
+     *            that was added.
+     * @param spec
+     *            of the VM.
+     * @return the record.
+     */
+    public static Element virtualMachineAdded(final Application app,
+            final Deployment deployment, final VirtualMachine vm,
+            final VMDeploymentSpecification spec) {
+        final Element record = StateRecords.newRecord(StateRecords.TYPE_VM_ADDED, app);
+        record.setAttribute(StateRecords.ATTRIBUTE_DEPLOYMENT, deployment.getUniqueIdentifier());
+        record.addContent(new VirtualMachineFactory().toXML(vm));
+        record.addContent(new VMDeploymentSpecificationFactory().toXML(spec));
+        return record;
+    }
+
+    /**
+     * @param app
+     *            the deployment belongs to.
+     * @param deployment
+     *            the VM was removed from.
+     * @param vm
+     *            that was removed.
+     * @return the record.
+     */
+    public static Element virtualMachineRemoved(final Application app,
+            final Deployment deployment, final VirtualMachine vm) {
+        final Element record = StateRecords.newRecord(StateRecords.TYPE_VM_REMOVED, app);
+        record.setAttribute(StateRecords.ATTRIBUTE_DEPLOYMENT, deployment.getUniqueIdentifier());
+        record.setAttribute(StateRecords.ATTRIBUTE_VM, vm.getUniqueIdentifier());
+        return record;
+    }
+
+    /**
+     * Applies a record to the state.
+     * 
+     * @param record
+     *            to apply.
+     * @param apps
+     *            the applications, by uuid.
+     * @param policies
+     *            the policy configurations the applications were created
+     *            with, by uuid.
+     * @param deployer
+     *            to bind the policies of new applications to.
+     * @throws ParseException
+     *             if the record is invalid.
+     */
+    public static void apply(final Element record, final Map<String, Application> apps,
+            final Map<String, Element> policies, final Deployer deployer)
+            throws ParseException {
+        final String type = record.getAttributeValue(StateRecords.ATTRIBUTE_TYPE);
+        if (StateRecords.TYPE_APP.equals(type)) {
+            StateRecords.applyApplication(record, apps, policies, deployer);
+            return;
+        }
+        final String appUUID = record.getAttributeValue(StateRecords.ATTRIBUTE_APP);
+        Application app = null;
+        if (appUUID != null) {
+            app = apps.get(appUUID);
+        }
+        if (app == null) {
+            throw new ParseException("Record for unknown application "
+                    + record.getAttributeValue(StateRecords.ATTRIBUTE_APP), 0);
+        }
+        if (StateRecords.TYPE_TEMPLATE.equals(type)) {
+            app.putVMTemplate(new VMTemplateFactory().fromXML(StateRecords
+                    .getChild(record, VMTemplateFactory.TAG_ELEMENT_ROOT)).build());
+        } else if (StateRecords.TYPE_DEPLOYMENT.equals(type)) {
+            app.putDeployment(StateRecords.parseDeployment(StateRecords
+                    .getChild(record, StateRecords.TAG_DEPLOYMENT)));
+        } else if (StateRecords.TYPE_VM_ADDED.equals(type)) {
+            final Deployment deployment = StateRecords.getDeployment(record, app);
+            final VirtualMachine vm = new VirtualMachineFactory().fromXML(StateRecords
+                    .getChild(record, VirtualMachineFactory.TAG_ELEMENT_ROOT)).build();
+            final Element specXML = StateRecords
+                    .getChild(record, VMDeploymentSpecificationFactory.TAG_ELEMENT_ROOT);
+            final VMDeploymentSpecification spec = new VMDeploymentSpecificationFactory()
+                    .fromXML(specXML).build();
+            // Replaces the VM if the record was applied before.
+            StateRecords.removeVirtualMachine(app, vm.getUniqueIdentifier());
+            deployment.addVirtualMachines(vm, spec);
+        } else if (StateRecords.TYPE_VM_REMOVED.equals(type)) {
+            final Deployment deployment = StateRecords.getDeployment(record, app);
+            final String vmUUID = record.getAttributeValue(StateRecords.ATTRIBUTE_VM);
+            if (deployment.equals(app.getDeploymentForVirtualMachine(vmUUID))) {
+                StateRecords.removeVirtualMachine(app, vmUUID);
+            }
+        } else {
+            throw new ParseException("Unknown record type " + type, 0);
+        }
+    }
+
+    /**
+     * Removes a VM from the deployment it belongs to, if it is known.
+     * 
+     * @param app
+     *            the VM belongs to.
+     * @param vmUUID
+     *            of the VM.
+     */
+    private static void removeVirtualMachine(final Application app, final String vmUUID) {
+        final VirtualMachine vm = app.getVirtualMachine(vmUUID);
+        if (vm != null) {
+            app.getDeploymentForVirtualMachine(vmUUID).removeVirtualMachine(vm);
+        }
+    }
+
+    /**
+     * Creates the application of the record, or changes its name and policy
+     * name if it already exists.
+     * 
+     * @param record
+     *            to apply.
+     * @param apps
+     *            the applications, by uuid.
+     * @param policies
+     *            the policy configurations, by uuid.
+     * @param deployer
+     *            to bind the policy of a new application to.
+     * @throws ParseException
+     *             if the record is invalid.
+     */
+    private static void applyApplication(final Element record,
+            final Map<String, Application> apps, final Map<String, Element> policies,
+            final Deployer deployer) throws ParseException {
+        final ApplicationFactory factory = new ApplicationFactory();
+        final Element xml = StateRecords.getChild(record, ApplicationFactory.TAG_ELEMENT_ROOT);
+        final ApplicationBuilder builder = factory.fromXML(xml);
+        final Application received = builder.build();
+        final Application existing = apps.get(received.getUniqueIdentifier());
+        if (existing != null) {
+            existing.setName(received.getName());
+            existing.setDeploymentPolicy(received.getDeploymentPolicy());
+            return;
+        }
+        final Element policyXML = factory.getPolicyXML(xml);
+        try {
+            deployer.setPolicy(received, received.getDeploymentPolicy(), policyXML);
+        } catch (final MissingPolicyException | ParseException e) {
+            // Keep the application, so its deployments are not lost.
+            StateRecords.logger.catching(Level.ERROR, e);
+        }
+        apps.put(received.getUniqueIdentifier(), received);
+        if (policyXML != null) {
+            policies.put(received.getUniqueIdentifier(), policyXML.clone());
+        }
+    }
+
+    /**
+     * @param xml
+     *            as written by {@link #deployment(Application, Deployment)}.
+     * @return the deployment.
+     * @throws ParseException
+     *             if the xml is invalid.
+     */
+    private static Deployment parseDeployment(final Element xml) throws ParseException {
+        final String uuid = xml.getAttributeValue(IdentifiableFactory.TAG_ID);
+        if (uuid == null) {
+            throw new ParseException("Deployment without " + IdentifiableFactory.TAG_ID, 0);
+        }
+        final DeploymentBuilder builder = new DeploymentBuilder().withUuid(uuid);
+        builder.withLaunched(Boolean.parseBoolean(xml
+                .getAttributeValue(StateRecords.ATTRIBUTE_LAUNCHED)));
+        final VMDeploymentSpecificationFactory specFactory = new VMDeploymentSpecificationFactory();
+        for (final Element spec : StateRecords.getChild(xml, StateRecords.TAG_SPECS)
+                .getChildren()) {
+            builder.withSpec(specFactory.fromXML(spec).build());
+        }
+        final Map<VirtualMachine, VMDeploymentSpecification> vms = XMLConverter
+                .convertJDOMElementToMap(StateRecords.getChild(xml, XMLConverter.TAG_MAP),
+                                         new VirtualMachineFactory(),
+                                         specFactory);
+        for (final Map.Entry<VirtualMachine, VMDeploymentSpecification> entry : vms.entrySet()) {
+            builder.withVM(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param record
+     *            that names the deployment.
+     * @param app
+     *            the deployment belongs to.
+     * @return the deployment.
+     * @throws ParseException
+     *             if the deployment does not exist.
+     */
+    private static Deployment getDeployment(final Element record, final Application app)
+            throws ParseException {
+        final String uuid = record.getAttributeValue(StateRecords.ATTRIBUTE_DEPLOYMENT);
+        final Deployment deployment = app.getDeployment(uuid);
+        if (deployment == null) {
+            throw new ParseException("Record for unknown deployment " + uuid, 0);
+        }
+        return deployment;
+    }
+
+    /**
+     * @param xml
+     *            to get the child of.
+     * @param name
+     *            of the child.
+     * @return the child.
+     * @throws ParseException
+     *             if there is no such child.
+     */
+    private static Element getChild(final Element xml, final String name)
+            throws ParseException {
+        final Element child = xml.getChild(name);
+        if (child == null) {
+            throw new ParseException("Missing element " + name + " in " + xml.getName(), 0);
+        }
+        return child;
+    }
+}
@@ -0,0 +1,500 @@
+package nl.bitbrains.nebu.store;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.deployer.Deployer;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         This singleton class keeps the applications, templates, deployments
+ *         and VMs on local disk, so they survive a restart. Every change is
+ *         appended to a journal (see {@link StateJournal}) before the request
+ *         that made it returns. Periodically, and whenever the journal has
+ *         grown too long, the whole state is written to a snapshot and the
+ *         journals before it are removed. Restoring reads the snapshot and
+ *         only the journals written after it, so the time it takes depends
+ *         on the size of the state and not on its history.
+ * 
+ *         Restoring binds the {@link nl.bitbrains.nebu.deployer.DeployerPolicy}
+ *         of every application again, with the configuration the application
+ *         was created with.
+ * 
+ *         While the store is not enabled, nothing is written.
+ */
+public final class StateStore {
+
+    public static final String SNAPSHOT_FILE = "snapshot.xml";
+    public static final String TAG_SNAPSHOT = "snapshot";
+    public static final String ATTRIBUTE_JOURNAL = "journal";
+    private static final String SNAPSHOT_TEMP_FILE = "snapshot.xml.tmp";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static Logger logger = LogManager.getLogger();
+    private static StateStore instance = new StateStore();
+
+    private final Map<String, Element> policies;
+    private final AtomicBoolean snapshotPending;
+    private final Object snapshotLock;
+    private StateStoreSettings settings;
+    private Map<String, Application> apps;
+    private StateJournal journal;
+    private long journalSequence;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a store that is not enabled. Only used by the singleton and by
+     * tests.
+     */
+    StateStore() {
+        this.policies = new ConcurrentHashMap<String, Element>();
+        this.snapshotPending = new AtomicBoolean(false);
+        this.snapshotLock = new Object();
+        this.settings = new StateStoreSettings();
+    }
+
+    /**
+     * @return the StateStore singleton.
+     */
+    public static StateStore get() {
+        return StateStore.instance;
+    }
+
+    /**
+     * @param newSettings
+     *            to use when the state is restored.
+     */
+    public synchronized void configure(final StateStoreSettings newSettings) {
+        ErrorChecker.throwIfNullArgument(newSettings, "newSettings");
+        this.settings = newSettings;
+    }
+
+    /**
+     * @return true iff changes are written to disk.
+     */
+    public synchronized boolean isEnabled() {
+        return this.journal != null;
+    }
+
+    /**
+     * Restores the state from disk, and starts writing changes to it. If the
+     * store is not enabled, nothing is read and an empty state is returned.
+     * 
+     * @param deployer
+     *            to bind the policies of the applications to.
+     * @return the applications, by uuid. This map has to be used as the map of
+     *         the REST API, so snapshots contain the applications that are
+     *         added later.
+     * @throws IOException
+     *             if the state can not be read, or the directory can not be
+     *             written.
+     */
+    public Map<String, Application> restore(final Deployer deployer) throws IOException {
+        StateStore.logger.entry();
+        ErrorChecker.throwIfNullArgument(deployer, "deployer");
+        this.close();
+        synchronized (this) {
+            return StateStore.logger.exit(this.restoreLocked(deployer));
+        }
+    }
+
+    /**
+     * Restores the state, see {@link #restore(Deployer)}.
+     * 
+     * @param deployer
+     *            to bind the policies of the applications to.
+     * @return the applications, by uuid.
+     * @throws IOException
+     *             if the state can not be read, or the directory can not be
+     *             written.
+     */
+    private Map<String, Application> restoreLocked(final Deployer deployer) throws IOException {
+        this.apps = new ConcurrentHashMap<String, Application>();
+        this.policies.clear();
+        if (!this.settings.isEnabled()) {
+            return this.apps;
+        }
+        final File directory = this.settings.getDirectory();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create state directory " + directory);
+        }
+
+        long sequence = 0;
+        final File snapshotFile = new File(directory, StateStore.SNAPSHOT_FILE);
+        if (snapshotFile.exists()) {
+            final Element snapshot = StateStore.readSnapshot(snapshotFile);
+            sequence = StateStore.parseSequence(snapshot
+                    .getAttributeValue(StateStore.ATTRIBUTE_JOURNAL));
+            this.apply(snapshot.getChildren(StateRecords.TAG_RECORD), deployer);
+        }
+        long lastSequence = sequence;
+        for (final long journalSequence : this.listJournals()) {
+            if (journalSequence >= sequence) {
+                this.apply(StateJournal.read(this.getJournalFile(journalSequence)), deployer);
+                lastSequence = journalSequence;
+            }
+        }
+        StateStore.logger.info("Restored " + this.apps.size() + " applications from "
+                + directory);
+
+        this.journalSequence = lastSequence;
+        this.journal = StateJournal.open(this.getJournalFile(lastSequence));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "nebu-state-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long interval = this.settings.getSnapshotInterval();
+        // The first snapshot compacts the journals that were just replayed.
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                StateStore.this.snapshotOrLog();
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+        return this.apps;
+    }
+
+    /**
+     * @param records
+     *            to apply to the state.
+     * @param deployer
+     *            to bind policies to.
+     */
+    private void apply(final List<Element> records, final Deployer deployer) {
+        for (final Element record : records) {
+            try {
+                StateRecords.apply(record, this.apps, this.policies, deployer);
+            } catch (final ParseException | RuntimeException e) {
+                // One broken record should not make the rest unreadable.
+                StateStore.logger.catching(Level.ERROR, e);
+            }
+        }
+    }
+
+    /**
+     * @param file
+     *            of the snapshot.
+     * @return the root element of the snapshot.
+     * @throws IOException
+     *             if the snapshot can not be read.
+     */
+    private static Element readSnapshot(final File file) throws IOException {
+        try {
+            return new SAXBuilder().build(file).getRootElement();
+        } catch (final JDOMException e) {
+            throw new IOException("Invalid snapshot " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param text
+     *            to parse.
+     * @return the journal sequence number.
+     * @throws IOException
+     *             if the text is not a number.
+     */
+    private static long parseSequence(final String text) throws IOException {
+        try {
+            return Long.parseLong(text);
+        } catch (final NumberFormatException e) {
+            throw new IOException("Invalid journal sequence number '" + text + "'", e);
+        }
+    }
+
+    /**
+     * @return the sequence numbers of the journals in the directory, in
+     *         ascending order.
+     */
+    private List<Long> listJournals() {
+        final List<Long> result = new ArrayList<Long>();
+        final String[] names = this.settings.getDirectory().list();
+        if (names == null) {
+            return result;
+        }
+        for (final String name : names) {
+            if (name.startsWith(StateStore.JOURNAL_PREFIX)
+                    && name.endsWith(StateStore.JOURNAL_SUFFIX)) {
+                final String number = name.substring(StateStore.JOURNAL_PREFIX.length(),
+                                                     name.length()
+                                                             - StateStore.JOURNAL_SUFFIX.length());
+                try {
+                    result.add(Long.parseLong(number));
+                } catch (final NumberFormatException e) {
+                    StateStore.logger.warn("Ignoring " + name);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * @param sequence
+     *            of the journal.
+     * @return the file of the journal.
+     */
+    private File getJournalFile(final long sequence) {
+        return new File(this.settings.getDirectory(), StateStore.JOURNAL_PREFIX + sequence
+                + StateStore.JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Records that an application was created.
+     * 
+     * @param app
+     *            that was created.
+     * @param policyXML
+     *            the deploymentpolicy element it was created with.
+     */
+    public void recordApplicationCreated(final Application app, final Element policyXML) {
+        ErrorChecker.throwIfNullArgument(policyXML, "policyXML");
+        this.policies.put(app.getUniqueIdentifier(), policyXML.clone());
+        this.append(StateRecords.application(app, policyXML));
+    }
+
+    /**
+     * Records that the name or policy name of an application was changed.
+     * 
+     * @param app
+     *            that was changed.
+     */
+    public void recordApplicationChanged(final Application app) {
+        this.append(StateRecords.application(app, null));
+    }
+
+    /**
+     * @param app
+     *            the template belongs to.
+     * @param template
+     *            that was put.
+     */
+    public void recordTemplate(final Application app, final VMTemplate template) {
+        this.append(StateRecords.template(app, template));
+    }
+
+    /**
+     * Records the current state of a deployment, after it was created,
+     * changed or launched.
+     * 
+     * @param app
+     *            the deployment belongs to.
+     * @param deployment
+     *            that was changed.
+     */
+    public void recordDeployment(final Application app, final Deployment deployment) {
+        this.append(StateRecords.deployment(app, deployment));
+    }
+
+    /**
+     * @param app
+     *            the deployment belongs to.
+     * @param deployment
+     *            the VM was added to.
+     * @param vm
+     *            that was added.
+     * @param spec
+     *            of the VM.
+     */
+    public void recordVirtualMachineAdded(final Application app, final Deployment deployment,
+            final VirtualMachine vm, final VMDeploymentSpecification spec) {
+        this.append(StateRecords.virtualMachineAdded(app, deployment, vm, spec));
+    }
+
+    /**
+     * @param app
+     *            the deployment belongs to.
+     * @param deployment
+     *            the VM was removed from.
+     * @param vm
+     *            that was removed.
+     */
+    public void recordVirtualMachineRemoved(final Application app,
+            final Deployment deployment, final VirtualMachine vm) {
+        this.append(StateRecords.virtualMachineRemoved(app, deployment, vm));
+    }
+
+    /**
+     * Appends a record to the journal, and schedules a snapshot if the journal
+     * has become too long. A failing write is logged; the change itself has
+     * already been made in memory and is kept.
+     * 
+     * @param record
+     *            to append.
+     */
+    private synchronized void append(final Element record) {
+        if (this.journal == null) {
+            return;
+        }
+        try {
+            this.journal.append(record);
+        } catch (final IOException e) {
+            StateStore.logger.catching(Level.ERROR, e);
+            return;
+        }
+        if (this.journal.getRecordCount() >= this.settings.getMaxJournalRecords()
+                && this.snapshotPending.compareAndSet(false, true)) {
+            this.scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    StateStore.this.snapshotOrLog();
+                }
+            });
+        }
+    }
+
+    /**
+     * Takes a snapshot, and logs if it fails.
+     */
+    private void snapshotOrLog() {
+        try {
+            this.snapshot();
+        } catch (final IOException | RuntimeException e) {
+            StateStore.logger.catching(Level.ERROR, e);
+        }
+    }
+
+    /**
+     * Writes the whole state to the snapshot, and removes the journals it
+     * makes obsolete. Changes are journaled as usual while the snapshot is
+     * written; they go to a new journal that is replayed after the snapshot.
+     * 
+     * @throws IOException
+     *             if the snapshot can not be written.
+     */
+    public void snapshot() throws IOException {
+        synchronized (this.snapshotLock) {
+            this.snapshotPending.set(false);
+            final long sequence;
+            final Map<String, Application> state;
+            synchronized (this) {
+                if (this.journal == null) {
+                    return;
+                }
+                this.journal.close();
+                this.journalSequence++;
+                this.journal = StateJournal.open(this.getJournalFile(this.journalSequence));
+                sequence = this.journalSequence;
+                state = this.apps;
+            }
+
+            final Element snapshot = new Element(StateStore.TAG_SNAPSHOT);
+            snapshot.setAttribute(StateStore.ATTRIBUTE_JOURNAL, Long.toString(sequence));
+            for (final Application app : state.values()) {
+                this.addRecords(snapshot, app);
+            }
+            this.writeSnapshot(snapshot);
+            for (final long journalSequence : this.listJournals()) {
+                if (journalSequence < sequence
+                        && !this.getJournalFile(journalSequence).delete()) {
+                    StateStore.logger.warn("Could not remove journal " + journalSequence);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the records that recreate the application to the snapshot.
+     * 
+     * @param snapshot
+     *            to add the records to.
+     * @param app
+     *            to add.
+     */
+    private void addRecords(final Element snapshot, final Application app) {
+        final Element policyXML = this.policies.get(app.getUniqueIdentifier());
+        if (policyXML == null) {
+            StateStore.logger.warn("No policy configuration known for "
+                    + app.getUniqueIdentifier());
+        }
+        snapshot.addContent(StateRecords.application(app, policyXML));
+        // Restores the current name and policy name, if they were changed.
+        snapshot.addContent(StateRecords.application(app, null));
+        for (final VMTemplate template : app.getVMTemplates()) {
+            snapshot.addContent(StateRecords.template(app, template));
+        }
+        for (final Deployment deployment : app.getDeployments()) {
+            snapshot.addContent(StateRecords.deployment(app, deployment));
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file, and moves it in place once it
+     * is on disk, so a crash never leaves a partly written snapshot.
+     * 
+     * @param snapshot
+     *            to write.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void writeSnapshot(final Element snapshot) throws IOException {
+        final File directory = this.settings.getDirectory();
+        final File temp = new File(directory, StateStore.SNAPSHOT_TEMP_FILE);
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            new XMLOutputter(Format.getRawFormat()).output(new Document(snapshot), output);
+            output.flush();
+            output.getFD().sync();
+        }
+        Files.move(temp.toPath(),
+                   new File(directory, StateStore.SNAPSHOT_FILE).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Takes a last snapshot, and stops writing changes.
+     */
+    public void close() {
+        if (this.isEnabled()) {
+            this.snapshotOrLog();
+        }
+        synchronized (this) {
+            if (this.scheduler != null) {
+                this.scheduler.shutdown();
+                this.scheduler = null;
+            }
+            if (this.journal != null) {
+                try {
+                    this.journal.close();
+                } catch (final IOException e) {
+                    StateStore.logger.catching(Level.WARN, e);
+                }
+                this.journal = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package nl.bitbrains.nebu.store;
+
+import java.io.File;
+import java.text.ParseException;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.util.SettingsParser;
+
+import org.jdom2.Element;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Immutable settings of the {@link StateStore}. All times are in
+ *         milliseconds.
+ */
+public final class StateStoreSettings {
+
+    public static final String TAG_STATE_STORE = "statestore";
+    public static final String TAG_DIRECTORY = "directory";
+    public static final String TAG_SNAPSHOT_INTERVAL = "snapshotinterval";
+    public static final String TAG_MAX_JOURNAL_RECORDS = "maxjournalrecords";
+    public static final String ATTRIBUTE_ENABLED = "enabled";
+
+    public static final String DEFAULT_DIRECTORY = "state";
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 300000;
+    public static final int DEFAULT_MAX_JOURNAL_RECORDS = 10000;
+
+    private final boolean enabled;
+    private final File directory;
+    private final long snapshotInterval;
+    private final int maxJournalRecords;
+
+    /**
+     * Creates settings with the store disabled.
+     */
+    public StateStoreSettings() {
+        this(false, new File(StateStoreSettings.DEFAULT_DIRECTORY),
+                StateStoreSettings.DEFAULT_SNAPSHOT_INTERVAL,
+                StateStoreSettings.DEFAULT_MAX_JOURNAL_RECORDS);
+    }
+
+    /**
+     * @param enabled
+     *            true iff the state is stored.
+     * @param directory
+     *            to keep the snapshot and journal in.
+     * @param snapshotInterval
+     *            time between two snapshots.
+     * @param maxJournalRecords
+     *            number of journal records after which a snapshot is taken
+     *            before the interval has passed.
+     */
+    public StateStoreSettings(final boolean enabled, final File directory,
+            final long snapshotInterval, final int maxJournalRecords) {
+        ErrorChecker.throwIfNullArgument(directory, "directory");
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        if (maxJournalRecords <= 0) {
+            throw new IllegalArgumentException("Max journal records must be positive");
+        }
+        this.enabled = enabled;
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        this.maxJournalRecords = maxJournalRecords;
+    }
+
+    /**
+     * Reads the settings from xml such as:
+     * 
+     * <pre>
+     * &lt;statestore enabled="true"&gt;
+     *     &lt;directory&gt;/var/lib/nebu&lt;/directory&gt;
+     *     &lt;snapshotinterval&gt;300000&lt;/snapshotinterval&gt;
+     *     &lt;maxjournalrecords&gt;10000&lt;/maxjournalrecords&gt;
+     * &lt;/statestore&gt;
+     * </pre>
+     * 
+     * @param xml
+     *            the statestore element to read the settings from, may be
+     *            null.
+     * @return the settings.
+     * @throws ParseException
+     *             if the settings are invalidly specified.
+     */
+    public static StateStoreSettings fromXML(final Element xml) throws ParseException {
+        if (xml == null) {
+            return new StateStoreSettings();
+        }
+        final boolean enabled = Boolean.parseBoolean(xml
+                .getAttributeValue(StateStoreSettings.ATTRIBUTE_ENABLED));
+        String directory = xml.getChildTextTrim(StateStoreSettings.TAG_DIRECTORY);
+        if (directory == null || directory.isEmpty()) {
+            directory = StateStoreSettings.DEFAULT_DIRECTORY;
+        }
+        final long interval = SettingsParser
+                .parseLong(xml,
+                           StateStoreSettings.TAG_SNAPSHOT_INTERVAL,
+                           StateStoreSettings.DEFAULT_SNAPSHOT_INTERVAL);
+        final int records = SettingsParser.parseInt(xml,
+                                                    StateStoreSettings.TAG_MAX_JOURNAL_RECORDS,
+                                                    StateStoreSettings.DEFAULT_MAX_JOURNAL_RECORDS);
+        try {
+            return new StateStoreSettings(enabled, new File(directory), interval, records);
+        } catch (final IllegalArgumentException e) {
+            throw SettingsParser.invalid(e);
+        }
+    }
+
+    /**
+     * @return true iff the state is stored.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return the directory to keep the snapshot and journal in.
+     */
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * @return time between two snapshots.
+     */
+    public long getSnapshotInterval() {
+        return this.snapshotInterval;
+    }
+
+    /**
+     * @return number of journal records after which a snapshot is taken.
+     */
+    public int getMaxJournalRecords() {
+        return this.maxJournalRecords;
+    }
+}
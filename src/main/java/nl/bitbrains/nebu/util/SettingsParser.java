@@ -0,0 +1,113 @@
+package nl.bitbrains.nebu.util;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+
+/**
+ * Reads the numeric values of settings from the children of an xml element,
+ * such as <code>&lt;ttl&gt;5000&lt;/ttl&gt;</code>. A value that is not
+ * present is replaced by its default, a value that is not a number is
+ * reported as a {@link ParseException}.
+ * 
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public final class SettingsParser {
+
+    /**
+     * Private constructor, only static methods.
+     */
+    private SettingsParser() {
+    }
+
+    /**
+     * @param xml
+     *            to read the value from.
+     * @param tag
+     *            of the value.
+     * @param defaultValue
+     *            to use if the tag is not present.
+     * @return the value.
+     * @throws ParseException
+     *             if the value is not a number.
+     */
+    public static long parseLong(final Element xml, final String tag, final long defaultValue)
+            throws ParseException {
+        final String text = xml.getChildTextTrim(tag);
+        if (text == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (final NumberFormatException e) {
+            throw SettingsParser.notANumber(tag, text);
+        }
+    }
+
+    /**
+     * @param xml
+     *            to read the value from.
+     * @param tag
+     *            of the value.
+     * @param defaultValue
+     *            to use if the tag is not present.
+     * @return the value.
+     * @throws ParseException
+     *             if the value is not a number, or does not fit in an int.
+     */
+    public static int parseInt(final Element xml, final String tag, final int defaultValue)
+            throws ParseException {
+        final long value = SettingsParser.parseLong(xml, tag, defaultValue);
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            throw new ParseException("Setting '" + tag + "' is too large", 0);
+        }
+        return (int) value;
+    }
+
+    /**
+     * @param xml
+     *            to read the value from.
+     * @param tag
+     *            of the value.
+     * @param defaultValue
+     *            to use if the tag is not present.
+     * @return the value.
+     * @throws ParseException
+     *             if the value is not a number.
+     */
+    public static double parseDouble(final Element xml, final String tag,
+            final double defaultValue) throws ParseException {
+        final String text = xml.getChildTextTrim(tag);
+        if (text == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (final NumberFormatException e) {
+            throw SettingsParser.notANumber(tag, text);
+        }
+    }
+
+    /**
+     * @param e
+     *            thrown by the constructor of the settings, because a value
+     *            is out of range.
+     * @return the exception to report the invalid settings with.
+     */
+    public static ParseException invalid(final IllegalArgumentException e) {
+        return new ParseException(e.getMessage(), 0);
+    }
+
+    /**
+     * @param tag
+     *            of the value.
+     * @param text
+     *            the value.
+     * @return the exception to report the value with.
+     */
+    private static ParseException notANumber(final String tag, final String text) {
+        return new ParseException("Setting '" + tag + "' must be a number, got '" + text + "'",
+                0);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+package nl.bitbrains.nebu.util;
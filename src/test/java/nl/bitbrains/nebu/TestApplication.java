@@ -109,6 +109,18 @@ public class TestApplication {
         Assert.assertTrue(this.app.getDeployments().contains(dep));
     }
 
+    @Test
+    public void testPutDeploymentWhileIterating() {
+        this.app.putDeployment(new DeploymentBuilder().withUuid("first").build());
+        for (final Deployment deployment : this.app.getDeployments()) {
+            this.app.putDeployment(new DeploymentBuilder().withUuid("second").build());
+            this.app.putVMTemplate(new VMTemplateBuilder().withUuid("template").build());
+        }
+        Assert.assertEquals(2, this.app.getDeployments().size());
+        Assert.assertNull(this.app.getDeployment(null));
+        Assert.assertNull(this.app.getVMTemplate(null));
+    }
+
     @SuppressWarnings("unused")
     private Object[] equalsParams() {
         this.setUp();
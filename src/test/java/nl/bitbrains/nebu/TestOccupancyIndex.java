@@ -0,0 +1,125 @@
+package nl.bitbrains.nebu;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.ApplicationBuilder;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.DeploymentBuilder;
+import nl.bitbrains.nebu.containers.OccupancyIndex;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.containers.VMTemplateBuilder;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestOccupancyIndex {
+
+    private final String host = "host";
+    private final String store = "store";
+
+    private OccupancyIndex index;
+    private VMTemplate template;
+    private VMTemplate otherTemplate;
+    private VMDeploymentSpecification spec;
+
+    @Before
+    public void setUp() {
+        this.index = new OccupancyIndex();
+        this.template = new VMTemplateBuilder().withUuid("template").build();
+        this.otherTemplate = new VMTemplateBuilder().withUuid("other").build();
+        this.spec = new VMDeploymentSpecificationBuilder().withTemplate(this.template)
+                .withHost(this.host).withStore(this.store).build();
+    }
+
+    private VirtualMachine createVM(final String id) {
+        return new VirtualMachineBuilder().withUuid(id).withHost(this.host).withDisk(this.store)
+                .build();
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(0, this.index.size());
+        Assert.assertEquals(0, this.index.getVMsOnHost(this.host, null));
+        Assert.assertEquals(0, this.index.getVMsOnStore(this.store, this.template));
+    }
+
+    @Test
+    public void testAdd() {
+        this.index.add(this.createVM("vm1"), this.spec);
+        this.index.add(this.createVM("vm2"), this.spec);
+        Assert.assertEquals(2, this.index.size());
+        Assert.assertEquals(2, this.index.getVMsOnHost(this.host, null));
+        Assert.assertEquals(2, this.index.getVMsOnHost(this.host, this.template));
+        Assert.assertEquals(0, this.index.getVMsOnHost(this.host, this.otherTemplate));
+        Assert.assertEquals(2, this.index.getVMsOnStore(this.store, null));
+    }
+
+    @Test
+    public void testAddTwiceCountsOnce() {
+        final VirtualMachine vm = this.createVM("vm1");
+        this.index.add(vm, this.spec);
+        this.index.add(vm, this.spec);
+        Assert.assertEquals(1, this.index.getVMsOnHost(this.host, null));
+    }
+
+    @Test
+    public void testAddMovesVM() {
+        final VirtualMachine vm = this.createVM("vm1");
+        this.index.add(vm, this.spec);
+        vm.setHost("otherHost");
+        this.index.add(vm, this.spec);
+        Assert.assertEquals(0, this.index.getVMsOnHost(this.host, null));
+        Assert.assertEquals(1, this.index.getVMsOnHost("otherHost", null));
+    }
+
+    @Test
+    public void testRemove() {
+        final VirtualMachine vm = this.createVM("vm1");
+        this.index.add(vm, this.spec);
+        this.index.remove(vm);
+        Assert.assertFalse(this.index.contains("vm1"));
+        Assert.assertEquals(0, this.index.getVMsOnHost(this.host, this.template));
+        Assert.assertEquals(0, this.index.getVMsOnStore(this.store, null));
+    }
+
+    @Test
+    public void testNullSpec() {
+        this.index.add(this.createVM("vm1"), null);
+        Assert.assertEquals(1, this.index.getVMsOnHost(this.host, null));
+        Assert.assertEquals(0, this.index.getVMsOnHost(this.host, this.template));
+    }
+
+    @Test
+    public void testDeploymentKeepsApplicationIndexUpToDate() {
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        final Deployment dep = new DeploymentBuilder().withUuid("dep").build();
+        final VirtualMachine vm = this.createVM("vm1");
+        dep.addVirtualMachines(vm, this.spec);
+        app.putDeployment(dep);
+        Assert.assertEquals(1, app.getOccupancy().getVMsOnHost(this.host, this.template));
+
+        dep.addVirtualMachines(this.createVM("vm2"), this.spec);
+        Assert.assertEquals(2, app.getOccupancy().getVMsOnHost(this.host, this.template));
+
+        dep.removeVirtualMachine(vm);
+        Assert.assertEquals(1, app.getOccupancy().getVMsOnHost(this.host, this.template));
+    }
+
+    @Test
+    public void testReplacedDeploymentIsRemovedFromIndex() {
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        final Deployment dep = new DeploymentBuilder().withUuid("dep").build();
+        dep.addVirtualMachines(this.createVM("vm1"), this.spec);
+        app.putDeployment(dep);
+        app.putDeployment(new DeploymentBuilder().withUuid("dep").build());
+        Assert.assertEquals(0, app.getOccupancy().size());
+    }
+}
@@ -0,0 +1,121 @@
+package nl.bitbrains.nebu;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.ApplicationBuilder;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.DeploymentBuilder;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplateBuilder;
+import nl.bitbrains.nebu.containers.VirtualMachineIndex;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestVirtualMachineIndex {
+
+    private VirtualMachineIndex index;
+    private Deployment deployment;
+    private VMDeploymentSpecification spec;
+
+    @Before
+    public void setUp() {
+        this.index = new VirtualMachineIndex();
+        this.deployment = new DeploymentBuilder().withUuid("dep").build();
+        this.spec = new VMDeploymentSpecificationBuilder()
+                .withTemplate(new VMTemplateBuilder().withUuid("template").build())
+                .withHost("host").withStore("store").build();
+    }
+
+    private VirtualMachine createVM(final String id) {
+        return new VirtualMachineBuilder().withUuid(id).withHost("host").withDisk("store")
+                .build();
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(0, this.index.size());
+        Assert.assertNull(this.index.getVirtualMachine("vm"));
+        Assert.assertNull(this.index.getDeployment("vm"));
+    }
+
+    @Test
+    public void testAdd() {
+        final VirtualMachine vm = this.createVM("vm");
+        this.index.add(this.deployment, vm);
+        Assert.assertEquals(1, this.index.size());
+        Assert.assertSame(vm, this.index.getVirtualMachine("vm"));
+        Assert.assertSame(this.deployment, this.index.getDeployment("vm"));
+    }
+
+    @Test
+    public void testRemove() {
+        final VirtualMachine vm = this.createVM("vm");
+        this.index.add(this.deployment, vm);
+        this.index.remove(vm);
+        Assert.assertEquals(0, this.index.size());
+        Assert.assertNull(this.index.getVirtualMachine("vm"));
+    }
+
+    @Test
+    public void testRemoveOtherVMWithSameId() {
+        final VirtualMachine vm = this.createVM("vm");
+        this.index.add(this.deployment, vm);
+        this.index.remove(this.createVM("vm"));
+        Assert.assertSame(vm, this.index.getVirtualMachine("vm"));
+    }
+
+    @Test
+    public void testDeploymentKeepsIndexUpToDate() {
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        app.putDeployment(this.deployment);
+        final VirtualMachine vm = this.createVM("vm");
+        this.deployment.addVirtualMachines(vm, this.spec);
+        Assert.assertSame(vm, app.getVirtualMachine("vm"));
+        Assert.assertSame(this.deployment, app.getDeploymentForVirtualMachine("vm"));
+
+        this.deployment.removeVirtualMachine(vm);
+        Assert.assertNull(app.getVirtualMachine("vm"));
+        Assert.assertNull(app.getDeploymentForVirtualMachine("vm"));
+    }
+
+    @Test
+    public void testUuidRewrite() {
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        app.putDeployment(this.deployment);
+        final VirtualMachine vm = this.createVM("launching");
+        this.deployment.addVirtualMachines(vm, this.spec);
+
+        final VMDeploymentSpecification removed = this.deployment.removeVirtualMachine(vm);
+        vm.setUuid("vm");
+        this.deployment.addVirtualMachines(vm, removed);
+
+        Assert.assertNull(app.getVirtualMachine("launching"));
+        Assert.assertSame(vm, app.getVirtualMachine("vm"));
+    }
+
+    @Test
+    public void testExistingVMsAreIndexed() {
+        final VirtualMachine vm = this.createVM("vm");
+        this.deployment.addVirtualMachines(vm, this.spec);
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        app.putDeployment(this.deployment);
+        Assert.assertSame(vm, app.getVirtualMachine("vm"));
+    }
+
+    @Test
+    public void testReplacedDeploymentIsDetached() {
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        app.putDeployment(this.deployment);
+        this.deployment.addVirtualMachines(this.createVM("vm"), this.spec);
+        app.putDeployment(new DeploymentBuilder().withUuid("dep").build());
+        Assert.assertNull(app.getVirtualMachine("vm"));
+    }
+}
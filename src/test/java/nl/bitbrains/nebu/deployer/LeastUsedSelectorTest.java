@@ -0,0 +1,100 @@
+package nl.bitbrains.nebu.deployer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class LeastUsedSelectorTest {
+
+    private LeastUsedSelector<String> selector;
+
+    @Before
+    public void setUp() {
+        this.selector = new LeastUsedSelector<String>(Arrays.asList("a", "b", "c"));
+    }
+
+    @Test
+    public void testInitiallyAllLeastUsed() {
+        Assert.assertEquals(3, this.selector.size());
+        Assert.assertEquals(0, this.selector.getMinimum());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")),
+                            new HashSet<String>(this.selector.getLeastUsed()));
+    }
+
+    @Test
+    public void testAdd() {
+        this.selector.add("a", 1);
+        this.selector.add("b", 2);
+        Assert.assertEquals(Collections.singletonList("c"), this.selector.getLeastUsed());
+        this.selector.add("c", 1);
+        Assert.assertEquals(1, this.selector.getMinimum());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "c")),
+                            new HashSet<String>(this.selector.getLeastUsed()));
+        Assert.assertEquals(2, this.selector.getCount("b"));
+    }
+
+    @Test
+    public void testDecrease() {
+        this.selector.add("a", 3);
+        this.selector.add("b", 3);
+        this.selector.add("c", 3);
+        this.selector.add("b", -1);
+        Assert.assertEquals(2, this.selector.getMinimum());
+        Assert.assertEquals("b", this.selector.selectLeastUsed(new Random()));
+    }
+
+    @Test
+    public void testSelectBreaksTiesRandomly() {
+        final Set<String> selected = new HashSet<String>();
+        final Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            selected.add(this.selector.selectLeastUsed(random));
+        }
+        Assert.assertEquals(3, selected.size());
+    }
+
+    @Test
+    public void testMatchesScan() {
+        final Random random = new Random(1);
+        final int[] counts = new int[3];
+        final List<String> items = Arrays.asList("a", "b", "c");
+        for (int i = 0; i < 200; i++) {
+            final int item = random.nextInt(3);
+            final int delta = counts[item] > 0 && random.nextBoolean() ? -1 : random.nextInt(3);
+            counts[item] += delta;
+            this.selector.add(items.get(item), delta);
+            final int min = Math.min(counts[0], Math.min(counts[1], counts[2]));
+            Assert.assertEquals(min, this.selector.getMinimum());
+            Assert.assertEquals(min, this.selector.getCount(this.selector.selectLeastUsed(random)));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        final LeastUsedSelector<String> empty = new LeastUsedSelector<String>(
+                Collections.<String> emptyList());
+        Assert.assertNull(empty.selectLeastUsed(new Random()));
+        Assert.assertTrue(empty.getLeastUsed().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCount() {
+        this.selector.add("a", -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownItem() {
+        this.selector.add("d", 1);
+    }
+}
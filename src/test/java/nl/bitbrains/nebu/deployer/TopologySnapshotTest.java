@@ -0,0 +1,123 @@
+package nl.bitbrains.nebu.deployer;
+
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.topology.PhysicalDataCenter;
+import nl.bitbrains.nebu.common.topology.PhysicalDataCenterBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalHostBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalRack;
+import nl.bitbrains.nebu.common.topology.PhysicalRackBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalStore;
+import nl.bitbrains.nebu.common.topology.PhysicalStoreBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TopologySnapshotTest {
+
+    private PhysicalTopology topology;
+    private PhysicalRack rack;
+    private PhysicalHost host1;
+    private PhysicalHost host2;
+    private PhysicalStore store;
+    private TopologySnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        this.topology = new PhysicalTopology();
+        final PhysicalDataCenter dc = new PhysicalDataCenterBuilder().withUuid("dc").build();
+        this.topology.addDataCenter(dc);
+        this.rack = new PhysicalRackBuilder().withUuid("rack").build();
+        this.topology.addRackToDataCenter(this.rack, dc);
+        this.host1 = new PhysicalHostBuilder().withUuid("host1").build();
+        this.host2 = new PhysicalHostBuilder().withUuid("host2").build();
+        this.topology.addCPUToRack(this.host1, this.rack);
+        this.topology.addCPUToRack(this.host2, this.rack);
+        this.store = new PhysicalStoreBuilder().withUuid("store").withCapacity(1).build();
+        this.topology.addDiskToRack(this.store, this.rack);
+        this.snapshot = new TopologySnapshot(this.topology);
+    }
+
+    @Test
+    public void testIndexes() {
+        Assert.assertEquals(2, this.snapshot.getHosts().size());
+        Assert.assertEquals(1, this.snapshot.getRacks().size());
+        Assert.assertEquals(1, this.snapshot.getStores().size());
+        Assert.assertEquals(this.host1,
+                            this.snapshot.getHosts().get(this.snapshot.indexOfHost(this.host1)));
+        Assert.assertEquals(this.snapshot.indexOfHost(this.host2),
+                            this.snapshot.indexOfHost("host2"));
+        Assert.assertEquals(0, this.snapshot.indexOfRack(this.rack));
+        Assert.assertEquals(0, this.snapshot.getRackOfHost(this.snapshot.indexOfHost("host1")));
+        Assert.assertEquals(TopologySnapshot.UNKNOWN, this.snapshot.indexOfHost("unknown"));
+        Assert.assertEquals(TopologySnapshot.UNKNOWN, this.snapshot.indexOfStore("unknown"));
+    }
+
+    @Test
+    public void testAddVMsOnHostUpdatesRack() {
+        final int index = this.snapshot.indexOfHost(this.host1);
+        this.snapshot.addVMsOnHost(index, 2);
+        this.snapshot.addVMsOnHost(this.snapshot.indexOfHost(this.host2), 1);
+        Assert.assertEquals(2, this.snapshot.getVMsOnHost(index));
+        Assert.assertEquals(3, this.snapshot.getVMsOnRack(0));
+        Assert.assertEquals(3, this.snapshot.getVMsInDataCenter(0));
+        Assert.assertEquals(3, this.snapshot.getTotalVMsOnHosts());
+    }
+
+    @Test
+    public void testViews() {
+        final Map<String, Integer> hosts = this.snapshot.getVmsPerHost();
+        final Map<PhysicalRack, Integer> racks = this.snapshot.getVmsPerRack();
+        this.snapshot.addVMsOnHost(this.snapshot.indexOfHost(this.host1), 1);
+        this.snapshot.addVMsOnStore(this.snapshot.indexOfStore(this.store), 4);
+        Assert.assertEquals(Integer.valueOf(1), hosts.get("host1"));
+        Assert.assertEquals(Integer.valueOf(0), hosts.get("host2"));
+        Assert.assertNull(hosts.get("unknown"));
+        Assert.assertEquals(Integer.valueOf(1), racks.get(this.rack));
+        Assert.assertEquals(Integer.valueOf(4), this.snapshot.getVmsPerStore().get("store"));
+        Assert.assertEquals(2, hosts.size());
+    }
+
+    @Test
+    public void testViewWritesThrough() {
+        final Map<String, Integer> hosts = this.snapshot.getVmsPerHost();
+        hosts.put("host1", 5);
+        for (final Map.Entry<String, Integer> entry : hosts.entrySet()) {
+            entry.setValue(entry.getValue() + 1);
+        }
+        Assert.assertEquals(6, this.snapshot.getVMsOnHost(this.snapshot.indexOfHost("host1")));
+        Assert.assertEquals(1, this.snapshot.getVMsOnHost(this.snapshot.indexOfHost("host2")));
+    }
+
+    @Test
+    public void testHostViewRollsUp() {
+        final Map<String, Integer> hosts = this.snapshot.getVmsPerHost();
+        hosts.put("host1", 5);
+        hosts.put("host1", 3);
+        for (final Map.Entry<String, Integer> entry : hosts.entrySet()) {
+            entry.setValue(entry.getValue() + 1);
+        }
+        Assert.assertEquals(5, this.snapshot.getVMsOnRack(0));
+        Assert.assertEquals(5, this.snapshot.getVMsInDataCenter(0));
+        Assert.assertEquals(Integer.valueOf(5), this.snapshot.getVmsPerRack().get(this.rack));
+    }
+
+    @Test
+    public void testRackViewRollsUp() {
+        this.snapshot.getVmsPerRack().put(this.rack, 2);
+        Assert.assertEquals(2, this.snapshot.getVMsInDataCenter(0));
+        Assert.assertEquals(0, this.snapshot.getTotalVMsOnHosts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testViewRejectsUnknownKey() {
+        this.snapshot.getVmsPerHost().put("unknown", 1);
+    }
+}
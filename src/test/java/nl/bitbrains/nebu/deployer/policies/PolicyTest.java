@@ -17,6 +17,7 @@ import nl.bitbrains.nebu.common.topology.PhysicalStoreBuilder;
 import nl.bitbrains.nebu.common.topology.PhysicalTopology;
 import nl.bitbrains.nebu.containers.Application;
 import nl.bitbrains.nebu.containers.DeploymentRequest;
+import nl.bitbrains.nebu.containers.OccupancyIndex;
 import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
 import nl.bitbrains.nebu.containers.VMTemplate;
 import nl.bitbrains.nebu.containers.VMTemplateBuilder;
@@ -102,6 +103,7 @@ public abstract class PolicyTest {
      */
     protected Application mockApp() {
         final Application app = PowerMockito.mock(Application.class);
+        Mockito.when(app.getOccupancy()).thenReturn(new OccupancyIndex());
         return app;
     }
 
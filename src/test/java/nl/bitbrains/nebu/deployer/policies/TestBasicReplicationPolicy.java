@@ -1,7 +1,13 @@
 package nl.bitbrains.nebu.deployer.policies;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import nl.bitbrains.nebu.common.VirtualMachine;
 import nl.bitbrains.nebu.common.VirtualMachineBuilder;
@@ -11,6 +17,7 @@ import nl.bitbrains.nebu.containers.Application;
 import nl.bitbrains.nebu.containers.ApplicationBuilder;
 import nl.bitbrains.nebu.containers.Deployment;
 import nl.bitbrains.nebu.containers.DeploymentBuilder;
+import nl.bitbrains.nebu.containers.DeploymentRequest;
 import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
 import nl.bitbrains.nebu.containers.VMTemplate;
 import nl.bitbrains.nebu.deployer.DeployerException;
@@ -89,4 +96,31 @@ public class TestBasicReplicationPolicy extends PolicyTest {
         Assert.assertNotEquals(hostname, this.getSpecs().get(0).getHost());
         Assert.assertNotEquals(storename, this.getSpecs().get(0).getStore());
     }
+
+    @Test
+    public void testConcurrentDeploymentsDoNotShareCounters() throws Exception {
+        final int racks = 4;
+        final PhysicalTopology topology = this.createTopology(1, racks, 2, 1, 0, this.prefix);
+        this.mockTemplate("id", racks, topology);
+        final DeploymentRequest request = this.mockRequest();
+        final ExecutorService executor = Executors.newFixedThreadPool(racks);
+        final List<Future<List<VMDeploymentSpecification>>> futures =
+                new ArrayList<Future<List<VMDeploymentSpecification>>>();
+        for (int i = 0; i < 4 * racks; i++) {
+            futures.add(executor.submit(new Callable<List<VMDeploymentSpecification>>() {
+                @Override
+                public List<VMDeploymentSpecification> call() throws DeployerException {
+                    return TestBasicReplicationPolicy.this.getPolicy().generateDeployment(request);
+                }
+            }));
+        }
+        executor.shutdown();
+        for (final Future<List<VMDeploymentSpecification>> future : futures) {
+            final Set<String> usedRacks = new HashSet<String>();
+            for (final VMDeploymentSpecification spec : future.get()) {
+                usedRacks.add(spec.getHost().substring(0, spec.getHost().lastIndexOf('-')));
+            }
+            Assert.assertEquals(racks, usedRacks.size());
+        }
+    }
 }
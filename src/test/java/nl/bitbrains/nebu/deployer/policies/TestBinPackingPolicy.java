@@ -0,0 +1,209 @@
+package nl.bitbrains.nebu.deployer.policies;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.DeploymentRequest;
+import nl.bitbrains.nebu.containers.OccupancyIndex;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.containers.VMTemplateBuilder;
+import nl.bitbrains.nebu.deployer.DeployerException;
+import nl.bitbrains.nebu.rest.client.RequestSender;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ RequestSender.class, Application.class, VMDeploymentSpecification.class })
+@PowerMockIgnore("javax.management.*")
+public class TestBinPackingPolicy extends PolicyTest {
+
+    private final String prefix = "prefix";
+
+    @Override
+    @Before
+    public void setUp() {
+        super.setUp();
+        this.setPolicy(new BinPackingPolicy());
+    }
+
+    private VMTemplate mockSizedTemplate(final String id, final int cpu, final int mem,
+            final PhysicalTopology topology) throws CacheException {
+        final VMTemplate template = new VMTemplateBuilder().withUuid(id).withCPU(cpu)
+                .withMem(mem).build();
+        Mockito.when(this.reqSender.getVMTemplateTopologyOptions(id)).thenReturn(topology);
+        return template;
+    }
+
+    private DeploymentRequest mockSizedRequest(final Map<VMTemplate, Integer> templates) {
+        final DeploymentRequest request = Mockito.mock(DeploymentRequest.class);
+        Mockito.when(request.getApplication()).thenReturn(this.mockApp());
+        Mockito.when(request.getTemplateRequests()).thenReturn(templates);
+        return request;
+    }
+
+    private VMTemplate mockIoTemplate(final String id, final int io,
+            final PhysicalTopology topology) throws CacheException {
+        final VMTemplate template = new VMTemplateBuilder().withUuid(id).withCPU(1).withMem(1)
+                .withIO(io).withNet(1).build();
+        Mockito.when(this.reqSender.getVMTemplateTopologyOptions(id)).thenReturn(topology);
+        return template;
+    }
+
+    private DeploymentRequest mockSizedRequest(final Application app,
+            final Map<VMTemplate, Integer> templates) {
+        final DeploymentRequest request = Mockito.mock(DeploymentRequest.class);
+        Mockito.when(request.getApplication()).thenReturn(app);
+        Mockito.when(request.getTemplateRequests()).thenReturn(templates);
+        return request;
+    }
+
+    private void addExistingVM(final OccupancyIndex occupancy, final String uuid,
+            final VMDeploymentSpecification spec) {
+        occupancy.add(new VirtualMachineBuilder().withUuid(uuid).withHost(spec.getHost())
+                .build(), spec);
+    }
+
+    private void assertIoWithinCapacity(final PhysicalTopology topology,
+            final OccupancyIndex occupancy, final VMTemplate... templates) {
+        for (final PhysicalHost host : topology.getCPUs()) {
+            int io = 0;
+            for (final VMTemplate template : templates) {
+                io += occupancy.getVMsOnHost(host.getUniqueIdentifier(), template)
+                        * template.getIo();
+            }
+            Assert.assertTrue(host.getUniqueIdentifier() + " uses " + io,
+                              io <= BinPackingPolicy.DEFAULT_HOST_CAPACITY);
+        }
+    }
+
+    @Test
+    public void testGetSetCapacity() {
+        final BinPackingPolicy policy = (BinPackingPolicy) this.getPolicy();
+        Assert.assertEquals(BinPackingPolicy.DEFAULT_HOST_CAPACITY, policy.getHostCpu());
+        policy.setHostCapacity(1, 2, 3, 4);
+        Assert.assertEquals(1, policy.getHostCpu());
+        Assert.assertEquals(2, policy.getHostMem());
+        Assert.assertEquals(3, policy.getHostIo());
+        Assert.assertEquals(4, policy.getHostNet());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveCapacity() {
+        ((BinPackingPolicy) this.getPolicy()).setHostCapacity(0, 1, 1, 1);
+    }
+
+    @Test
+    public void testPacksOnOneHost() throws CacheException, DeployerException {
+        final PhysicalTopology topology = this.createTopology(1, 2, 4, 1, 0, this.prefix);
+        final Map<VMTemplate, Integer> templates = new HashMap<VMTemplate, Integer>();
+        templates.put(this.mockSizedTemplate("id", 25, 10, topology), 4);
+        this.generateDeployment(this.mockSizedRequest(templates));
+        final Set<String> hosts = new HashSet<String>();
+        for (final VMDeploymentSpecification spec : this.getSpecs()) {
+            hosts.add(spec.getHost());
+        }
+        Assert.assertEquals(4, this.getSpecs().size());
+        Assert.assertEquals(1, hosts.size());
+    }
+
+    @Test
+    public void testRespectsCapacity() throws CacheException, DeployerException {
+        final PhysicalTopology topology = this.createTopology(1, 1, 4, 1, 0, this.prefix);
+        final Map<VMTemplate, Integer> templates = new HashMap<VMTemplate, Integer>();
+        templates.put(this.mockSizedTemplate("big", 10, 60, topology), 2);
+        templates.put(this.mockSizedTemplate("small", 10, 40, topology), 2);
+        this.generateDeployment(this.mockSizedRequest(templates));
+        final Map<String, Integer> memPerHost = new HashMap<String, Integer>();
+        for (final VMDeploymentSpecification spec : this.getSpecs()) {
+            final Integer mem = memPerHost.get(spec.getHost());
+            memPerHost.put(spec.getHost(), (mem == null ? 0 : mem) + spec.getTemplate().getMem());
+        }
+        // Best fit decreasing pairs each big VM with a small one.
+        Assert.assertEquals(2, memPerHost.size());
+        for (final Integer mem : memPerHost.values()) {
+            Assert.assertEquals(Integer.valueOf(100), mem);
+        }
+    }
+
+    @Test
+    public void testSubtractsExistingVMs() throws CacheException, DeployerException {
+        final PhysicalTopology topology = this.createTopology(1, 1, 3, 1, 0, this.prefix);
+        final VMTemplate template = this.mockIoTemplate("io", 60, topology);
+        final Application app = this.mockApp();
+        final OccupancyIndex occupancy = app.getOccupancy();
+        final String full = topology.getCPUs().get(0).getUniqueIdentifier();
+        this.addExistingVM(occupancy, "existing", new VMDeploymentSpecificationBuilder()
+                .withHost(full).withTemplate(template).build());
+        final Map<VMTemplate, Integer> templates = new HashMap<VMTemplate, Integer>();
+        templates.put(template, 2);
+        this.generateDeployment(this.mockSizedRequest(app, templates));
+        Assert.assertEquals(2, this.getSpecs().size());
+        for (final VMDeploymentSpecification spec : this.getSpecs()) {
+            Assert.assertNotEquals(full, spec.getHost());
+        }
+    }
+
+    @Test
+    public void testTwoRequestsInARow() throws CacheException, DeployerException {
+        final PhysicalTopology topology = this.createTopology(1, 1, 2, 1, 0, this.prefix);
+        final VMTemplate first = this.mockIoTemplate("first", 60, topology);
+        final VMTemplate second = this.mockIoTemplate("second", 50, topology);
+        final Application app = this.mockApp();
+        Mockito.when(app.getVMTemplates()).thenReturn(Arrays.asList(first, second));
+        final OccupancyIndex occupancy = app.getOccupancy();
+
+        final Map<VMTemplate, Integer> firstTemplates = new HashMap<VMTemplate, Integer>();
+        firstTemplates.put(first, 1);
+        this.generateDeployment(this.mockSizedRequest(app, firstTemplates));
+        this.addExistingVM(occupancy, "vm0", this.getSpecs().get(0));
+
+        final Map<VMTemplate, Integer> secondTemplates = new HashMap<VMTemplate, Integer>();
+        secondTemplates.put(second, 1);
+        this.generateDeployment(this.mockSizedRequest(app, secondTemplates));
+        this.addExistingVM(occupancy, "vm1", this.getSpecs().get(0));
+
+        this.assertIoWithinCapacity(topology, occupancy, first, second);
+    }
+
+    @Test(expected = DeployerException.class)
+    public void testExistingVMsLeaveNoRoom() throws CacheException, DeployerException {
+        final PhysicalTopology topology = this.createTopology(1, 1, 1, 1, 0, this.prefix);
+        final VMTemplate template = this.mockIoTemplate("io", 60, topology);
+        final Application app = this.mockApp();
+        this.addExistingVM(app.getOccupancy(), "existing", new VMDeploymentSpecificationBuilder()
+                .withHost(topology.getCPUs().get(0).getUniqueIdentifier())
+                .withTemplate(template).build());
+        final Map<VMTemplate, Integer> templates = new HashMap<VMTemplate, Integer>();
+        templates.put(template, 1);
+        this.generateDeployment(this.mockSizedRequest(app, templates));
+    }
+
+    @Test(expected = DeployerException.class)
+    public void testDoesNotFit() throws CacheException, DeployerException {
+        final PhysicalTopology topology = this.createTopology(1, 1, 1, 1, 0, this.prefix);
+        final Map<VMTemplate, Integer> templates = new HashMap<VMTemplate, Integer>();
+        templates.put(this.mockSizedTemplate("id", 60, 10, topology), 2);
+        this.generateDeployment(this.mockSizedRequest(templates));
+    }
+}
@@ -0,0 +1,58 @@
+package nl.bitbrains.nebu.deployer.policies;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestBinPackingPolicyFactory {
+
+    private BinPackingPolicyFactory factory;
+
+    @Before
+    public void setUp() {
+        this.factory = new BinPackingPolicyFactory();
+    }
+
+    @Test
+    public void testGetInstance() {
+        Assert.assertNotNull(this.factory.newInstance());
+    }
+
+    @Test
+    public void testFromXMLNoSettingContent() throws ParseException {
+        final Element xml = Mockito.mock(Element.class);
+        final BinPackingPolicy policy = this.factory.fromXML(xml);
+        Assert.assertNotNull(policy);
+        Assert.assertEquals(BinPackingPolicy.DEFAULT_HOST_CAPACITY, policy.getHostCpu());
+        Assert.assertEquals(BinPackingPolicy.DEFAULT_HOST_CAPACITY, policy.getHostNet());
+    }
+
+    @Test
+    public void testFromXMLWithSettingsContent() throws ParseException {
+        final Element xml = Mockito.mock(Element.class);
+        final Element elem = Mockito.mock(Element.class);
+        Mockito.when(xml.getChild(BinPackingPolicyFactory.TAG_HOST_MEM)).thenReturn(elem);
+        Mockito.when(xml.getChildTextTrim(BinPackingPolicyFactory.TAG_HOST_MEM)).thenReturn("12");
+
+        final BinPackingPolicy policy = this.factory.fromXML(xml);
+        Assert.assertEquals(12, policy.getHostMem());
+        Assert.assertEquals(BinPackingPolicy.DEFAULT_HOST_CAPACITY, policy.getHostCpu());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testFromXMLInvalidCapacity() throws ParseException {
+        final Element xml = Mockito.mock(Element.class);
+        final Element elem = Mockito.mock(Element.class);
+        Mockito.when(xml.getChild(BinPackingPolicyFactory.TAG_HOST_IO)).thenReturn(elem);
+        Mockito.when(xml.getChildTextTrim(BinPackingPolicyFactory.TAG_HOST_IO)).thenReturn("-1");
+        this.factory.fromXML(xml);
+    }
+}
@@ -0,0 +1,344 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.common.topology.factory.TopologyFactories;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         An in-process stand-in for a VMM extension, so nebu-core can be load
+ *         tested without a hypervisor. It serves the part of the VMM API that
+ *         nebu-core uses, see {@link FakeVMMResource}, from a fixed topology
+ *         and VMs kept in memory.
+ * 
+ *         Every response is delayed by a random latency between the configured
+ *         minimum and maximum, and is a 500 with the configured error rate. A
+ *         created VM reports that it is launching for the configured launch
+ *         time. Responses are delayed on a scheduler instead of by sleeping, so
+ *         a slow VMM does not limit the number of requests in flight.
+ */
+public class FakeVMM {
+
+    public static final String VM_PREFIX = "fake-vm-";
+    public static final long DEFAULT_LATENCY = 0;
+    public static final long DEFAULT_LAUNCH_TIME = 0;
+    private static final int SCHEDULER_THREADS = 4;
+    private static Logger logger = LogManager.getLogger();
+
+    private final PhysicalTopology topology;
+    private final String topologyXML;
+    private final Set<String> hosts;
+    private final Map<String, VirtualMachine> vms;
+    private final Map<String, Long> launched;
+    private final Set<String> templates;
+    private final AtomicLong nextVM;
+    private final AtomicLong requests;
+    private final AtomicLong errors;
+    private volatile long minLatency;
+    private volatile long maxLatency;
+    private volatile long launchTime;
+    private volatile double errorRate;
+    private volatile ScheduledExecutorService scheduler;
+    private HttpServer server;
+
+    /**
+     * @param topology
+     *            served to nebu-core, for example generated by a
+     *            {@link nl.bitbrains.nebu.simulation.TopologyGenerator}. Every
+     *            template can be deployed on all of it.
+     */
+    public FakeVMM(final PhysicalTopology topology) {
+        ErrorChecker.throwIfNullArgument(topology, "topology");
+        this.topology = topology;
+        // Rendered once, the topology does not change.
+        this.topologyXML = new XMLOutputter().outputString(TopologyFactories.createDefault()
+                .getPhysicalRootFactory().toXML(topology.getRoot()));
+        this.hosts = new HashSet<String>();
+        for (final PhysicalHost host : topology.getCPUs()) {
+            this.hosts.add(host.getUniqueIdentifier());
+        }
+        this.vms = new ConcurrentHashMap<String, VirtualMachine>();
+        this.launched = new ConcurrentHashMap<String, Long>();
+        this.templates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.nextVM = new AtomicLong();
+        this.requests = new AtomicLong();
+        this.errors = new AtomicLong();
+        this.minLatency = FakeVMM.DEFAULT_LATENCY;
+        this.maxLatency = FakeVMM.DEFAULT_LATENCY;
+        this.launchTime = FakeVMM.DEFAULT_LAUNCH_TIME;
+        this.errorRate = 0;
+    }
+
+    /**
+     * @param min
+     *            minimum latency of a response in milliseconds.
+     * @param max
+     *            maximum latency of a response in milliseconds, at least min.
+     * @return this for fluency.
+     */
+    public final FakeVMM withLatency(final long min, final long max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Latency must satisfy 0 <= min <= max");
+        }
+        this.minLatency = min;
+        this.maxLatency = max;
+        return this;
+    }
+
+    /**
+     * @param errorRate
+     *            fraction of the requests that get a 500, between 0 and 1.
+     * @return this for fluency.
+     */
+    public final FakeVMM withErrorRate(final double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1");
+        }
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param launchTime
+     *            time in milliseconds a created VM reports that it is
+     *            launching.
+     * @return this for fluency.
+     */
+    public final FakeVMM withLaunchTime(final long launchTime) {
+        if (launchTime < 0) {
+            throw new IllegalArgumentException("Launch time must not be negative");
+        }
+        this.launchTime = launchTime;
+        return this;
+    }
+
+    /**
+     * Starts serving on localhost.
+     * 
+     * @param port
+     *            to listen on.
+     * @return the base URI of the VMM.
+     */
+    public final synchronized URI start(final int port) {
+        if (this.server != null) {
+            throw new IllegalStateException("The fake VMM has been started already");
+        }
+        this.scheduler = FakeVMM.newScheduler();
+        final URI uri = URI.create("http://localhost:" + port + "/");
+        final ResourceConfig rc = new ResourceConfig().register(new FakeVMMResource(this));
+        this.server = GrizzlyHttpServerFactory.createHttpServer(uri, rc);
+        FakeVMM.logger.info("Fake VMM listening on " + uri);
+        return uri;
+    }
+
+    /**
+     * @return a scheduler with daemon threads to delay the responses on.
+     */
+    private static ScheduledExecutorService newScheduler() {
+        return Executors.newScheduledThreadPool(FakeVMM.SCHEDULER_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "nebu-fake-vmm");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Stops serving. Requests that are being delayed are dropped.
+     */
+    public final synchronized void stop() {
+        if (this.server != null) {
+            this.server.shutdownNow();
+            this.scheduler.shutdownNow();
+            this.server = null;
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * @return the topology that is served.
+     */
+    public final PhysicalTopology getTopology() {
+        return this.topology;
+    }
+
+    /**
+     * @return the number of requests received.
+     */
+    public final long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * @return the number of requests that got an injected 500.
+     */
+    public final long getErrors() {
+        return this.errors.get();
+    }
+
+    /**
+     * @return the uuids of the VMs that were created.
+     */
+    public final List<String> getVirtualMachineIDs() {
+        return new ArrayList<String>(this.vms.keySet());
+    }
+
+    /**
+     * @param uuid
+     *            of the VM.
+     * @return the VM, null if it does not exist.
+     */
+    public final VirtualMachine getVirtualMachine(final String uuid) {
+        return this.vms.get(uuid);
+    }
+
+    /**
+     * @param uuid
+     *            of the VM.
+     * @return true iff the VM exists and is no longer launching.
+     */
+    public final boolean isLaunched(final String uuid) {
+        final Long time = this.launched.get(uuid);
+        return time != null && System.currentTimeMillis() >= time;
+    }
+
+    /**
+     * @param uuid
+     *            of the template.
+     * @return true iff the template was put on the VMM.
+     */
+    public final boolean hasTemplate(final String uuid) {
+        return this.templates.contains(uuid);
+    }
+
+    /**
+     * @param host
+     *            to check.
+     * @return true iff the host is in the topology.
+     */
+    final boolean hasHost(final String host) {
+        return this.hosts.contains(host);
+    }
+
+    /**
+     * @return the topology as xml.
+     */
+    final String getTopologyXML() {
+        return this.topologyXML;
+    }
+
+    /**
+     * @param uuid
+     *            of the template that was put.
+     */
+    final void putTemplate(final String uuid) {
+        this.templates.add(uuid);
+    }
+
+    /**
+     * @param host
+     *            to create the VM on, must be in the topology.
+     * @param store
+     *            to create the VM on, may be null.
+     * @return the uuid of the new VM.
+     */
+    final String createVirtualMachine(final String host, final String store) {
+        final String uuid = FakeVMM.VM_PREFIX + this.nextVM.getAndIncrement();
+        final VirtualMachineBuilder builder = new VirtualMachineBuilder().withUuid(uuid)
+                .withHost(host);
+        if (store != null) {
+            builder.withDisk(store);
+        }
+        this.vms.put(uuid, builder.build());
+        this.launched.put(uuid, System.currentTimeMillis() + this.launchTime);
+        return uuid;
+    }
+
+    /**
+     * Resumes the request with the response of the handler after a random
+     * latency, or with a 500 with the configured error rate.
+     * 
+     * @param response
+     *            the suspended request.
+     * @param handler
+     *            that creates the response.
+     */
+    final void respond(final AsyncResponse response, final Callable<Response> handler) {
+        this.requests.incrementAndGet();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                response.resume(FakeVMM.this.handle(handler));
+            }
+        };
+        final long latency = this.nextLatency();
+        final ScheduledExecutorService current = this.scheduler;
+        if (latency == 0 || current == null) {
+            task.run();
+        } else {
+            current.schedule(task, latency, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param handler
+     *            that creates the response.
+     * @return the response of the handler, or an injected 500.
+     */
+    private Response handle(final Callable<Response> handler) {
+        if (ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+            this.errors.incrementAndGet();
+            return Response.serverError().build();
+        }
+        try {
+            return handler.call();
+        } catch (final Exception e) {
+            FakeVMM.logger.catching(Level.ERROR, e);
+            return Response.serverError().build();
+        }
+    }
+
+    /**
+     * @return a latency between the minimum and maximum, uniformly.
+     */
+    private long nextLatency() {
+        if (this.maxLatency == this.minLatency) {
+            return this.minLatency;
+        }
+        return this.minLatency
+                + ThreadLocalRandom.current().nextLong(this.maxLatency - this.minLatency + 1);
+    }
+}
@@ -0,0 +1,254 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.factories.StringFactory;
+import nl.bitbrains.nebu.common.factories.VirtualMachineFactory;
+import nl.bitbrains.nebu.common.util.xml.XMLConverter;
+import nl.bitbrains.nebu.rest.client.RequestBuilder;
+
+import org.jdom2.Element;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         The REST API of the {@link FakeVMM}, with the paths and formats of
+ *         the VMM extension as used by the {@link RequestBuilder}:
+ * 
+ *         <pre>
+ * GET  topology
+ * GET  virt
+ * GET  virt/bulk?uuid=...
+ * GET  virt/{uuid}
+ * GET  status/{uuid}
+ * PUT  vmtemplates/{uuid}
+ * GET  vmtemplates/{uuid}/phys
+ * POST phys/{host}/createVM?hostname=...&amp;template=...[&amp;store=...]
+ * </pre>
+ * 
+ *         Every template can be deployed on the whole topology. The status of
+ *         a VM is 202 while it is launching.
+ */
+@Path("/")
+public final class FakeVMMResource {
+
+    private static final String UUID = "uuid";
+
+    private final FakeVMM vmm;
+
+    /**
+     * @param vmm
+     *            whose state is served.
+     */
+    FakeVMMResource(final FakeVMM vmm) {
+        this.vmm = vmm;
+    }
+
+    /**
+     * @param response
+     *            resumed with the topology.
+     */
+    @GET
+    @Path(RequestBuilder.URI_TOPOLOGY)
+    public void getTopology(@Suspended final AsyncResponse response) {
+        this.vmm.respond(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return FakeVMMResource.ok(FakeVMMResource.this.vmm.getTopologyXML());
+            }
+        });
+    }
+
+    /**
+     * @param uuid
+     *            of the template.
+     * @param response
+     *            resumed with the topology the template can be deployed on.
+     */
+    @GET
+    @Path(RequestBuilder.URI_VMTEMPLATES + "/{" + FakeVMMResource.UUID + "}/"
+            + RequestBuilder.URI_PHYSICAL_MACHINES)
+    public void getTemplateTopology(@PathParam(FakeVMMResource.UUID) final String uuid,
+            @Suspended final AsyncResponse response) {
+        this.getTopology(response);
+    }
+
+    /**
+     * @param uuid
+     *            of the template.
+     * @param body
+     *            the configuration of the template, not used.
+     * @param response
+     *            resumed with 201.
+     */
+    @PUT
+    @Path(RequestBuilder.URI_VMTEMPLATES + "/{" + FakeVMMResource.UUID + "}")
+    public void putTemplate(@PathParam(FakeVMMResource.UUID) final String uuid,
+            final String body, @Suspended final AsyncResponse response) {
+        this.vmm.respond(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                FakeVMMResource.this.vmm.putTemplate(uuid);
+                return Response.created(URI.create(RequestBuilder.URI_VMTEMPLATES + "/" + uuid))
+                        .build();
+            }
+        });
+    }
+
+    /**
+     * @param response
+     *            resumed with the uuids of all VMs.
+     */
+    @GET
+    @Path(RequestBuilder.URI_VIRTUAL_MACHINES)
+    public void getVirtualMachines(@Suspended final AsyncResponse response) {
+        this.vmm.respond(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                final Element elem = XMLConverter.convertCollectionToJDOMElement(
+                        FakeVMMResource.this.vmm.getVirtualMachineIDs(), new StringFactory());
+                return FakeVMMResource.ok(elem);
+            }
+        });
+    }
+
+    /**
+     * @param uuids
+     *            of the VMs to get.
+     * @param response
+     *            resumed with the VMs that exist.
+     */
+    @GET
+    @Path(RequestBuilder.URI_VIRTUAL_MACHINES + "/" + RequestBuilder.URI_BULK)
+    public void getVirtualMachinesBulk(
+            @QueryParam(RequestBuilder.QUERY_PARAM_UUID) final List<String> uuids,
+            @Suspended final AsyncResponse response) {
+        this.vmm.respond(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                final List<VirtualMachine> vms = new ArrayList<VirtualMachine>();
+                for (final String uuid : uuids) {
+                    final VirtualMachine vm = FakeVMMResource.this.vmm.getVirtualMachine(uuid);
+                    if (vm != null) {
+                        vms.add(vm);
+                    }
+                }
+                return FakeVMMResource.ok(XMLConverter
+                        .convertCollectionToJDOMElement(vms,
+                                                        new VirtualMachineFactory(),
+                                                        VirtualMachineFactory.TAG_LIST_ELEMENT_ROOT,
+                                                        VirtualMachineFactory.TAG_ELEMENT_ROOT));
+            }
+        });
+    }
+
+    /**
+     * @param uuid
+     *            of the VM.
+     * @param response
+     *            resumed with the VM, or 404.
+     */
+    @GET
+    @Path(RequestBuilder.URI_VIRTUAL_MACHINES + "/{" + FakeVMMResource.UUID + "}")
+    public void getVirtualMachine(@PathParam(FakeVMMResource.UUID) final String uuid,
+            @Suspended final AsyncResponse response) {
+        this.vmm.respond(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                final VirtualMachine vm = FakeVMMResource.this.vmm.getVirtualMachine(uuid);
+                if (vm == null) {
+                    return Response.status(Status.NOT_FOUND).build();
+                }
+                return FakeVMMResource.ok(new VirtualMachineFactory().toXML(vm));
+            }
+        });
+    }
+
+    /**
+     * @param uuid
+     *            of the VM.
+     * @param response
+     *            resumed with the uuid of the VM once it is launched, 202 while
+     *            it is launching, or 404.
+     */
+    @GET
+    @Path(RequestBuilder.URI_STATUS + "/{" + FakeVMMResource.UUID + "}")
+    public void getStatus(@PathParam(FakeVMMResource.UUID) final String uuid,
+            @Suspended final AsyncResponse response) {
+        this.vmm.respond(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                if (FakeVMMResource.this.vmm.getVirtualMachine(uuid) == null) {
+                    return Response.status(Status.NOT_FOUND).build();
+                } else if (!FakeVMMResource.this.vmm.isLaunched(uuid)) {
+                    return Response.status(Status.ACCEPTED).build();
+                }
+                return FakeVMMResource.ok(new StringFactory().toXML(uuid));
+            }
+        });
+    }
+
+    /**
+     * @param host
+     *            to create the VM on.
+     * @param store
+     *            to create the VM on, may be null.
+     * @param response
+     *            resumed with 201 and the location of the new VM, or 404 if
+     *            the host does not exist.
+     */
+    @POST
+    @Path(RequestBuilder.URI_PHYSICAL_MACHINES + "/{" + FakeVMMResource.UUID + "}/"
+            + RequestBuilder.URI_CREATE_VM)
+    public void createVirtualMachine(@PathParam(FakeVMMResource.UUID) final String host,
+            @QueryParam(RequestBuilder.QUERY_PARAM_STORE) final String store,
+            @Suspended final AsyncResponse response) {
+        this.vmm.respond(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                if (!FakeVMMResource.this.vmm.hasHost(host)) {
+                    return Response.status(Status.NOT_FOUND).build();
+                }
+                final String uuid = FakeVMMResource.this.vmm.createVirtualMachine(host, store);
+                // nebu-core takes the uuid from the second segment of the path.
+                return Response.created(URI.create("/" + RequestBuilder.URI_VIRTUAL_MACHINES
+                                                   + "/" + uuid)).build();
+            }
+        });
+    }
+
+    /**
+     * @param xml
+     *            to send.
+     * @return a 200 with the xml.
+     */
+    private static Response ok(final Element xml) {
+        return FakeVMMResource.ok(new XMLOutputter().outputString(xml));
+    }
+
+    /**
+     * @param xml
+     *            to send.
+     * @return a 200 with the xml.
+     */
+    private static Response ok(final String xml) {
+        return Response.ok(xml, MediaType.APPLICATION_XML_TYPE).build();
+    }
+}
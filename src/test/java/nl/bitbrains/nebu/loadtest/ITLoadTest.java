@@ -0,0 +1,47 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+
+import nl.bitbrains.nebu.common.config.InvalidConfigurationException;
+import nl.bitbrains.nebu.simulation.TopologyGenerator;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class ITLoadTest {
+
+    private FakeVMM vmm;
+    private LoadTest test;
+
+    @Before
+    public void setUp() {
+        this.vmm = new FakeVMM(new TopologyGenerator().withRacksPerDataCenter(2)
+                .withHostsPerRack(10).generate()).withLatency(1, 5);
+        this.test = new LoadTest(this.vmm);
+    }
+
+    @After
+    public void tearDown() {
+        this.test.stop();
+    }
+
+    @Test
+    public void testLoad() throws IOException, InvalidConfigurationException {
+        final URI uri = this.test.start();
+        final LoadReport report = new LoadDriver(uri).withClients(4).withWarmup(0)
+                .withDuration(3000).withSeed(1).run();
+        Assert.assertTrue(report.getRequests() > 0);
+        Assert.assertEquals(report.toString(), 0, report.getErrors());
+        Assert.assertTrue(report.getLatencies(LoadDriver.Operation.CREATE_DEPLOYMENT
+                .getEndpoint()).getCount() > 0);
+        Assert.assertFalse(this.vmm.getVirtualMachineIDs().isEmpty());
+        Assert.assertTrue(this.vmm.getRequests() > 0);
+    }
+}
@@ -0,0 +1,90 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Records the latencies of the requests to a single endpoint. Every
+ *         latency is kept, so percentiles are exact. Safe for use by multiple
+ *         clients at once.
+ */
+public class LatencyRecorder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] latencies;
+    private int count;
+    private int errors;
+    private long total;
+
+    /**
+     * Creates an empty recorder.
+     */
+    public LatencyRecorder() {
+        this.latencies = new long[LatencyRecorder.INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param nanos
+     *            latency of the request.
+     * @param success
+     *            false if the request failed or got an unexpected status.
+     */
+    public final synchronized void record(final long nanos, final boolean success) {
+        if (this.count == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+        }
+        this.latencies[this.count++] = nanos;
+        this.total += nanos;
+        if (!success) {
+            this.errors++;
+        }
+    }
+
+    /**
+     * @return the number of requests.
+     */
+    public final synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return the number of requests that failed.
+     */
+    public final synchronized int getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * @return the mean latency in nanoseconds.
+     */
+    public final synchronized double getMean() {
+        if (this.count == 0) {
+            return 0;
+        }
+        return (double) this.total / this.count;
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 1.
+     * @return the latency in nanoseconds at the percentile, 0 if nothing was
+     *         recorded.
+     */
+    public final long getLatency(final double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1");
+        }
+        final long[] sorted;
+        synchronized (this) {
+            if (this.count == 0) {
+                return 0;
+            }
+            sorted = Arrays.copyOf(this.latencies, this.count);
+        }
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
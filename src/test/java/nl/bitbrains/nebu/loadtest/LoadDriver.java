@@ -0,0 +1,576 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.rest.server.AppsProvider;
+import nl.bitbrains.nebu.rest.server.DeploymentProvider;
+import nl.bitbrains.nebu.rest.server.DeploymentsProvider;
+import nl.bitbrains.nebu.rest.server.PhysicalMachineProvider;
+import nl.bitbrains.nebu.rest.server.VMTemplatesProvider;
+import nl.bitbrains.nebu.rest.server.VirtualMachineProvider;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Exercises the REST API of a running nebu-core with concurrent
+ *         clients, and reports the throughput and latencies per endpoint.
+ * 
+ *         The driver first creates an application and a template. Every client
+ *         then repeatedly picks an {@link Operation} at random, in proportion
+ *         to its weight, until the duration has passed. Deployments are
+ *         created, started and followed by the clients themselves, so an
+ *         operation that needs a deployment or a VM that does not exist yet is
+ *         replaced by the operation that creates it. Requests that start
+ *         during the warmup are not recorded.
+ */
+public class LoadDriver {
+
+    /**
+     * The requests a client can make, with the status that counts as a
+     * success.
+     */
+    public enum Operation {
+        LIST_APPS("GET /app", Status.OK, 1),
+        GET_APP("GET /app/{app}", Status.OK, 1),
+        LIST_TEMPLATES("GET /app/{app}/vmtemplates", Status.OK, 1),
+        CREATE_DEPLOYMENT("POST /app/{app}/deploy", Status.CREATED, 1),
+        START_DEPLOYMENT("POST /app/{app}/deploy/{dep}/start", Status.ACCEPTED, 1),
+        GET_PROGRESS("GET /app/{app}/deploy/{dep}/progress", Status.OK, 2),
+        LIST_VMS("GET /app/{app}/virt", Status.OK, 2),
+        GET_VM("GET /app/{app}/virt/{vm}", Status.OK, 2),
+        GET_PHYS("GET /app/{app}/phys", Status.OK, 1);
+
+        private final String endpoint;
+        private final Status expected;
+        private final int defaultWeight;
+
+        /**
+         * @param endpoint
+         *            name of the endpoint in the report.
+         * @param expected
+         *            status of a successful request.
+         * @param defaultWeight
+         *            of the operation.
+         */
+        private Operation(final String endpoint, final Status expected, final int defaultWeight) {
+            this.endpoint = endpoint;
+            this.expected = expected;
+            this.defaultWeight = defaultWeight;
+        }
+
+        /**
+         * @return the name of the endpoint in the report.
+         */
+        public String getEndpoint() {
+            return this.endpoint;
+        }
+
+        /**
+         * @return the status of a successful request.
+         */
+        public Status getExpectedStatus() {
+            return this.expected;
+        }
+
+        /**
+         * @return the weight used if none is set.
+         */
+        public int getDefaultWeight() {
+            return this.defaultWeight;
+        }
+    }
+
+    /**
+     * An operation with the deployment or VM it is performed on.
+     */
+    private static final class Call {
+        private final Operation operation;
+        private final String target;
+
+        /**
+         * @param operation
+         *            to perform.
+         * @param target
+         *            deployment or VM, null if the operation needs none.
+         */
+        private Call(final Operation operation, final String target) {
+            this.operation = operation;
+            this.target = target;
+        }
+    }
+
+    /**
+     * The state shared by the clients of a run.
+     */
+    private static final class Run {
+        private final WebTarget apps;
+        private final WebTarget app;
+        private final String template;
+        private final Queue<String> created;
+        private final List<String> started;
+        private final List<String> vms;
+        private final Map<Operation, LatencyRecorder> recorders;
+        private long measureFrom;
+        private long deadline;
+
+        /**
+         * @param apps
+         *            target of the applications.
+         * @param app
+         *            uuid of the application.
+         * @param template
+         *            uuid of the template to deploy.
+         */
+        private Run(final WebTarget apps, final String app, final String template) {
+            this.apps = apps;
+            this.app = apps.path(app);
+            this.template = template;
+            this.created = new ConcurrentLinkedQueue<String>();
+            this.started = Collections.synchronizedList(new ArrayList<String>());
+            this.vms = Collections.synchronizedList(new ArrayList<String>());
+            this.recorders = new EnumMap<Operation, LatencyRecorder>(Operation.class);
+            for (final Operation operation : Operation.values()) {
+                this.recorders.put(operation, new LatencyRecorder());
+            }
+        }
+    }
+
+    public static final int DEFAULT_CLIENTS = 8;
+    public static final long DEFAULT_DURATION = 30000;
+    public static final long DEFAULT_WARMUP = 5000;
+    public static final int DEFAULT_DEPLOYMENT_SIZE = 2;
+    public static final String DEFAULT_POLICY = "random";
+    public static final int REQUEST_TIMEOUT = 60000;
+    private static final long NANOS_PER_MILLI = 1000000;
+    private static Logger logger = LogManager.getLogger();
+
+    private final URI baseUri;
+    private final Map<Operation, Integer> weights;
+    private int clients;
+    private long duration;
+    private long warmup;
+    private int deploymentSize;
+    private String policy;
+    private long seed;
+
+    /**
+     * @param baseUri
+     *            of the nebu-core to load.
+     */
+    public LoadDriver(final URI baseUri) {
+        ErrorChecker.throwIfNullArgument(baseUri, "baseUri");
+        this.baseUri = baseUri;
+        this.weights = new EnumMap<Operation, Integer>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            this.weights.put(operation, operation.getDefaultWeight());
+        }
+        this.clients = LoadDriver.DEFAULT_CLIENTS;
+        this.duration = LoadDriver.DEFAULT_DURATION;
+        this.warmup = LoadDriver.DEFAULT_WARMUP;
+        this.deploymentSize = LoadDriver.DEFAULT_DEPLOYMENT_SIZE;
+        this.policy = LoadDriver.DEFAULT_POLICY;
+        this.seed = 0;
+    }
+
+    /**
+     * @param clients
+     *            number of concurrent clients, at least 1.
+     * @return this for fluency.
+     */
+    public final LoadDriver withClients(final int clients) {
+        if (clients < 1) {
+            throw new IllegalArgumentException("Clients must be at least 1");
+        }
+        this.clients = clients;
+        return this;
+    }
+
+    /**
+     * @param duration
+     *            of the measurement in milliseconds, at least 1.
+     * @return this for fluency.
+     */
+    public final LoadDriver withDuration(final long duration) {
+        if (duration < 1) {
+            throw new IllegalArgumentException("Duration must be at least 1");
+        }
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * @param warmup
+     *            time in milliseconds before the measurement starts.
+     * @return this for fluency.
+     */
+    public final LoadDriver withWarmup(final long warmup) {
+        if (warmup < 0) {
+            throw new IllegalArgumentException("Warmup must not be negative");
+        }
+        this.warmup = warmup;
+        return this;
+    }
+
+    /**
+     * @param deploymentSize
+     *            number of VMs in every deployment, at least 1.
+     * @return this for fluency.
+     */
+    public final LoadDriver withDeploymentSize(final int deploymentSize) {
+        if (deploymentSize < 1) {
+            throw new IllegalArgumentException("Deployment size must be at least 1");
+        }
+        this.deploymentSize = deploymentSize;
+        return this;
+    }
+
+    /**
+     * @param policy
+     *            name of the deployment policy of the application.
+     * @return this for fluency.
+     */
+    public final LoadDriver withPolicy(final String policy) {
+        ErrorChecker.throwIfNullArgument(policy, "policy");
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * @param operation
+     *            to set the weight of.
+     * @param weight
+     *            of the operation, 0 to leave it out.
+     * @return this for fluency.
+     */
+    public final LoadDriver withWeight(final Operation operation, final int weight) {
+        ErrorChecker.throwIfNullArgument(operation, "operation");
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative");
+        }
+        this.weights.put(operation, weight);
+        return this;
+    }
+
+    /**
+     * @param seed
+     *            of the random numbers of the clients.
+     * @return this for fluency.
+     */
+    public final LoadDriver withSeed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Creates the application and template, and runs the clients until the
+     * warmup and duration have passed.
+     * 
+     * @return the results of the run.
+     * @throws IOException
+     *             if the application or template can not be created.
+     */
+    public final LoadReport run() throws IOException {
+        int total = 0;
+        for (final int weight : this.weights.values()) {
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalStateException("At least one operation must have a weight");
+        }
+        final Client client = ClientBuilder.newClient()
+                .property(ClientProperties.CONNECT_TIMEOUT, LoadDriver.REQUEST_TIMEOUT)
+                .property(ClientProperties.READ_TIMEOUT, LoadDriver.REQUEST_TIMEOUT);
+        try {
+            final WebTarget apps = client.target(this.baseUri).path(AppsProvider.PATH);
+            final String app = LoadDriver.create(apps, RequestBodies.newApplication("loadtest",
+                                                                                    this.policy));
+            final String template = LoadDriver.create(apps.path(app)
+                    .path(VMTemplatesProvider.PATH), RequestBodies.newTemplate("loadtest"));
+            final Run run = new Run(apps, app, template);
+            this.runClients(run);
+
+            final Map<String, LatencyRecorder> endpoints;
+            endpoints = new LinkedHashMap<String, LatencyRecorder>();
+            for (final Operation operation : Operation.values()) {
+                endpoints.put(operation.getEndpoint(), run.recorders.get(operation));
+            }
+            return new LoadReport(endpoints, this.duration * LoadDriver.NANOS_PER_MILLI);
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * @param target
+     *            to post to.
+     * @param body
+     *            of the post.
+     * @return the uuid of the created resource, the last segment of the
+     *         location.
+     * @throws IOException
+     *             if the resource is not created.
+     */
+    private static String create(final WebTarget target, final Entity<String> body)
+            throws IOException {
+        final Response response;
+        try {
+            response = target.request(MediaType.APPLICATION_XML_TYPE).post(body);
+        } catch (final ProcessingException e) {
+            throw new IOException("Could not reach " + target.getUri(), e);
+        }
+        response.close();
+        if (response.getStatus() != Status.CREATED.getStatusCode()
+                || response.getLocation() == null) {
+            throw new IOException("Could not create " + target.getUri() + ": "
+                    + response.getStatus());
+        }
+        final String path = response.getLocation().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Runs the clients, and waits for them to finish.
+     * 
+     * @param run
+     *            the state shared by the clients.
+     */
+    private void runClients(final Run run) {
+        run.measureFrom = System.nanoTime() + this.warmup * LoadDriver.NANOS_PER_MILLI;
+        run.deadline = run.measureFrom + this.duration * LoadDriver.NANOS_PER_MILLI;
+        final ExecutorService executor = Executors.newFixedThreadPool(this.clients);
+        for (int i = 0; i < this.clients; i++) {
+            final Random random = new Random(this.seed + i);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    while (System.nanoTime() < run.deadline) {
+                        LoadDriver.this.perform(run, LoadDriver.this.nextCall(run, random));
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(this.warmup + this.duration + LoadDriver.REQUEST_TIMEOUT,
+                                           TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param run
+     *            the state shared by the clients.
+     * @param random
+     *            of the client.
+     * @return the next call of the client.
+     */
+    private Call nextCall(final Run run, final Random random) {
+        int total = 0;
+        for (final int weight : this.weights.values()) {
+            total += weight;
+        }
+        int pick = random.nextInt(total);
+        Operation operation = null;
+        for (final Map.Entry<Operation, Integer> entry : this.weights.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                operation = entry.getKey();
+                break;
+            }
+        }
+        return LoadDriver.resolve(run, operation, random);
+    }
+
+    /**
+     * Replaces an operation that needs a VM or deployment that does not exist
+     * yet by the operation that creates it.
+     * 
+     * @param run
+     *            the state shared by the clients.
+     * @param operation
+     *            that was picked.
+     * @param random
+     *            of the client.
+     * @return the call to perform.
+     */
+    private static Call resolve(final Run run, final Operation operation, final Random random) {
+        if (operation == Operation.GET_VM) {
+            final String vm = LoadDriver.pick(run.vms, random);
+            if (vm != null) {
+                return new Call(operation, vm);
+            }
+        }
+        if (operation == Operation.GET_VM || operation == Operation.GET_PROGRESS) {
+            final String deployment = LoadDriver.pick(run.started, random);
+            if (deployment != null) {
+                return new Call(Operation.GET_PROGRESS, deployment);
+            }
+        }
+        if (operation == Operation.GET_VM || operation == Operation.GET_PROGRESS
+                || operation == Operation.START_DEPLOYMENT) {
+            final String deployment = run.created.poll();
+            if (deployment != null) {
+                return new Call(Operation.START_DEPLOYMENT, deployment);
+            }
+            return new Call(Operation.CREATE_DEPLOYMENT, null);
+        }
+        return new Call(operation, null);
+    }
+
+    /**
+     * @param list
+     *            synchronized list to pick from.
+     * @param random
+     *            to pick with.
+     * @return a random element, null if the list is empty.
+     */
+    private static String pick(final List<String> list, final Random random) {
+        synchronized (list) {
+            if (list.isEmpty()) {
+                return null;
+            }
+            return list.get(random.nextInt(list.size()));
+        }
+    }
+
+    /**
+     * Performs the call, and records its latency if the warmup has passed.
+     * 
+     * @param run
+     *            the state shared by the clients.
+     * @param call
+     *            to perform.
+     */
+    private void perform(final Run run, final Call call) {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final Response response = this.send(run, call);
+            try {
+                success = response.getStatus() == call.operation.getExpectedStatus()
+                        .getStatusCode();
+                if (success) {
+                    this.process(run, call, response);
+                }
+            } finally {
+                response.close();
+            }
+        } catch (final ProcessingException | IOException e) {
+            LoadDriver.logger.catching(Level.DEBUG, e);
+        }
+        if (start >= run.measureFrom) {
+            run.recorders.get(call.operation).record(System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * @param run
+     *            the state shared by the clients.
+     * @param call
+     *            to send.
+     * @return the response.
+     */
+    private Response send(final Run run, final Call call) {
+        final WebTarget deployments = run.app.path(DeploymentsProvider.PATH);
+        final WebTarget vms = run.app.path(VirtualMachineProvider.PATH);
+        WebTarget target;
+        switch (call.operation) {
+        case LIST_APPS:
+            target = run.apps;
+            break;
+        case GET_APP:
+            target = run.app;
+            break;
+        case LIST_TEMPLATES:
+            target = run.app.path(VMTemplatesProvider.PATH);
+            break;
+        case CREATE_DEPLOYMENT:
+            return deployments.request(MediaType.APPLICATION_XML_TYPE).post(RequestBodies
+                    .newDeploymentRequest(run.template, this.deploymentSize));
+        case START_DEPLOYMENT:
+            return deployments.path(call.target).path(DeploymentProvider.PATH_START)
+                    .request(MediaType.APPLICATION_XML_TYPE).post(null);
+        case GET_PROGRESS:
+            target = deployments.path(call.target).path(DeploymentProvider.PATH_PROGRESS);
+            break;
+        case LIST_VMS:
+            target = vms;
+            break;
+        case GET_VM:
+            target = vms.path(call.target);
+            break;
+        case GET_PHYS:
+            target = run.app.path(PhysicalMachineProvider.PATH);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown operation " + call.operation);
+        }
+        return target.request(MediaType.APPLICATION_XML_TYPE).get();
+    }
+
+    /**
+     * Remembers the deployments and VMs a successful call tells about.
+     * 
+     * @param run
+     *            the state shared by the clients.
+     * @param call
+     *            that succeeded.
+     * @param response
+     *            to the call.
+     * @throws IOException
+     *             if the response can not be read.
+     */
+    private void process(final Run run, final Call call, final Response response)
+            throws IOException {
+        if (call.operation == Operation.CREATE_DEPLOYMENT) {
+            final String path = response.getLocation().getPath();
+            run.created.add(path.substring(path.lastIndexOf('/') + 1));
+        } else if (call.operation == Operation.START_DEPLOYMENT) {
+            run.started.add(call.target);
+        } else if (call.operation == Operation.GET_PROGRESS) {
+            for (final String vm : RequestBodies.readLaunchedVMs(response
+                    .readEntity(String.class))) {
+                synchronized (run.vms) {
+                    if (!run.vms.contains(vm)) {
+                        run.vms.add(vm);
+                    }
+                }
+            }
+        } else {
+            // The whole body is part of the latency.
+            response.readEntity(String.class);
+        }
+    }
+}
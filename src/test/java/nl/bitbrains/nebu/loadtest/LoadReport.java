@@ -0,0 +1,156 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         The results of a run of the {@link LoadDriver}: the throughput and
+ *         the latency percentiles of every endpoint that was requested.
+ */
+public class LoadReport {
+
+    public static final double P50 = 0.5;
+    public static final double P99 = 0.99;
+    public static final double P999 = 0.999;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+
+    private final Map<String, LatencyRecorder> endpoints;
+    private final long duration;
+
+    /**
+     * @param endpoints
+     *            the recorders by endpoint, in the order to report them in.
+     * @param duration
+     *            of the measurement in nanoseconds.
+     */
+    LoadReport(final Map<String, LatencyRecorder> endpoints, final long duration) {
+        this.endpoints = new LinkedHashMap<String, LatencyRecorder>(endpoints);
+        this.duration = duration;
+    }
+
+    /**
+     * @return the endpoints that were requested, in order.
+     */
+    public final List<String> getEndpoints() {
+        final List<String> result = new ArrayList<String>();
+        for (final Map.Entry<String, LatencyRecorder> entry : this.endpoints.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                result.add(entry.getKey());
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @param endpoint
+     *            to get the latencies of.
+     * @return the latencies of the endpoint, empty if it was not requested.
+     */
+    public final LatencyRecorder getLatencies(final String endpoint) {
+        final LatencyRecorder recorder = this.endpoints.get(endpoint);
+        if (recorder == null) {
+            return new LatencyRecorder();
+        }
+        return recorder;
+    }
+
+    /**
+     * @return the duration of the measurement in nanoseconds.
+     */
+    public final long getDuration() {
+        return this.duration;
+    }
+
+    /**
+     * @return the number of requests to all endpoints.
+     */
+    public final int getRequests() {
+        int requests = 0;
+        for (final LatencyRecorder recorder : this.endpoints.values()) {
+            requests += recorder.getCount();
+        }
+        return requests;
+    }
+
+    /**
+     * @return the number of failed requests to all endpoints.
+     */
+    public final int getErrors() {
+        int errors = 0;
+        for (final LatencyRecorder recorder : this.endpoints.values()) {
+            errors += recorder.getErrors();
+        }
+        return errors;
+    }
+
+    /**
+     * @return the requests per second to all endpoints.
+     */
+    public final double getThroughput() {
+        return this.perSecond(this.getRequests());
+    }
+
+    /**
+     * @param endpoint
+     *            to get the throughput of.
+     * @return the requests per second to the endpoint.
+     */
+    public final double getThroughput(final String endpoint) {
+        return this.perSecond(this.getLatencies(endpoint).getCount());
+    }
+
+    /**
+     * @param requests
+     *            number of requests.
+     * @return the number of requests per second of the measurement.
+     */
+    private double perSecond(final int requests) {
+        if (this.duration <= 0) {
+            return 0;
+        }
+        return requests * LoadReport.NANOS_PER_SECOND / this.duration;
+    }
+
+    @Override
+    public final String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ENGLISH,
+                                     "%d requests, %d errors in %.1f s: %.1f requests/s%n",
+                                     this.getRequests(), this.getErrors(), this.duration
+                                             / LoadReport.NANOS_PER_SECOND,
+                                     this.getThroughput()));
+        builder.append(String.format(Locale.ENGLISH, "%-42s %8s %7s %9s %9s %9s %9s %9s%n",
+                                     "endpoint", "requests", "errors", "req/s", "mean ms",
+                                     "p50 ms", "p99 ms", "p999 ms"));
+        for (final String endpoint : this.getEndpoints()) {
+            final LatencyRecorder recorder = this.endpoints.get(endpoint);
+            builder.append(String.format(Locale.ENGLISH,
+                                         "%-42s %8d %7d %9.1f %9.3f %9.3f %9.3f %9.3f%n",
+                                         endpoint, recorder.getCount(), recorder.getErrors(),
+                                         this.getThroughput(endpoint),
+                                         recorder.getMean() / LoadReport.NANOS_PER_MILLI,
+                                         LoadReport.toMillis(recorder, LoadReport.P50),
+                                         LoadReport.toMillis(recorder, LoadReport.P99),
+                                         LoadReport.toMillis(recorder, LoadReport.P999)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param recorder
+     *            to get the latency from.
+     * @param percentile
+     *            of the latency.
+     * @return the latency at the percentile in milliseconds.
+     */
+    private static double toMillis(final LatencyRecorder recorder, final double percentile) {
+        return recorder.getLatency(percentile) / LoadReport.NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,170 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+
+import nl.bitbrains.nebu.App;
+import nl.bitbrains.nebu.common.config.InvalidConfigurationException;
+import nl.bitbrains.nebu.common.util.ErrorChecker;
+import nl.bitbrains.nebu.simulation.TopologyGenerator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Runs nebu-core in-process against a {@link FakeVMM}, both on free
+ *         local ports, so the {@link LoadDriver} can load it end to end without
+ *         a hypervisor.
+ */
+public class LoadTest {
+
+    public static final String VMM_CLIENT = "nebu-vmm";
+    public static final String LOCALHOST = "localhost";
+    private static final long DEFAULT_SECONDS = 30;
+    private static final int DEFAULT_RACKS = 10;
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static Logger logger = LogManager.getLogger();
+
+    private final FakeVMM vmm;
+    private HttpServer server;
+
+    /**
+     * @param vmm
+     *            to run nebu-core against, not started yet.
+     */
+    public LoadTest(final FakeVMM vmm) {
+        ErrorChecker.throwIfNullArgument(vmm, "vmm");
+        this.vmm = vmm;
+    }
+
+    /**
+     * Starts the VMM and nebu-core. NB: nebu-core is configured through
+     * singletons, so only one load test can run in a JVM at a time.
+     * 
+     * @return the base URI of nebu-core.
+     * @throws IOException
+     *             if no port is free, or the configuration can not be
+     *             written.
+     * @throws InvalidConfigurationException
+     *             if nebu-core rejects the configuration.
+     */
+    public final synchronized URI start() throws IOException, InvalidConfigurationException {
+        if (this.server != null) {
+            throw new IllegalStateException("The load test has been started already");
+        }
+        final int vmmPort = LoadTest.findFreePort();
+        this.vmm.start(vmmPort);
+        final int corePort = LoadTest.findFreePort();
+        final File config = File.createTempFile("nebu-loadtest", ".xml");
+        config.deleteOnExit();
+        LoadTest.writeConfiguration(config, corePort, vmmPort);
+        try {
+            this.server = App.start(config);
+        } catch (final IOException | InvalidConfigurationException | RuntimeException e) {
+            this.vmm.stop();
+            throw e;
+        }
+        return URI.create("http://" + LoadTest.LOCALHOST + ":" + corePort + "/");
+    }
+
+    /**
+     * Stops nebu-core and the VMM.
+     */
+    public final synchronized void stop() {
+        if (this.server != null) {
+            App.stop(this.server);
+            this.server = null;
+        }
+        this.vmm.stop();
+    }
+
+    /**
+     * @return a port that was free when this method returned.
+     * @throws IOException
+     *             if no port is free.
+     */
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Writes a configuration that lets nebu-core listen on one port and use
+     * the VMM on the other. All other settings are left at their defaults.
+     * 
+     * @param file
+     *            to write to.
+     * @param corePort
+     *            port of nebu-core.
+     * @param vmmPort
+     *            port of the VMM.
+     * @throws IOException
+     *             if the file can not be written.
+     */
+    private static void writeConfiguration(final File file, final int corePort,
+            final int vmmPort) throws IOException {
+        final Element root = new Element("properties");
+        root.addContent(new Element("server").addContent(new Element("port").setText(Integer
+                .toString(corePort))));
+        final Element client = new Element("client").setAttribute("type", LoadTest.VMM_CLIENT);
+        client.addContent(new Element("ip").setText(LoadTest.LOCALHOST));
+        client.addContent(new Element("port").setText(Integer.toString(vmmPort)));
+        root.addContent(client);
+        try (OutputStream out = new FileOutputStream(file)) {
+            new XMLOutputter(Format.getPrettyFormat()).output(new Document(root), out);
+        }
+    }
+
+    /**
+     * Loads nebu-core in-process against a fake VMM, and prints the report.
+     * 
+     * @param args
+     *            optionally the number of clients, the duration in seconds,
+     *            the number of racks of 40 hosts, the minimum and maximum
+     *            latency of the VMM in milliseconds, and its error rate.
+     * @throws IOException
+     *             if nebu-core can not be started or loaded.
+     * @throws InvalidConfigurationException
+     *             if nebu-core rejects the configuration.
+     */
+    public static void main(final String[] args) throws IOException,
+            InvalidConfigurationException {
+        final String[] all = { Integer.toString(LoadDriver.DEFAULT_CLIENTS),
+                Long.toString(LoadTest.DEFAULT_SECONDS), Integer.toString(LoadTest.DEFAULT_RACKS),
+                "0", "0", "0", };
+        System.arraycopy(args, 0, all, 0, Math.min(args.length, all.length));
+        int i = 0;
+        final int clients = Integer.parseInt(all[i++]);
+        final long seconds = Long.parseLong(all[i++]);
+        final int racks = Integer.parseInt(all[i++]);
+        final long minLatency = Long.parseLong(all[i++]);
+        final long maxLatency = Math.max(minLatency, Long.parseLong(all[i++]));
+        final double errorRate = Double.parseDouble(all[i++]);
+
+        final FakeVMM vmm = new FakeVMM(new TopologyGenerator().withRacksPerDataCenter(racks)
+                .generate()).withLatency(minLatency, maxLatency).withErrorRate(errorRate);
+        final LoadTest test = new LoadTest(vmm);
+        try {
+            final URI uri = test.start();
+            final LoadReport report = new LoadDriver(uri).withClients(clients)
+                    .withDuration(seconds * LoadTest.MILLIS_PER_SECOND).run();
+            LoadTest.logger.info(report);
+            LoadTest.logger.info("VMM: " + vmm.getRequests() + " requests, " + vmm.getErrors()
+                    + " injected errors");
+        } finally {
+            test.stop();
+        }
+    }
+}
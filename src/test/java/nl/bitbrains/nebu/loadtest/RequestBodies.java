@@ -0,0 +1,121 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+
+import nl.bitbrains.nebu.common.factories.IdentifiableFactory;
+import nl.bitbrains.nebu.containers.ApplicationFactory;
+import nl.bitbrains.nebu.containers.DeploymentRequestFactory;
+import nl.bitbrains.nebu.containers.VMTemplateFactory;
+import nl.bitbrains.nebu.rest.server.LaunchProgress;
+
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ *         Creates the bodies the {@link LoadDriver} sends to nebu-core, and
+ *         reads the responses it needs.
+ */
+final class RequestBodies {
+
+    private static final String TEMPLATE_LOAD = "1";
+
+    /**
+     * Private constructor, all methods are static.
+     */
+    private RequestBodies() {
+    }
+
+    /**
+     * @param name
+     *            of the application.
+     * @param policy
+     *            name of the deployment policy.
+     * @return the body to create the application with.
+     */
+    static Entity<String> newApplication(final String name, final String policy) {
+        final Element root = new Element(ApplicationFactory.TAG_ELEMENT_ROOT);
+        root.setAttribute(ApplicationFactory.ATTRIBUTE_NAME, name);
+        final Element elem = new Element(ApplicationFactory.TAG_DEPLOYMENT_POLICY);
+        elem.setAttribute(ApplicationFactory.ATTRIBUTE_NAME, policy);
+        root.addContent(elem);
+        return RequestBodies.toEntity(root);
+    }
+
+    /**
+     * @param name
+     *            of the template.
+     * @return the body to create a template with a load of 1 for everything.
+     */
+    static Entity<String> newTemplate(final String name) {
+        final Element root = new Element(VMTemplateFactory.TAG_ELEMENT_ROOT);
+        root.setAttribute(VMTemplateFactory.ATTRIBUTE_NAME, name);
+        final Element load = new Element(VMTemplateFactory.TAG_LOADPROFILE);
+        for (final String tag : new String[] { VMTemplateFactory.TAG_CPU,
+                VMTemplateFactory.TAG_MEM, VMTemplateFactory.TAG_IO, VMTemplateFactory.TAG_NET, }) {
+            load.addContent(new Element(tag).setText(RequestBodies.TEMPLATE_LOAD));
+        }
+        root.addContent(load);
+        root.addContent(new Element(VMTemplateFactory.TAG_VMMCONFIG));
+        return RequestBodies.toEntity(root);
+    }
+
+    /**
+     * @param template
+     *            uuid of the template to deploy.
+     * @param count
+     *            number of VMs to deploy.
+     * @return the body to create a deployment with.
+     */
+    static Entity<String> newDeploymentRequest(final String template, final int count) {
+        final Element root = new Element(DeploymentRequestFactory.TAG_ELEMENT_ROOT);
+        final Element elem = new Element(DeploymentRequestFactory.TAG_ELEMENT_TEMPLATE);
+        elem.setAttribute(IdentifiableFactory.TAG_ID, template);
+        elem.addContent(new Element(DeploymentRequestFactory.TAG_ELEMENT_NUMBER).setText(Integer
+                .toString(count)));
+        root.addContent(elem);
+        return RequestBodies.toEntity(root);
+    }
+
+    /**
+     * @param body
+     *            of a launch progress response.
+     * @return the uuids of the VMs that were created.
+     * @throws IOException
+     *             if the body is not valid xml.
+     */
+    static List<String> readLaunchedVMs(final String body) throws IOException {
+        final Element root;
+        try {
+            root = new SAXBuilder().build(new StringReader(body)).getRootElement();
+        } catch (final JDOMException e) {
+            throw new IOException("Invalid progress: " + e.getMessage(), e);
+        }
+        final List<String> vms = new ArrayList<String>();
+        for (final Element spec : root.getChildren(LaunchProgress.TAG_SPEC)) {
+            final String vm = spec.getAttributeValue(LaunchProgress.ATTRIBUTE_VM);
+            if (vm != null) {
+                vms.add(vm);
+            }
+        }
+        return vms;
+    }
+
+    /**
+     * @param xml
+     *            to send.
+     * @return the xml as entity.
+     */
+    private static Entity<String> toEntity(final Element xml) {
+        return Entity.entity(new XMLOutputter().outputString(xml), MediaType.APPLICATION_XML_TYPE);
+    }
+}
@@ -0,0 +1,204 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.text.ParseException;
+import java.util.List;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.factories.StringFactory;
+import nl.bitbrains.nebu.common.factories.VirtualMachineFactory;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.common.topology.factory.TopologyFactories;
+import nl.bitbrains.nebu.common.util.xml.XMLConverter;
+import nl.bitbrains.nebu.rest.client.RequestBuilder;
+import nl.bitbrains.nebu.simulation.TopologyGenerator;
+
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestFakeVMM {
+
+    private final String host = "dc0-rack0-host0";
+    private final String store = "dc0-rack0-host0-disk0";
+
+    private FakeVMM vmm;
+    private Client client;
+    private WebTarget target;
+
+    @Before
+    public void setUp() throws IOException {
+        final PhysicalTopology topology = new TopologyGenerator().withRacksPerDataCenter(2)
+                .withHostsPerRack(3).generate();
+        this.vmm = new FakeVMM(topology);
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        final URI uri = this.vmm.start(port);
+        this.client = ClientBuilder.newClient();
+        this.target = this.client.target(uri);
+    }
+
+    @After
+    public void tearDown() {
+        this.client.close();
+        this.vmm.stop();
+    }
+
+    private Element get(final WebTarget target) throws JDOMException, IOException {
+        final Response rep = target.request(MediaType.APPLICATION_XML_TYPE).get();
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), rep.getStatus());
+        return new SAXBuilder().build(new StringReader(rep.readEntity(String.class)))
+                .getRootElement();
+    }
+
+    private Response createVM(final String host) {
+        return this.target.path(RequestBuilder.URI_PHYSICAL_MACHINES).path(host)
+                .path(RequestBuilder.URI_CREATE_VM)
+                .queryParam(RequestBuilder.QUERY_PARAM_HOSTNAME, "name")
+                .queryParam(RequestBuilder.QUERY_PARAM_TEMPLATE, "template")
+                .queryParam(RequestBuilder.QUERY_PARAM_STORE, this.store)
+                .request(MediaType.APPLICATION_XML_TYPE).post(null);
+    }
+
+    @Test
+    public void testTopology() throws JDOMException, IOException, ParseException {
+        final Element elem = this.get(this.target.path(RequestBuilder.URI_TOPOLOGY));
+        final PhysicalTopology topology = new PhysicalTopology(TopologyFactories
+                .createDefault().getPhysicalRootFactory().fromXML(elem).build());
+        Assert.assertEquals(6, topology.getCPUs().size());
+    }
+
+    @Test
+    public void testTemplateTopology() throws JDOMException, IOException, ParseException {
+        final Element elem = this.get(this.target.path(RequestBuilder.URI_VMTEMPLATES)
+                .path("template").path(RequestBuilder.URI_PHYSICAL_MACHINES));
+        final PhysicalTopology topology = new PhysicalTopology(TopologyFactories
+                .createDefault().getPhysicalRootFactory().fromXML(elem).build());
+        Assert.assertEquals(6, topology.getCPUs().size());
+    }
+
+    @Test
+    public void testPutTemplate() {
+        final Response rep = this.target.path(RequestBuilder.URI_VMTEMPLATES).path("template")
+                .request().put(Entity.entity("<config/>", MediaType.APPLICATION_XML_TYPE));
+        Assert.assertEquals(Response.Status.CREATED.getStatusCode(), rep.getStatus());
+        Assert.assertTrue(this.vmm.hasTemplate("template"));
+    }
+
+    @Test
+    public void testCreateVM() throws JDOMException, IOException, ParseException {
+        final Response rep = this.createVM(this.host);
+        Assert.assertEquals(Response.Status.CREATED.getStatusCode(), rep.getStatus());
+        final String uuid = rep.getLocation().getRawPath().split("/")[2];
+
+        final Element list = this.get(this.target.path(RequestBuilder.URI_VIRTUAL_MACHINES));
+        final List<String> uuids = XMLConverter.convertJDOMElementToList(list,
+                                                                         new StringFactory());
+        Assert.assertEquals(1, uuids.size());
+        Assert.assertEquals(uuid, uuids.get(0));
+
+        final Element elem = this.get(this.target.path(RequestBuilder.URI_VIRTUAL_MACHINES)
+                .path(uuid));
+        final VirtualMachine vm = new VirtualMachineFactory().fromXML(elem).build();
+        Assert.assertEquals(uuid, vm.getUniqueIdentifier());
+        Assert.assertEquals(this.host, vm.getHost());
+        Assert.assertTrue(vm.getStores().contains(this.store));
+    }
+
+    @Test
+    public void testCreateVMUnknownHost() {
+        final Response rep = this.createVM("unknown");
+        Assert.assertEquals(Response.Status.NOT_FOUND.getStatusCode(), rep.getStatus());
+        Assert.assertTrue(this.vmm.getVirtualMachineIDs().isEmpty());
+    }
+
+    @Test
+    public void testBulk() throws JDOMException, IOException {
+        final String uuid = this.createVM(this.host).getLocation().getRawPath().split("/")[2];
+        final Element elem = this.get(this.target.path(RequestBuilder.URI_VIRTUAL_MACHINES)
+                .path(RequestBuilder.URI_BULK)
+                .queryParam(RequestBuilder.QUERY_PARAM_UUID, uuid, "unknown"));
+        Assert.assertEquals(VirtualMachineFactory.TAG_LIST_ELEMENT_ROOT, elem.getName());
+        Assert.assertEquals(1, elem.getChildren(VirtualMachineFactory.TAG_ELEMENT_ROOT).size());
+    }
+
+    @Test
+    public void testUnknownVM() {
+        final Response rep = this.target.path(RequestBuilder.URI_VIRTUAL_MACHINES)
+                .path("unknown").request().get();
+        Assert.assertEquals(Response.Status.NOT_FOUND.getStatusCode(), rep.getStatus());
+    }
+
+    @Test
+    public void testStatusLaunched() throws JDOMException, IOException, ParseException {
+        final String uuid = this.createVM(this.host).getLocation().getRawPath().split("/")[2];
+        final Element elem = this.get(this.target.path(RequestBuilder.URI_STATUS).path(uuid));
+        Assert.assertEquals(uuid, new StringFactory().fromXML(elem).build());
+    }
+
+    @Test
+    public void testStatusLaunching() {
+        this.vmm.withLaunchTime(60000);
+        final String uuid = this.createVM(this.host).getLocation().getRawPath().split("/")[2];
+        final Response rep = this.target.path(RequestBuilder.URI_STATUS).path(uuid).request()
+                .get();
+        Assert.assertEquals(Response.Status.ACCEPTED.getStatusCode(), rep.getStatus());
+        Assert.assertFalse(this.vmm.isLaunched(uuid));
+    }
+
+    @Test
+    public void testErrorRate() {
+        this.vmm.withErrorRate(1);
+        final Response rep = this.createVM(this.host);
+        Assert.assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
+                            rep.getStatus());
+        Assert.assertTrue(this.vmm.getVirtualMachineIDs().isEmpty());
+        Assert.assertEquals(1, this.vmm.getRequests());
+        Assert.assertEquals(1, this.vmm.getErrors());
+    }
+
+    @Test
+    public void testLatency() {
+        this.vmm.withLatency(50, 60);
+        final long start = System.nanoTime();
+        final Response rep = this.target.path(RequestBuilder.URI_TOPOLOGY).request().get();
+        final long millis = (System.nanoTime() - start) / 1000000;
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), rep.getStatus());
+        Assert.assertTrue(millis >= 50);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLatency() {
+        this.vmm.withLatency(10, 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidErrorRate() {
+        this.vmm.withErrorRate(1.5);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartTwice() {
+        this.vmm.start(0);
+    }
+}
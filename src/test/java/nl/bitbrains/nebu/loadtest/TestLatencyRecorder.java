@@ -0,0 +1,55 @@
+package nl.bitbrains.nebu.loadtest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestLatencyRecorder {
+
+    private LatencyRecorder recorder;
+
+    @Before
+    public void setUp() {
+        this.recorder = new LatencyRecorder();
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(0, this.recorder.getCount());
+        Assert.assertEquals(0, this.recorder.getErrors());
+        Assert.assertEquals(0, this.recorder.getMean(), 0);
+        Assert.assertEquals(0, this.recorder.getLatency(0.999));
+    }
+
+    @Test
+    public void testPercentiles() {
+        for (int i = 2000; i >= 1; i--) {
+            this.recorder.record(i, true);
+        }
+        Assert.assertEquals(2000, this.recorder.getCount());
+        Assert.assertEquals(1000.5, this.recorder.getMean(), 0);
+        Assert.assertEquals(1000, this.recorder.getLatency(LoadReport.P50));
+        Assert.assertEquals(1980, this.recorder.getLatency(LoadReport.P99));
+        final long p999 = this.recorder.getLatency(LoadReport.P999);
+        Assert.assertTrue(p999 >= 1997 && p999 <= 1999);
+        Assert.assertEquals(2000, this.recorder.getLatency(1));
+        Assert.assertEquals(1, this.recorder.getLatency(0));
+    }
+
+    @Test
+    public void testErrors() {
+        this.recorder.record(10, true);
+        this.recorder.record(20, false);
+        Assert.assertEquals(2, this.recorder.getCount());
+        Assert.assertEquals(1, this.recorder.getErrors());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        this.recorder.getLatency(1.5);
+    }
+}
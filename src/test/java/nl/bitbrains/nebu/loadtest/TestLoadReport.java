@@ -0,0 +1,49 @@
+package nl.bitbrains.nebu.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestLoadReport {
+
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void testThroughput() {
+        final Map<String, LatencyRecorder> endpoints;
+        endpoints = new LinkedHashMap<String, LatencyRecorder>();
+        final LatencyRecorder first = new LatencyRecorder();
+        for (int i = 0; i < 30; i++) {
+            first.record(1000000, i % 10 != 0);
+        }
+        final LatencyRecorder second = new LatencyRecorder();
+        second.record(2000000, true);
+        endpoints.put("GET /first", first);
+        endpoints.put("GET /second", second);
+        endpoints.put("GET /unused", new LatencyRecorder());
+
+        final LoadReport report = new LoadReport(endpoints, 2 * TestLoadReport.SECOND);
+        Assert.assertEquals(31, report.getRequests());
+        Assert.assertEquals(3, report.getErrors());
+        Assert.assertEquals(15.5, report.getThroughput(), 1e-9);
+        Assert.assertEquals(15, report.getThroughput("GET /first"), 1e-9);
+        Assert.assertEquals(2, report.getEndpoints().size());
+        Assert.assertEquals("GET /first", report.getEndpoints().get(0));
+        Assert.assertTrue(report.toString().contains("GET /second"));
+        Assert.assertFalse(report.toString().contains("GET /unused"));
+    }
+
+    @Test
+    public void testUnknownEndpoint() {
+        final LoadReport report = new LoadReport(new LinkedHashMap<String, LatencyRecorder>(),
+                TestLoadReport.SECOND);
+        Assert.assertEquals(0, report.getLatencies("GET /unknown").getCount());
+        Assert.assertEquals(0, report.getThroughput(), 0);
+    }
+}
@@ -0,0 +1,81 @@
+package nl.bitbrains.nebu.metrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestHistogram {
+
+    private static final long HIGHEST = 1000000;
+
+    private Histogram histogram;
+
+    @Before
+    public void setUp() {
+        this.histogram = new Histogram(TestHistogram.HIGHEST);
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(0, this.histogram.getCount());
+        Assert.assertEquals(0, this.histogram.getMax());
+        Assert.assertEquals(0, this.histogram.getValueAtPercentile(0.99));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        for (int i = 1; i <= 100; i++) {
+            this.histogram.record(i);
+        }
+        Assert.assertEquals(100, this.histogram.getCount());
+        Assert.assertEquals(5050, this.histogram.getSum());
+        Assert.assertEquals(50, this.histogram.getValueAtPercentile(0.5));
+        Assert.assertEquals(99, this.histogram.getValueAtPercentile(0.99));
+        Assert.assertEquals(100, this.histogram.getValueAtPercentile(1));
+        Assert.assertEquals(1, this.histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testLargeValuesWithinPrecision() {
+        for (int i = 1; i <= 100000; i++) {
+            this.histogram.record(i);
+        }
+        final long p50 = this.histogram.getValueAtPercentile(0.5);
+        final long p99 = this.histogram.getValueAtPercentile(0.99);
+        Assert.assertTrue(p50 >= 50000 && p50 <= 50000 + 50000 / 64);
+        Assert.assertTrue(p99 >= 99000 && p99 <= 99000 + 99000 / 64);
+        Assert.assertEquals(100000, this.histogram.getValueAtPercentile(1));
+    }
+
+    @Test
+    public void testClamped() {
+        this.histogram.record(-5);
+        this.histogram.record(TestHistogram.HIGHEST * 10);
+        Assert.assertEquals(TestHistogram.HIGHEST, this.histogram.getMax());
+        Assert.assertEquals(0, this.histogram.getValueAtPercentile(0.5));
+        Assert.assertEquals(TestHistogram.HIGHEST, this.histogram.getValueAtPercentile(1));
+    }
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int index = 1; index < Histogram.indexOf(TestHistogram.HIGHEST); index++) {
+            final long lowest = Histogram.highestEquivalentValue(index - 1) + 1;
+            Assert.assertEquals(index, Histogram.indexOf(lowest));
+            Assert.assertEquals(index, Histogram.indexOf(Histogram.highestEquivalentValue(index)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        this.histogram.getValueAtPercentile(1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHighest() {
+        new Histogram(10);
+    }
+}
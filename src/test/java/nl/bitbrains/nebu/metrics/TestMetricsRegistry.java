@@ -0,0 +1,65 @@
+package nl.bitbrains.nebu.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestMetricsRegistry {
+
+    @Test
+    public void testSameMetricIsReturned() {
+        final MetricsRegistry registry = MetricsRegistry.get();
+        final String labels = MetricsRegistry.labels("test", "same");
+        Assert.assertSame(registry.counter("test_same_total", labels),
+                          registry.counter("test_same_total", labels));
+        Assert.assertSame(registry.histogram("test_same", labels),
+                          registry.histogram("test_same", labels));
+        Assert.assertNotSame(registry.counter("test_same_total", labels),
+                             registry.counter("test_same_total", ""));
+    }
+
+    @Test
+    public void testLabels() {
+        Assert.assertEquals("a=\"1\",b=\"x\\\"y\\\\\"", MetricsRegistry.labels("a", "1", "b",
+                                                                               "x\"y\\"));
+        Assert.assertEquals("", MetricsRegistry.labels());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLabelsWithoutValue() {
+        MetricsRegistry.labels("a");
+    }
+
+    @Test
+    public void testTimer() {
+        final Timer timer = MetricsRegistry.get().timer("test_timer",
+                                                        MetricsRegistry.labels("op", "timer"));
+        timer.stop(System.nanoTime(), true);
+        timer.stop(System.nanoTime(), false);
+        Assert.assertEquals(2, timer.getDurations().getCount());
+        Assert.assertEquals(1, timer.getErrors().get());
+    }
+
+    @Test
+    public void testText() {
+        final MetricsRegistry registry = MetricsRegistry.get();
+        final String labels = MetricsRegistry.labels("op", "text");
+        registry.counter("test_text_total", labels).add(3);
+        registry.histogram("test_text_seconds", labels).record(1500000);
+        final String text = registry.toText();
+        Assert.assertTrue(text.contains("# TYPE test_text_total counter\n"));
+        Assert.assertTrue(text.contains("test_text_total{op=\"text\"} 3\n"));
+        Assert.assertTrue(text.contains("# TYPE test_text_seconds summary\n"));
+        Assert.assertTrue(text.contains("test_text_seconds_count{op=\"text\"} 1\n"));
+        Assert.assertTrue(text.contains("test_text_seconds_sum{op=\"text\"} 1.500000\n"));
+        Assert.assertTrue(text.contains("test_text_seconds{op=\"text\",quantile=\"0.99\"} 1.5"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCount() {
+        new Counter().add(-1);
+    }
+}
@@ -0,0 +1,52 @@
+package nl.bitbrains.nebu.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestWindowedHistogram {
+
+    private static final long HIGHEST = 1000000;
+    private static final long WINDOW = 100;
+
+    @Test
+    public void testRecentValues() {
+        final WindowedHistogram histogram = new WindowedHistogram(TestWindowedHistogram.HIGHEST,
+                60000);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(99, histogram.getValueAtPercentile(0.99));
+    }
+
+    @Test
+    public void testPreviousWindowIsCombined() throws InterruptedException {
+        final WindowedHistogram histogram = new WindowedHistogram(TestWindowedHistogram.HIGHEST,
+                TestWindowedHistogram.WINDOW);
+        histogram.record(100);
+        Thread.sleep(TestWindowedHistogram.WINDOW);
+        histogram.record(1);
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertEquals(100, histogram.getValueAtPercentile(1));
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0.5));
+    }
+
+    @Test
+    public void testOldValuesAreForgotten() throws InterruptedException {
+        final WindowedHistogram histogram = new WindowedHistogram(TestWindowedHistogram.HIGHEST,
+                TestWindowedHistogram.WINDOW);
+        histogram.record(100);
+        Thread.sleep(2 * TestWindowedHistogram.WINDOW);
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new WindowedHistogram(TestWindowedHistogram.HIGHEST, 0);
+    }
+}
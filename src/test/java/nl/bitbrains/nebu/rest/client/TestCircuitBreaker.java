@@ -0,0 +1,84 @@
+package nl.bitbrains.nebu.rest.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestCircuitBreaker {
+
+    private static final long OPEN_TIME = 50;
+
+    private CircuitBreaker newOpenBreaker() {
+        final CircuitBreaker breaker = new CircuitBreaker(2, TestCircuitBreaker.OPEN_TIME);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        return breaker;
+    }
+
+    @Test
+    public void testOpensAfterThreshold() {
+        final CircuitBreaker breaker = new CircuitBreaker(2, TestCircuitBreaker.OPEN_TIME);
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest());
+        Assert.assertEquals(1, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        final CircuitBreaker breaker = new CircuitBreaker(2, TestCircuitBreaker.OPEN_TIME);
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenTrialSucceeds() throws InterruptedException {
+        final CircuitBreaker breaker = this.newOpenBreaker();
+        Thread.sleep(TestCircuitBreaker.OPEN_TIME * 2);
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest());
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpenTrialFails() throws InterruptedException {
+        final CircuitBreaker breaker = this.newOpenBreaker();
+        Thread.sleep(TestCircuitBreaker.OPEN_TIME * 2);
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest());
+        Assert.assertEquals(2, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void testZeroThresholdNeverOpens() {
+        final CircuitBreaker breaker = new CircuitBreaker(0, TestCircuitBreaker.OPEN_TIME);
+        for (int i = 0; i < 100; i++) {
+            breaker.recordFailure();
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeThreshold() {
+        new CircuitBreaker(-1, TestCircuitBreaker.OPEN_TIME);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroOpenTime() {
+        new CircuitBreaker(1, 0);
+    }
+}
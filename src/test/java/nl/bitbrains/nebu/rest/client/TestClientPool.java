@@ -0,0 +1,64 @@
+package nl.bitbrains.nebu.rest.client;
+
+import javax.ws.rs.client.Client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestClientPool {
+
+    private final String uri = "http://localhost:1234";
+
+    @After
+    public void tearDown() {
+        ClientPool.get().configure(new ClientSettings());
+    }
+
+    @Test
+    public void testSameClientForSameVMM() {
+        final Client client = ClientPool.get().getClient(this.uri);
+        Assert.assertSame(client, ClientPool.get().getClient(this.uri));
+    }
+
+    @Test
+    public void testDifferentClientForDifferentVMM() {
+        final Client client = ClientPool.get().getClient(this.uri);
+        Assert.assertNotSame(client, ClientPool.get().getClient("http://otherhost:1234"));
+    }
+
+    @Test
+    public void testConfigureReplacesClients() {
+        final Client client = ClientPool.get().getClient(this.uri);
+        final ClientSettings settings = new ClientSettings(2, 10, 10, 10, 1);
+        ClientPool.get().configure(settings);
+        Assert.assertSame(settings, ClientPool.get().getSettings());
+        Assert.assertNotSame(client, ClientPool.get().getClient(this.uri));
+    }
+
+    @Test
+    public void testConfigureKeepsReplacedClientOpen() {
+        final Client client = ClientPool.get().getClient(this.uri);
+        ClientPool.get().configure(new ClientSettings(2, 10, 10, 10, 1));
+        Assert.assertNotNull(client.target(this.uri));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testShutdownClosesReplacedClient() {
+        final Client client = ClientPool.get().getClient(this.uri);
+        ClientPool.get().configure(new ClientSettings(2, 10, 10, 10, 1));
+        ClientPool.get().shutdown();
+        client.target(this.uri);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testShutdownClosesClient() {
+        final Client client = ClientPool.get().getClient(this.uri);
+        ClientPool.get().shutdown();
+        client.target(this.uri);
+    }
+}
@@ -0,0 +1,62 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestClientSettings {
+
+    @Test
+    public void testDefaults() throws ParseException {
+        final ClientSettings settings = ClientSettings.fromXML(null);
+        Assert.assertEquals(ClientSettings.DEFAULT_POOL_SIZE, settings.getPoolSize());
+        Assert.assertEquals(ClientSettings.DEFAULT_CONNECT_TIMEOUT, settings.getConnectTimeout());
+        Assert.assertEquals(ClientSettings.DEFAULT_READ_TIMEOUT, settings.getReadTimeout());
+        Assert.assertEquals(ClientSettings.DEFAULT_IDLE_TIMEOUT, settings.getIdleTimeout());
+        Assert.assertEquals(ClientSettings.DEFAULT_LAUNCH_PARALLELISM,
+                            settings.getLaunchParallelism());
+    }
+
+    @Test
+    public void testFromXML() throws ParseException {
+        final Element xml = new Element(ClientSettings.TAG_CONNECTION);
+        xml.addContent(new Element(ClientSettings.TAG_POOL_SIZE).setText("5"));
+        xml.addContent(new Element(ClientSettings.TAG_READ_TIMEOUT).setText(" 100 "));
+        final ClientSettings settings = ClientSettings.fromXML(xml);
+        Assert.assertEquals(5, settings.getPoolSize());
+        Assert.assertEquals(100, settings.getReadTimeout());
+        Assert.assertEquals(ClientSettings.DEFAULT_CONNECT_TIMEOUT, settings.getConnectTimeout());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testFromXMLNotANumber() throws ParseException {
+        final Element xml = new Element(ClientSettings.TAG_CONNECTION);
+        xml.addContent(new Element(ClientSettings.TAG_IDLE_TIMEOUT).setText("soon"));
+        ClientSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testFromXMLTooLarge() throws ParseException {
+        final Element xml = new Element(ClientSettings.TAG_CONNECTION);
+        xml.addContent(new Element(ClientSettings.TAG_POOL_SIZE).setText("4294967296"));
+        ClientSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testFromXMLInvalidPoolSize() throws ParseException {
+        final Element xml = new Element(ClientSettings.TAG_CONNECTION);
+        xml.addContent(new Element(ClientSettings.TAG_POOL_SIZE).setText("0"));
+        ClientSettings.fromXML(xml);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTimeout() {
+        new ClientSettings(1, -1, 0, 1, 1);
+    }
+}
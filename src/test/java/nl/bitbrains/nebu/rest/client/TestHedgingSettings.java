@@ -0,0 +1,66 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestHedgingSettings {
+
+    private static final double DELTA = 1e-9;
+
+    private Element newElement(final String tag, final String value) {
+        return new Element(tag).setText(value);
+    }
+
+    @Test
+    public void testDefaults() throws ParseException {
+        final HedgingSettings settings = HedgingSettings.fromXML(null);
+        Assert.assertFalse(settings.isEnabled());
+        Assert.assertEquals(HedgingSettings.DEFAULT_PERCENTILE, settings.getPercentile(),
+                            TestHedgingSettings.DELTA);
+        Assert.assertEquals(HedgingSettings.DEFAULT_MIN_DELAY, settings.getMinDelay());
+        Assert.assertEquals(HedgingSettings.DEFAULT_MIN_SAMPLES, settings.getMinSamples());
+    }
+
+    @Test
+    public void testFromXML() throws ParseException {
+        final Element xml = new Element(HedgingSettings.TAG_HEDGING);
+        xml.setAttribute(HedgingSettings.ATTRIBUTE_ENABLED, "true");
+        xml.addContent(this.newElement(HedgingSettings.TAG_PERCENTILE, "0.99"));
+        xml.addContent(this.newElement(HedgingSettings.TAG_MIN_DELAY, "5"));
+        xml.addContent(this.newElement(HedgingSettings.TAG_MIN_SAMPLES, "1000"));
+
+        final HedgingSettings settings = HedgingSettings.fromXML(xml);
+        Assert.assertTrue(settings.isEnabled());
+        Assert.assertEquals(0.99, settings.getPercentile(), TestHedgingSettings.DELTA);
+        Assert.assertEquals(5, settings.getMinDelay());
+        Assert.assertEquals(1000, settings.getMinSamples());
+    }
+
+    @Test
+    public void testNotEnabled() throws ParseException {
+        final Element xml = new Element(HedgingSettings.TAG_HEDGING);
+        xml.addContent(this.newElement(HedgingSettings.TAG_PERCENTILE, "0.99"));
+        Assert.assertFalse(HedgingSettings.fromXML(xml).isEnabled());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testNotANumber() throws ParseException {
+        final Element xml = new Element(HedgingSettings.TAG_HEDGING);
+        xml.addContent(this.newElement(HedgingSettings.TAG_MIN_DELAY, "soon"));
+        HedgingSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalidPercentile() throws ParseException {
+        final Element xml = new Element(HedgingSettings.TAG_HEDGING);
+        xml.addContent(this.newElement(HedgingSettings.TAG_PERCENTILE, "95"));
+        HedgingSettings.fromXML(xml);
+    }
+}
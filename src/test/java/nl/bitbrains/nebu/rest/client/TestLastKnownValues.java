@@ -0,0 +1,51 @@
+package nl.bitbrains.nebu.rest.client;
+
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestLastKnownValues {
+
+    private CacheLoader<Object> newLoader(final Object value) {
+        return new CacheLoader<Object>() {
+            @Override
+            public Object refresh() {
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void testRemembersLoadedValues() throws CacheException {
+        final LastKnownValues values = new LastKnownValues(10);
+        Assert.assertNull(values.get("key"));
+        Assert.assertEquals("value", values.remembering("key", this.newLoader("value")).refresh());
+        Assert.assertEquals("value", values.get("key"));
+        values.remembering("key", this.newLoader(null)).refresh();
+        Assert.assertNull(values.get("key"));
+    }
+
+    @Test
+    public void testForgetsLeastRecentlyLoaded() {
+        final LastKnownValues values = new LastKnownValues(2);
+        values.put("a", 1);
+        values.put("b", 2);
+        values.put("a", 3);
+        values.put("c", 4);
+        Assert.assertEquals(2, values.size());
+        Assert.assertNull(values.get("b"));
+        Assert.assertEquals(3, values.get("a"));
+        Assert.assertEquals(4, values.get("c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new LastKnownValues(0);
+    }
+}
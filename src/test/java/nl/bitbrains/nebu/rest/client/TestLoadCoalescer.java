@@ -0,0 +1,141 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestLoadCoalescer {
+
+    private static final int WAITERS = 3;
+    private static final long TIMEOUT = 5000;
+
+    private LoadCoalescer coalescer;
+    private AtomicInteger invocations;
+    private CountDownLatch started;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        this.coalescer = new LoadCoalescer();
+        this.invocations = new AtomicInteger();
+        this.started = new CountDownLatch(1);
+        this.release = new CountDownLatch(1);
+    }
+
+    private CacheLoader<Object> blockingLoader(final Object value) {
+        return new CacheLoader<Object>() {
+            @Override
+            public Object refresh() throws CacheException {
+                TestLoadCoalescer.this.invocations.incrementAndGet();
+                TestLoadCoalescer.this.started.countDown();
+                try {
+                    TestLoadCoalescer.this.release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return value;
+            }
+        };
+    }
+
+    private Callable<Object> load(final String key, final CacheLoader<Object> loader) {
+        return new Callable<Object>() {
+            @Override
+            public Object call() throws CacheException {
+                return TestLoadCoalescer.this.coalescer.load(key, loader);
+            }
+        };
+    }
+
+    @Test
+    public void testSingleLoad() throws CacheException {
+        this.release.countDown();
+        final Object value = new Object();
+        Assert.assertSame(value, this.coalescer.load("key", this.blockingLoader(value)));
+        Assert.assertEquals(1, this.coalescer.getMisses());
+        Assert.assertEquals(0, this.coalescer.getCoalesced());
+    }
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        final Object value = new Object();
+        final ExecutorService executor = Executors
+                .newFixedThreadPool(TestLoadCoalescer.WAITERS + 1);
+        try {
+            final List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            futures.add(executor.submit(this.load("key", this.blockingLoader(value))));
+            this.started.await();
+            for (int i = 0; i < TestLoadCoalescer.WAITERS; i++) {
+                futures.add(executor.submit(this.load("key", this.blockingLoader(new Object()))));
+            }
+            final long deadline = System.currentTimeMillis() + TestLoadCoalescer.TIMEOUT;
+            while (this.coalescer.getCoalesced() < TestLoadCoalescer.WAITERS
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            this.release.countDown();
+            for (final Future<Object> future : futures) {
+                Assert.assertSame(value, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, this.invocations.get());
+        Assert.assertEquals(1, this.coalescer.getMisses());
+        Assert.assertEquals(TestLoadCoalescer.WAITERS, this.coalescer.getCoalesced());
+    }
+
+    @Test
+    public void testDifferentKeysAreNotCoalesced() throws CacheException {
+        this.release.countDown();
+        this.coalescer.load("a", this.blockingLoader("a"));
+        this.coalescer.load("b", this.blockingLoader("b"));
+        Assert.assertEquals(2, this.invocations.get());
+        Assert.assertEquals(2, this.coalescer.getMisses());
+    }
+
+    @Test
+    public void testFailureIsPropagated() {
+        final RESTRequestException failure = new RESTRequestException("", 500);
+        try {
+            this.coalescer.load("key", new CacheLoader<Object>() {
+                @Override
+                public Object refresh() throws CacheException {
+                    throw failure;
+                }
+            });
+            Assert.fail();
+        } catch (final CacheException e) {
+            Assert.assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void testHitsAreCounted() throws CacheException {
+        this.release.countDown();
+        final CacheLoader<Object> hit = this.coalescer.newLoader("key", this.blockingLoader(1));
+        this.coalescer.lookupFinished(hit);
+        final CacheLoader<Object> miss = this.coalescer.newLoader("key", this.blockingLoader(1));
+        miss.refresh();
+        this.coalescer.lookupFinished(miss);
+        Assert.assertEquals(1, this.coalescer.getHits());
+        Assert.assertEquals(1, this.coalescer.getMisses());
+    }
+}
@@ -0,0 +1,117 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestRefreshAheadCache {
+
+    private static final long TIMEOUT = 5000;
+
+    private RefreshAheadCache cache;
+    private LoadCoalescer coalescer;
+    private AtomicInteger loads;
+    private volatile boolean failing;
+
+    private final CacheLoader<Object> loader = new CacheLoader<Object>() {
+        @Override
+        public Object refresh() throws CacheException {
+            if (TestRefreshAheadCache.this.failing) {
+                throw new RESTRequestException("", 500);
+            }
+            return TestRefreshAheadCache.this.loads.incrementAndGet();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        this.coalescer = new LoadCoalescer();
+        this.cache = new RefreshAheadCache(this.coalescer);
+        this.loads = new AtomicInteger();
+        this.failing = false;
+    }
+
+    @After
+    public void tearDown() {
+        this.cache.clear();
+    }
+
+    private void waitForLoads(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TestRefreshAheadCache.TIMEOUT;
+        while (this.loads.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testFirstLookupLoads() throws CacheException {
+        final RefreshPolicy policy = new RefreshPolicy(60000, 60000);
+        Assert.assertEquals(1, this.cache.get("key", this.loader, policy));
+        Assert.assertEquals(1, this.cache.get("key", this.loader, policy));
+        Assert.assertEquals(1, this.loads.get());
+        Assert.assertEquals(1, this.coalescer.getHits());
+        Assert.assertEquals(1, this.coalescer.getMisses());
+    }
+
+    @Test
+    public void testRefreshedInBackground() throws Exception {
+        final RefreshPolicy policy = new RefreshPolicy(10, 60000);
+        this.cache.get("key", this.loader, policy);
+        this.waitForLoads(3);
+        final Object value = this.cache.get("key", this.loader, policy);
+        Assert.assertTrue((Integer) value >= 3);
+    }
+
+    @Test
+    public void testStaleValueServedWhileRefreshFails() throws Exception {
+        final RefreshPolicy policy = new RefreshPolicy(10, 60000);
+        this.cache.get("key", this.loader, policy);
+        this.failing = true;
+        Thread.sleep(50);
+        Assert.assertEquals(1, this.cache.get("key", this.loader, policy));
+    }
+
+    @Test(expected = CacheException.class)
+    public void testTooStaleValueIsLoaded() throws Exception {
+        final RefreshPolicy policy = new RefreshPolicy(60000, 60000);
+        this.cache.get("key", this.loader, new RefreshPolicy(1, 1));
+        this.failing = true;
+        Thread.sleep(10);
+        this.cache.get("key", this.loader, policy);
+    }
+
+    @Test
+    public void testClear() throws CacheException {
+        this.cache.get("key", this.loader, new RefreshPolicy(60000, 60000));
+        Assert.assertTrue(this.cache.contains("key"));
+        this.cache.clear();
+        Assert.assertFalse(this.cache.contains("key"));
+    }
+
+    @Test
+    public void testRefreshedAfterShutdown() throws Exception {
+        final RefreshPolicy policy = new RefreshPolicy(10, 60000);
+        this.cache.get("key", this.loader, policy);
+        this.cache.shutdown();
+        Assert.assertFalse(this.cache.contains("key"));
+        this.cache.get("key", this.loader, policy);
+        this.waitForLoads(3);
+        Assert.assertTrue(this.loads.get() >= 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPolicy() {
+        new RefreshPolicy(10, 5);
+    }
+}
@@ -0,0 +1,181 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Response.Status;
+
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestRequestHedger {
+
+    private static final String PRIMARY = "primary";
+    private static final String HEDGE = "hedge";
+    private static final long SLOW = 10000;
+    private static final long SHORT = 300;
+    private static final long MIN_DELAY = 10;
+
+    private RequestHedger hedger;
+    private String operation;
+
+    /**
+     * Attempt of which the first call takes the given time, and the second
+     * call answers with the given status at once.
+     */
+    private static final class SlowFirstAttempt implements ResilientInvoker.Attempt<String> {
+        private final long duration;
+        private final Status hedgeStatus;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        private SlowFirstAttempt(final long duration, final Status hedgeStatus) {
+            this.duration = duration;
+            this.hedgeStatus = hedgeStatus;
+        }
+
+        @Override
+        public String perform() throws RESTRequestException {
+            if (this.calls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(this.duration);
+                } catch (final InterruptedException e) {
+                    this.interrupted.countDown();
+                }
+                return TestRequestHedger.PRIMARY;
+            }
+            if (this.hedgeStatus != Status.OK) {
+                throw new RESTRequestException(this.hedgeStatus.toString(),
+                        this.hedgeStatus.getStatusCode());
+            }
+            return TestRequestHedger.HEDGE;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.hedger = new RequestHedger();
+        this.hedger.configure(new HedgingSettings(true, HedgingSettings.DEFAULT_PERCENTILE,
+                TestRequestHedger.MIN_DELAY, 0));
+        this.operation = "GET test";
+    }
+
+    @Test
+    public void testDisabled() {
+        final SlowFirstAttempt attempt = new SlowFirstAttempt(TestRequestHedger.SLOW, Status.OK);
+        this.hedger.configure(new HedgingSettings());
+        Assert.assertSame(attempt, this.hedger.hedged(this.operation, attempt));
+    }
+
+    @Test
+    public void testFastReadIsNotHedged() throws RESTRequestException {
+        final AtomicInteger calls = new AtomicInteger();
+        final String result = this.hedger.hedged(this.operation,
+                                                 new ResilientInvoker.Attempt<String>() {
+            @Override
+            public String perform() {
+                calls.incrementAndGet();
+                return TestRequestHedger.PRIMARY;
+            }
+        }).perform();
+        Assert.assertEquals(TestRequestHedger.PRIMARY, result);
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(0, this.hedger.getHedges());
+    }
+
+    @Test(timeout = 5000)
+    public void testHedgeWins() throws RESTRequestException, InterruptedException {
+        final SlowFirstAttempt attempt = new SlowFirstAttempt(TestRequestHedger.SLOW, Status.OK);
+        Assert.assertEquals(TestRequestHedger.HEDGE,
+                            this.hedger.hedged(this.operation, attempt).perform());
+        Assert.assertEquals(2, attempt.calls.get());
+        Assert.assertEquals(1, this.hedger.getHedges());
+        Assert.assertEquals(1, this.hedger.getWins());
+        Assert.assertTrue(attempt.interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void testClientErrorIsAnAnswer() {
+        final SlowFirstAttempt attempt = new SlowFirstAttempt(TestRequestHedger.SLOW,
+                Status.NOT_FOUND);
+        try {
+            this.hedger.hedged(this.operation, attempt).perform();
+            Assert.fail();
+        } catch (final RESTRequestException e) {
+            Assert.assertEquals(Status.NOT_FOUND.getStatusCode(), e.getHttpCode());
+        }
+        Assert.assertEquals(0, this.hedger.getWins());
+    }
+
+    @Test(timeout = 5000)
+    public void testServerErrorWaitsForOther() throws RESTRequestException {
+        final SlowFirstAttempt attempt = new SlowFirstAttempt(TestRequestHedger.SHORT,
+                Status.SERVICE_UNAVAILABLE);
+        Assert.assertEquals(TestRequestHedger.PRIMARY,
+                            this.hedger.hedged(this.operation, attempt).perform());
+        Assert.assertEquals(1, this.hedger.getHedges());
+        Assert.assertEquals(0, this.hedger.getWins());
+    }
+
+    @Test
+    public void testTooFewSamples() throws RESTRequestException {
+        this.hedger.configure(new HedgingSettings(true, HedgingSettings.DEFAULT_PERCENTILE,
+                TestRequestHedger.MIN_DELAY, 1));
+        Assert.assertEquals(-1, this.hedger.getDelay(this.operation));
+        final Thread caller = Thread.currentThread();
+        final String result = this.hedger.hedged(this.operation,
+                                                 new ResilientInvoker.Attempt<String>() {
+            @Override
+            public String perform() {
+                Assert.assertSame(caller, Thread.currentThread());
+                return TestRequestHedger.PRIMARY;
+            }
+        }).perform();
+        Assert.assertEquals(TestRequestHedger.PRIMARY, result);
+    }
+
+    @Test(timeout = 5000)
+    public void testBudgetLimitsHedges() throws RESTRequestException {
+        for (int i = 0; i < RequestHedger.HEDGE_BURST; i++) {
+            final SlowFirstAttempt attempt = new SlowFirstAttempt(TestRequestHedger.SHORT,
+                    Status.OK);
+            Assert.assertEquals(TestRequestHedger.HEDGE,
+                                this.hedger.hedged(this.operation, attempt).perform());
+        }
+        final SlowFirstAttempt attempt = new SlowFirstAttempt(TestRequestHedger.SHORT,
+                Status.OK);
+        Assert.assertEquals(TestRequestHedger.PRIMARY,
+                            this.hedger.hedged(this.operation, attempt).perform());
+        Assert.assertEquals(1, attempt.calls.get());
+        Assert.assertEquals(RequestHedger.HEDGE_BURST, this.hedger.getHedges());
+    }
+
+    @Test
+    public void testDelayFollowsLatency() {
+        Assert.assertEquals(TestRequestHedger.MIN_DELAY * 1000,
+                            this.hedger.getDelay(this.operation));
+        for (int i = 0; i < 100; i++) {
+            this.hedger.recordLatency(this.operation, 50000);
+        }
+        final long delay = this.hedger.getDelay(this.operation);
+        Assert.assertTrue(delay >= 50000);
+        Assert.assertTrue(delay < 51000);
+    }
+
+    @Test
+    public void testDelayIgnoresOtherOperations() {
+        for (int i = 0; i < 100; i++) {
+            this.hedger.recordLatency(this.operation + "/other", 50000);
+        }
+        Assert.assertEquals(TestRequestHedger.MIN_DELAY * 1000,
+                            this.hedger.getDelay(this.operation));
+    }
+}
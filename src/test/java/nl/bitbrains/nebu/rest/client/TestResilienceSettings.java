@@ -0,0 +1,82 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestResilienceSettings {
+
+    private Element newElement(final String tag, final String value) {
+        return new Element(tag).setText(value);
+    }
+
+    @Test
+    public void testDefaults() throws ParseException {
+        final ResilienceSettings settings = ResilienceSettings.fromXML(null);
+        Assert.assertEquals(0, settings.getRetryPolicy().getMaxRetries());
+        Assert.assertEquals(0, settings.getFailureThreshold());
+        Assert.assertEquals(ResilienceSettings.DEFAULT_OPEN_TIME, settings.getOpenTime());
+        Assert.assertNull(settings.getTimeouts(RequestSender.OP_GET_VIRTUAL_MACHINE));
+    }
+
+    @Test
+    public void testFromXML() throws ParseException {
+        final Element xml = new Element(ResilienceSettings.TAG_RESILIENCE);
+        xml.addContent(this.newElement(ResilienceSettings.TAG_RETRIES, "2"));
+        xml.addContent(this.newElement(ResilienceSettings.TAG_BACKOFF, "50"));
+        xml.addContent(this.newElement(ResilienceSettings.TAG_MAX_BACKOFF, "500"));
+        xml.addContent(this.newElement(ResilienceSettings.TAG_FAILURE_THRESHOLD, "5"));
+        xml.addContent(this.newElement(ResilienceSettings.TAG_OPEN_TIME, "1000"));
+        final Element operation = new Element(ResilienceSettings.TAG_OPERATION);
+        operation.setAttribute(ResilienceSettings.ATTRIBUTE_NAME,
+                               RequestSender.OP_GET_VIRTUAL_MACHINE);
+        operation.addContent(this.newElement(ClientSettings.TAG_READ_TIMEOUT, "2000"));
+        xml.addContent(operation);
+
+        final ResilienceSettings settings = ResilienceSettings.fromXML(xml);
+        Assert.assertEquals(2, settings.getRetryPolicy().getMaxRetries());
+        Assert.assertEquals(50, settings.getRetryPolicy().getBaseBackoff());
+        Assert.assertEquals(500, settings.getRetryPolicy().getMaxBackoff());
+        Assert.assertEquals(5, settings.getFailureThreshold());
+        Assert.assertEquals(1000, settings.getOpenTime());
+        final OperationTimeouts timeouts = settings
+                .getTimeouts(RequestSender.OP_GET_VIRTUAL_MACHINE);
+        Assert.assertEquals(OperationTimeouts.DEFAULT, timeouts.getConnectTimeout());
+        Assert.assertEquals(2000, timeouts.getReadTimeout());
+        Assert.assertNull(settings.getTimeouts(RequestSender.OP_GET_TOPOLOGY));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testNotANumber() throws ParseException {
+        final Element xml = new Element(ResilienceSettings.TAG_RESILIENCE);
+        xml.addContent(this.newElement(ResilienceSettings.TAG_RETRIES, "many"));
+        ResilienceSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testTooLarge() throws ParseException {
+        final Element xml = new Element(ResilienceSettings.TAG_RESILIENCE);
+        xml.addContent(this.newElement(ResilienceSettings.TAG_FAILURE_THRESHOLD, "4294967296"));
+        ResilienceSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalidValue() throws ParseException {
+        final Element xml = new Element(ResilienceSettings.TAG_RESILIENCE);
+        xml.addContent(this.newElement(ResilienceSettings.TAG_OPEN_TIME, "0"));
+        ResilienceSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testOperationWithoutName() throws ParseException {
+        final Element xml = new Element(ResilienceSettings.TAG_RESILIENCE);
+        xml.addContent(new Element(ResilienceSettings.TAG_OPERATION));
+        ResilienceSettings.fromXML(xml);
+    }
+}
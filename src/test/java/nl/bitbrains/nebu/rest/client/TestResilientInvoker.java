@@ -0,0 +1,156 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response.Status;
+
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestResilientInvoker {
+
+    private static final String OPERATION = RequestSender.OP_GET_VIRTUAL_MACHINE;
+    private static final String RESULT = "result";
+
+    private ResilientInvoker invoker;
+    private Invocation.Builder builder;
+
+    /**
+     * Attempt that fails a number of times with a status, and then succeeds.
+     */
+    private static final class FailingAttempt implements ResilientInvoker.Attempt<String> {
+        private final int failures;
+        private final Status status;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private FailingAttempt(final int failures, final Status status) {
+            this.failures = failures;
+            this.status = status;
+        }
+
+        @Override
+        public String perform() throws RESTRequestException {
+            if (this.attempts.incrementAndGet() <= this.failures) {
+                throw new RESTRequestException(this.status.toString(),
+                        this.status.getStatusCode());
+            }
+            return TestResilientInvoker.RESULT;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.invoker = new ResilientInvoker();
+        this.builder = Mockito.mock(Invocation.Builder.class);
+        Mockito.when(this.builder.property(Matchers.anyString(), Matchers.any()))
+                .thenReturn(this.builder);
+    }
+
+    private void configure(final int retries, final int failureThreshold,
+            final Map<String, OperationTimeouts> timeouts) {
+        this.invoker.configure(new ResilienceSettings(new RetryPolicy(retries, 1, 5),
+                failureThreshold, 10000, timeouts));
+    }
+
+    private String invoke(final FailingAttempt attempt, final boolean idempotent)
+            throws RESTRequestException {
+        return this.invoker.invoke(TestResilientInvoker.OPERATION, this.builder, idempotent,
+                                   attempt);
+    }
+
+    @Test
+    public void testDefaultsDoNotRetry() {
+        final FailingAttempt attempt = new FailingAttempt(1, Status.SERVICE_UNAVAILABLE);
+        try {
+            this.invoke(attempt, true);
+            Assert.fail();
+        } catch (final RESTRequestException e) {
+            Assert.assertEquals(Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getHttpCode());
+        }
+        Assert.assertEquals(1, attempt.attempts.get());
+        Mockito.verify(this.builder, Mockito.never()).property(Matchers.anyString(),
+                                                               Matchers.any());
+    }
+
+    @Test
+    public void testRetriesIdempotent() throws RESTRequestException {
+        this.configure(2, 0, new HashMap<String, OperationTimeouts>());
+        final FailingAttempt attempt = new FailingAttempt(2, Status.INTERNAL_SERVER_ERROR);
+        Assert.assertEquals(TestResilientInvoker.RESULT, this.invoke(attempt, true));
+        Assert.assertEquals(3, attempt.attempts.get());
+        Assert.assertEquals(2, this.invoker.getRetries());
+    }
+
+    @Test(expected = RESTRequestException.class)
+    public void testGivesUpAfterRetries() throws RESTRequestException {
+        this.configure(2, 0, new HashMap<String, OperationTimeouts>());
+        this.invoke(new FailingAttempt(3, Status.INTERNAL_SERVER_ERROR), true);
+    }
+
+    @Test
+    public void testDoesNotRetryNonIdempotent() {
+        this.configure(2, 0, new HashMap<String, OperationTimeouts>());
+        final FailingAttempt attempt = new FailingAttempt(1, Status.INTERNAL_SERVER_ERROR);
+        try {
+            this.invoke(attempt, false);
+            Assert.fail();
+        } catch (final RESTRequestException e) {
+            Assert.assertEquals(1, attempt.attempts.get());
+        }
+    }
+
+    @Test
+    public void testDoesNotRetryClientErrors() {
+        this.configure(2, 1, new HashMap<String, OperationTimeouts>());
+        final FailingAttempt attempt = new FailingAttempt(1, Status.NOT_FOUND);
+        try {
+            this.invoke(attempt, true);
+            Assert.fail();
+        } catch (final RESTRequestException e) {
+            Assert.assertEquals(1, attempt.attempts.get());
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, this.invoker.getBreaker().getState());
+    }
+
+    @Test
+    public void testBreakerFailsFast() {
+        this.configure(5, 2, new HashMap<String, OperationTimeouts>());
+        final FailingAttempt attempt = new FailingAttempt(10, Status.BAD_GATEWAY);
+        try {
+            this.invoke(attempt, true);
+            Assert.fail();
+        } catch (final RESTRequestException e) {
+            Assert.assertEquals(Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getHttpCode());
+            Assert.assertEquals(ResilientInvoker.BREAKER_OPEN, e.getMessage());
+        }
+        // The retry after the second failure is rejected by the breaker.
+        Assert.assertEquals(2, attempt.attempts.get());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, this.invoker.getBreaker().getState());
+        Assert.assertEquals(1, this.invoker.getRejected());
+    }
+
+    @Test
+    public void testAppliesTimeouts() throws RESTRequestException {
+        final Map<String, OperationTimeouts> timeouts = new HashMap<String, OperationTimeouts>();
+        timeouts.put(TestResilientInvoker.OPERATION, new OperationTimeouts(
+                OperationTimeouts.DEFAULT, 2000));
+        this.configure(0, 0, timeouts);
+        this.invoke(new FailingAttempt(0, Status.OK), true);
+        Mockito.verify(this.builder).property(ClientProperties.READ_TIMEOUT, 2000);
+        Mockito.verify(this.builder, Mockito.never())
+                .property(Matchers.eq(ClientProperties.CONNECT_TIMEOUT), Matchers.any());
+    }
+}
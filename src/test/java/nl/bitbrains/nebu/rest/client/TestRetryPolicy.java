@@ -0,0 +1,57 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestRetryPolicy {
+
+    @Test
+    public void testBackoffIsJitteredBelowBound() {
+        final RetryPolicy policy = new RetryPolicy(5, 100, 1000);
+        final Random random = new Random(1);
+        long max = 0;
+        for (int i = 0; i < 1000; i++) {
+            final long backoff = policy.getBackoff(0, random);
+            Assert.assertTrue(backoff >= 0 && backoff <= 100);
+            max = Math.max(max, backoff);
+        }
+        Assert.assertTrue(max > 50);
+    }
+
+    @Test
+    public void testBackoffGrowsUpToMax() {
+        final RetryPolicy policy = new RetryPolicy(5, 100, 1000);
+        final Random random = new Random(1);
+        long max = 0;
+        for (int i = 0; i < 1000; i++) {
+            final long backoff = policy.getBackoff(2, random);
+            Assert.assertTrue(backoff <= 400);
+            max = Math.max(max, backoff);
+        }
+        Assert.assertTrue(max > 200);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(policy.getBackoff(100, random) <= 1000);
+        }
+    }
+
+    @Test
+    public void testZeroBackoff() {
+        Assert.assertEquals(0, new RetryPolicy(1, 0, 0).getBackoff(3, new Random()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRetries() {
+        new RetryPolicy(-1, 100, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBackoffAboveMax() {
+        new RetryPolicy(1, 1000, 100);
+    }
+}
@@ -0,0 +1,103 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+import nl.bitbrains.nebu.common.topology.PhysicalDataCenter;
+import nl.bitbrains.nebu.common.topology.PhysicalDataCenterBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalHostBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalRack;
+import nl.bitbrains.nebu.common.topology.PhysicalRackBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalStoreBuilder;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.common.topology.factory.TopologyFactories;
+
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestStreamingTopologyParser {
+
+    private static final int HOSTS = 50;
+
+    private PhysicalTopology constructTopology() {
+        final PhysicalTopology topology = new PhysicalTopology();
+        final PhysicalDataCenter dc = new PhysicalDataCenterBuilder().withUuid("dc").build();
+        final PhysicalRack rack = new PhysicalRackBuilder().withUuid("rack").build();
+        topology.addDataCenter(dc);
+        topology.addRackToDataCenter(rack, dc);
+        for (int i = 0; i < TestStreamingTopologyParser.HOSTS; i++) {
+            topology.addCPUToRack(new PhysicalHostBuilder().withUuid("host" + i).build(), rack);
+        }
+        topology.addDiskToRack(new PhysicalStoreBuilder().withUuid("store").withCapacity(1).build(),
+                               rack);
+        return topology;
+    }
+
+    private InputStream toStream(final PhysicalTopology topology, final Format format) {
+        final Element elem = TopologyFactories.createDefault().getPhysicalRootFactory()
+                .toXML(topology.getRoot());
+        final String xml = new XMLOutputter(format).outputString(elem);
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private InputStream toStream(final String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParseCompact() throws ParseException {
+        final PhysicalTopology topology = this.constructTopology();
+        Assert.assertEquals(topology, StreamingTopologyParser.parse(this
+                .toStream(topology, Format.getCompactFormat())));
+    }
+
+    @Test
+    public void testParsePretty() throws ParseException {
+        final PhysicalTopology topology = this.constructTopology();
+        Assert.assertEquals(topology, StreamingTopologyParser.parse(this
+                .toStream(topology, Format.getPrettyFormat())));
+    }
+
+    @Test
+    public void testParseEmpty() throws ParseException {
+        final PhysicalTopology topology = new PhysicalTopology();
+        Assert.assertEquals(topology, StreamingTopologyParser.parse(this
+                .toStream(topology, Format.getRawFormat())));
+    }
+
+    @Test
+    public void testReadElementSkipsCommentsAndWhitespace() throws ParseException {
+        final Element elem = StreamingTopologyParser.readElement(this
+                .toStream("<?xml version=\"1.0\"?><!-- c --><a id=\"1\">\n  <b>text</b>\n"
+                        + "  <!-- c --><c/>\n</a>"));
+        Assert.assertEquals("a", elem.getName());
+        Assert.assertEquals("1", elem.getAttributeValue("id"));
+        Assert.assertEquals(2, elem.getContentSize());
+        Assert.assertEquals("text", elem.getChildText("b"));
+        Assert.assertNotNull(elem.getChild("c"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMalformed() throws ParseException {
+        StreamingTopologyParser.parse(this.toStream("<a><b></a>"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testNoRoot() throws ParseException {
+        StreamingTopologyParser.readElement(this.toStream(""));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testWrongRoot() throws ParseException {
+        StreamingTopologyParser.parse(this.toStream("<hallo/>"));
+    }
+}
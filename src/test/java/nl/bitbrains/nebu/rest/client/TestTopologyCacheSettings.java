@@ -0,0 +1,70 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestTopologyCacheSettings {
+
+    private Element newPolicyElement(final String name, final String interval,
+            final String staleness) {
+        final Element xml = new Element(name);
+        xml.addContent(new Element(TopologyCacheSettings.TAG_REFRESH_INTERVAL).setText(interval));
+        xml.addContent(new Element(TopologyCacheSettings.TAG_MAX_STALENESS).setText(staleness));
+        return xml;
+    }
+
+    @Test
+    public void testDefaultsDisabled() throws ParseException {
+        final TopologyCacheSettings settings = TopologyCacheSettings.fromXML(null);
+        Assert.assertFalse(settings.isEnabled());
+        Assert.assertEquals(TopologyCacheSettings.DEFAULT_REFRESH_INTERVAL, settings
+                .getTopologyPolicy().getRefreshInterval());
+    }
+
+    @Test
+    public void testFromXML() throws ParseException {
+        final Element xml = this.newPolicyElement(TopologyCacheSettings.TAG_TOPOLOGY_CACHE,
+                                                  "100",
+                                                  "1000");
+        xml.setAttribute(TopologyCacheSettings.ATTRIBUTE_ENABLED, "true");
+        final Element template = this.newPolicyElement(TopologyCacheSettings.TAG_TEMPLATE,
+                                                       "10",
+                                                       "20");
+        template.setAttribute(TopologyCacheSettings.ATTRIBUTE_ID, "tmpl");
+        xml.addContent(template);
+
+        final TopologyCacheSettings settings = TopologyCacheSettings.fromXML(xml);
+        Assert.assertTrue(settings.isEnabled());
+        Assert.assertEquals(100, settings.getTopologyPolicy().getRefreshInterval());
+        Assert.assertEquals(1000, settings.getTopologyPolicy().getMaxStaleness());
+        Assert.assertEquals(10, settings.getTemplatePolicy("tmpl").getRefreshInterval());
+        Assert.assertEquals(20, settings.getTemplatePolicy("tmpl").getMaxStaleness());
+        Assert.assertEquals(100, settings.getTemplatePolicy("other").getRefreshInterval());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testStalenessBelowInterval() throws ParseException {
+        TopologyCacheSettings.fromXML(this
+                .newPolicyElement(TopologyCacheSettings.TAG_TOPOLOGY_CACHE, "100", "10"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testNotANumber() throws ParseException {
+        TopologyCacheSettings.fromXML(this
+                .newPolicyElement(TopologyCacheSettings.TAG_TOPOLOGY_CACHE, "often", "10"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testTemplateWithoutId() throws ParseException {
+        final Element xml = new Element(TopologyCacheSettings.TAG_TOPOLOGY_CACHE);
+        xml.addContent(new Element(TopologyCacheSettings.TAG_TEMPLATE));
+        TopologyCacheSettings.fromXML(xml);
+    }
+}
@@ -0,0 +1,50 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestVMCacheSettings {
+
+    private Element newElement(final String maxSize, final String timeToLive) {
+        final Element xml = new Element(VMCacheSettings.TAG_VM_CACHE);
+        xml.addContent(new Element(VMCacheSettings.TAG_MAX_SIZE).setText(maxSize));
+        xml.addContent(new Element(VMCacheSettings.TAG_TIME_TO_LIVE).setText(timeToLive));
+        return xml;
+    }
+
+    @Test
+    public void testDefaults() throws ParseException {
+        final VMCacheSettings settings = VMCacheSettings.fromXML(null);
+        Assert.assertEquals(VMCacheSettings.DEFAULT_MAX_SIZE, settings.getMaxSize());
+        Assert.assertEquals(VMCacheSettings.DEFAULT_TIME_TO_LIVE, settings.getTimeToLive());
+    }
+
+    @Test
+    public void testFromXML() throws ParseException {
+        final VMCacheSettings settings = VMCacheSettings.fromXML(this.newElement("50", "1000"));
+        Assert.assertEquals(50, settings.getMaxSize());
+        Assert.assertEquals(1000, settings.getTimeToLive());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testNotANumber() throws ParseException {
+        VMCacheSettings.fromXML(this.newElement("many", "1000"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalidSize() throws ParseException {
+        VMCacheSettings.fromXML(this.newElement("0", "1000"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testTooLarge() throws ParseException {
+        VMCacheSettings.fromXML(this.newElement("4294967296", "1000"));
+    }
+}
@@ -1,11 +1,14 @@
 package nl.bitbrains.nebu.rest.client;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -26,6 +29,7 @@ import nl.bitbrains.nebu.rest.client.RequestSender;
 
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.test.JerseyTest;
+import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.junit.Assert;
 import org.junit.Before;
@@ -57,6 +61,8 @@ public class TestVMsRequestSender extends JerseyTest {
     @Path(RequestBuilder.URI_VIRTUAL_MACHINES)
     public static class VirtualMachinesResource {
         public static TestServerStatus status;
+        public static boolean bulkSupported = true;
+        public static int bulkRequests;
         public static List<String> inputVms = new ArrayList<String>();
         public static VirtualMachine inputVm = new VirtualMachineBuilder().withUuid("uuid")
                 .build();
@@ -80,6 +86,28 @@ public class TestVMsRequestSender extends JerseyTest {
             return rep;
         }
 
+        @GET
+        @Path(RequestBuilder.URI_BULK)
+        public Response getVirtualMachinesBulk(
+                @QueryParam(RequestBuilder.QUERY_PARAM_UUID) final List<String> uuids)
+                throws JDOMException {
+            VirtualMachinesResource.bulkRequests++;
+            if (!VirtualMachinesResource.bulkSupported) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            final List<VirtualMachine> vms = new ArrayList<VirtualMachine>();
+            for (final String uuid : uuids) {
+                vms.add(new VirtualMachineBuilder().withUuid(uuid).withHost("host").build());
+            }
+            final Element elem = XMLConverter
+                    .convertCollectionToJDOMElement(vms,
+                                                    new VirtualMachineFactory(),
+                                                    VirtualMachineFactory.TAG_LIST_ELEMENT_ROOT,
+                                                    VirtualMachineFactory.TAG_ELEMENT_ROOT);
+            return Response.ok(XMLConverter.convertJDOMElementW3CDocument(elem),
+                               MediaType.APPLICATION_XML).build();
+        }
+
         @GET
         @Path("{uuid}")
         public Response getVirtualMachineInfo(@PathParam("uuid") final String uuid)
@@ -117,6 +145,10 @@ public class TestVMsRequestSender extends JerseyTest {
         this.setUpConfigMock("localhost", this.getPort());
 
         CacheManager.resetCache();
+        RequestSender.get().clearVirtualMachineCaches();
+        RequestSender.get().resetBulkSupport();
+        VirtualMachinesResource.bulkSupported = true;
+        VirtualMachinesResource.bulkRequests = 0;
     }
 
     private void setUpConfigMock(final String ipAddress, final int port) {
@@ -183,6 +215,24 @@ public class TestVMsRequestSender extends JerseyTest {
         Assert.assertEquals(VirtualMachinesResource.inputVm, vm);
     }
 
+    @Test
+    public void testVMIsCachedUntilInvalidated() throws CacheException {
+        VirtualMachinesResource.status = TestServerStatus.OK;
+        final VirtualMachine vm = RequestSender.get().getVirtualMachine("uuid");
+        VirtualMachinesResource.status = TestServerStatus.INTERNAL_SERVER_ERROR;
+        Assert.assertSame(vm, RequestSender.get().getVirtualMachine("uuid"));
+        RequestSender.get().invalidateVirtualMachine("uuid");
+        boolean caught = false;
+        try {
+            RequestSender.get().getVirtualMachine("uuid");
+        } catch (final RESTRequestException e) {
+            Assert.assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
+                                e.getHttpCode());
+            caught = true;
+        }
+        Assert.assertTrue(caught);
+    }
+
     @Test
     public void testWrongIPVMRequest() throws InvalidConfigurationException, CacheException {
         this.setUpConfigMock("thisisawrongip", this.getPort());
@@ -237,4 +287,37 @@ public class TestVMsRequestSender extends JerseyTest {
         }
         Assert.assertTrue(caught);
     }
+
+    @Test
+    public void testBulkVMDetailsRequest() {
+        VirtualMachinesResource.status = TestServerStatus.OK;
+        final Map<String, VirtualMachine> vms = RequestSender.get()
+                .getVirtualMachineDetails(Arrays.asList("a", "b", "c"));
+        Assert.assertEquals(3, vms.size());
+        Assert.assertEquals("host", vms.get("b").getHost());
+        Assert.assertEquals(1, VirtualMachinesResource.bulkRequests);
+    }
+
+    @Test
+    public void testBulkVMDetailsFallback() {
+        VirtualMachinesResource.status = TestServerStatus.OK;
+        VirtualMachinesResource.bulkSupported = false;
+        final Map<String, VirtualMachine> vms = RequestSender.get()
+                .getVirtualMachineDetails(Arrays.asList("a", "b", "c"));
+        Assert.assertEquals(3, vms.size());
+        Assert.assertEquals("c", vms.get("c").getUniqueIdentifier());
+
+        // The VMM is not asked for the bulk resource again.
+        RequestSender.get().getVirtualMachineDetails(Arrays.asList("d"));
+        Assert.assertEquals(1, VirtualMachinesResource.bulkRequests);
+    }
+
+    @Test
+    public void testBulkVMDetailsFailingVMsLeftOut() {
+        VirtualMachinesResource.status = TestServerStatus.PAGE_NOT_FOUND;
+        VirtualMachinesResource.bulkSupported = false;
+        final Map<String, VirtualMachine> vms = RequestSender.get()
+                .getVirtualMachineDetails(Arrays.asList("a", "b"));
+        Assert.assertTrue(vms.isEmpty());
+    }
 }
@@ -87,6 +87,7 @@ public class TestVirtStatusRequestSender extends JerseyTest {
         this.setUpConfigMock("localhost", this.getPort());
 
         CacheManager.resetCache();
+        RequestSender.get().clearVirtualMachineCaches();
     }
 
     private void setUpConfigMock(final String ipAddress, final int port) {
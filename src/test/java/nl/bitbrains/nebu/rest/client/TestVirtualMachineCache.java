@@ -0,0 +1,186 @@
+package nl.bitbrains.nebu.rest.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheLoader;
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestVirtualMachineCache {
+
+    private static final double DELTA = 1e-9;
+
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        this.loads = new AtomicInteger();
+    }
+
+    private CacheLoader<Object> newLoader(final String uuid) {
+        return new CacheLoader<Object>() {
+            @Override
+            public Object refresh() {
+                TestVirtualMachineCache.this.loads.incrementAndGet();
+                return new VirtualMachineBuilder().withUuid(uuid).build();
+            }
+        };
+    }
+
+    private VirtualMachineCache newCache(final int maxSize, final long timeToLive) {
+        return new VirtualMachineCache(new LoadCoalescer(), new VMCacheSettings(maxSize,
+                timeToLive));
+    }
+
+    private VirtualMachine get(final VirtualMachineCache cache, final String uuid)
+            throws CacheException {
+        return cache.get(uuid, this.newLoader(uuid));
+    }
+
+    @Test
+    public void testLoadsOnce() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(10, 60000);
+        final VirtualMachine vm = this.get(cache, "a");
+        Assert.assertEquals("a", vm.getUniqueIdentifier());
+        Assert.assertSame(vm, this.get(cache, "a"));
+        Assert.assertEquals(1, this.loads.get());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(0.5, cache.getHitRatio(), TestVirtualMachineCache.DELTA);
+    }
+
+    @Test
+    public void testNullIsNotCached() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(10, 60000);
+        Assert.assertNull(cache.get("a", new CacheLoader<Object>() {
+            @Override
+            public Object refresh() {
+                return null;
+            }
+        }));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpires() throws CacheException, InterruptedException {
+        final VirtualMachineCache cache = this.newCache(10, 20);
+        final VirtualMachine vm = this.get(cache, "a");
+        Thread.sleep(50);
+        Assert.assertNotSame(vm, this.get(cache, "a"));
+        Assert.assertEquals(2, this.loads.get());
+        Assert.assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    public void testInvalidate() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(10, 60000);
+        this.get(cache, "a");
+        cache.invalidate("a");
+        cache.invalidate("b");
+        Assert.assertFalse(cache.contains("a"));
+        Assert.assertEquals(1, cache.getInvalidations());
+        this.get(cache, "a");
+        Assert.assertEquals(2, this.loads.get());
+    }
+
+    @Test
+    public void testInvalidateDuringLoad() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(10, 60000);
+        final VirtualMachine vm = cache.get("a", new CacheLoader<Object>() {
+            @Override
+            public Object refresh() {
+                final VirtualMachine loaded = new VirtualMachineBuilder().withUuid("a").build();
+                cache.invalidate("a");
+                return loaded;
+            }
+        });
+        Assert.assertEquals("a", vm.getUniqueIdentifier());
+        Assert.assertFalse(cache.contains("a"));
+        this.get(cache, "a");
+        Assert.assertTrue(cache.contains("a"));
+    }
+
+    @Test
+    public void testClearDuringLoad() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(10, 60000);
+        cache.get("a", new CacheLoader<Object>() {
+            @Override
+            public Object refresh() {
+                cache.clear();
+                return new VirtualMachineBuilder().withUuid("a").build();
+            }
+        });
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCountersInRegistry() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(1, 60000);
+        final String name = "test-" + System.nanoTime();
+        cache.registerMetrics(name);
+        this.get(cache, "a");
+        this.get(cache, "a");
+        this.get(cache, "b");
+        final String labels = MetricsRegistry.labels(VirtualMachineCache.LABEL_CACHE, name);
+        final MetricsRegistry registry = MetricsRegistry.get();
+        Assert.assertEquals(1, registry.counter(VirtualMachineCache.METRIC_HITS, labels).get());
+        Assert.assertEquals(2, registry.counter(VirtualMachineCache.METRIC_MISSES, labels)
+                .get());
+        Assert.assertEquals(1, registry.counter(VirtualMachineCache.METRIC_EVICTIONS, labels)
+                .get());
+    }
+
+    @Test
+    public void testBounded() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(3, 60000);
+        for (int i = 0; i < 10; i++) {
+            this.get(cache, "vm" + i);
+        }
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(7, cache.getEvictions());
+        Assert.assertFalse(cache.contains("vm0"));
+        Assert.assertTrue(cache.contains("vm9"));
+    }
+
+    @Test
+    public void testFrequentlyUsedSurviveScan() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(5, 60000);
+        this.get(cache, "a");
+        this.get(cache, "b");
+        this.get(cache, "a");
+        this.get(cache, "b");
+        for (int i = 0; i < 10; i++) {
+            this.get(cache, "vm" + i);
+        }
+        Assert.assertEquals(5, cache.size());
+        Assert.assertTrue(cache.contains("a"));
+        Assert.assertTrue(cache.contains("b"));
+        Assert.assertTrue(cache.contains("vm9"));
+        Assert.assertFalse(cache.contains("vm0"));
+    }
+
+    @Test
+    public void testProtectedSegmentIsBounded() throws CacheException {
+        final VirtualMachineCache cache = this.newCache(5, 60000);
+        // Protects all five, of which only four fit in the protected segment.
+        for (int i = 0; i < 5; i++) {
+            this.get(cache, "vm" + i);
+            this.get(cache, "vm" + i);
+        }
+        this.get(cache, "new");
+        Assert.assertEquals(5, cache.size());
+        Assert.assertFalse(cache.contains("vm0"));
+        Assert.assertTrue(cache.contains("vm1"));
+        Assert.assertTrue(cache.contains("new"));
+    }
+}
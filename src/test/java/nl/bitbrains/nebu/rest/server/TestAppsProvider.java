@@ -1,5 +1,9 @@
 package nl.bitbrains.nebu.rest.server;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +41,9 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.w3c.dom.Document;
 
+import com.owlike.genson.Genson;
+import com.owlike.genson.stream.ObjectWriter;
+
 /**
  * Tests for the {@link AppsProvider} class.
  * 
@@ -57,7 +64,7 @@ public class TestAppsProvider extends JerseyTest {
 
     @Override
     protected javax.ws.rs.core.Application configure() {
-        return new ResourceConfig(AppsProvider.class);
+        return new ResourceConfig(AppsProvider.class, JSONProvider.class);
     }
 
     @Override
@@ -87,6 +94,19 @@ public class TestAppsProvider extends JerseyTest {
         return XMLConverter.convertJDOMElementW3CDocument(root);
     }
 
+    private String toJSON(final Element elem) throws UnsupportedEncodingException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final ObjectWriter writer = new Genson().createWriter(stream, StandardCharsets.UTF_8);
+        JSONConverter.writeDocument(elem, writer);
+        writer.flush();
+        return stream.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private Element fromJSON(final String json) {
+        return JSONConverter.readDocument(new Genson().createReader(new ByteArrayInputStream(json
+                .getBytes(StandardCharsets.UTF_8))));
+    }
+
     @Test
     public void testCacheException() throws CacheException {
         this.setUpCacheManager(new CacheException("message"));
@@ -137,6 +157,56 @@ public class TestAppsProvider extends JerseyTest {
         Assert.assertEquals(2, apps.size());
     }
 
+    @Test
+    public void testGETRootAppsJSON() throws CacheException, ParseException {
+        final Map<String, Application> map = new HashMap<String, Application>();
+        final String id1 = "id1";
+        map.put(id1, new ApplicationBuilder().withUuid(id1).withName(id1).build());
+        this.setUpCacheManager(AppsProvider.CACHE_KEY_APPS, map);
+
+        final Response rep = this.target(AppsProvider.PATH).request(MediaType.APPLICATION_JSON)
+                .get();
+
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), rep.getStatus());
+        Assert.assertTrue(MediaType.APPLICATION_JSON_TYPE.isCompatible(rep.getMediaType()));
+        final Element elem = this.fromJSON(rep.readEntity(String.class));
+        final List<Application> apps = XMLConverter
+                .convertJDOMElementToList(elem, new ApplicationFactory(false));
+        Assert.assertEquals(1, apps.size());
+        Assert.assertEquals(id1, apps.get(0).getUniqueIdentifier());
+    }
+
+    @Test
+    public void testPostNewAppJSON() throws CacheException, JDOMException,
+            UnsupportedEncodingException {
+        final Map<String, Application> map = new HashMap<String, Application>();
+        this.setUpCacheManager(AppsProvider.CACHE_KEY_APPS, map);
+        final Element body = XMLConverter.convertW3CDocumentJDOMElement(this
+                .getPostRootBody("name"));
+
+        final Entity<String> entity = Entity.entity(this.toJSON(body),
+                                                    MediaType.APPLICATION_JSON_TYPE);
+
+        final Response rep = this.target(AppsProvider.PATH).request().post(entity);
+
+        Assert.assertEquals(Response.Status.CREATED.getStatusCode(), rep.getStatus());
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals("name", map.values().iterator().next().getName());
+    }
+
+    @Test
+    public void testPostNewAppMalformedJSON() throws CacheException {
+        final Map<String, Application> map = new HashMap<String, Application>();
+        this.setUpCacheManager(AppsProvider.CACHE_KEY_APPS, map);
+
+        final Entity<String> entity = Entity.entity("[1, 2", MediaType.APPLICATION_JSON_TYPE);
+
+        final Response rep = this.target(AppsProvider.PATH).request().post(entity);
+
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), rep.getStatus());
+        Assert.assertTrue(map.isEmpty());
+    }
+
     @Test
     public void testPostNewApp() throws CacheException, ParseException, JDOMException {
         final Map<String, Application> map = new HashMap<String, Application>();
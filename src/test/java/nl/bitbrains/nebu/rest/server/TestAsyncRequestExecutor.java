@@ -0,0 +1,136 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestAsyncRequestExecutor {
+
+    private static final long WAIT = 1000;
+
+    private AsyncResponse response;
+
+    @Before
+    public void setUp() {
+        this.response = Mockito.mock(AsyncResponse.class);
+        Mockito.when(this.response.resume(Matchers.any())).thenReturn(true);
+        AsyncRequestExecutor.get().configure(new AsyncSettings(2, 500));
+    }
+
+    @After
+    public void tearDown() {
+        AsyncRequestExecutor.get().configure(new AsyncSettings());
+    }
+
+    @Test
+    public void testConfigure() {
+        Assert.assertEquals(2, AsyncRequestExecutor.get().getThreads());
+        Assert.assertEquals(500, AsyncRequestExecutor.get().getTimeout());
+    }
+
+    @Test
+    public void testSubmitResumes() {
+        final Response rep = Response.ok().build();
+        AsyncRequestExecutor.get().submit(this.response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return rep;
+            }
+        });
+        Mockito.verify(this.response).setTimeout(500, TimeUnit.MILLISECONDS);
+        Mockito.verify(this.response, Mockito.timeout(TestAsyncRequestExecutor.WAIT))
+                .resume(rep);
+    }
+
+    @Test
+    public void testSubmitAfterShutdown() {
+        AsyncRequestExecutor.get().shutdown();
+        final Response rep = Response.ok().build();
+        AsyncRequestExecutor.get().submit(this.response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return rep;
+            }
+        });
+        Mockito.verify(this.response, Mockito.timeout(TestAsyncRequestExecutor.WAIT))
+                .resume(rep);
+        Assert.assertEquals(2, AsyncRequestExecutor.get().getThreads());
+    }
+
+    @Test
+    public void testSubmitResumesWithException() {
+        final IllegalStateException e = new IllegalStateException();
+        AsyncRequestExecutor.get().submit(this.response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                throw e;
+            }
+        });
+        Mockito.verify(this.response, Mockito.timeout(TestAsyncRequestExecutor.WAIT))
+                .resume(e);
+    }
+
+    @Test
+    public void testFullQueueResumesUnavailable() throws InterruptedException {
+        AsyncRequestExecutor.get().configure(new AsyncSettings(1, 500));
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<Response> blocking = new Callable<Response>() {
+            @Override
+            public Response call() throws InterruptedException {
+                release.await();
+                return Response.ok().build();
+            }
+        };
+        for (int i = 0; i <= AsyncRequestExecutor.QUEUE_PER_THREAD; i++) {
+            AsyncRequestExecutor.get().submit(Mockito.mock(AsyncResponse.class), blocking);
+        }
+        AsyncRequestExecutor.get().submit(this.response, blocking);
+        release.countDown();
+        final ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        Mockito.verify(this.response).resume(resumed.capture());
+        Assert.assertEquals(Status.SERVICE_UNAVAILABLE.getStatusCode(), resumed.getValue()
+                .getStatus());
+    }
+
+    @Test
+    public void testTimeoutResumesUnavailable() {
+        AsyncRequestExecutor.get().submit(this.response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return Response.ok().build();
+            }
+        });
+        final ArgumentCaptor<TimeoutHandler> handler = ArgumentCaptor
+                .forClass(TimeoutHandler.class);
+        Mockito.verify(this.response).setTimeoutHandler(handler.capture());
+        handler.getValue().handleTimeout(this.response);
+        final ArgumentCaptor<Object> resumed = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(this.response, Mockito.atLeastOnce()).resume(resumed.capture());
+        boolean unavailable = false;
+        for (final Object value : resumed.getAllValues()) {
+            if (value instanceof Response
+                    && ((Response) value).getStatus() == Status.SERVICE_UNAVAILABLE
+                            .getStatusCode()) {
+                unavailable = true;
+            }
+        }
+        Assert.assertTrue(unavailable);
+    }
+}
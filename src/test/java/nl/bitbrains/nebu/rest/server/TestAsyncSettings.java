@@ -0,0 +1,57 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestAsyncSettings {
+
+    @Test
+    public void testDefaults() throws ParseException {
+        final AsyncSettings settings = AsyncSettings.fromXML(null);
+        Assert.assertEquals(AsyncSettings.DEFAULT_THREADS, settings.getThreads());
+        Assert.assertEquals(AsyncSettings.DEFAULT_TIMEOUT, settings.getTimeout());
+    }
+
+    @Test
+    public void testFromXML() throws ParseException {
+        final Element xml = new Element(AsyncSettings.TAG_ASYNC);
+        xml.addContent(new Element(AsyncSettings.TAG_THREADS).setText("4"));
+        xml.addContent(new Element(AsyncSettings.TAG_TIMEOUT).setText(" 500 "));
+        final AsyncSettings settings = AsyncSettings.fromXML(xml);
+        Assert.assertEquals(4, settings.getThreads());
+        Assert.assertEquals(500, settings.getTimeout());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testFromXMLNotANumber() throws ParseException {
+        final Element xml = new Element(AsyncSettings.TAG_ASYNC);
+        xml.addContent(new Element(AsyncSettings.TAG_TIMEOUT).setText("soon"));
+        AsyncSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testFromXMLTooLarge() throws ParseException {
+        final Element xml = new Element(AsyncSettings.TAG_ASYNC);
+        xml.addContent(new Element(AsyncSettings.TAG_THREADS).setText("4294967296"));
+        AsyncSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testFromXMLInvalidThreads() throws ParseException {
+        final Element xml = new Element(AsyncSettings.TAG_ASYNC);
+        xml.addContent(new Element(AsyncSettings.TAG_THREADS).setText("0"));
+        AsyncSettings.fromXML(xml);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTimeout() {
+        new AsyncSettings(1, -1);
+    }
+}
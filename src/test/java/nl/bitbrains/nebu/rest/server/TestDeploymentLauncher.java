@@ -0,0 +1,84 @@
+package nl.bitbrains.nebu.rest.server;
+
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.ApplicationBuilder;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.DeploymentBuilder;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestDeploymentLauncher {
+
+    private static final long WAIT = 1000;
+
+    @After
+    public void tearDown() {
+        DeploymentLauncher.get().setParallelism(DeploymentLauncher.DEFAULT_PARALLELISM);
+        DeploymentLauncher.get().setRetention(DeploymentLauncher.DEFAULT_RETENTION);
+    }
+
+    @Test
+    public void testSetParallelism() {
+        DeploymentLauncher.get().setParallelism(2);
+        Assert.assertEquals(2, DeploymentLauncher.get().getParallelism());
+        DeploymentLauncher.get().setParallelism(20);
+        Assert.assertEquals(20, DeploymentLauncher.get().getParallelism());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParallelism() {
+        DeploymentLauncher.get().setParallelism(0);
+    }
+
+    @Test
+    public void testStartAfterShutdown() throws InterruptedException {
+        DeploymentLauncher.get().setParallelism(2);
+        DeploymentLauncher.get().shutdown();
+        Assert.assertEquals(2, DeploymentLauncher.get().getParallelism());
+        final VMDeploymentSpecification spec = Mockito.mock(VMDeploymentSpecification.class);
+        Mockito.when(spec.getTemplate()).thenThrow(new IllegalStateException());
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        final Deployment deployment = new DeploymentBuilder().withUuid("shutdown")
+                .withSpec(spec).build();
+        final LaunchProgress progress = DeploymentLauncher.get().start(app, deployment);
+        final long deadline = System.currentTimeMillis() + TestDeploymentLauncher.WAIT;
+        while (!progress.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(progress.isComplete());
+        Assert.assertEquals(LaunchProgress.State.FAILED, progress.getState(0));
+        Assert.assertFalse(deployment.isLaunched());
+    }
+
+    @Test
+    public void testFinishedLaunchIsKept() {
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        final Deployment deployment = new DeploymentBuilder().withUuid("kept").build();
+        final LaunchProgress progress = DeploymentLauncher.get().start(app, deployment);
+        Assert.assertTrue(progress.isComplete());
+        Assert.assertSame(progress, DeploymentLauncher.get().getProgress("kept"));
+    }
+
+    @Test
+    public void testFinishedLaunchIsPruned() throws InterruptedException {
+        final Application app = new ApplicationBuilder().withUuid("app").build();
+        final Deployment deployment = new DeploymentBuilder().withUuid("pruned").build();
+        DeploymentLauncher.get().start(app, deployment);
+        DeploymentLauncher.get().setRetention(0);
+        Thread.sleep(2);
+        Assert.assertNull(DeploymentLauncher.get().getProgress("pruned"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRetention() {
+        DeploymentLauncher.get().setRetention(-1);
+    }
+}
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -64,6 +65,8 @@ import org.w3c.dom.Document;
 @PowerMockIgnore("javax.management.*")
 public class TestDeploymentProvider extends JerseyTest {
 
+    private static final long LAUNCH_WAIT = 5000;
+
     @Mock
     private RequestSender reqSender;
 
@@ -159,6 +162,32 @@ public class TestDeploymentProvider extends JerseyTest {
                                                  Matchers.anyString())).thenThrow(e);
     }
 
+    private Response postStart() {
+        final Entity<Document> entity = Entity.entity(this.doc, MediaType.APPLICATION_XML_TYPE);
+        return this.target(AppsProvider.PATH).path(this.appUUID).path(DeploymentsProvider.PATH)
+                .path(this.depID).path(DeploymentProvider.PATH_START).request().post(entity);
+    }
+
+    private Element awaitLaunch() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TestDeploymentProvider.LAUNCH_WAIT;
+        while (DeploymentLauncher.get().isLaunching(this.dep)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(DeploymentLauncher.get().isLaunching(this.dep));
+        return DeploymentLauncher.get().getProgress(this.depID).toXML();
+    }
+
+    private int countSpecs(final Element progress, final LaunchProgress.State state) {
+        int count = 0;
+        for (final Element spec : progress.getChildren(LaunchProgress.TAG_SPEC)) {
+            if (state.toXMLName().equals(spec.getAttributeValue(LaunchProgress.ATTRIBUTE_STATE))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private void addSpecToDep(final Deployment dep, final String templateId, final String host) {
         final VMTemplate template = new VMTemplateBuilder().withUuid(templateId)
                 .withName(templateId).build();
@@ -274,16 +303,15 @@ public class TestDeploymentProvider extends JerseyTest {
     }
 
     @Test
-    public void testPostStartNoSpecs() throws CacheException {
+    public void testPostStartNoSpecs() throws Exception {
         this.setDeploymentReal();
         this.setApplicationReal();
         this.setNonEmptyApplicationMap();
         this.setCacheMock();
-        final Entity<Document> entity = Entity.entity(this.doc, MediaType.APPLICATION_XML_TYPE);
-        final Response rep = this.target(AppsProvider.PATH).path(this.appUUID)
-                .path(DeploymentsProvider.PATH).path(this.depID)
-                .path(DeploymentProvider.PATH_START).request().post(entity);
+        final Response rep = this.postStart();
         Assert.assertEquals(Response.Status.ACCEPTED.getStatusCode(), rep.getStatus());
+        Assert.assertTrue(rep.getLocation().getPath().endsWith(DeploymentProvider.PATH_PROGRESS));
+        this.awaitLaunch();
         Assert.assertTrue(this.dep.isLaunched());
     }
 
@@ -296,12 +324,11 @@ public class TestDeploymentProvider extends JerseyTest {
         this.setDeployerMock();
         this.setLuanchReqSenderMock();
         this.addSpecToDep(this.dep, this.templateID, this.hostID);
-        final Entity<Document> entity = Entity.entity(this.doc, MediaType.APPLICATION_XML_TYPE);
-        final Response rep = this.target(AppsProvider.PATH).path(this.appUUID)
-                .path(DeploymentsProvider.PATH).path(this.depID)
-                .path(DeploymentProvider.PATH_START).request().post(entity);
+        final Response rep = this.postStart();
         Assert.assertEquals(Response.Status.ACCEPTED.getStatusCode(), rep.getStatus());
+        final Element progress = this.awaitLaunch();
         Assert.assertEquals(1, this.dep.getVirtualMachines().size());
+        Assert.assertEquals(1, this.countSpecs(progress, LaunchProgress.State.LAUNCHING));
         Mockito.verify(this.reqSender).postCreateVM(Matchers.eq(this.hostID),
                                                     Matchers.startsWith(this.templateID),
                                                     Matchers.eq(this.templateID));
@@ -317,11 +344,36 @@ public class TestDeploymentProvider extends JerseyTest {
         final int errorCode = 123;
         this.setLaunchReqSenderMock(new RESTRequestException("", errorCode));
         this.addSpecToDep(this.dep, this.templateID, this.hostID);
-        final Entity<Document> entity = Entity.entity(this.doc, MediaType.APPLICATION_XML_TYPE);
-        final Response rep = this.target(AppsProvider.PATH).path(this.appUUID)
-                .path(DeploymentsProvider.PATH).path(this.depID)
-                .path(DeploymentProvider.PATH_START).request().post(entity);
-        Assert.assertEquals(errorCode, rep.getStatus());
+        final Response rep = this.postStart();
+        Assert.assertEquals(Response.Status.ACCEPTED.getStatusCode(), rep.getStatus());
+        final Element progress = this.awaitLaunch();
+        Assert.assertFalse(this.dep.isLaunched());
+        final Element spec = progress.getChild(LaunchProgress.TAG_SPEC);
+        Assert.assertEquals(LaunchProgress.State.FAILED.toXMLName(),
+                            spec.getAttributeValue(LaunchProgress.ATTRIBUTE_STATE));
+        Assert.assertEquals(Integer.toString(errorCode),
+                            spec.getAttributeValue(LaunchProgress.ATTRIBUTE_CODE));
+    }
+
+    @Test
+    public void testPostStartPartialFailure() throws Exception {
+        this.setDeploymentReal();
+        this.setApplicationReal();
+        this.setNonEmptyApplicationMap();
+        this.setCacheMock();
+        this.setDeployerMock();
+        this.setLuanchReqSenderMock();
+        final int errorCode = Response.Status.NOT_FOUND.getStatusCode();
+        this.setLaunchReqSenderMock(new RESTRequestException("", errorCode));
+        this.addSpecToDep(this.dep, this.templateID, this.hostID);
+        this.addSpecToDep(this.dep, this.templateID, this.hostID, this.hostID);
+        final Response rep = this.postStart();
+        Assert.assertEquals(Response.Status.ACCEPTED.getStatusCode(), rep.getStatus());
+        final Element progress = this.awaitLaunch();
+        Assert.assertTrue(this.dep.isLaunched());
+        Assert.assertEquals(1, this.dep.getVirtualMachines().size());
+        Assert.assertEquals(1, this.countSpecs(progress, LaunchProgress.State.FAILED));
+        Assert.assertEquals(1, this.countSpecs(progress, LaunchProgress.State.LAUNCHING));
     }
 
     @Test
@@ -334,11 +386,9 @@ public class TestDeploymentProvider extends JerseyTest {
         this.setLuanchReqSenderMock();
         this.addSpecToDep(this.dep, this.templateID, this.hostID);
         this.addSpecToDep(this.dep, this.templateID, this.hostID, this.hostID);
-        final Entity<Document> entity = Entity.entity(this.doc, MediaType.APPLICATION_XML_TYPE);
-        final Response rep = this.target(AppsProvider.PATH).path(this.appUUID)
-                .path(DeploymentsProvider.PATH).path(this.depID)
-                .path(DeploymentProvider.PATH_START).request().post(entity);
+        final Response rep = this.postStart();
         Assert.assertEquals(Response.Status.ACCEPTED.getStatusCode(), rep.getStatus());
+        this.awaitLaunch();
         Assert.assertEquals(2, this.dep.getVirtualMachines().size());
         Mockito.verify(this.reqSender).postCreateVM(Matchers.eq(this.hostID),
                                                     Matchers.startsWith(this.templateID),
@@ -346,6 +396,38 @@ public class TestDeploymentProvider extends JerseyTest {
                                                     Matchers.eq(this.hostID));
     }
 
+    @Test
+    public void testGetProgress404() throws CacheException {
+        this.dep = new DeploymentBuilder().withUuid("notlaunched").build();
+        this.setApplicationReal();
+        this.setNonEmptyApplicationMap();
+        final Response rep = this.target(AppsProvider.PATH).path(this.appUUID)
+                .path(DeploymentsProvider.PATH).path("notlaunched")
+                .path(DeploymentProvider.PATH_PROGRESS).request().get();
+        Assert.assertEquals(Response.Status.NOT_FOUND.getStatusCode(), rep.getStatus());
+    }
+
+    @Test
+    public void testGetProgress() throws Exception {
+        this.setDeploymentReal();
+        this.setApplicationReal();
+        this.setNonEmptyApplicationMap();
+        this.setCacheMock();
+        this.postStart();
+        this.awaitLaunch();
+        final Response rep = this.target(AppsProvider.PATH).path(this.appUUID)
+                .path(DeploymentsProvider.PATH).path(this.depID)
+                .path(DeploymentProvider.PATH_PROGRESS).request().get();
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), rep.getStatus());
+        Assert.assertNotNull(rep.getEntityTag());
+        final Response notModified = this.target(AppsProvider.PATH).path(this.appUUID)
+                .path(DeploymentsProvider.PATH).path(this.depID)
+                .path(DeploymentProvider.PATH_PROGRESS).request()
+                .header(HttpHeaders.IF_NONE_MATCH, rep.getEntityTag().toString()).get();
+        Assert.assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(),
+                            notModified.getStatus());
+    }
+
     @Test
     public void addVMToDeployment404() throws CacheException, JDOMException {
         this.setNonEmptyApplicationMap();
@@ -0,0 +1,117 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+
+import nl.bitbrains.nebu.containers.DeploymentFactory;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationFactory;
+
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.stream.ObjectWriter;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestJSONConverter {
+
+    private String write(final Element elem) throws UnsupportedEncodingException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final ObjectWriter writer = new Genson().createWriter(stream, StandardCharsets.UTF_8);
+        JSONConverter.writeDocument(elem, writer);
+        writer.flush();
+        return stream.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private Element read(final String json) {
+        return JSONConverter.readDocument(new Genson().createReader(new ByteArrayInputStream(json
+                .getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private Element createApp() {
+        final Element app = new Element("app").setAttribute("id", "a");
+        app.addContent(new Element("name").setText("x & \"y\""));
+        app.addContent(new Element("vm").setAttribute("id", "1"));
+        app.addContent(new Element("vm").setAttribute("id", "2"));
+        app.addContent(new Element("policy").setAttribute("name", "random").setText("t"));
+        return app;
+    }
+
+    @Test
+    public void testWrite() throws UnsupportedEncodingException {
+        Assert.assertEquals("{\"app\":{\"@id\":\"a\",\"name\":\"x & \\\"y\\\"\","
+                + "\"vm\":[{\"@id\":\"1\"},{\"@id\":\"2\"}],"
+                + "\"policy\":{\"@name\":\"random\",\"#text\":\"t\"}}}",
+                            this.write(this.createApp()));
+    }
+
+    private Element createDeployment(final int specs) {
+        final Element deployment = new Element(DeploymentFactory.TAG_ELEMENT_ROOT);
+        for (int i = 0; i < specs; i++) {
+            deployment.addContent(new Element(VMDeploymentSpecificationFactory.TAG_ELEMENT_ROOT)
+                    .setAttribute("id", Integer.toString(i)));
+        }
+        return deployment;
+    }
+
+    @Test
+    public void testWriteOneRepeatedChild() throws UnsupportedEncodingException {
+        Assert.assertEquals("{\"deployment\":{\"vmDeploymentSpecification\":[{\"@id\":\"0\"}]}}",
+                            this.write(this.createDeployment(1)));
+    }
+
+    @Test
+    public void testWriteTwoRepeatedChildren() throws UnsupportedEncodingException {
+        Assert.assertEquals("{\"deployment\":{\"vmDeploymentSpecification\":"
+                + "[{\"@id\":\"0\"},{\"@id\":\"1\"}]}}", this.write(this.createDeployment(2)));
+    }
+
+    @Test
+    public void testRoundTripOneRepeatedChild() throws UnsupportedEncodingException {
+        final Element deployment = this.createDeployment(1);
+        final XMLOutputter outputter = new XMLOutputter(Format.getCompactFormat());
+        Assert.assertEquals(outputter.outputString(deployment),
+                            outputter.outputString(this.read(this.write(deployment))));
+    }
+
+    @Test
+    public void testRoundTrip() throws UnsupportedEncodingException {
+        final Element app = this.createApp();
+        final XMLOutputter outputter = new XMLOutputter(Format.getCompactFormat());
+        Assert.assertEquals(outputter.outputString(app),
+                            outputter.outputString(this.read(this.write(app))));
+    }
+
+    @Test
+    public void testReadScalars() {
+        final Element elem = this.read("{\"a\":{\"@n\":2,\"b\":[1,true,null]}}");
+        Assert.assertEquals("2", elem.getAttributeValue("n"));
+        Assert.assertEquals(3, elem.getChildren("b").size());
+        Assert.assertEquals("1", elem.getChildren("b").get(0).getText());
+        Assert.assertEquals("true", elem.getChildren("b").get(1).getText());
+        Assert.assertEquals("", elem.getChildren("b").get(2).getText());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadNotAnObject() {
+        this.read("[1]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadNoRoot() {
+        this.read("{}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadTwoRoots() {
+        this.read("{\"a\":1,\"b\":2}");
+    }
+}
@@ -0,0 +1,160 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplateBuilder;
+import nl.bitbrains.nebu.rest.RESTRequestException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestLaunchProgress {
+
+    private VMDeploymentSpecification spec;
+    private LaunchProgress progress;
+
+    @Before
+    public void setUp() {
+        this.spec = new VMDeploymentSpecificationBuilder()
+                .withTemplate(new VMTemplateBuilder().withUuid("template").withName("name")
+                        .build()).withHost("host").build();
+        this.progress = new LaunchProgress("dep", Arrays.asList(this.spec, this.spec));
+    }
+
+    private VirtualMachine newVM(final VirtualMachine.Status status) {
+        return new VirtualMachineBuilder().withUuid("vm").withStatus(status).build();
+    }
+
+    @Test
+    public void testInitiallyQueued() {
+        Assert.assertEquals(LaunchProgress.State.QUEUED, this.progress.getState(0));
+        Assert.assertFalse(this.progress.isFinished());
+        Assert.assertEquals(0, this.progress.getVersion());
+    }
+
+    @Test
+    public void testStates() {
+        final VirtualMachine vm = this.newVM(VirtualMachine.Status.LAUNCHING);
+        this.progress.setRequested(0);
+        Assert.assertEquals(LaunchProgress.State.REQUESTED, this.progress.getState(0));
+        this.progress.setResult(0, LaunchResult.success(this.spec, vm));
+        Assert.assertEquals(LaunchProgress.State.LAUNCHING, this.progress.getState(0));
+        this.progress.setResult(1, LaunchResult.failure(this.spec,
+                                                        new RESTRequestException("", 500)));
+        Assert.assertEquals(LaunchProgress.State.FAILED, this.progress.getState(1));
+        Assert.assertEquals(3, this.progress.getVersion());
+    }
+
+    @Test
+    public void testOnWhenVMRuns() {
+        final VirtualMachine vm = this.newVM(VirtualMachine.Status.LAUNCHING);
+        this.progress.setResult(0, LaunchResult.success(this.spec, vm));
+        final long version = this.progress.getVersion();
+        vm.setStatus(VirtualMachine.Status.ON);
+        Assert.assertEquals(LaunchProgress.State.ON, this.progress.getState(0));
+        Assert.assertEquals(version + 1, this.progress.getVersion());
+    }
+
+    @Test
+    public void testRunOnChange() {
+        final AtomicInteger runs = new AtomicInteger();
+        final Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        Assert.assertFalse(this.progress.runOnChange(1, listener));
+        Assert.assertTrue(this.progress.runOnChange(0, listener));
+        this.progress.setRequested(0);
+        this.progress.setRequested(1);
+        Assert.assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testRemoveListener() {
+        final AtomicInteger runs = new AtomicInteger();
+        final Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        Assert.assertTrue(this.progress.runOnChange(0, listener));
+        Assert.assertTrue(this.progress.removeListener(listener));
+        this.progress.setRequested(0);
+        Assert.assertEquals(0, runs.get());
+        Assert.assertFalse(this.progress.removeListener(listener));
+    }
+
+    @Test
+    public void testRunOnChangeComplete() {
+        final Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        this.progress.setResult(0, LaunchResult.success(this.spec,
+                                                        this.newVM(VirtualMachine.Status.ON)));
+        this.progress.setResult(1, LaunchResult.failure(this.spec,
+                                                        new RESTRequestException("", 500)));
+        this.progress.setFinished();
+        Assert.assertTrue(this.progress.isComplete());
+        Assert.assertFalse(this.progress.runOnChange(this.progress.getVersion(), listener));
+    }
+
+    @Test
+    public void testRunOnChangeWaitsForLaunchingVMs() {
+        final AtomicInteger runs = new AtomicInteger();
+        final VirtualMachine vm = this.newVM(VirtualMachine.Status.LAUNCHING);
+        this.progress.setResult(0, LaunchResult.success(this.spec, vm));
+        this.progress.setResult(1, LaunchResult.failure(this.spec,
+                                                        new RESTRequestException("", 500)));
+        this.progress.setFinished();
+        Assert.assertTrue(this.progress.isFinished());
+        Assert.assertFalse(this.progress.isComplete());
+        Assert.assertTrue(this.progress.runOnChange(this.progress.getVersion(), new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }));
+        this.progress.checkVirtualMachines();
+        Assert.assertEquals(0, runs.get());
+        vm.setStatus(VirtualMachine.Status.ON);
+        this.progress.checkVirtualMachines();
+        Assert.assertEquals(1, runs.get());
+        Assert.assertTrue(this.progress.isComplete());
+    }
+
+    @Test
+    public void testToXML() {
+        this.progress.setRequested(0);
+        this.progress.setResult(0, LaunchResult.success(this.spec,
+                                                        this.newVM(VirtualMachine.Status.ON)));
+        this.progress.setResult(1, LaunchResult.failure(this.spec,
+                                                        new RESTRequestException("no", 404)));
+        final Element xml = this.progress.toXML();
+        Assert.assertEquals("dep", xml.getAttributeValue(LaunchProgress.ATTRIBUTE_DEPLOYMENT));
+        final Element on = xml.getChildren(LaunchProgress.TAG_SPEC).get(0);
+        Assert.assertEquals("on", on.getAttributeValue(LaunchProgress.ATTRIBUTE_STATE));
+        Assert.assertEquals("vm", on.getAttributeValue(LaunchProgress.ATTRIBUTE_VM));
+        Assert.assertNotNull(on.getAttributeValue(LaunchProgress.ATTRIBUTE_REQUESTED));
+        Assert.assertNotNull(on.getAttributeValue(LaunchProgress.ATTRIBUTE_ON));
+        final Element failed = xml.getChildren(LaunchProgress.TAG_SPEC).get(1);
+        Assert.assertEquals("failed", failed.getAttributeValue(LaunchProgress.ATTRIBUTE_STATE));
+        Assert.assertEquals("404", failed.getAttributeValue(LaunchProgress.ATTRIBUTE_CODE));
+        Assert.assertNull(failed.getAttributeValue(LaunchProgress.ATTRIBUTE_REQUESTED));
+    }
+}
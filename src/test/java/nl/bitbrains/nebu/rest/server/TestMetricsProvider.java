@@ -0,0 +1,56 @@
+package nl.bitbrains.nebu.rest.server;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import nl.bitbrains.nebu.metrics.MetricsRegistry;
+
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestMetricsProvider extends JerseyTest {
+
+    @Override
+    protected javax.ws.rs.core.Application configure() {
+        return new ResourceConfig(MetricsProvider.class, MetricsFilter.class);
+    }
+
+    private Response getMetrics() {
+        return this.target(MetricsProvider.PATH).request(MediaType.TEXT_PLAIN).get();
+    }
+
+    @Test
+    public void testGetMetrics() {
+        final Response rep = this.getMetrics();
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), rep.getStatus());
+        Assert.assertTrue(rep.getMediaType().isCompatible(MediaType.TEXT_PLAIN_TYPE));
+    }
+
+    @Test
+    public void testRequestsAreTimed() {
+        this.getMetrics().close();
+        final String text = this.getMetrics().readEntity(String.class);
+        final String labels = MetricsRegistry.labels(MetricsFilter.LABEL_RESOURCE,
+                                                     "MetricsProvider.getMetrics",
+                                                     MetricsFilter.LABEL_METHOD, "GET");
+        Assert.assertTrue(text.contains(MetricsFilter.METRIC + MetricsRegistry.SUFFIX_SECONDS
+                + "_count{" + labels + "} "));
+        Assert.assertTrue(text.contains(MetricsFilter.METRIC_RESPONSES + "{"
+                + MetricsRegistry.labels(MetricsFilter.LABEL_RESOURCE,
+                                         "MetricsProvider.getMetrics",
+                                         MetricsFilter.LABEL_STATUS, "200") + "} "));
+    }
+
+    @Test
+    public void testUnmatchedRequestsAreNotTimed() {
+        final Response rep = this.target("nothing").request().get();
+        Assert.assertEquals(Response.Status.NOT_FOUND.getStatusCode(), rep.getStatus());
+        Assert.assertFalse(this.getMetrics().readEntity(String.class).contains("unmatched"));
+    }
+}
@@ -0,0 +1,114 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.bitbrains.nebu.common.util.xml.XMLConverter;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.DeploymentBuilder;
+import nl.bitbrains.nebu.containers.DeploymentFactory;
+
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestStreamingXMLOutput {
+
+    private static final int DEPLOYMENTS = 10;
+
+    private List<Deployment> deployments;
+
+    @Before
+    public void setUp() {
+        this.deployments = new ArrayList<Deployment>();
+        for (int i = 0; i < TestStreamingXMLOutput.DEPLOYMENTS; i++) {
+            this.deployments.add(new DeploymentBuilder().withUuid("dep" + i).build());
+        }
+    }
+
+    private Element write(final StreamingXMLOutput output) throws IOException, JDOMException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        output.write(stream);
+        return new SAXBuilder().build(new ByteArrayInputStream(stream.toByteArray()))
+                .getRootElement();
+    }
+
+    private String toString(final Element elem) {
+        return new XMLOutputter(Format.getCompactFormat()).outputString(elem);
+    }
+
+    @Test
+    public void testCollectionMatchesConverter() throws IOException, JDOMException {
+        final Element expected = XMLConverter
+                .convertCollectionToJDOMElement(this.deployments,
+                                                new DeploymentFactory(false),
+                                                DeploymentFactory.LIST_TAG_ELEMENT_ROOT,
+                                                DeploymentFactory.TAG_ELEMENT_ROOT);
+        final Element actual = this.write(StreamingXMLOutput
+                .ofCollection(this.deployments,
+                              new DeploymentFactory(false),
+                              DeploymentFactory.LIST_TAG_ELEMENT_ROOT,
+                              DeploymentFactory.TAG_ELEMENT_ROOT));
+        Assert.assertEquals(this.toString(expected), this.toString(actual));
+    }
+
+    @Test
+    public void testEmptyCollection() throws IOException, JDOMException {
+        final Element actual = this.write(StreamingXMLOutput
+                .ofCollection(new ArrayList<Deployment>(),
+                              new DeploymentFactory(false),
+                              DeploymentFactory.LIST_TAG_ELEMENT_ROOT,
+                              DeploymentFactory.TAG_ELEMENT_ROOT));
+        Assert.assertEquals(DeploymentFactory.LIST_TAG_ELEMENT_ROOT, actual.getName());
+        Assert.assertTrue(actual.getChildren().isEmpty());
+    }
+
+    @Test
+    public void testCollectionIsCopied() throws IOException, JDOMException {
+        final StreamingXMLOutput output = StreamingXMLOutput
+                .ofCollection(this.deployments,
+                              new DeploymentFactory(false),
+                              DeploymentFactory.LIST_TAG_ELEMENT_ROOT,
+                              DeploymentFactory.TAG_ELEMENT_ROOT);
+        this.deployments.clear();
+        Assert.assertEquals(TestStreamingXMLOutput.DEPLOYMENTS, this.write(output).getChildren()
+                .size());
+    }
+
+    @Test
+    public void testCollectionAsJSON() throws IOException {
+        final StreamingXMLOutput output = StreamingXMLOutput
+                .ofCollection(this.deployments.subList(0, 1),
+                              new DeploymentFactory(false),
+                              DeploymentFactory.LIST_TAG_ELEMENT_ROOT,
+                              DeploymentFactory.TAG_ELEMENT_ROOT);
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        output.writeJSON(stream);
+        final String json = stream.toString(StandardCharsets.UTF_8.name());
+        // A single item is still written as an array.
+        Assert.assertTrue(json.startsWith("{\"" + DeploymentFactory.LIST_TAG_ELEMENT_ROOT
+                + "\":{\"" + DeploymentFactory.TAG_ELEMENT_ROOT + "\":[{"));
+        Assert.assertTrue(json.endsWith("}]}}"));
+        Assert.assertTrue(json.contains("\"dep0\""));
+    }
+
+    @Test
+    public void testElement() throws IOException, JDOMException {
+        final Element expected = new DeploymentFactory().toXML(this.deployments.get(0));
+        final Element actual = this.write(StreamingXMLOutput.ofElement(expected));
+        Assert.assertEquals(this.toString(expected), this.toString(actual));
+    }
+}
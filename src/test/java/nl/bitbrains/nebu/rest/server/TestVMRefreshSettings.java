@@ -0,0 +1,106 @@
+package nl.bitbrains.nebu.rest.server;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.DeploymentBuilder;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestVMRefreshSettings {
+
+    private Element newSettingsElement(final String interval, final String launchingInterval) {
+        final Element xml = new Element(VMRefreshSettings.TAG_VM_REFRESH);
+        xml.setAttribute(VMRefreshSettings.ATTRIBUTE_ENABLED, "true");
+        xml.addContent(new Element(VMRefreshSettings.TAG_REFRESH_INTERVAL).setText(interval));
+        xml.addContent(new Element(VMRefreshSettings.TAG_LAUNCHING_INTERVAL)
+                .setText(launchingInterval));
+        return xml;
+    }
+
+    private Deployment newDeployment(final VirtualMachine.Status status) {
+        final Deployment deployment = new DeploymentBuilder().withUuid("dep").build();
+        deployment.addVirtualMachines(new VirtualMachineBuilder().withUuid("vm")
+                .withStatus(status).build(), null);
+        return deployment;
+    }
+
+    @Test
+    public void testDefaultsDisabled() throws ParseException {
+        final VMRefreshSettings settings = VMRefreshSettings.fromXML(null);
+        Assert.assertFalse(settings.isEnabled());
+        Assert.assertEquals(VMRefreshSettings.DEFAULT_REFRESH_INTERVAL,
+                            settings.getRefreshInterval());
+        Assert.assertEquals(VMRefreshSettings.DEFAULT_LAUNCHING_INTERVAL,
+                            settings.getLaunchingInterval());
+        Assert.assertEquals(VMRefreshSettings.DEFAULT_THREADS, settings.getThreads());
+    }
+
+    @Test
+    public void testFromXML() throws ParseException {
+        final VMRefreshSettings settings = VMRefreshSettings.fromXML(this
+                .newSettingsElement("1000", "100"));
+        Assert.assertTrue(settings.isEnabled());
+        Assert.assertEquals(1000, settings.getRefreshInterval());
+        Assert.assertEquals(100, settings.getLaunchingInterval());
+    }
+
+    @Test
+    public void testThreadsFromXML() throws ParseException {
+        final Element xml = this.newSettingsElement("1000", "100");
+        xml.addContent(new Element(VMRefreshSettings.TAG_THREADS).setText("8"));
+        Assert.assertEquals(8, VMRefreshSettings.fromXML(xml).getThreads());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testNoThreads() throws ParseException {
+        final Element xml = this.newSettingsElement("1000", "100");
+        xml.addContent(new Element(VMRefreshSettings.TAG_THREADS).setText("0"));
+        VMRefreshSettings.fromXML(xml);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testIntervalBelowLaunchingInterval() throws ParseException {
+        VMRefreshSettings.fromXML(this.newSettingsElement("10", "100"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testNotANumber() throws ParseException {
+        VMRefreshSettings.fromXML(this.newSettingsElement("often", "100"));
+    }
+
+    @Test
+    public void testNeverRefreshedIsDue() {
+        final VMRefreshSettings settings = new VMRefreshSettings(true, 1000, 100);
+        Assert.assertTrue(VMStateRefresher.isDue(this.newDeployment(VirtualMachine.Status.ON),
+                                                 System.currentTimeMillis(),
+                                                 settings));
+    }
+
+    @Test
+    public void testLaunchingIsDueSooner() {
+        final VMRefreshSettings settings = new VMRefreshSettings(true, 1000, 100);
+        final Deployment launching = this.newDeployment(VirtualMachine.Status.LAUNCHING);
+        final Deployment on = this.newDeployment(VirtualMachine.Status.ON);
+        final long now = System.currentTimeMillis();
+        // Deployments that were never refreshed count as refreshed at time 0.
+        Assert.assertTrue(VMStateRefresher.isDue(launching, 500, settings));
+        Assert.assertFalse(VMStateRefresher.isDue(on, 500, settings));
+        Assert.assertTrue(VMStateRefresher.isDue(on, now, settings));
+    }
+
+    @Test
+    public void testAgeOfNeverRefreshed() {
+        Assert.assertEquals(0, VMStateRefresher.getAge(Arrays.asList(this
+                .newDeployment(VirtualMachine.Status.ON)), System.currentTimeMillis()));
+    }
+}
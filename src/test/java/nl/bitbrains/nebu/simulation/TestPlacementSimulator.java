@@ -0,0 +1,135 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.cache.CacheException;
+import nl.bitbrains.nebu.common.cache.CacheManager;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.ApplicationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.containers.VMTemplateBuilder;
+import nl.bitbrains.nebu.deployer.Deployer;
+import nl.bitbrains.nebu.deployer.DeployerException;
+import nl.bitbrains.nebu.deployer.DeployerPolicyFactories;
+import nl.bitbrains.nebu.deployer.policies.AggregatedLocalityPolicy;
+import nl.bitbrains.nebu.deployer.policies.RandomPolicy;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestPlacementSimulator {
+
+    private VMTemplate template;
+    private Application app;
+    private Deployer deployer;
+
+    @Before
+    public void setUp() {
+        CacheManager.resetCache();
+        this.template = new VMTemplateBuilder().withUuid("template").withCPU(1).withMem(1)
+                .build();
+        this.app = new ApplicationBuilder().withUuid("app").withTemplate(this.template).build();
+        this.deployer = new Deployer().withPolicyFactories(DeployerPolicyFactories
+                .createDefault());
+    }
+
+    @After
+    public void tearDown() {
+        CacheManager.resetCache();
+    }
+
+    private PlacementSimulator createSimulator(final String policy,
+            final TopologyGenerator generator) throws DeployerException, CacheException {
+        this.deployer.setPolicy(this.app, policy);
+        return new PlacementSimulator(this.deployer, this.app, generator.generate());
+    }
+
+    @Test
+    public void testRegisterTopology() throws CacheException {
+        final PhysicalTopology topology = new TopologyGenerator().generate();
+        PlacementSimulator.registerTopology(this.template, topology);
+        Assert.assertSame(topology, this.template.getTopology());
+    }
+
+    @Test
+    public void testReplay() throws DeployerException, CacheException {
+        final PlacementSimulator simulator = this
+                .createSimulator(RandomPolicy.POLICY_NAME, new TopologyGenerator()
+                        .withRacksPerDataCenter(2).withHostsPerRack(5));
+        final List<TraceEvent> trace = Arrays.asList(TraceEvent.deploy("template", 5),
+                                                     TraceEvent.deploy("template", 3),
+                                                     TraceEvent.remove(0, 2),
+                                                     TraceEvent.remove(0, TraceEvent.ALL));
+        final SimulationReport report = simulator.replay(trace);
+        Assert.assertEquals(2, report.getAttempts());
+        Assert.assertEquals(0, report.getFailures());
+        Assert.assertEquals(0, report.getFailureRate(), 0);
+        Assert.assertEquals(8, report.getPlacedVMs());
+        Assert.assertEquals(5, report.getRemovedVMs());
+        Assert.assertEquals(3, this.app.getOccupancy().size());
+        Assert.assertTrue(report.getPackingDensity() >= 1);
+        Assert.assertTrue(report.getUsedHostFraction() > 0);
+        Assert.assertTrue(report.getMeanRackSpread() >= 1);
+        Assert.assertTrue(report.getMeanRackSpread() <= 2);
+        Assert.assertTrue(report.getPlacementTime(1) >= report.getPlacementTime(0.5));
+    }
+
+    @Test
+    public void testReplayFailure() throws DeployerException, CacheException {
+        final PlacementSimulator simulator = this
+                .createSimulator(AggregatedLocalityPolicy.POLICY_NAME, new TopologyGenerator()
+                        .withRacksPerDataCenter(1).withHostsPerRack(2));
+        final int full = 2 * AggregatedLocalityPolicy.DEFAULT_MAX_VMS_PER_HOST;
+        final SimulationReport report = simulator.replay(Arrays.asList(TraceEvent
+                .deploy("template", full), TraceEvent.deploy("template", 1), TraceEvent
+                .remove(1, TraceEvent.ALL)));
+        Assert.assertEquals(2, report.getAttempts());
+        Assert.assertEquals(1, report.getFailures());
+        Assert.assertEquals(0.5, report.getFailureRate(), 0);
+        Assert.assertEquals(full, report.getPlacedVMs());
+        Assert.assertEquals(0, report.getRemovedVMs());
+        Assert.assertEquals(AggregatedLocalityPolicy.DEFAULT_MAX_VMS_PER_HOST,
+                            report.getPackingDensity(), 0);
+        Assert.assertEquals(1, report.getUsedHostFraction(), 0);
+        Assert.assertEquals(1, report.getMeanRackSpread(), 0);
+    }
+
+    @Test
+    public void testExistingVirtualMachinesAreTakenIntoAccount() throws DeployerException,
+            CacheException {
+        final TopologyGenerator generator = new TopologyGenerator().withRacksPerDataCenter(1)
+                .withHostsPerRack(2);
+        this.deployer.setPolicy(this.app, AggregatedLocalityPolicy.POLICY_NAME);
+        final PhysicalTopology topology = generator.generate();
+        final PlacementSimulator simulator = new PlacementSimulator(this.deployer, this.app,
+                topology);
+        final List<VirtualMachine> existing = generator.generateVirtualMachines(topology, 2,
+                                                                                "existing");
+        simulator.addExistingVirtualMachines(existing, this.template);
+        final int free = 2 * AggregatedLocalityPolicy.DEFAULT_MAX_VMS_PER_HOST - 2;
+        final SimulationReport report = simulator.replay(Arrays.asList(TraceEvent
+                .deploy("template", free), TraceEvent.deploy("template", 1)));
+        Assert.assertEquals(1, report.getFailures());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownTemplate() throws DeployerException, CacheException {
+        this.createSimulator(RandomPolicy.POLICY_NAME, new TopologyGenerator())
+                .replay(Arrays.asList(TraceEvent.deploy("unknown", 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveUnknownDeployment() throws DeployerException, CacheException {
+        this.createSimulator(RandomPolicy.POLICY_NAME, new TopologyGenerator())
+                .replay(Arrays.asList(TraceEvent.remove(0, TraceEvent.ALL)));
+    }
+}
@@ -0,0 +1,66 @@
+package nl.bitbrains.nebu.simulation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestSimulationReport {
+
+    private SimulationReport report;
+
+    @Before
+    public void setUp() {
+        this.report = new SimulationReport();
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(0, this.report.getAttempts());
+        Assert.assertEquals(0, this.report.getFailureRate(), 0);
+        Assert.assertEquals(0, this.report.getMeanPlacementTime(), 0);
+        Assert.assertEquals(0, this.report.getPlacementTime(0.99));
+        Assert.assertEquals(0, this.report.getPackingDensity(), 0);
+        Assert.assertEquals(0, this.report.getMeanRackSpread(), 0);
+        Assert.assertNotNull(this.report.toString());
+    }
+
+    @Test
+    public void testPlacementTimes() {
+        for (int i = 1; i <= 100; i++) {
+            this.report.recordPlacement(i, 1, 1);
+        }
+        Assert.assertEquals(100, this.report.getAttempts());
+        Assert.assertEquals(50.5, this.report.getMeanPlacementTime(), 0);
+        Assert.assertEquals(50, this.report.getPlacementTime(0.5));
+        Assert.assertEquals(99, this.report.getPlacementTime(0.99));
+        Assert.assertEquals(100, this.report.getPlacementTime(1));
+        Assert.assertEquals(1, this.report.getPlacementTime(0));
+    }
+
+    @Test
+    public void testFailuresAndSpread() {
+        this.report.recordPlacement(10, 4, 2);
+        this.report.recordPlacement(10, 2, 1);
+        this.report.recordFailure(10);
+        this.report.recordFailure(10);
+        Assert.assertEquals(0.5, this.report.getFailureRate(), 0);
+        Assert.assertEquals(6, this.report.getPlacedVMs());
+        Assert.assertEquals(1.5, this.report.getMeanRackSpread(), 0);
+    }
+
+    @Test
+    public void testOccupation() {
+        this.report.setOccupation(12, 4, 16);
+        Assert.assertEquals(3, this.report.getPackingDensity(), 0);
+        Assert.assertEquals(0.25, this.report.getUsedHostFraction(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        this.report.getPlacementTime(1.5);
+    }
+}
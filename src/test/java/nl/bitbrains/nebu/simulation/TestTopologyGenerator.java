@@ -0,0 +1,110 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.topology.PhysicalHost;
+import nl.bitbrains.nebu.common.topology.PhysicalTopology;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestTopologyGenerator {
+
+    private TopologyGenerator createGenerator() {
+        return new TopologyGenerator().withDataCenters(2).withRacksPerDataCenter(3)
+                .withHostsPerRack(4).withLocalDisksPerHost(2).withNetworkDisksPerRack(1);
+    }
+
+    private Map<String, Integer> countPerHost(final List<VirtualMachine> vms) {
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (final VirtualMachine vm : vms) {
+            final Integer count = counts.get(vm.getHost());
+            if (count == null) {
+                counts.put(vm.getHost(), 1);
+            } else {
+                counts.put(vm.getHost(), count + 1);
+            }
+        }
+        return counts;
+    }
+
+    private int max(final Map<String, Integer> counts) {
+        int max = 0;
+        for (final int count : counts.values()) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    @Test
+    public void testGenerateShape() {
+        final TopologyGenerator generator = this.createGenerator();
+        final PhysicalTopology topology = generator.generate();
+        Assert.assertEquals(24, generator.getHosts());
+        Assert.assertEquals(6, topology.getRacks().size());
+        Assert.assertEquals(24, topology.getCPUs().size());
+        for (final PhysicalHost host : topology.getCPUs()) {
+            Assert.assertEquals(2, host.getDisks().size());
+            Assert.assertEquals(1, host.getParent().getDisks().size());
+        }
+    }
+
+    @Test
+    public void testGenerateVirtualMachinesOnTopology() {
+        final TopologyGenerator generator = this.createGenerator();
+        final PhysicalTopology topology = generator.generate();
+        final List<VirtualMachine> vms = generator.generateVirtualMachines(topology, 100, "vm");
+        Assert.assertEquals(100, vms.size());
+        for (final VirtualMachine vm : vms) {
+            Assert.assertTrue(vm.getHost().startsWith("dc"));
+            Assert.assertTrue(vm.getStores().iterator().next().startsWith(vm.getHost()));
+        }
+    }
+
+    @Test
+    public void testGenerateVirtualMachinesOnRackDisks() {
+        final TopologyGenerator generator = this.createGenerator().withLocalDisksPerHost(0);
+        final PhysicalTopology topology = generator.generate();
+        final VirtualMachine vm = generator.generateVirtualMachines(topology, 1, "vm").get(0);
+        Assert.assertFalse(vm.getStores().iterator().next().startsWith(vm.getHost()));
+    }
+
+    @Test
+    public void testSameSeedSameVirtualMachines() {
+        final TopologyGenerator generator = this.createGenerator().withSkew(1).withSeed(7);
+        final PhysicalTopology topology = generator.generate();
+        final List<VirtualMachine> first = generator.generateVirtualMachines(topology, 50, "vm");
+        final List<VirtualMachine> second = generator.generateVirtualMachines(topology, 50, "vm");
+        for (int i = 0; i < first.size(); i++) {
+            Assert.assertEquals(first.get(i).getHost(), second.get(i).getHost());
+        }
+    }
+
+    @Test
+    public void testSkewConcentratesVirtualMachines() {
+        final PhysicalTopology topology = this.createGenerator().generate();
+        final List<VirtualMachine> even = this.createGenerator().withSeed(1)
+                .generateVirtualMachines(topology, 2400, "vm");
+        final List<VirtualMachine> skewed = this.createGenerator().withSeed(1).withSkew(2)
+                .generateVirtualMachines(topology, 2400, "vm");
+        Assert.assertTrue(this.max(this.countPerHost(skewed)) > 2 * this
+                .max(this.countPerHost(even)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHostsPerRack() {
+        new TopologyGenerator().withHostsPerRack(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSkew() {
+        new TopologyGenerator().withSkew(-1);
+    }
+}
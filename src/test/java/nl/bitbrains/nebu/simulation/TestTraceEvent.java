@@ -0,0 +1,84 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestTraceEvent {
+
+    @Test
+    public void testParseDeploy() throws ParseException {
+        final TraceEvent event = TraceEvent.fromString("deploy template 3");
+        Assert.assertEquals(TraceEvent.Type.DEPLOY, event.getType());
+        Assert.assertEquals("template", event.getTemplate());
+        Assert.assertEquals(3, event.getCount());
+    }
+
+    @Test
+    public void testParseRemoveAll() throws ParseException {
+        final TraceEvent event = TraceEvent.fromString("remove 2");
+        Assert.assertEquals(TraceEvent.Type.REMOVE, event.getType());
+        Assert.assertEquals(2, event.getDeployment());
+        Assert.assertEquals(TraceEvent.ALL, event.getCount());
+    }
+
+    @Test
+    public void testParseRemoveCount() throws ParseException {
+        final TraceEvent event = TraceEvent.fromString("  remove   2 5 ");
+        Assert.assertEquals(2, event.getDeployment());
+        Assert.assertEquals(5, event.getCount());
+    }
+
+    @Test
+    public void testToStringRoundTrip() throws ParseException {
+        for (final String line : Arrays.asList("deploy template 3", "remove 2", "remove 2 5")) {
+            Assert.assertEquals(line, TraceEvent.fromString(line).toString());
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void testParseUnknownType() throws ParseException {
+        TraceEvent.fromString("launch template 3");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testParseInvalidCount() throws ParseException {
+        TraceEvent.fromString("deploy template three");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testParseZeroCount() throws ParseException {
+        TraceEvent.fromString("deploy template 0");
+    }
+
+    @Test
+    public void testReadTrace() throws IOException, ParseException {
+        final String trace = "# a trace\n\ndeploy template 3\nremove 0 # all of it\n";
+        final List<TraceEvent> events = TraceEvent.readTrace(new BufferedReader(
+                new StringReader(trace)));
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(TraceEvent.Type.DEPLOY, events.get(0).getType());
+        Assert.assertEquals(TraceEvent.Type.REMOVE, events.get(1).getType());
+    }
+
+    @Test
+    public void testReadTraceErrorOffsetIsLine() throws IOException {
+        final String trace = "deploy template 3\n\nremove\n";
+        try {
+            TraceEvent.readTrace(new BufferedReader(new StringReader(trace)));
+            Assert.fail();
+        } catch (final ParseException e) {
+            Assert.assertEquals(3, e.getErrorOffset());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package nl.bitbrains.nebu.simulation;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestWorkloadGenerator {
+
+    private final List<String> templates = Arrays.asList("a", "b");
+
+    @Test
+    public void testGenerate() {
+        final List<TraceEvent> trace = new WorkloadGenerator(this.templates).withEvents(500)
+                .withMaxRequestSize(4).withRemoveProbability(0.4).withSeed(3).generate();
+        Assert.assertEquals(500, trace.size());
+        int deployments = 0;
+        final Set<Integer> removed = new HashSet<Integer>();
+        for (final TraceEvent event : trace) {
+            if (event.getType() == TraceEvent.Type.DEPLOY) {
+                Assert.assertTrue(this.templates.contains(event.getTemplate()));
+                Assert.assertTrue(event.getCount() >= 1 && event.getCount() <= 4);
+                deployments++;
+            } else {
+                Assert.assertTrue(event.getDeployment() < deployments);
+                Assert.assertTrue(removed.add(event.getDeployment()));
+            }
+        }
+        Assert.assertFalse(removed.isEmpty());
+    }
+
+    @Test
+    public void testNoRemovals() {
+        final List<TraceEvent> trace = new WorkloadGenerator(this.templates).withEvents(50)
+                .withRemoveProbability(0).generate();
+        for (final TraceEvent event : trace) {
+            Assert.assertEquals(TraceEvent.Type.DEPLOY, event.getType());
+        }
+    }
+
+    @Test
+    public void testSameSeedSameTrace() {
+        final WorkloadGenerator generator = new WorkloadGenerator(this.templates).withSeed(9);
+        Assert.assertEquals(generator.generate().toString(), generator.generate().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoTemplates() {
+        new WorkloadGenerator(Arrays.<String> asList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRemoveProbability() {
+        new WorkloadGenerator(this.templates).withRemoveProbability(2);
+    }
+}
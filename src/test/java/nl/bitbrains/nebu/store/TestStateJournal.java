@@ -0,0 +1,94 @@
+package nl.bitbrains.nebu.store;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestStateJournal {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = new File(this.folder.getRoot(), "journal-0.log");
+    }
+
+    private void appendRecords(final String... names) throws IOException {
+        try (StateJournal journal = StateJournal.open(this.file)) {
+            for (final String name : names) {
+                journal.append(new Element(name).setText(name));
+            }
+        }
+    }
+
+    private void appendGarbage() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(this.file, true)) {
+            // Length of a record that is only partly written.
+            out.write(new byte[] { 0, 0, 1, 0, 42, 42 });
+        }
+    }
+
+    @Test
+    public void testReadMissingFile() throws IOException {
+        Assert.assertTrue(StateJournal.read(this.file).isEmpty());
+    }
+
+    @Test
+    public void testAppendRead() throws IOException {
+        this.appendRecords("a", "b");
+        final List<Element> records = StateJournal.read(this.file);
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("a", records.get(0).getName());
+        Assert.assertEquals("b", records.get(1).getText());
+    }
+
+    @Test
+    public void testOpenCountsRecords() throws IOException {
+        this.appendRecords("a", "b");
+        try (StateJournal journal = StateJournal.open(this.file)) {
+            Assert.assertEquals(2, journal.getRecordCount());
+        }
+    }
+
+    @Test
+    public void testReadIgnoresIncompleteRecord() throws IOException {
+        this.appendRecords("a");
+        this.appendGarbage();
+        Assert.assertEquals(1, StateJournal.read(this.file).size());
+    }
+
+    @Test
+    public void testOpenRemovesIncompleteRecord() throws IOException {
+        this.appendRecords("a");
+        this.appendGarbage();
+        this.appendRecords("b");
+        final List<Element> records = StateJournal.read(this.file);
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("b", records.get(1).getName());
+    }
+
+    @Test
+    public void testReadStopsAtCorruptRecord() throws IOException {
+        this.appendRecords("a", "b");
+        final byte[] data = Files.readAllBytes(this.file.toPath());
+        data[data.length - 2] ^= 1;
+        Files.write(this.file.toPath(), data);
+        Assert.assertEquals(1, StateJournal.read(this.file).size());
+    }
+}
@@ -0,0 +1,194 @@
+package nl.bitbrains.nebu.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import nl.bitbrains.nebu.common.VirtualMachine;
+import nl.bitbrains.nebu.common.VirtualMachineBuilder;
+import nl.bitbrains.nebu.containers.Application;
+import nl.bitbrains.nebu.containers.ApplicationBuilder;
+import nl.bitbrains.nebu.containers.ApplicationFactory;
+import nl.bitbrains.nebu.containers.Deployment;
+import nl.bitbrains.nebu.containers.DeploymentBuilder;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecification;
+import nl.bitbrains.nebu.containers.VMDeploymentSpecificationBuilder;
+import nl.bitbrains.nebu.containers.VMTemplate;
+import nl.bitbrains.nebu.containers.VMTemplateBuilder;
+import nl.bitbrains.nebu.deployer.Deployer;
+import nl.bitbrains.nebu.deployer.DeployerPolicyFactories;
+import nl.bitbrains.nebu.deployer.policies.RandomPolicy;
+import nl.bitbrains.nebu.deployer.policies.RandomPolicyFactory;
+
+import org.jdom2.Element;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestStateStore {
+
+    private static final String APP_ID = "app";
+    private static final String TEMPLATE_ID = "template";
+    private static final String DEPLOYMENT_ID = "deployment";
+    private static final String VM_ID = "vm";
+    private static final String HOST_ID = "host";
+    private static final long SEED = 42;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private StateStore store;
+    private Deployer deployer;
+    private Map<String, Application> apps;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = this.folder.newFolder("state");
+        this.restart();
+    }
+
+    @After
+    public void tearDown() {
+        this.store.close();
+    }
+
+    private void restart() throws IOException {
+        if (this.store != null) {
+            this.store.close();
+        }
+        this.store = new StateStore();
+        this.store.configure(new StateStoreSettings(true, this.directory, 60000, 1000));
+        this.deployer = new Deployer().withPolicyFactories(new DeployerPolicyFactories()
+                .withFactory(RandomPolicy.POLICY_NAME, new RandomPolicyFactory()));
+        this.apps = this.store.restore(this.deployer);
+    }
+
+    private Application createApplication() {
+        final Application app = new ApplicationBuilder().withUuid(TestStateStore.APP_ID)
+                .withName("name").withDeploymentPolicy(RandomPolicy.POLICY_NAME).build();
+        final Element policy = new Element(ApplicationFactory.TAG_DEPLOYMENT_POLICY);
+        policy.setAttribute(ApplicationFactory.ATTRIBUTE_NAME, RandomPolicy.POLICY_NAME);
+        policy.addContent(new Element(RandomPolicyFactory.TAG_SEED).setText(Long
+                .toString(TestStateStore.SEED)));
+        this.apps.put(app.getUniqueIdentifier(), app);
+        this.store.recordApplicationCreated(app, policy);
+        return app;
+    }
+
+    private VMTemplate createTemplate(final Application app) {
+        final VMTemplate template = new VMTemplateBuilder()
+                .withUuid(TestStateStore.TEMPLATE_ID).withName("template").withCPU(1)
+                .withMem(2).withIO(3).withNet(4).build();
+        app.putVMTemplate(template);
+        this.store.recordTemplate(app, template);
+        return template;
+    }
+
+    private Deployment createDeployment(final Application app, final VMTemplate template) {
+        final Deployment deployment = new DeploymentBuilder()
+                .withUuid(TestStateStore.DEPLOYMENT_ID).build();
+        deployment.addSpec(this.newSpec(template));
+        app.putDeployment(deployment);
+        this.store.recordDeployment(app, deployment);
+        return deployment;
+    }
+
+    private VMDeploymentSpecification newSpec(final VMTemplate template) {
+        return new VMDeploymentSpecificationBuilder().withTemplate(template)
+                .withHost(TestStateStore.HOST_ID).build();
+    }
+
+    private VirtualMachine addVirtualMachine(final Application app,
+            final Deployment deployment, final VMTemplate template) {
+        final VirtualMachine vm = new VirtualMachineBuilder().withUuid(TestStateStore.VM_ID)
+                .build();
+        final VMDeploymentSpecification spec = this.newSpec(template);
+        deployment.addVirtualMachines(vm, spec);
+        this.store.recordVirtualMachineAdded(app, deployment, vm, spec);
+        return vm;
+    }
+
+    private void assertRestored() {
+        final Application app = this.apps.get(TestStateStore.APP_ID);
+        Assert.assertNotNull(app);
+        Assert.assertEquals("name", app.getName());
+        Assert.assertNotNull(app.getVMTemplate(TestStateStore.TEMPLATE_ID));
+        final Deployment deployment = app.getDeployment(TestStateStore.DEPLOYMENT_ID);
+        Assert.assertNotNull(deployment);
+        Assert.assertEquals(1, deployment.getSpecs().size());
+        Assert.assertEquals(TestStateStore.HOST_ID, deployment.getSpecs().get(0).getHost());
+        final RandomPolicy policy = (RandomPolicy) this.deployer.getPolicy(app);
+        Assert.assertEquals(TestStateStore.SEED, policy.getSeed());
+    }
+
+    @Test
+    public void testRestoreEmpty() {
+        Assert.assertTrue(this.apps.isEmpty());
+    }
+
+    @Test
+    public void testRestoreDisabled() throws IOException {
+        this.store.configure(new StateStoreSettings());
+        Assert.assertTrue(this.store.restore(this.deployer).isEmpty());
+    }
+
+    @Test
+    public void testRestoreFromJournal() throws IOException {
+        final Application app = this.createApplication();
+        this.createDeployment(app, this.createTemplate(app));
+        this.restart();
+        this.assertRestored();
+    }
+
+    @Test
+    public void testRestoreFromSnapshotAndJournal() throws IOException {
+        final Application app = this.createApplication();
+        final VMTemplate template = this.createTemplate(app);
+        this.store.snapshot();
+        final Deployment deployment = this.createDeployment(app, template);
+        this.addVirtualMachine(app, deployment, template);
+        this.restart();
+        this.assertRestored();
+        Assert.assertNotNull(this.apps.get(TestStateStore.APP_ID)
+                .getVirtualMachine(TestStateStore.VM_ID));
+    }
+
+    @Test
+    public void testRestoreChangedApplication() throws IOException {
+        final Application app = this.createApplication();
+        app.setName("other");
+        this.store.recordApplicationChanged(app);
+        this.restart();
+        Assert.assertEquals("other", this.apps.get(TestStateStore.APP_ID).getName());
+    }
+
+    @Test
+    public void testRestoreRemovedVirtualMachine() throws IOException {
+        final Application app = this.createApplication();
+        final VMTemplate template = this.createTemplate(app);
+        final Deployment deployment = this.createDeployment(app, template);
+        final VirtualMachine vm = this.addVirtualMachine(app, deployment, template);
+        deployment.removeVirtualMachine(vm);
+        this.store.recordVirtualMachineRemoved(app, deployment, vm);
+        this.restart();
+        Assert.assertNull(this.apps.get(TestStateStore.APP_ID)
+                .getVirtualMachine(TestStateStore.VM_ID));
+    }
+
+    @Test
+    public void testRestoreTwice() throws IOException {
+        final Application app = this.createApplication();
+        this.createDeployment(app, this.createTemplate(app));
+        this.restart();
+        this.restart();
+        this.assertRestored();
+    }
+}
@@ -0,0 +1,54 @@
+package nl.bitbrains.nebu.store;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestStateStoreSettings {
+
+    private Element newElement(final String interval, final String records) {
+        final Element xml = new Element(StateStoreSettings.TAG_STATE_STORE);
+        xml.setAttribute(StateStoreSettings.ATTRIBUTE_ENABLED, "true");
+        xml.addContent(new Element(StateStoreSettings.TAG_SNAPSHOT_INTERVAL).setText(interval));
+        xml.addContent(new Element(StateStoreSettings.TAG_MAX_JOURNAL_RECORDS).setText(records));
+        return xml;
+    }
+
+    @Test
+    public void testDefaultsDisabled() throws ParseException {
+        final StateStoreSettings settings = StateStoreSettings.fromXML(null);
+        Assert.assertFalse(settings.isEnabled());
+        Assert.assertEquals(StateStoreSettings.DEFAULT_MAX_JOURNAL_RECORDS,
+                            settings.getMaxJournalRecords());
+    }
+
+    @Test
+    public void testFromXML() throws ParseException {
+        final StateStoreSettings settings = StateStoreSettings.fromXML(this.newElement("1000",
+                                                                                       "50"));
+        Assert.assertTrue(settings.isEnabled());
+        Assert.assertEquals(1000, settings.getSnapshotInterval());
+        Assert.assertEquals(50, settings.getMaxJournalRecords());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testNotANumber() throws ParseException {
+        StateStoreSettings.fromXML(this.newElement("often", "50"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testTooLarge() throws ParseException {
+        StateStoreSettings.fromXML(this.newElement("1000", "4294967296"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalidInterval() throws ParseException {
+        StateStoreSettings.fromXML(this.newElement("0", "50"));
+    }
+}
@@ -0,0 +1,90 @@
+package nl.bitbrains.nebu.util;
+
+import java.text.ParseException;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jesse Donkervliet, Tim Hegeman, and Stefan Hugtenburg
+ * 
+ */
+public class TestSettingsParser {
+
+    private static final double DELTA = 1e-9;
+    private static final String TAG = "value";
+
+    private Element xml;
+
+    @Before
+    public void setUp() {
+        this.xml = new Element("settings");
+    }
+
+    private void setValue(final String value) {
+        this.xml.addContent(new Element(TestSettingsParser.TAG).setText(value));
+    }
+
+    @Test
+    public void testDefaults() throws ParseException {
+        Assert.assertEquals(5L, SettingsParser.parseLong(this.xml, TestSettingsParser.TAG, 5));
+        Assert.assertEquals(5, SettingsParser.parseInt(this.xml, TestSettingsParser.TAG, 5));
+        Assert.assertEquals(0.5, SettingsParser.parseDouble(this.xml, TestSettingsParser.TAG, 0.5),
+                            TestSettingsParser.DELTA);
+    }
+
+    @Test
+    public void testTrimmed() throws ParseException {
+        this.setValue(" 500 ");
+        Assert.assertEquals(500L, SettingsParser.parseLong(this.xml, TestSettingsParser.TAG, 5));
+        Assert.assertEquals(500, SettingsParser.parseInt(this.xml, TestSettingsParser.TAG, 5));
+        Assert.assertEquals(500, SettingsParser.parseDouble(this.xml, TestSettingsParser.TAG, 5),
+                            TestSettingsParser.DELTA);
+    }
+
+    @Test
+    public void testLargeLong() throws ParseException {
+        this.setValue("4294967296");
+        Assert.assertEquals(4294967296L,
+                            SettingsParser.parseLong(this.xml, TestSettingsParser.TAG, 0));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testLongNotANumber() throws ParseException {
+        this.setValue("soon");
+        SettingsParser.parseLong(this.xml, TestSettingsParser.TAG, 0);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testLongFraction() throws ParseException {
+        this.setValue("0.5");
+        SettingsParser.parseLong(this.xml, TestSettingsParser.TAG, 0);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testIntNotANumber() throws ParseException {
+        this.setValue("many");
+        SettingsParser.parseInt(this.xml, TestSettingsParser.TAG, 0);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testIntTooLarge() throws ParseException {
+        this.setValue("4294967296");
+        SettingsParser.parseInt(this.xml, TestSettingsParser.TAG, 0);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testDoubleNotANumber() throws ParseException {
+        this.setValue("high");
+        SettingsParser.parseDouble(this.xml, TestSettingsParser.TAG, 0);
+    }
+
+    @Test
+    public void testInvalid() {
+        final ParseException e = SettingsParser.invalid(new IllegalArgumentException("message"));
+        Assert.assertEquals("message", e.getMessage());
+        Assert.assertEquals(0, e.getErrorOffset());
+    }
+}